@@ -17,10 +17,13 @@ package org.zoodb.jdo.perf.large;
 
 import java.util.List;
 
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.Query;
 
 import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
 
 /**
  * This example tests performance for storing a large amount of data.
@@ -30,6 +33,8 @@ public class ExamplePerfLargeMain {
 
     public static int N_MAX = 50_000_000;
     public static int N_BATCH_SIZE = 1_000_000;
+    /** Number of data pages that are read ahead by extent scans. */
+    public static int N_READ_AHEAD = 64;
 
     
 	private static final String DB_FILE = "examplePerfLarge.zdb";
@@ -50,6 +55,13 @@ public class ExamplePerfLargeMain {
 		System.out.println("> Running queries ...");
 		executeQueries();
 		System.out.println("> Queries complete!");
+
+		System.out.println("> Scanning extent ...");
+		for (int i = 0; i < 2; i++) {
+			scanExtent(0);
+			scanExtent(N_READ_AHEAD);
+		}
+		System.out.println("> Scans complete!");
 	}
 
 	private void insertData() {
@@ -110,6 +122,30 @@ public class ExamplePerfLargeMain {
 		pm = null;
 	}
 
+	private void scanExtent(int readAhead) {
+		ZooJdoProperties props = new ZooJdoProperties(DB_FILE);
+		props.setZooExtentReadAhead(readAhead);
+		pm = JDOHelper.getPersistenceManagerFactory(props).getPersistenceManager();
+		
+		long t0 = System.currentTimeMillis();
+		pm.currentTransaction().begin();
+		Extent<PcData> ext = pm.getExtent(PcData.class);
+		int n = 0;
+		for (PcData p : ext) {
+			if (p.getS1() != null) {
+				n++;
+			}
+		}
+		ext.closeAll();
+		pm.currentTransaction().commit();
+		long t1 = System.currentTimeMillis();
+		System.out.println("Time extent scan (readAhead=" + readAhead + "): " + (t1-t0) 
+				+ "ms;  n=" + n);
+
+		pm.getPersistenceManagerFactory().close();
+		pm = null;
+	}
+
 	@SuppressWarnings("unchecked")
 	private void query() {
 		Query q = pm.newQuery(PcData.class, "s1.startsWith('hhh" + 3333 + "')");
@@ -69,5 +69,153 @@ public class ZooConstants {
 	 * Default is {@code false}.
 	 */
 	public static final String PROPERTY_FAIL_ON_CLOSED_QUERIES = "zoodb.failOnClosedQueries";
+
+	/**
+	 * Property that defines the order in which objects are written during commit. Objects that
+	 * are written consecutively are likely to be stored on the same page, which reduces the
+	 * number of pages that have to be read when they are accessed together.
+	 * Possible values are:
+	 * <ul>
+	 * <li>{@code NONE}: Objects are written in the order in which they became dirty.</li>
+	 * <li>{@code OID}: Objects are sorted by OID.</li>
+	 * <li>{@code FIELD}: Objects are sorted by the field defined in 
+	 * {@link #PROPERTY_CLUSTERING_FIELD}.</li>
+	 * <li>{@code REFERENCE}: Objects are stored in depth-first order of the references between
+	 * them, starting at objects that are not referenced by other dirty objects.</li>
+	 * </ul>
+	 * Clustering applies only to objects of the same class, because each data page contains 
+	 * only objects of one class.
+	 * Default is {@code NONE}.
+	 */
+	public static final String PROPERTY_CLUSTERING = "zoodb.clustering";
+
+	/**
+	 * Property that defines the name of the field that is used for clustering when
+	 * {@link #PROPERTY_CLUSTERING} is {@code FIELD}. Supported are primitive, 
+	 * {@code String} and reference fields. Objects without such a field are sorted by OID.
+	 */
+	public static final String PROPERTY_CLUSTERING_FIELD = "zoodb.clusteringField";
+
+	/**
+	 * Property that defines whether changes of persistent fields should be tracked per object.
+	 * If enabled, a snapshot of the fields is taken when an object is modified. At commit time,
+	 * objects whose fields all still have the same value as in the snapshot are not written.
+	 * This avoids rewriting objects if a transaction sets fields to their previous values or
+	 * activates objects for writing without actually changing them.
+	 * Collections and other mutable non-persistent field values can not be tracked, objects 
+	 * with such values are always written.
+	 * Objects where only primitive fields, references or dates have changed are written as
+	 * small delta record that contains only the fixed-size fields of the object.
+	 * <p>
+	 * Objects that are not written are also not reported as updated for optimistic conflict
+	 * detection. Objects that are made dirty explicitly, for example with 
+	 * {@code JDOHelper.makeDirty()}, are always written.
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_TRACK_DIRTY_FIELDS = "zoodb.trackDirtyFields";
+	
+	/**
+	 * Property that defines whether transactions read from a snapshot.
+	 * If enabled, each transaction reads the database state that was committed when the 
+	 * transaction started. Reading does not require a lock, only commits are serialized.
+	 * Therefore, long running read transactions do not block commits of other sessions
+	 * and an unlimited number of sessions can read concurrently. Pages of a snapshot are not
+	 * reused while transactions read from it, this may temporarily increase the database size.
+	 * <p>
+	 * Each session loads its own copy of the OID index and the schema index whenever it starts 
+	 * a transaction after another session has committed.
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_SNAPSHOT_READS = "zoodb.snapshotReads";
+	
+	/**
+	 * Property that defines the size of the second level cache in number of objects.
+	 * The cache is shared by all PersistenceManagers of a PersistenceManagerFactory and
+	 * contains the serialized images of objects that were read by any of them. An object that
+	 * is found in the cache is not read from disk again, but it is still de-serialized.
+	 * Cached objects are evicted when another session commits an update of them. 
+	 * Objects can be pinned in the cache via 
+	 * {@link javax.jdo.PersistenceManagerFactory#getDataStoreCache()}.
+	 * Default is {@code 0}, which means that the cache is disabled.
+	 */
+	public static final String PROPERTY_DATASTORE_CACHE_SIZE = "zoodb.dataStoreCacheSize";
+	
+	/**
+	 * Property that defines whether multiple threads can read concurrently from a single
+	 * PersistenceManager. If enabled, {@code getObjectById()}, the activation of hollow 
+	 * objects and the execution of queries only acquire a shared lock and can run in 
+	 * parallel, concurrent loads of the same object are merged. Operations that modify the
+	 * session, such as modifying objects, {@code makePersistent()}, {@code commit()} or 
+	 * {@code rollback()}, acquire an exclusive lock. They must not be called from a thread
+	 * that currently holds the shared lock, for example from {@code jdoPostLoad()}.
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_CONCURRENT_READS = "zoodb.concurrentReads";
+	
+	/**
+	 * Property that defines the maximum number of readers that are used for reading index 
+	 * pages. The pool of readers is shared by all PersistenceManagers of a database. 
+	 * Readers are created on demand and dropped when they have been idle for a while. 
+	 * Threads that read concurrently, see {@link #PROPERTY_CONCURRENT_READS}, have to wait
+	 * if all readers are in use.
+	 * Default is the number of available processors, but at least {@code 2}.
+	 */
+	public static final String PROPERTY_READER_POOL_SIZE = "zoodb.readerPoolSize";
+	
+	/**
+	 * Property that defines the maximum number of clean index pages that are kept in memory.
+	 * The limit is shared by all PersistenceManagers of a database. When the limit is 
+	 * exceeded, the least recently used pages are dropped and read again from disk when they
+	 * are needed. Each page requires roughly as much memory as a page in the database file.
+	 * Default is {@code 0}, which means that the number of pages is not limited.
+	 */
+	public static final String PROPERTY_INDEX_PAGE_BUDGET = "zoodb.indexPageBudget";
+	
+	/**
+	 * Property that defines whether clean index leaf pages keep their keys and values in 
+	 * direct buffers outside the Java heap. Such pages are not traced by the garbage collector
+	 * and loading them requires only a copy of the raw page content. Pages are copied to the 
+	 * heap when they are modified. The setting is shared by all PersistenceManagers of a 
+	 * database.
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_INDEX_OFF_HEAP = "zoodb.indexOffHeap";
+	
+	/**
+	 * Property that defines the maximum number of compiled queries that are cached. 
+	 * The cache is shared by all PersistenceManagers of a PersistenceManagerFactory. Queries
+	 * with the same filter, ordering, range, declared parameters and candidate class are 
+	 * parsed only once as long as the schema and the indexes of the class do not change.
+	 * Default is {@code 0}, which means that the cache is disabled.
+	 */
+	public static final String PROPERTY_QUERY_PLAN_CACHE_SIZE = "zoodb.queryPlanCacheSize";
+	
+	/**
+	 * Property that defines how many data pages are read ahead when iterating over an extent,
+	 * for example for queries without index. The pages are read in the order of the objects 
+	 * in the extent by a background thread while the objects of the current page are 
+	 * processed. This has no effect on memory mapped or in-memory databases.
+	 * Default is {@code 0}, which means that no pages are read ahead.
+	 */
+	public static final String PROPERTY_EXTENT_READ_AHEAD = "zoodb.extentReadAhead";
+	
+	/**
+	 * Property that defines whether a background thread should verify the checksums of all
+	 * pages of the database, see {@link org.zoodb.tools.ZooConfig#setFilePageChecksums(boolean)}.
+	 * The thread runs with low priority while the database is open and repeatedly reads all 
+	 * pages. Corrupted pages are logged and counted in
+	 * {@link org.zoodb.tools.DBStatistics.STATS#DB_SCRUB_ERROR_CNT}.
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_PAGE_SCRUBBER = "zoodb.pageScrubber";
+	
+	/**
+	 * Property that defines whether commits should use a write-ahead log. If enabled, a commit 
+	 * appends all written pages to a log file next to the database file and forces only the
+	 * log. The database file is forced later in the background, the log is replayed when the 
+	 * database is opened after a crash. 
+	 * Default is {@code false}.
+	 */
+	public static final String PROPERTY_WRITE_AHEAD_LOG = "zoodb.writeAheadLog";
 	
 }
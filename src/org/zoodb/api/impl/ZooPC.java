@@ -16,11 +16,13 @@
 package org.zoodb.api.impl;
 
 import java.io.Serializable;
+import java.util.BitSet;
 
 import javax.jdo.ObjectState;
 import javax.jdo.listener.ClearCallback;
 
 import org.zoodb.api.ZooInstanceEvent;
+import org.zoodb.internal.DataFieldTracker;
 import org.zoodb.internal.GenericObject;
 import org.zoodb.internal.Node;
 import org.zoodb.internal.Session;
@@ -71,7 +73,8 @@ public abstract class ZooPC implements Serializable {
 	
 	//store only byte i.o. reference!
 	//TODO store only one of the following?
-	private transient ObjectState status;
+	//volatile, because concurrently loaded objects are published by setting the status 
+	private transient volatile ObjectState status;
 	private transient byte stateFlags;
 	
 	private transient PCContext context;
@@ -82,6 +85,9 @@ public abstract class ZooPC implements Serializable {
 	//string indexes. See Issue #55 in Test_091.
 	private transient Pair<long[], Object[]> prevValues = null;
 	
+	//Field values at the time the object became dirty, only used if dirty fields are tracked.
+	private transient DataFieldTracker.Snapshot fieldSnapshot = null;
+	
 	
 	//	private long jdoZooFlags = 0;
 	//The following are NOT transient because they should survive (de-)serialization
@@ -141,8 +147,8 @@ public abstract class ZooPC implements Serializable {
 		context.getSession().internalGetCache().notifyDirty(this);
 	}
 	private void setPersClean() {
-		status = ObjectState.PERSISTENT_CLEAN;
 		stateFlags = PS_PERSISTENT | PS_TRANSACTIONAL;
+		status = ObjectState.PERSISTENT_CLEAN;
 	}
 	private void setPersDirty() {
 		status = ObjectState.PERSISTENT_DIRTY;
@@ -180,6 +186,7 @@ public abstract class ZooPC implements Serializable {
 		//TODO is that all?
 		setPersClean();
 		prevValues = null;
+		fieldSnapshot = null;
 	}
 //	public final void jdoZooMarkNew() {
 //		ObjectState statusO = status;
@@ -207,6 +214,8 @@ public abstract class ZooPC implements Serializable {
 		case PERSISTENT_DIRTY:
 			//is already dirty
 			//status = ObjectState.PERSISTENT_DIRTY;
+			//Explicit calls should always result in the object being written
+			fieldSnapshot = null;
 			return;
 		case PERSISTENT_CLEAN:
 			context.notifyEvent(this, ZooInstanceEvent.PRE_DIRTY);
@@ -273,6 +282,7 @@ public abstract class ZooPC implements Serializable {
 		//TODO is that all?
 		setHollow();
 		prevValues = null;
+		fieldSnapshot = null;
 	}
 
 	public final void jdoZooMarkTransient() {
@@ -389,9 +399,13 @@ public abstract class ZooPC implements Serializable {
 			//nothing to do
 			return;
 		case HOLLOW_PERSISTENT_NONTRANSACTIONAL:
+			if (context.getSession().getLock().isLoadingByCurrentThread(this)) {
+				//concurrent mode: the object is being loaded
+				return;
+			}
 			try {
 				Session session = context.getSession();
-				session.lock();
+				session.lockShared();
 				if (session.isClosed()) {
 					throw DBLogger.newUser("The PersistenceManager of this object is not open.");
 				}
@@ -401,7 +415,7 @@ public abstract class ZooPC implements Serializable {
 				}
 				jdoZooGetNode().refreshObject(this);
 			} finally {
-				context.getSession().unlock();
+				context.getSession().unlockShared();
 			}
 			return;
 		case PERSISTENT_DELETED:
@@ -436,11 +450,16 @@ public abstract class ZooPC implements Serializable {
 		if (DBTracer.TRACE) DBTracer.logCall(this);
 		switch (getStatus()) {
 		case HOLLOW_PERSISTENT_NONTRANSACTIONAL:
+			if (context.getSession().getLock().isLoadingByCurrentThread(this)) {
+				//concurrent mode: the object is being loaded, e.g. a DBHashMap is filled
+				return;
+			}
 			try {
 				context.getSession().lock();
 				checkActiveForWrite();
 				jdoZooGetNode().refreshObject(this);
 				jdoZooMarkDirty();
+				takeFieldSnapshot();
 				return;
 			} finally {
 				context.getSession().unlock();
@@ -463,6 +482,7 @@ public abstract class ZooPC implements Serializable {
 				context.getSession().lock();
 				checkActiveForWrite();
 				jdoZooMarkDirty();
+				takeFieldSnapshot();
 				return;
 			} finally {
 				context.getSession().unlock();
@@ -480,6 +500,28 @@ public abstract class ZooPC implements Serializable {
 		throw new UnsupportedOperationException(getStatus().toString());
 	}
 
+	private void takeFieldSnapshot() {
+		if (context.getSession().getConfig().getTrackDirtyFields() && 
+				getClass() != GenericObject.class) {
+			fieldSnapshot = DataFieldTracker.getSnapshot(this);
+		}
+	}
+	
+	/**
+	 * Dirty fields are only tracked if this is enabled in the session configuration and if 
+	 * the object became dirty by modifying it. Objects that are new or that were made dirty
+	 * explicitly are not tracked. 
+	 * @return The positions of the persistent fields that have changed since the object 
+	 * became dirty (see {@link ZooClassDef#getAllFields()}), or {@code null} if this object is
+	 * not tracked.
+	 */
+	public final BitSet jdoZooGetDirtyFields() {
+		if (fieldSnapshot == null || !jdoZooIsDirty()) {
+			return null;
+		}
+		return DataFieldTracker.getDirtyFields(this, fieldSnapshot);
+	}
+
 	private void checkActiveForWrite() {
 		if (jdoZooGetContext().getSession().isClosed()) {
 			throw DBLogger.newUser("The PersitenceManager of this object is not open.");
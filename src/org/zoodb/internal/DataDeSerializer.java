@@ -42,6 +42,7 @@ import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.SerializerTools.PRIMITIVE;
 import org.zoodb.internal.client.AbstractCache;
 import org.zoodb.internal.server.ObjectReader;
+import org.zoodb.internal.util.ClientLock;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.internal.util.Util;
 
@@ -93,6 +94,11 @@ public class DataDeSerializer {
     private final AbstractCache cache;
     private boolean allowGenericObjects = false;
     
+    //Only set if multiple threads may load objects concurrently
+    private ClientLock loadLock = null;
+    //Whether the last object was already loaded by another thread
+    private boolean isSkipped = false;
+    
     //Cached Sets and Maps
     //The maps and sets are only filled after the keys have been de-serialized. Otherwise 
     //the keys will be inserted with a wrong hash value.
@@ -127,6 +133,21 @@ public class DataDeSerializer {
         this.cache = cache;
    }
 
+    /**
+     * Enable concurrent loading. Objects are loaded while holding the load lock of their 
+     * OID. They remain hollow until they are completely loaded, objects that were loaded
+     * by another thread in the meantime are not loaded again, unless the current thread
+     * holds the exclusive lock.
+     * @param loadLock The lock of the session
+     */
+    public void setConcurrent(ClientLock loadLock) {
+        this.loadLock = loadLock;
+    }
+    
+    private boolean isConcurrentRead() {
+        return loadLock != null && !loadLock.isLockedByCurrentThread();
+    }
+
 
 	/**
      * This method returns an object that is read from the input 
@@ -142,15 +163,29 @@ public class DataDeSerializer {
 
         //Read first object:
         long oid = in.readLong();
-
+        
+        if (loadLock == null) {
+            return readObject(clsOid, ts, oid, skipIfCached);
+        }
+        loadLock.lockLoad(oid);
+        try {
+            return readObject(clsOid, ts, oid, skipIfCached || isConcurrentRead());
+        } finally {
+            loadLock.unlockLoad(oid);
+        }
+    }
+    
+    private ZooPC readObject(long clsOid, long ts, long oid, boolean skipIfCached) {
         //check cache
         ZooPC pc = cache.findCoByOID(oid);
         if (skipIfCached && pc != null) {
             if (pc.jdoZooIsDeleted() || !pc.jdoZooIsStateHollow()) {
                 //isDeleted() are filtered out later.
+                isSkipped = true;
                 return pc;
             }
         }
+        isSkipped = false;
 
         ZooClassDef clsDef = cache.getSchema(clsOid);
         ObjectReader or = in;
@@ -181,6 +216,45 @@ public class DataDeSerializer {
     }
     
     
+    /**
+     * This method returns an object that is read from an image that was recorded earlier.
+     * @param image The image of the object
+     * @return The read object.
+     * @see #startRecording()
+     */
+    public ZooPC readObject(byte[] image) {
+        in.setImage(image);
+        return readObject(-1, -1, false);
+    }
+    
+    /**
+     * Reads an object from an image that was recorded earlier.
+     * @param pc The hollow object
+     * @param image The image of the object
+     * @see #startRecording()
+     */
+    public void readObject(ZooPC pc, byte[] image) {
+        in.setImage(image);
+        readObject(pc, -1, -1);
+    }
+    
+    /**
+     * Record the serialized image of the next object that is read from disk. 
+     * @see #stopRecording()
+     */
+    public void startRecording() {
+        in.startRecording();
+    }
+    
+    /**
+     * @return The image of the object that was read since {@link #startRecording()} or
+     * {@code null} if the object was not read because another thread loaded it. 
+     */
+    public byte[] stopRecording() {
+        byte[] image = in.stopRecording();
+        return isSkipped ? null : image;
+    }
+    
     public GenericObject readGenericObject(int page, int offs) {
     	allowGenericObjects = true;
         long clsOid = in.startReading(page, offs);
@@ -239,7 +313,8 @@ public class DataDeSerializer {
                 }
                 i++;
         	}
-            //Read variable size fields
+            //Read variable size fields, these may be in a different record
+        	in.startReadingVariableFields(clsDef);
         	i = 0;
         	for (ZooFieldDef fd: clsDef.getAllFields()) {
                 if (!fd.isFixedSize() || fd.isString()) {
@@ -271,13 +346,30 @@ public class DataDeSerializer {
     		throw DBLogger.newFatalInternal("OID mismatch: " + oid + " vs " + pc.jdoZooGetOid());
     	}
     	
+    	isSkipped = false;
+    	if (loadLock == null) {
+    		readObject(pc, clsOid, ts);
+    		return;
+    	}
+    	loadLock.lockLoad(oid);
+    	try {
+    		isSkipped = isConcurrentRead() && !pc.jdoZooIsStateHollow();
+    		if (!isSkipped) {
+    			readObject(pc, clsOid, ts);
+    		}
+    	} finally {
+    		loadLock.unlockLoad(oid);
+    	}
+    }
+    
+    private void readObject(ZooPC pc, long clsOid, long ts) {
     	ZooClassDef clsDef = cache.getSchema(clsOid);
-    	pc.jdoZooMarkClean();
+    	markClean(pc);
     	pc.jdoZooSetTimestamp(ts);
 
     	if (clsDef.getNextVersion() != null) {
     		throw DBLogger.newUser("Object has not been evolved to the latest schema version: " +
-    				Util.oidToString(oid));
+    				Util.oidToString(pc.jdoZooGetOid()));
     	}
     	
         readObjPrivate(pc, clsDef);
@@ -285,10 +377,31 @@ public class DataDeSerializer {
     
     
     private void readObjPrivate(ZooPC pObj, ZooClassDef clsDef) {
+    	if (loadLock == null) {
+    		readFields(pObj, clsDef);
+    	} else {
+    		//The object stays hollow until it is completely loaded
+    		ZooPC prev = loadLock.beginLoad(pObj);
+    		try {
+    			readFields(pObj, clsDef);
+    		} finally {
+    			loadLock.endLoad(prev);
+    		}
+    		pObj.jdoZooMarkClean();
+    	}
+        
+        if (pObj instanceof LoadCallback) {
+        	((LoadCallback)pObj).jdoPostLoad();
+        }
+        pObj.jdoZooGetContext().notifyEvent(pObj, ZooInstanceEvent.LOAD);
+    }
+    
+    private void readFields(ZooPC pObj, ZooClassDef clsDef) {
     	// read first object (FCO)
     	//read fixed size part
         deserializeFields1( pObj, clsDef );
-        //read variable size part
+        //read variable size part, this may be in a different record
+        in.startReadingVariableFields(clsDef);
         deserializeFields2( pObj, clsDef );
         
         //read special classes
@@ -297,11 +410,6 @@ public class DataDeSerializer {
         }
 
         postProcessCollections();
-        
-        if (pObj instanceof LoadCallback) {
-        	((LoadCallback)pObj).jdoPostLoad();
-        }
-        pObj.jdoZooGetContext().notifyEvent(pObj, ZooInstanceEvent.LOAD);
     }
     
     private void postProcessCollections() {
@@ -317,7 +425,7 @@ public class DataDeSerializer {
                 sv.set.add(sv.values[i]);
             }
             if (sv.set instanceof ZooPC) {
-                ((ZooPC)sv.set).jdoZooMarkClean();
+                markClean((ZooPC) sv.set);
             }
         }
         setsToFill.clear();
@@ -327,7 +435,7 @@ public class DataDeSerializer {
                 mv.map.put(mv.keys[i], mv.values[i]);
             }
             if (mv.map instanceof ZooPC) {
-                ((ZooPC)mv.map).jdoZooMarkClean();
+                markClean((ZooPC) mv.map);
             }
         }
         mapsToFill.clear();
@@ -337,7 +445,7 @@ public class DataDeSerializer {
     private ZooPC getInstance(ZooClassDef clsDef, long oid, ZooPC co) {
     	if (co != null) {
     		//might be hollow!
-    		co.jdoZooMarkClean();
+    		markClean(co);
     		return co;
         }
         
@@ -345,6 +453,17 @@ public class DataDeSerializer {
 		if (cls == null) {
 			throw DBLogger.newUser("Java class not found: " + clsDef.getClassName());
 		}
+		if (loadLock != null) {
+			//Another thread may have created a hollow instance in the meantime
+			synchronized (cache) {
+				ZooPC obj = cache.findCoByOID(oid);
+				if (obj == null) {
+					obj = (ZooPC) createInstance(cls);
+					prepareObject(obj, oid, true, clsDef);
+				}
+				return obj;
+			}
+		}
     	ZooPC obj = (ZooPC) createInstance(cls);
     	prepareObject(obj, oid, false, clsDef);
         return obj;
@@ -443,13 +562,13 @@ public class DataDeSerializer {
             //Their data is not stored in (visible) fields.
             if (obj instanceof DBHashMap) {
                 deserializeDBHashMap((DBHashMap<Object, Object>) obj);
-                ((ZooPC)obj).jdoZooMarkClean();
+                markClean((ZooPC) obj);
             } else if (obj instanceof DBLargeVector) {
                 deserializeDBList((DBLargeVector<Object>) obj);
-                ((ZooPC)obj).jdoZooMarkClean();
+                markClean((ZooPC) obj);
             } else if (obj instanceof DBArrayList) {
                 deserializeDBList((DBArrayList<Object>) obj);
-                ((ZooPC)obj).jdoZooMarkClean();
+                markClean((ZooPC) obj);
             }
         } catch (UnsupportedOperationException e) {
             throw new UnsupportedOperationException("Unsupported Object: " +
@@ -457,6 +576,13 @@ public class DataDeSerializer {
         }
     }
 
+    private void markClean(ZooPC pc) {
+        //concurrently loaded objects are marked clean when they are completely loaded
+        if (loadLock == null) {
+            pc.jdoZooMarkClean();
+        }
+    }
+
     private void deserializeSpecialGO(GenericObject obj, ZooClassDef def) {
     	if (def.getClassName().equals(DBHashMap.class.getName())) {
             //Special treatment for persistent containers.
@@ -903,6 +1029,15 @@ public class DataDeSerializer {
             throw new IllegalArgumentException();
         }
         
+        if (loadLock != null) {
+            synchronized (cache) {
+                return hollowForOidPrivate(oid, clsDef);
+            }
+        }
+        return hollowForOidPrivate(oid, clsDef);
+    }
+    
+    private ZooPC hollowForOidPrivate(long oid, ZooClassDef clsDef) {
         //check cache
     	ZooPC obj = cache.findCoByOID(oid);
         if (obj != null) {
@@ -913,7 +1048,10 @@ public class DataDeSerializer {
         if (allowGenericObjects) {
         	//this instance is only used to return the OID (what about when deserializing arrays?)
         	Class<?> c = findOrCreateGoClass(clsDef);
-        	if (c == null || GenericObject.class.isAssignableFrom(c)) {
+        	//The class may be available but not be attached to the schema, e.g. if the schema 
+        	//was created with the schema API 
+        	if (c == null || GenericObject.class.isAssignableFrom(c) 
+        			|| clsDef.getJavaClass() == null) {
 				obj = GenericObject.newInstance(clsDef, oid, false, cache);
         	} else {
     	        obj = (ZooPC) createInstance(clsDef.getJavaClass());
@@ -15,6 +15,7 @@
  */
 package org.zoodb.internal;
 
+import org.zoodb.internal.server.ObjectWriter;
 import org.zoodb.internal.server.StorageChannelInput;
 import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
 import org.zoodb.internal.server.index.BitTools;
@@ -56,7 +57,7 @@ public class DataDeSerializerNoClass {
     private int readHeader(ZooClassDef clsDef, boolean allowSchemaMismatch) {
         //Read object header. 
         //Read OID
-    	oid = in.readLong();
+    	oid = readOid();
         //read class info:
     	clsOid = in.getHeaderClassOID();
     	if (!allowSchemaMismatch && clsOid != clsDef.getOid()) {
@@ -83,12 +84,23 @@ public class DataDeSerializerNoClass {
     public long getClassOid() {
     	//readHeader(clsDef)
         //Read OID
-    	oid = in.readLong();
+    	oid = readOid();
         //read class info:
     	clsOid = in.getHeaderClassOID();
     	return clsOid;
     }
     
+    private long readOid() {
+    	long oid = in.readLong();
+    	if (oid == ObjectWriter.DELTA_RECORD_MARK) {
+    		//Delta record: skip position of base record. The fixed-size fields follow the OID
+    		//just like in a normal record.
+    		in.readLong();
+    		oid = in.readLong();
+    	}
+    	return oid;
+    }
+    
     public long getOid() {
     	//The oid position is independent of the schema version
     	readHeader(null, true);
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.util.DBLogger;
+
+
+/**
+ * This class tracks which persistent fields of an object have changed.
+ *
+ * When an object becomes dirty, a snapshot of all persistent fields is taken. At commit time
+ * the snapshot is compared with the current field values. Objects where no field has changed
+ * do not need to be written.
+ * <p>
+ * Primitive fields, Strings, immutable value types, references to persistent objects and
+ * small arrays of primitives are tracked. Other objects, such as collections or dates, can be
+ * modified without notice; fields that contain such objects are always considered dirty.
+ * Primitive fields are stored without boxing. Arrays have to be copied to detect modifications,
+ * large arrays are not copied because that would cost about as much as writing them.
+ * <p>
+ * Objects where only fixed-size fields have changed are written as delta records, see 
+ * {@link org.zoodb.internal.server.ObjectWriter#DELTA_RECORD_MARK}.
+ *
+ * @author Tilmann Zaeschke
+ */
+public final class DataFieldTracker {
+
+	/** Marker for field values that cannot be tracked. */
+	private static final Object UNTRACKED = new Object();
+	
+	/** Arrays with more elements are not tracked. */
+	private static final int MAX_ARRAY_LENGTH = 128;
+
+	/**
+	 * The field values of an object at the time it became dirty.
+	 */
+	public static final class Snapshot {
+		private final ZooFieldDef[] fields;
+		//values of primitive fields
+		private final long[] prims;
+		//values of other fields, this is 'null' if there are no such fields
+		private final Object[] values;
+
+		private Snapshot(ZooFieldDef[] fields, long[] prims, Object[] values) {
+			this.fields = fields;
+			this.prims = prims;
+			this.values = values;
+		}
+	}
+
+	private DataFieldTracker() {
+		//static class
+	}
+
+	public static Snapshot getSnapshot(ZooPC co) {
+		ZooFieldDef[] fields = co.jdoZooGetClassDef().getAllFields();
+		long[] prims = new long[fields.length];
+		Object[] values = null;
+		for (int i = 0; i < fields.length; i++) {
+			ZooFieldDef f = fields[i];
+			if (f.isPrimitiveType() && f.getJavaField() != null) {
+				prims[i] = getPrimitive(co, f);
+			} else {
+				if (values == null) {
+					values = new Object[fields.length];
+				}
+				values[i] = copy(getValue(co, f));
+			}
+		}
+		return new Snapshot(fields, prims, values);
+	}
+
+	/**
+	 * @param co The object
+	 * @param snapshot A snapshot of the object taken with {@link #getSnapshot(ZooPC)}
+	 * @return The positions of all fields (see {@link ZooClassDef#getAllFields()}) whose value
+	 * differs from the snapshot.
+	 */
+	public static BitSet getDirtyFields(ZooPC co, Snapshot snapshot) {
+		ZooFieldDef[] fields = co.jdoZooGetClassDef().getAllFields();
+		BitSet ret = new BitSet(fields.length);
+		if (fields != snapshot.fields) {
+			//schema has changed
+			ret.set(0, fields.length);
+			return ret;
+		}
+		for (int i = 0; i < fields.length; i++) {
+			ZooFieldDef f = fields[i];
+			if (snapshot.values == null || 
+					(snapshot.values[i] == null && f.isPrimitiveType())) {
+				if (snapshot.prims[i] != getPrimitive(co, f)) {
+					ret.set(i);
+				}
+			} else if (!isEqual(snapshot.values[i], getValue(co, f))) {
+				ret.set(i);
+			}
+		}
+		return ret;
+	}
+
+	private static long getPrimitive(ZooPC co, ZooFieldDef field) {
+		try {
+			return SerializerTools.primitiveFieldToLong(co, field.getJavaField(), 
+					field.getPrimitiveType());
+		} catch (IllegalAccessException e) {
+			throw DBLogger.newFatal("Error accessing field: " + field.getName(), e);
+		}
+	}
+
+	private static Object getValue(ZooPC co, ZooFieldDef field) {
+		Field jField = field.getJavaField();
+		if (jField == null) {
+			return UNTRACKED;
+		}
+		try {
+			return jField.get(co);
+		} catch (IllegalAccessException e) {
+			throw DBLogger.newFatal("Error accessing field: " + field.getName(), e);
+		}
+	}
+
+	private static Object copy(Object v) {
+		if (v == null || v instanceof ZooPC || isImmutable(v)) {
+			return v;
+		}
+		if (!v.getClass().isArray() || Array.getLength(v) > MAX_ARRAY_LENGTH) {
+			return UNTRACKED;
+		}
+		if (v instanceof byte[]) {
+			return ((byte[]) v).clone();
+		} else if (v instanceof int[]) {
+			return ((int[]) v).clone();
+		} else if (v instanceof long[]) {
+			return ((long[]) v).clone();
+		} else if (v instanceof char[]) {
+			return ((char[]) v).clone();
+		} else if (v instanceof short[]) {
+			return ((short[]) v).clone();
+		} else if (v instanceof boolean[]) {
+			return ((boolean[]) v).clone();
+		} else if (v instanceof float[]) {
+			return ((float[]) v).clone();
+		} else if (v instanceof double[]) {
+			return ((double[]) v).clone();
+		}
+		return UNTRACKED;
+	}
+
+	private static boolean isImmutable(Object v) {
+		Class<?> cls = v.getClass();
+		return cls == String.class || cls == Integer.class || cls == Long.class ||
+				cls == Boolean.class || cls == Byte.class || cls == Character.class ||
+				cls == Short.class || cls == Float.class || cls == Double.class ||
+				cls == BigInteger.class || cls == BigDecimal.class || v instanceof Enum;
+	}
+
+	private static boolean isEqual(Object prev, Object v) {
+		if (prev == UNTRACKED) {
+			return false;
+		}
+		if (prev == null || v == null) {
+			return prev == v;
+		}
+		if (prev instanceof ZooPC) {
+			//compare identity, equals() may be overridden and may require activation
+			return prev == v;
+		}
+		if (isImmutable(prev)) {
+			return prev.equals(v);
+		}
+		if (prev.getClass() != v.getClass()) {
+			return false;
+		}
+		if (prev instanceof byte[]) {
+			return Arrays.equals((byte[]) prev, (byte[]) v);
+		} else if (prev instanceof int[]) {
+			return Arrays.equals((int[]) prev, (int[]) v);
+		} else if (prev instanceof long[]) {
+			return Arrays.equals((long[]) prev, (long[]) v);
+		} else if (prev instanceof char[]) {
+			return Arrays.equals((char[]) prev, (char[]) v);
+		} else if (prev instanceof short[]) {
+			return Arrays.equals((short[]) prev, (short[]) v);
+		} else if (prev instanceof boolean[]) {
+			return Arrays.equals((boolean[]) prev, (boolean[]) v);
+		} else if (prev instanceof float[]) {
+			return Arrays.equals((float[]) prev, (float[]) v);
+		} else if (prev instanceof double[]) {
+			return Arrays.equals((double[]) prev, (double[]) v);
+		}
+		return false;
+	}
+}
@@ -21,12 +21,15 @@ import java.util.ArrayList;
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.SerializerTools.PRIMITIVE;
 import org.zoodb.internal.server.index.BitTools;
+import org.zoodb.internal.server.index.CompositeIndexTools;
+import org.zoodb.internal.util.DBLogger;
 import org.zoodb.internal.util.Pair;
 
 
 /**
  * This class provides a method to backup indexed fields for later removal from the according
- * field index. 
+ * field index. This includes fields with n-gram index, fields of composite indexes and 
+ * fields that are included in an index. 
  *
  * @author Tilmann Zaeschke
  */
@@ -47,7 +50,7 @@ public final class DataIndexUpdater {
 	public void refreshWithSchema(ZooClassDef def) {
 		ArrayList<ZooFieldDef> pfl = new ArrayList<ZooFieldDef>();
 		for (ZooFieldDef f: def.getAllFields()) {
-			if (f.isIndexed()) {
+			if (f.hasAnyIndex()) {
 				pfl.add(f);
 			}
 		}
@@ -117,6 +120,38 @@ public final class DataIndexUpdater {
     	return ret;
     }
 
+	/**
+	 * @param fields The fields of a composite index
+	 * @param backup The values of an object, as returned by {@link #getBackup(ZooPC)}
+	 * @return The key of the object in the composite index
+	 * @see CompositeIndexTools
+	 */
+	public long getCompositeKey(ZooFieldDef[] fields, long[] backup) {
+		long[] values = new long[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			values[i] = backup[getBackupPos(fields[i])];
+		}
+		return CompositeIndexTools.key(fields, values);
+	}
+
+	/**
+	 * @param field An indexed field
+	 * @param backup The values of an object, as returned by {@link #getBackup(ZooPC)}
+	 * @return The value of the field as sortable long
+	 */
+	public long getValue(ZooFieldDef field, long[] backup) {
+		return backup[getBackupPos(field)];
+	}
+
+	private int getBackupPos(ZooFieldDef field) {
+		for (int i = 0; i < indFields.length; i++) {
+			if (indFields[i].getFieldSchemaId() == field.getFieldSchemaId()) {
+				return i;
+			}
+		}
+		throw DBLogger.newFatal("Field is not indexed: " + field.getName());
+	}
+
 	public boolean isIndexed() {
 		return indFields.length != 0;
 	}
@@ -181,6 +181,40 @@ public final class DataSerializer {
     }
 
 
+    /**
+     * Writes only the OID and the fixed-size fields of an object as delta record. The 
+     * variable-size fields are taken from the previous record of the object, so this must
+     * only be used if no variable-size field (including Strings) has changed.
+     * 
+     * @param objectInput Input object
+     * @param clsDef Class definition
+     * @return {@code false} if no delta record could be written. In this case the object has
+     * to be written with {@link #writeObject(ZooPC, ZooClassDef)}.
+     * @see ObjectWriter#DELTA_RECORD_MARK
+     */
+    public boolean writeObjectDelta(final ZooPC objectInput, ZooClassDef clsDef) {
+        long oid = objectInput.jdoZooGetOid();
+        int maxSize = ZooFieldDef.BYTES_OF_OID;
+        for (ZooFieldDef fd: clsDef.getAllFields()) {
+        	if (fd.isFixedSize()) {
+        		maxSize += fd.getLength();
+        	}
+        }
+        if (!out.startDelta(oid, maxSize)) {
+        	return false;
+        }
+
+        out.writeLong(oid);
+        serializeFields1(objectInput, clsDef);
+        //the variable-size part is not written
+        scos.clear();
+        usedClasses.clear();
+        
+        out.finishDelta();
+        return true;
+    }
+
+
     private void serializeFields1(Object o, ZooClassDef clsDef) {
         // Write fields
         try {
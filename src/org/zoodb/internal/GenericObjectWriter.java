@@ -51,6 +51,17 @@ class GenericObjectWriter implements ObjectWriter, DiskIO {
 	public void finishObject() {
 		//nothing to do...
 	}
+
+	@Override
+	public boolean startDelta(long oid, int maxSize) {
+		//generic objects are always written completely
+		return false;
+	}
+
+	@Override
+	public void finishDelta() {
+		throw new UnsupportedOperationException();
+	}
 	
 	/**
 	 * This can be necessary when subsequent objects are of a different class.
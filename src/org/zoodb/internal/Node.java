@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.server.DbChecker;
 import org.zoodb.internal.server.OptimisticTransactionResult;
 import org.zoodb.internal.server.TxObjInfo;
 import org.zoodb.internal.util.CloseableIterator;
@@ -49,10 +50,24 @@ public abstract class Node {
 
 	public abstract void closeConnection();
 
-	public abstract void defineIndex(ZooClassDef def, ZooFieldDef f, boolean isUnique);
+	public abstract void defineIndex(ZooClassDef def, ZooFieldDef f, boolean isUnique, 
+			boolean isHashed);
 
 	public abstract boolean removeIndex(ZooClassDef def, ZooFieldDef f);
 
+	public abstract void defineNgramIndex(ZooClassDef def, ZooFieldDef f);
+
+	public abstract boolean removeNgramIndex(ZooClassDef def, ZooFieldDef f);
+
+	public abstract void defineCompositeIndex(ZooClassDef def, ZooFieldDef[] fields);
+
+	public abstract boolean removeCompositeIndex(ZooClassDef def, ZooFieldDef[] fields);
+
+	public abstract void defineIndexIncludes(ZooClassDef def, ZooFieldDef field, 
+			ZooFieldDef[] included);
+
+	public abstract boolean removeIndexIncludes(ZooClassDef def, ZooFieldDef field);
+
 	public void connect() {
 		// TODO Auto-generated method stub
 		throw new UnsupportedOperationException();
@@ -62,10 +77,31 @@ public abstract class Node {
 	public abstract Iterator<ZooPC> readObjectFromIndex(ZooFieldDef field, 
 			long minValue, long maxValue, boolean loadFromCache);
 
+	public abstract Iterator<ZooPC> readObjectFromIndex(ZooFieldDef field, 
+			long[] keys, boolean loadFromCache);
+
+	public abstract Iterator<ZooPC> readObjectFromNgramIndex(ZooFieldDef field, 
+			long[] ranges, boolean loadFromCache);
+
+	public abstract Iterator<ZooPC> readObjectFromCompositeIndex(ZooClassDef def, 
+			ZooFieldDef[] fields, long minKey, long maxKey, boolean loadFromCache);
+
+	public abstract CloseableIterator<long[]> readValuesFromIndex(ZooFieldDef field, long minValue, 
+			long maxValue, ZooFieldDef[] values);
+
 	public abstract long getStats(STATS stats);
 
+	/**
+	 * @return The ID of the last transaction that changed the schema that is used by this 
+	 * node, including indexes.
+	 */
+	public abstract long getSchemaTxId();
+
     public abstract String checkDb();
 
+    public abstract String checkDb(int nThreads, long minTxId, 
+    		DbChecker.ProgressListener listener);
+
 	public abstract void dropInstances(ZooClassProxy def);
 
 	public abstract void defineSchema(ZooClassDef def);
@@ -95,6 +131,10 @@ public abstract class Node {
 
 	public abstract long countInstances(ZooClassProxy clsDef, boolean subClasses);
 
+	public abstract long[] readObjectIds(ZooClassProxy clsDef);
+
+	public abstract int truncateFile();
+
 	public abstract GenericObject readGenericObject(ZooClassDef def, long oid);
 	
 	public abstract boolean checkIfObjectExists(long oid);
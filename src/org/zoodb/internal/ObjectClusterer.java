@@ -0,0 +1,264 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.SessionConfig.CLUSTERING_MODE;
+import org.zoodb.internal.server.index.BitTools;
+import org.zoodb.internal.util.DBLogger;
+
+/**
+ * This class orders dirty objects before they are serialized during commit.
+ * Objects are written to data pages in the order in which they are passed to the data sinks,
+ * so objects that are close to each other in the returned list are likely to share a page.
+ * <p>
+ * See {@link CLUSTERING_MODE} for the available policies.
+ *
+ * @author Tilmann Zaeschke
+ */
+class ObjectClusterer {
+
+	private static final Comparator<ZooPC> OID_COMPARATOR = new Comparator<ZooPC>() {
+		@Override
+		public int compare(ZooPC o1, ZooPC o2) {
+			return Long.compare(o1.jdoZooGetOid(), o2.jdoZooGetOid());
+		}
+	};
+
+	private ObjectClusterer() {
+		//static class
+	}
+
+	/**
+	 * @param objects The dirty objects in cache order. This list is not modified.
+	 * @param config The session configuration
+	 * @return The objects in the order in which they should be written.
+	 */
+	static List<ZooPC> order(List<ZooPC> objects, SessionConfig config) {
+		if (objects.size() < 2) {
+			return objects;
+		}
+		switch (config.getClusteringMode()) {
+		case NONE: return objects;
+		case OID: return sortByOid(objects);
+		case FIELD: return sortByField(objects, config.getClusteringField());
+		case REFERENCE: return sortByReference(objects);
+		default:
+			throw new UnsupportedOperationException(config.getClusteringMode().name());
+		}
+	}
+
+	private static List<ZooPC> sortByOid(List<ZooPC> objects) {
+		ArrayList<ZooPC> ret = new ArrayList<>(objects);
+		Collections.sort(ret, OID_COMPARATOR);
+		return ret;
+	}
+
+	private static class Key implements Comparable<Key> {
+		private final ZooPC pc;
+		private final boolean hasValue;
+		private final long value;
+		Key(ZooPC pc, boolean hasValue, long value) {
+			this.pc = pc;
+			this.hasValue = hasValue;
+			this.value = value;
+		}
+		@Override
+		public int compareTo(Key k) {
+			if (hasValue != k.hasValue) {
+				return hasValue ? -1 : 1;
+			}
+			int c = Long.compare(value, k.value);
+			return c != 0 ? c : Long.compare(pc.jdoZooGetOid(), k.pc.jdoZooGetOid());
+		}
+	}
+
+	/**
+	 * Objects that have a field with the given name are sorted by the (sortable long) value
+	 * of that field, the same value that is used by attribute indices.
+	 * All other objects, or objects where the field has an unsupported type, are appended in
+	 * OID order.
+	 */
+	private static List<ZooPC> sortByField(List<ZooPC> objects, String fieldName) {
+		if (fieldName == null) {
+			return sortByOid(objects);
+		}
+		IdentityHashMap<ZooClassDef, ZooFieldDef> fields = new IdentityHashMap<>();
+		ArrayList<Key> keys = new ArrayList<>(objects.size());
+		for (ZooPC pc: objects) {
+			ZooClassDef def = pc.jdoZooGetClassDef();
+			ZooFieldDef field;
+			if (fields.containsKey(def)) {
+				field = fields.get(def);
+			} else {
+				field = def.getAllFieldsAsMap().get(fieldName);
+				if (field != null && (field.getJavaField() == null ||
+						!(field.isPrimitiveType() || field.isString() ||
+								field.isPersistentType()))) {
+					field = null;
+				}
+				fields.put(def, field);
+			}
+			if (field == null || pc.jdoZooIsDeleted()) {
+				keys.add(new Key(pc, false, 0));
+			} else {
+				keys.add(new Key(pc, true, getSortableValue(pc, field)));
+			}
+		}
+		Collections.sort(keys);
+		ArrayList<ZooPC> ret = new ArrayList<>(objects.size());
+		for (Key k: keys) {
+			ret.add(k.pc);
+		}
+		return ret;
+	}
+
+	private static long getSortableValue(ZooPC pc, ZooFieldDef field) {
+		Field jField = field.getJavaField();
+		try {
+			if (field.isString()) {
+				return BitTools.toSortableLong((String) jField.get(pc));
+			} else if (field.isPersistentType()) {
+				return BitTools.toSortableLong((ZooPC) jField.get(pc));
+			}
+			return SerializerTools.primitiveFieldToLong(pc, jField, field.getPrimitiveType());
+		} catch (IllegalAccessException e) {
+			throw DBLogger.newFatal("Error accessing field: " + field.getName(), e);
+		}
+	}
+
+	/**
+	 * Depth-first traversal of the references between dirty objects. The traversal starts at
+	 * all objects that are not referenced by other dirty objects, in cache order. Objects that
+	 * are only reachable through cycles are visited afterwards, also in cache order.
+	 * References to clean objects are not followed, these are already stored.
+	 */
+	private static List<ZooPC> sortByReference(List<ZooPC> objects) {
+		Set<ZooPC> dirty = Collections.newSetFromMap(new IdentityHashMap<>(objects.size()));
+		dirty.addAll(objects);
+
+		Set<ZooPC> referenced = Collections.newSetFromMap(new IdentityHashMap<>());
+		ArrayList<ZooPC> refs = new ArrayList<>();
+		for (ZooPC pc: objects) {
+			getReferences(pc, refs);
+			for (ZooPC ref: refs) {
+				if (ref != pc && dirty.contains(ref)) {
+					referenced.add(ref);
+				}
+			}
+			refs.clear();
+		}
+
+		ArrayList<ZooPC> ret = new ArrayList<>(objects.size());
+		Set<ZooPC> visited = Collections.newSetFromMap(new IdentityHashMap<>(objects.size()));
+		ArrayDeque<ZooPC> stack = new ArrayDeque<>();
+		for (ZooPC root: objects) {
+			if (!referenced.contains(root)) {
+				traverse(root, dirty, visited, stack, refs, ret);
+			}
+		}
+		for (ZooPC root: objects) {
+			traverse(root, dirty, visited, stack, refs, ret);
+		}
+		return ret;
+	}
+
+	private static void traverse(ZooPC root, Set<ZooPC> dirty, Set<ZooPC> visited,
+			ArrayDeque<ZooPC> stack, ArrayList<ZooPC> refs, ArrayList<ZooPC> ret) {
+		if (visited.contains(root)) {
+			return;
+		}
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			ZooPC pc = stack.pop();
+			if (!visited.add(pc)) {
+				continue;
+			}
+			ret.add(pc);
+			getReferences(pc, refs);
+			//push in reverse order, so that the first reference is visited first
+			for (int i = refs.size() - 1; i >= 0; i--) {
+				ZooPC ref = refs.get(i);
+				if (dirty.contains(ref) && !visited.contains(ref)) {
+					stack.push(ref);
+				}
+			}
+			refs.clear();
+		}
+	}
+
+	private static void getReferences(ZooPC pc, List<ZooPC> refs) {
+		if (pc.jdoZooIsDeleted()) {
+			return;
+		}
+		if (pc instanceof Collection) {
+			//persistent collections such as DBArrayList
+			addReferences((Collection<?>) pc, refs);
+			return;
+		}
+		if (pc instanceof Map) {
+			addReferences(((Map<?, ?>) pc).keySet(), refs);
+			addReferences(((Map<?, ?>) pc).values(), refs);
+			return;
+		}
+		for (ZooFieldDef field: pc.jdoZooGetClassDef().getAllFields()) {
+			Field jField = field.getJavaField();
+			if (jField == null || field.isPrimitiveType() || field.isString()) {
+				continue;
+			}
+			Object o;
+			try {
+				o = jField.get(pc);
+			} catch (IllegalAccessException e) {
+				throw DBLogger.newFatal("Error accessing field: " + field.getName(), e);
+			}
+			addReference(o, refs);
+			if (o instanceof Object[]) {
+				for (Object o2: (Object[]) o) {
+					addReference(o2, refs);
+				}
+			} else if (o instanceof Collection && !(o instanceof ZooPC)) {
+				addReferences((Collection<?>) o, refs);
+			} else if (o instanceof Map && !(o instanceof ZooPC)) {
+				addReferences(((Map<?, ?>) o).keySet(), refs);
+				addReferences(((Map<?, ?>) o).values(), refs);
+			}
+		}
+	}
+
+	private static void addReferences(Collection<?> c, List<ZooPC> refs) {
+		for (Object o: c) {
+			addReference(o, refs);
+		}
+	}
+
+	private static void addReference(Object o, List<ZooPC> refs) {
+		if (o instanceof ZooPC) {
+			refs.add((ZooPC) o);
+		}
+	}
+}
@@ -154,6 +154,10 @@ public class ObjectGraphTraverser {
         traversalRequired = true;
 	}
 
+	public boolean isTraversalRequired() {
+		return traversalRequired;
+	}
+
 	/**
      * This class is only public so it can be accessed by the test harness. 
      * Please do not use.
@@ -318,6 +318,27 @@ public class SerializerTools {
         }
     }
     
+    /**
+     * Reverse of {@link #primitiveToLong(Object, PRIMITIVE)}.
+     * @param l The value as sortable long
+     * @param prim The type of the value
+     * @return The boxed value
+     */
+    public static Object longToPrimitive(long l, PRIMITIVE prim) {
+        switch (prim) {
+        case BOOLEAN: return l != 0;
+        case BYTE: return (byte) l;
+        case CHAR: return (char) l;
+        case DOUBLE: return BitTools.toDouble(l);
+        case FLOAT: return BitTools.toFloat(l);
+        case INT: return (int) l;
+        case LONG: return l;
+        case SHORT: return (short) l;
+        default:
+            throw new UnsupportedOperationException(prim.toString());
+        }
+    }
+    
     public static long primitiveFieldToLong(Object parent, Field field, PRIMITIVE prim)
     throws IllegalArgumentException, IllegalAccessException {
         switch (prim) {
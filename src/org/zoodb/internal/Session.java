@@ -76,7 +76,7 @@ public class Session implements IteratorRegistry {
 	private boolean isOpen = true;
 	private boolean isActive = false;
 	private final SessionConfig config;
-	private final ClientLock lock = new ClientLock();
+	private final ClientLock lock;
 	private final EnumMap<DBStatistics.STATS, Long> stats = new EnumMap<>(DBStatistics.STATS.class);
 	
 	private long transactionId = -1;
@@ -100,6 +100,7 @@ public class Session implements IteratorRegistry {
 		this.parentSession = parentSession;
 		this.config = config;
 		this.config.freeze();
+		this.lock = new ClientLock(config.getConcurrentReads());
 		this.primary = ZooFactory.get().createNode(dbPath, this);
 		this.cache = new ClientSessionCache(this, primary);
 		this.schemaManager = new SchemaManager(cache, config.getAutoCreateSchema());
@@ -163,6 +164,18 @@ public class Session implements IteratorRegistry {
 			//pre-commit: traverse object tree for transitive persistence
 			cache.persistReachableObjects();
 
+			//Modified objects without changed fields don't need to be written
+			if (config.getTrackDirtyFields()) {
+				int nSkipped = cache.cleanUnchangedObjects();
+				if (DBStatistics.isEnabled()) {
+					statsAdd(STATS.TX_OBJ_WRITE_SKIPPED_CNT, nSkipped);
+				}
+			}
+
+			if (config.getReadOnly()) {
+				checkNoUpdates();
+			}
+
 			//commit phase #1: prepare, check conflicts, get optimistic locks
 			//This needs to happen after OGT (we need the OIDs) and before everything else (avoid
 			//any writes in case of conflict AND we need the WLOCK before any updates.
@@ -233,6 +246,15 @@ public class Session implements IteratorRegistry {
 		}
 	}
 
+	private void checkNoUpdates() {
+		ArrayList<TxObjInfo> updates = new ArrayList<>();
+		getObjectToCommit(updates);
+		if (!updates.isEmpty() || schemaManager.hasChanges()) {
+			throw DBLogger.newUser("The session is read-only, found " + updates.size() 
+					+ " modified objects. Please call rollback().");
+		}
+	}
+
 	private void processOptimisticVerification(boolean isTrialRun) {
 		ArrayList<TxObjInfo> updates = new ArrayList<>();
 		getObjectToCommit(updates);
@@ -332,7 +354,8 @@ public class Session implements IteratorRegistry {
         }		
 
         //Then update. This matters for unique indices where deletion must occur before updates.
-		for (ZooPC co: cache.getDirtyObjects()) {
+		//The write order determines which objects share data pages, see CLUSTERING_MODE.
+		for (ZooPC co: ObjectClusterer.order(cache.getDirtyObjects(), config)) {
 		    if (!co.jdoZooIsDirty()) {
 		    	//can happen when object are refreshed after being marked dirty? //TODO
 		    	//throw new IllegalStateException("State=");
@@ -398,10 +421,114 @@ public class Session implements IteratorRegistry {
 		processOptimisticTransactionResult(otr);
 	}
 	
+	/**
+	 * Relocate all instances of a class into densely packed pages. The objects are rewritten 
+	 * in separate transactions of up to {@code batchSize} objects each. Because free pages 
+	 * are reused starting with the lowest page ID, objects migrate towards the beginning of 
+	 * the database file. Between the batches, other sessions can continue to read and write.
+	 * The first batch is relocated twice, see below.
+	 * <p>
+	 * Only instances of the latest schema version are relocated, sub-classes are ignored.
+	 * This must be called outside of a transaction.
+	 * @param px The class whose instances should be relocated
+	 * @param batchSize Maximum number of objects to relocate per transaction
+	 * @return The number of relocated objects
+	 * @see #truncateFile()
+	 */
+	public long compactInstances(ZooClassProxy px, int batchSize) {
+		try {
+			lock();
+			checkOpen();
+			if (isActive) {
+				throw DBLogger.newUser("Compaction is not possible inside a transaction.");
+			}
+			if (batchSize < 1) {
+				throw DBLogger.newUser("Invalid batch size: " + batchSize);
+			}
+			begin();
+			long[] oids;
+			try {
+				oids = primary.readObjectIds(px);
+			} finally {
+				rollbackInteral();
+			}
+
+			long nRelocated = 0;
+			for (int i = 0; i < oids.length; i += batchSize) {
+				nRelocated += relocate(px, oids, i, Math.min(i + batchSize, oids.length));
+			}
+			//The first batch could only use pages that were free before the compaction, 
+			//typically it was appended to the end of the file. We relocate it a second time to 
+			//move it into the pages that were released by the following batches. 
+			relocate(px, oids, 0, Math.min(batchSize, oids.length));
+			return nRelocated;
+		} finally {
+			unlock();
+		}
+	}
+
+	private int relocate(ZooClassProxy px, long[] oids, int start, int end) {
+		ArrayList<GenericObject> batch = new ArrayList<>();
+		begin();
+		try {
+			for (int i = start; i < end; i++) {
+				long oid = oids[i];
+				if (cache.getGeneric(oid) != null) {
+					//in use via the schema API
+					continue;
+				}
+				GenericObject go;
+				try {
+					go = primary.readGenericObject(px.getSchemaDef(), oid);
+				} catch (RuntimeException e) {
+					if (!DBLogger.isObjectNotFoundException(e)) {
+						throw e;
+					}
+					//deleted by a concurrent session
+					continue;
+				}
+				batch.add(go);
+				go.jdoZooMarkDirty();
+			}
+			commit(false);
+			return batch.size();
+		} finally {
+			if (isActive) {
+				rollbackInteral();
+			}
+			//avoid filling up the cache
+			for (GenericObject go: batch) {
+				if (!go.jdoZooIsDirty()) {
+					cache.makeTransient(go);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release free pages at the end of the database file to the file system. This is most 
+	 * effective after relocating objects with {@link #compactInstances(ZooClassProxy, int)}.
+	 * This must be called outside of a transaction.
+	 * @return The number of pages in the database file
+	 */
+	public int truncateFile() {
+		try {
+			lock();
+			checkOpen();
+			if (isActive) {
+				throw DBLogger.newUser("Truncation is not possible inside a transaction.");
+			}
+			return primary.truncateFile();
+		} finally {
+			unlock();
+		}
+	}
+
 	public void makePersistent(ZooPC pc) {
 		try {
 			lock();
 			checkActive();
+			checkWritable();
 			if (pc.jdoZooIsPersistent()) {
 				if (pc.jdoZooGetContext().getSession() != this) {
 					throw DBLogger.newUser("The object belongs to a different persistence manager.");
@@ -663,7 +790,7 @@ public class Session implements IteratorRegistry {
 
 	public Object getObjectById(Object arg0) {
 		try {
-			lock();
+			lockShared();
 			checkActiveRead();
 			long oid = (Long) arg0;
 			ZooPC co = cache.findCoByOID(oid);
@@ -684,7 +811,7 @@ public class Session implements IteratorRegistry {
 
 			return co;
 		} finally {
-			unlock();
+			unlockShared();
 		}
 	}
 	
@@ -733,6 +860,7 @@ public class Session implements IteratorRegistry {
 		try {
 			lock();
 			checkActive();
+			checkWritable();
 			ZooPC co = checkObject(pc);
 			co.jdoZooMarkDeleted();
 		} finally {
@@ -758,6 +886,9 @@ public class Session implements IteratorRegistry {
 			}
 			cache.close();
 			closeResources();
+			if (config.getQueryPlanCache() != null) {
+				config.getQueryPlanCache().remove(this);
+			}
 			TransientField.deregisterPm(this);
 			isOpen = false;
 		} finally {
@@ -835,13 +966,17 @@ public class Session implements IteratorRegistry {
 	 */
 	@Override
     public void registerResource(Closeable it) {
-		resources.put(it, null);
+		synchronized (resources) {
+			resources.put(it, null);
+		}
     }
 
 
     @Override
     public void deregisterResource(Closeable iter) {
-    	resources.remove(iter);
+		synchronized (resources) {
+			resources.remove(iter);
+		}
     }
 
 	private void closeResources() {
@@ -931,6 +1066,12 @@ public class Session implements IteratorRegistry {
     	}
 	}
 	
+	private void checkWritable() {
+		if (config.getReadOnly()) {
+			throw DBLogger.newUser("The session is read-only.");
+		}
+	}
+	
 	public void checkActiveRead() {
     	checkOpen();
     	if (!isActive && !config.getNonTransactionalRead()) {
@@ -986,6 +1127,50 @@ public class Session implements IteratorRegistry {
 	public void unlock() {
 		lock.unlock();
 	}
+	
+	/**
+	 * Acquire the lock for read-only operations.
+	 * @see ClientLock#lockShared()
+	 */
+	public void lockShared() {
+		lock.lockShared();
+	}
+	
+	public void unlockShared() {
+		lock.unlockShared();
+	}
+	
+	/**
+	 * Acquire the lock for executing a query. Queries that have to make reachable objects
+	 * persistent first require the exclusive lock. 
+	 * @param ignoreCache Whether the query ignores the session cache
+	 * @return {@code true} if the exclusive lock was acquired, {@code false} for the 
+	 * shared lock.
+	 * @see #unlockQuery(boolean)
+	 */
+	public boolean lockQuery(boolean ignoreCache) {
+		if (!lock.isSharedLocking() || lock.isLockedByCurrentThread()) {
+			lock();
+			return true;
+		}
+		//Nested queries of a thread that already holds the shared lock cannot upgrade.
+		boolean isNested = lock.isSharedByCurrentThread();
+		lock.lockShared();
+		if (ignoreCache || isNested || !cache.isOGTraversalRequired()) {
+			return false;
+		}
+		lock.unlockShared();
+		lock();
+		return true;
+	}
+	
+	public void unlockQuery(boolean isExclusive) {
+		if (isExclusive) {
+			unlock();
+		} else {
+			unlockShared();
+		}
+	}
 
 	public ClientLock getLock() {
 		return lock;
@@ -1016,4 +1201,9 @@ public class Session implements IteratorRegistry {
 		}
 		stats.put(stat, cnt);
 	}
+
+	public void statsAdd(STATS stat, long n) {
+		Long cnt = stats.get(stat);
+		stats.put(stat, cnt == null ? n : cnt + n);
+	}
 }
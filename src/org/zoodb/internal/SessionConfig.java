@@ -15,7 +15,9 @@
  */
 package org.zoodb.internal;
 
+import org.zoodb.internal.query.QueryPlanCache;
 import org.zoodb.internal.server.SessionFactory;
+import org.zoodb.internal.server.SharedObjectCache;
 import org.zoodb.internal.util.DBLogger;
 
 public class SessionConfig {
@@ -28,6 +30,20 @@ public class SessionConfig {
 	private boolean isDetachAllOnCommit = false;
 	private boolean isNonTransactionalRead = false;
 	private CACHE_MODE cacheMode = CACHE_MODE.SOFT;
+	private CLUSTERING_MODE clusteringMode = CLUSTERING_MODE.NONE;
+	private String clusteringField = null;
+	private boolean isTrackDirtyFields = false;
+	private boolean isSnapshotReads = false;
+	private SharedObjectCache sharedCache = null;
+	private QueryPlanCache queryPlanCache = null;
+	private boolean isConcurrentReads = false;
+	private int readerPoolSize = 0;
+	private int indexPageBudget = 0;
+	private boolean isIndexOffHeap = false;
+	private int extentReadAhead = 0;
+	private boolean isPageScrubber = false;
+	private boolean isWriteAheadLog = false;
+	private boolean isReadOnly = false;
 
 
 	/**
@@ -41,6 +57,28 @@ public class SessionConfig {
 		PIN
 	}
 
+	/**
+	 * Specifies in which order dirty objects are written during commit. Each data page
+	 * contains objects of only one class, so the order affects only how objects of the same
+	 * class are distributed over pages.
+	 * <ul>
+	 * <li>NONE: Objects are written in the order in which they became dirty.</li>
+	 * <li>OID: Objects are sorted by OID.</li>
+	 * <li>FIELD: Objects are sorted by the value of the clustering field. Objects without such 
+	 * a field are sorted by OID.</li>
+	 * <li>REFERENCE: Objects are written in depth-first order of a traversal that starts at 
+	 * all objects that are not referenced by other dirty objects. Referenced objects are 
+	 * therefore stored close to the objects that refer to them.</li>
+	 * </ul>
+	 * @author Tilmann Zaeschke
+	 */
+	public enum CLUSTERING_MODE {
+		NONE,
+		OID,
+		FIELD,
+		REFERENCE
+	}
+
 	public void freeze() {
 		isFrozen = true;
 	}
@@ -95,6 +133,171 @@ public class SessionConfig {
 		this.cacheMode = cacheMode;
 	}
 
+	public CLUSTERING_MODE getClusteringMode() {
+		return clusteringMode;
+	}
+
+	public void setClusteringMode(CLUSTERING_MODE clusteringMode) {
+		this.clusteringMode = clusteringMode;
+	}
+
+	public String getClusteringField() {
+		return clusteringField;
+	}
+
+	/**
+	 * Set the name of the field that is used with {@link CLUSTERING_MODE#FIELD}.
+	 * @param fieldName The name of the field
+	 */
+	public void setClusteringField(String fieldName) {
+		this.clusteringField = fieldName;
+	}
+
+	public boolean getTrackDirtyFields() {
+		return isTrackDirtyFields;
+	}
+
+	/**
+	 * @param flag Whether changes of fields should be tracked, so that objects that were 
+	 * modified but have no changed fields at commit time are not written.
+	 */
+	public void setTrackDirtyFields(boolean flag) {
+		this.isTrackDirtyFields = flag;
+	}
+
+	public boolean getSnapshotReads() {
+		return isSnapshotReads;
+	}
+
+	/**
+	 * @param flag Whether transactions should read from the snapshot that was committed
+	 * when they started, without holding a lock.
+	 */
+	public void setSnapshotReads(boolean flag) {
+		this.isSnapshotReads = flag;
+	}
+
+	/**
+	 * @return The second level cache that is shared with other sessions, or {@code null}.
+	 */
+	public SharedObjectCache getSharedCache() {
+		return sharedCache;
+	}
+
+	/**
+	 * @param sharedCache The second level cache that is shared with other sessions, 
+	 * or {@code null} to disable it.
+	 */
+	public void setSharedCache(SharedObjectCache sharedCache) {
+		this.sharedCache = sharedCache;
+	}
+
+	/**
+	 * @return The cache for compiled queries that is shared with other sessions, or 
+	 * {@code null}.
+	 */
+	public QueryPlanCache getQueryPlanCache() {
+		return queryPlanCache;
+	}
+
+	/**
+	 * @param queryPlanCache The cache for compiled queries that is shared with other 
+	 * sessions, or {@code null} to disable it.
+	 */
+	public void setQueryPlanCache(QueryPlanCache queryPlanCache) {
+		this.queryPlanCache = queryPlanCache;
+	}
+
+	public boolean getConcurrentReads() {
+		return isConcurrentReads;
+	}
+
+	/**
+	 * @param flag Whether multiple threads may read concurrently from the session.
+	 */
+	public void setConcurrentReads(boolean flag) {
+		this.isConcurrentReads = flag;
+	}
+
+	public int getReaderPoolSize() {
+		return readerPoolSize;
+	}
+
+	/**
+	 * @param size The maximum number of index page readers, {@code 0} for the default.
+	 */
+	public void setReaderPoolSize(int size) {
+		this.readerPoolSize = size;
+	}
+
+	public int getIndexPageBudget() {
+		return indexPageBudget;
+	}
+
+	/**
+	 * @param maxPages The maximum number of clean index pages in memory, {@code 0} if the 
+	 * number is not limited.
+	 */
+	public void setIndexPageBudget(int maxPages) {
+		this.indexPageBudget = maxPages;
+	}
+
+	public boolean getIndexOffHeap() {
+		return isIndexOffHeap;
+	}
+
+	/**
+	 * @param isOffHeap Whether clean index pages should be kept outside the Java heap.
+	 */
+	public void setIndexOffHeap(boolean isOffHeap) {
+		this.isIndexOffHeap = isOffHeap;
+	}
+
+	public int getExtentReadAhead() {
+		return extentReadAhead;
+	}
+
+	/**
+	 * @param nPages The number of data pages to read ahead during extent iteration, {@code 0}
+	 * to disable reading ahead.
+	 */
+	public void setExtentReadAhead(int nPages) {
+		this.extentReadAhead = nPages;
+	}
+
+	public boolean getPageScrubber() {
+		return isPageScrubber;
+	}
+
+	/**
+	 * @param flag Whether page checksums should be verified in the background.
+	 */
+	public void setPageScrubber(boolean flag) {
+		this.isPageScrubber = flag;
+	}
+
+	public boolean getWriteAheadLog() {
+		return isWriteAheadLog;
+	}
+
+	/**
+	 * @param flag Whether commits should use a write-ahead log.
+	 */
+	public void setWriteAheadLog(boolean flag) {
+		this.isWriteAheadLog = flag;
+	}
+
+	public boolean getReadOnly() {
+		return isReadOnly;
+	}
+
+	/**
+	 * @param flag Whether the database should be opened in read-only mode.
+	 */
+	public void setReadOnly(boolean flag) {
+		this.isReadOnly = flag;
+	}
+
 	public boolean getNonTransactionalRead() {
 		return isNonTransactionalRead;
 	}
@@ -67,6 +67,10 @@ public class ZooClassDef extends ZooPC {
 	private transient ZooClassDef prevVersion = null;
 	//Indicates whether the class is schema-compatible with the Java class of the same name
 	private transient boolean isJavaCompatible = false;  
+	//Field schema IDs of the composite indexes of this class, loaded from the schema index
+	private transient ArrayList<long[]> compositeIndexes = new ArrayList<>();
+	//Field schema IDs of indexed fields and their included fields, loaded from the schema index
+	private transient ArrayList<long[]> indexIncludes = new ArrayList<>();
 	
 	//List of operations that transform a previous version into the current version. 
 	private ArrayList<PersistentSchemaOperation> evolutionOperations = null;
@@ -217,6 +221,8 @@ public class ZooClassDef extends ZooPC {
 			}
 		}
 		newDef.associateFields();
+		newDef.compositeIndexes = new ArrayList<>(compositeIndexes);
+		newDef.indexIncludes = new ArrayList<>(indexIncludes);
 		
 		return newDef;
 	}
@@ -592,6 +598,163 @@ public class ZooClassDef extends ZooPC {
 		return fieldBuffer;
 	}
 
+	/**
+	 * Composite indexes are shared with sub-classes, but not with super-classes.
+	 * @return The fields of all composite indexes that are defined for this class, excluding 
+	 * indexes of super-classes.
+	 */
+	public List<ZooFieldDef[]> getCompositeIndexes() {
+		ArrayList<ZooFieldDef[]> ret = new ArrayList<>(compositeIndexes.size());
+		for (long[] ids: compositeIndexes) {
+			ZooFieldDef[] fields = getFieldsBySchemaId(ids);
+			if (fields != null) {
+				ret.add(fields);
+			}
+		}
+		return ret;
+	}
+	
+	private ZooFieldDef[] getFieldsBySchemaId(long[] ids) {
+		ZooFieldDef[] fields = new ZooFieldDef[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			for (ZooFieldDef f: allFields) {
+				if (f.getFieldSchemaId() == ids[i]) {
+					fields[i] = f;
+					break;
+				}
+			}
+			if (fields[i] == null) {
+				//field has been removed
+				return null;
+			}
+		}
+		return fields;
+	}
+	
+	public boolean hasCompositeIndex(ZooFieldDef[] fields) {
+		return indexOfComposite(fields) >= 0;
+	}
+	
+	private int indexOfComposite(ZooFieldDef[] fields) {
+		for (int i = 0; i < compositeIndexes.size(); i++) {
+			long[] ids = compositeIndexes.get(i);
+			if (ids.length != fields.length) {
+				continue;
+			}
+			int j = 0;
+			while (j < ids.length && ids[j] == fields[j].getFieldSchemaId()) {
+				j++;
+			}
+			if (j == ids.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	public void addCompositeIndex(ZooFieldDef[] fields) {
+		long[] ids = new long[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			ids[i] = fields[i].getFieldSchemaId();
+			fields[i].addCompositeIndex(1);
+		}
+		compositeIndexes.add(ids);
+	}
+	
+	public void removeCompositeIndex(ZooFieldDef[] fields) {
+		int i = indexOfComposite(fields);
+		if (i >= 0) {
+			compositeIndexes.remove(i);
+			for (ZooFieldDef f: fields) {
+				f.addCompositeIndex(-1);
+			}
+		}
+	}
+	
+	/**
+	 * Replace the list of composite indexes, for example after loading the schema. 
+	 * @param fieldIds The schema IDs of the fields of each index
+	 */
+	public void setCompositeIndexes(List<long[]> fieldIds) {
+		for (ZooFieldDef[] fields: getCompositeIndexes()) {
+			removeCompositeIndex(fields);
+		}
+		compositeIndexes.clear();
+		for (long[] ids: fieldIds) {
+			ZooFieldDef[] fields = getFieldsBySchemaId(ids);
+			if (fields != null) {
+				addCompositeIndex(fields);
+			}
+		}
+	}
+
+	/**
+	 * Included fields are stored with the index of another field of this class, they allow
+	 * answering projections from the index.
+	 * @return Pairs of an indexed field and a field that is included in the index.
+	 */
+	public List<ZooFieldDef[]> getIndexIncludes() {
+		ArrayList<ZooFieldDef[]> ret = new ArrayList<>(indexIncludes.size());
+		for (long[] ids: indexIncludes) {
+			ZooFieldDef[] fields = getFieldsBySchemaId(ids);
+			if (fields != null) {
+				ret.add(fields);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @param field An indexed field
+	 * @return The fields that are included in the index of the field.
+	 */
+	public ZooFieldDef[] getIndexIncludes(ZooFieldDef field) {
+		ArrayList<ZooFieldDef> ret = new ArrayList<>();
+		for (ZooFieldDef[] pair: getIndexIncludes()) {
+			if (pair[0] == field) {
+				ret.add(pair[1]);
+			}
+		}
+		return ret.toArray(new ZooFieldDef[ret.size()]);
+	}
+	
+	public void addIndexIncludes(ZooFieldDef field, ZooFieldDef[] included) {
+		for (ZooFieldDef f: included) {
+			indexIncludes.add(new long[]{field.getFieldSchemaId(), f.getFieldSchemaId()});
+			f.addIndexInclude(1);
+		}
+	}
+	
+	public void removeIndexIncludes(ZooFieldDef field, ZooFieldDef[] included) {
+		for (ZooFieldDef f: included) {
+			for (int i = 0; i < indexIncludes.size(); i++) {
+				long[] ids = indexIncludes.get(i);
+				if (ids[0] == field.getFieldSchemaId() && ids[1] == f.getFieldSchemaId()) {
+					indexIncludes.remove(i);
+					f.addIndexInclude(-1);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replace the list of included fields, for example after loading the schema. 
+	 * @param fieldIds Pairs of schema IDs of an indexed field and an included field
+	 */
+	public void setIndexIncludes(List<long[]> fieldIds) {
+		for (ZooFieldDef[] pair: getIndexIncludes()) {
+			pair[1].addIndexInclude(-1);
+		}
+		indexIncludes.clear();
+		for (long[] ids: fieldIds) {
+			ZooFieldDef[] fields = getFieldsBySchemaId(ids);
+			if (fields != null) {
+				addIndexIncludes(fields[0], new ZooFieldDef[]{fields[1]});
+			}
+		}
+	}
+
 	public boolean hasSuperClass(ZooClassDef cls) {
 		if (superDef == cls) {
 			return true;
@@ -142,6 +142,27 @@ public class ZooClassProxy implements ZooClass {
 		locateFieldOrFail(fieldName).createIndex(isUnique);
 	}
 	
+	@Override
+	public void createIndex(String fieldName, boolean isUnique, String ... includedFieldNames) {
+		DBTracer.logCall(this, fieldName, isUnique, includedFieldNames);
+		checkInvalidWrite();
+		ZooFieldDef field = ((ZooFieldProxy) locateFieldOrFail(fieldName)).getFieldDef(); 
+		schemaManager.defineIndex(field, isUnique, locateFieldsOrFail(includedFieldNames));
+	}
+	
+	@Override
+	public String[] getIndexIncludes(String fieldName) {
+		DBTracer.logCall(this, fieldName);
+		checkInvalidRead();
+		ZooFieldDef field = ((ZooFieldProxy) locateFieldOrFail(fieldName)).getFieldDef(); 
+		ZooFieldDef[] included = schemaManager.getIndexIncludes(field);
+		String[] ret = new String[included.length];
+		for (int i = 0; i < included.length; i++) {
+			ret[i] = included[i].getName();
+		}
+		return ret;
+	}
+	
 	@Override
 	public boolean removeIndex(String fieldName) {
 		DBTracer.logCall(this, fieldName);
@@ -163,6 +184,42 @@ public class ZooClassProxy implements ZooClass {
 		return locateFieldOrFail(fieldName).isIndexUnique();
 	}
 	
+	@Override
+	public void createHashIndex(String fieldName) {
+		DBTracer.logCall(this, fieldName);
+		checkInvalidWrite();
+		locateFieldOrFail(fieldName).createHashIndex();
+	}
+	
+	@Override
+	public void createCompositeIndex(String ... fieldNames) {
+		DBTracer.logCall(this, (Object[]) fieldNames);
+		checkInvalidWrite();
+		schemaManager.defineCompositeIndex(def, locateFieldsOrFail(fieldNames));
+	}
+	
+	@Override
+	public boolean removeCompositeIndex(String ... fieldNames) {
+		DBTracer.logCall(this, (Object[]) fieldNames);
+		checkInvalidWrite();
+		return schemaManager.removeCompositeIndex(def, locateFieldsOrFail(fieldNames));
+	}
+	
+	@Override
+	public boolean hasCompositeIndex(String ... fieldNames) {
+		DBTracer.logCall(this, (Object[]) fieldNames);
+		checkInvalidRead();
+		return schemaManager.isCompositeIndexDefined(def, locateFieldsOrFail(fieldNames));
+	}
+	
+	private ZooFieldDef[] locateFieldsOrFail(String[] fieldNames) {
+		ZooFieldDef[] fields = new ZooFieldDef[fieldNames.length];
+		for (int i = 0; i < fieldNames.length; i++) {
+			fields[i] = ((ZooFieldProxy) locateFieldOrFail(fieldNames[i])).getFieldDef();
+		}
+		return fields;
+	}
+	
 	private ZooField locateFieldOrFail(String fieldName) {
 		ZooField f = getField(fieldName);
 		if (f == null) {
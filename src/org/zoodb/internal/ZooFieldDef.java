@@ -70,6 +70,12 @@ public class ZooFieldDef {
 	
 	private boolean isIndexed = false;
     private boolean isIndexUnique;
+	private transient boolean isNgramIndexed = false;
+	private transient boolean isIndexHashed = false;
+	//Number of composite indexes that contain this field
+	private transient int compositeIndexCount = 0;
+	//Number of indexes that include the value of this field
+	private transient int indexIncludeCount = 0;
 	
 	private int offset = Integer.MIN_VALUE;
     private int fieldPos = -1;
@@ -136,6 +142,10 @@ public class ZooFieldDef {
 		jdoType = f.jdoType;
 		isIndexed = f.isIndexed;
 		isIndexUnique = f.isIndexUnique;
+		isNgramIndexed = f.isNgramIndexed;
+		isIndexHashed = f.isIndexHashed;
+		compositeIndexCount = f.compositeIndexCount;
+		indexIncludeCount = f.indexIncludeCount;
 		offset = f.offset;
 		fieldPos = f.fieldPos;
 		proxy = f.proxy;
@@ -315,6 +325,62 @@ public class ZooFieldDef {
 		isIndexUnique = isUnique;
 	}
 	
+	/**
+	 * @return Whether the index of the field is a hash index. Hash indexes are unique and 
+	 * can only be used for equality lookups.
+	 */
+	public boolean isIndexHashed() {
+		return isIndexHashed;
+	}
+	
+	public void setIndexHashed(boolean b) {
+		isIndexHashed = b;
+	}
+	
+	/**
+	 * @return Whether the field has an n-gram index. This is independent of 
+	 * {@link #isIndexed()}.
+	 */
+	public boolean isNgramIndexed() {
+		return isNgramIndexed;
+	}
+	
+	public void setNgramIndexed(boolean b) {
+		isNgramIndexed = b;
+	}
+	
+	/**
+	 * @return Whether the field is part of a composite index, see 
+	 * {@link ZooClassDef#getCompositeIndexes()}.
+	 */
+	public boolean isCompositeIndexed() {
+		return compositeIndexCount > 0;
+	}
+	
+	void addCompositeIndex(int delta) {
+		compositeIndexCount = Math.max(0, compositeIndexCount + delta);
+	}
+	
+	/**
+	 * @return Whether the value of the field is included in the index of another field, see 
+	 * {@link ZooClassDef#getIndexIncludes(ZooFieldDef)}.
+	 */
+	public boolean isIncludedInIndex() {
+		return indexIncludeCount > 0;
+	}
+	
+	void addIndexInclude(int delta) {
+		indexIncludeCount = Math.max(0, indexIncludeCount + delta);
+	}
+	
+	/**
+	 * @return Whether the field is part of any kind of index. The previous values of these 
+	 * fields are stored by the {@link DataIndexUpdater}.
+	 */
+	public boolean hasAnyIndex() {
+		return isIndexed || isNgramIndexed || compositeIndexCount > 0 || indexIncludeCount > 0;
+	}
+	
 	protected int getNextOffset() {
 		return offset + fieldLength; 
 	}
@@ -157,6 +157,36 @@ public class ZooFieldProxy implements ZooField {
 		return schemaManager.isIndexUnique(fieldDef);
 	}
 
+	@Override
+	public void createHashIndex() {
+		checkInvalidWrite();
+		schemaManager.defineHashIndex(fieldDef);
+	}
+
+	@Override
+	public boolean isIndexHashed() {
+		checkInvalidRead();
+		return schemaManager.isIndexHashed(fieldDef);
+	}
+
+	@Override
+	public void createNgramIndex() {
+		checkInvalidWrite();
+		schemaManager.defineNgramIndex(fieldDef);
+	}
+
+	@Override
+	public boolean removeNgramIndex() {
+		checkInvalidWrite();
+		return schemaManager.removeNgramIndex(fieldDef);
+	}
+
+	@Override
+	public boolean hasNgramIndex() {
+		checkInvalidRead();
+		return schemaManager.isNgramIndexDefined(fieldDef);
+	}
+
 	@Override
 	public int getArrayDim() {
 		return fieldDef.getArrayDim();
@@ -43,4 +43,10 @@ public interface AbstractCache {
 
 	void addGeneric(GenericObject genericObject);
 
+	/**
+	 * Removes a generic object from the cache, unless it is dirty.
+	 * @param go The generic object
+	 */
+	void evictGeneric(GenericObject go);
+
 }
@@ -27,6 +27,7 @@ import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooClassProxy;
 import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.client.session.ClientSessionCache;
+import org.zoodb.internal.server.index.PagedHashLongLong;
 import org.zoodb.internal.server.index.SchemaIndex;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.schema.ZooClass;
@@ -225,13 +226,64 @@ public class SchemaManager {
 		}
 		//Is type indexable?
 		SchemaIndex.FTYPE.fromType(f);
-		ops.add(new SchemaOperation.IndexCreate(f, isUnique));
+		ops.add(new SchemaOperation.IndexCreate(f, isUnique, false));
+	}
+
+	/**
+	 * Define a unique hash index, see {@link PagedHashLongLong}.
+	 * @param f The field to index
+	 */
+	public void defineHashIndex(ZooFieldDef f) {
+		if (f.isIndexed()) {
+			throw DBLogger.newUser("Field is already indexed: " + f.getName());
+		}
+		if (f.isString() || !(f.isPrimitiveType() || f.isPersistentType())) {
+			throw DBLogger.newUser("Hash indexes require primitive or reference fields: " + 
+					f.getName() + " " + f.getTypeName());
+		}
+		ops.add(new SchemaOperation.IndexCreate(f, true, true));
+	}
+
+	/**
+	 * Define an index that includes the values of other fields.
+	 * @param f The field to index
+	 * @param isUnique Whether the index is unique
+	 * @param included The included fields
+	 */
+	public void defineIndex(ZooFieldDef f, boolean isUnique, ZooFieldDef[] included) {
+		ZooClassDef def = f.getDeclaringType();
+		for (int i = 0; i < included.length; i++) {
+			if (included[i].getPrimitiveType() == null) {
+				throw DBLogger.newUser("Only primitive fields can be included in an index: " + 
+						included[i].getName() + " " + included[i].getTypeName());
+			}
+			if (included[i] == f) {
+				throw DBLogger.newUser("Indexed field cannot be included: " + f.getName());
+			}
+			if (def.getAllFieldsAsMap().get(included[i].getName()) != included[i]) {
+				throw DBLogger.newUser("Included field must be a field of " + 
+						def.getClassName() + ": " + included[i].getName());
+			}
+			for (int j = 0; j < i; j++) {
+				if (included[i] == included[j]) {
+					throw DBLogger.newUser("Duplicate included field: " + included[i].getName());
+				}
+			}
+		}
+		defineIndex(f, isUnique);
+		if (included.length > 0) {
+			ops.add(new SchemaOperation.IndexIncludeCreate(f, included));
+		}
 	}
 
 	public boolean removeIndex(ZooFieldDef f) {
 		if (!f.isIndexed()) {
 			return false;
 		}
+		ZooFieldDef[] included = getIndexIncludes(f);
+		if (included.length > 0) {
+			ops.add(new SchemaOperation.IndexIncludeRemove(f, included));
+		}
 		ops.add(new SchemaOperation.IndexRemove(f));
 		return true;
 	}
@@ -240,12 +292,89 @@ public class SchemaManager {
 		return f.isIndexed();
 	}
 
+	public ZooFieldDef[] getIndexIncludes(ZooFieldDef f) {
+		return f.getDeclaringType().getIndexIncludes(f);
+	}
+
 	public boolean isIndexUnique(ZooFieldDef f) {
 		if (!f.isIndexed()) {
 			throw DBLogger.newUser("Field has no index: " + f.getName());
 		}
 		return f.isIndexUnique();
 	}
+
+	public boolean isIndexHashed(ZooFieldDef f) {
+		if (!f.isIndexed()) {
+			throw DBLogger.newUser("Field has no index: " + f.getName());
+		}
+		return f.isIndexHashed();
+	}
+
+	public void defineNgramIndex(ZooFieldDef f) {
+		if (f.isNgramIndexed()) {
+			throw DBLogger.newUser("Field already has an n-gram index: " + f.getName());
+		}
+		if (!f.isString()) {
+			throw DBLogger.newUser("N-gram indexes require String fields: " + 
+					f.getName() + " " + f.getTypeName());
+		}
+		ops.add(new SchemaOperation.NgramIndexCreate(f));
+	}
+
+	public boolean removeNgramIndex(ZooFieldDef f) {
+		if (!f.isNgramIndexed()) {
+			return false;
+		}
+		ops.add(new SchemaOperation.NgramIndexRemove(f));
+		return true;
+	}
+
+	public boolean isNgramIndexDefined(ZooFieldDef f) {
+		return f.isNgramIndexed();
+	}
+
+	public void defineCompositeIndex(ZooClassDef def, ZooFieldDef[] fields) {
+		if (fields.length < 2) {
+			throw DBLogger.newUser("Composite indexes require at least two fields.");
+		}
+		for (int i = 0; i < fields.length; i++) {
+			//Is type indexable?
+			SchemaIndex.FTYPE.fromType(fields[i]);
+			for (int j = 0; j < i; j++) {
+				if (fields[i] == fields[j]) {
+					throw DBLogger.newUser("Duplicate field in composite index: " + 
+							fields[i].getName());
+				}
+			}
+		}
+		if (isCompositeIndexDefined(def, fields)) {
+			throw DBLogger.newUser("Composite index is already defined for class: " + 
+					def.getClassName());
+		}
+		ops.add(new SchemaOperation.CompositeIndexCreate(def, fields));
+	}
+
+	public boolean removeCompositeIndex(ZooClassDef def, ZooFieldDef[] fields) {
+		if (!def.hasCompositeIndex(fields)) {
+			return false;
+		}
+		ops.add(new SchemaOperation.CompositeIndexRemove(def, fields));
+		return true;
+	}
+
+	/**
+	 * @param def The class definition
+	 * @param fields The fields of the index
+	 * @return Whether the class or one of its super-classes defines the composite index
+	 */
+	public boolean isCompositeIndexDefined(ZooClassDef def, ZooFieldDef[] fields) {
+		for (ZooClassDef d = def; d != null; d = d.getSuperDef()) {
+			if (d.hasCompositeIndex(fields)) {
+				return true;
+			}
+		}
+		return false;
+	}
 	
 	public void commit() {
 		//If nothing changed, there is no need to verify anything!
@@ -63,11 +63,13 @@ public abstract class SchemaOperation {
 	public static class IndexCreate extends SchemaOperation {
 		private final ZooFieldDef field;
 		private final boolean isUnique;
+		private final boolean isHashed;
 
-		public IndexCreate(ZooFieldDef field, boolean isUnique) {
+		public IndexCreate(ZooFieldDef field, boolean isUnique, boolean isHashed) {
 			super(field.getDeclaringType().jdoZooGetNode());
 			this.field = field;
 			this.isUnique = isUnique;
+			this.isHashed = isHashed;
 			initial();
 		}
 		
@@ -75,18 +77,20 @@ public abstract class SchemaOperation {
 		void initial() {
 			field.setIndexed(true);
 			field.setUnique(isUnique);
+			field.setIndexHashed(isHashed);
 			ZooClassDef def = field.getDeclaringType(); 
 			def.getProvidedContext().getIndexer().refreshWithSchema(def);
 		}
 		
 		@Override
 		void commit() {
-			node.defineIndex(field.getDeclaringType(), field, isUnique);
+			node.defineIndex(field.getDeclaringType(), field, isUnique, isHashed);
 		}
 		
 		@Override
 		void rollback() {
 			field.setIndexed(false);
+			field.setIndexHashed(false);
 			ZooClassDef def = field.getDeclaringType(); 
 			def.getProvidedContext().getIndexer().refreshWithSchema(def);
 		}
@@ -98,17 +102,20 @@ public abstract class SchemaOperation {
 	public static class IndexRemove extends SchemaOperation {
 		private final ZooFieldDef field;
 		private final boolean isUnique;
+		private final boolean isHashed;
 
 		public IndexRemove(ZooFieldDef field) {
 			super(field.getDeclaringType().jdoZooGetNode());
 			this.field = field;
 			this.isUnique = field.isIndexUnique();
+			this.isHashed = field.isIndexHashed();
 			initial();
 		}
 		
 		@Override
 		void initial() {
 			field.setIndexed(false);
+			field.setIndexHashed(false);
 			ZooClassDef def = field.getDeclaringType(); 
 			def.getProvidedContext().getIndexer().refreshWithSchema(def);
 		}
@@ -122,11 +129,214 @@ public abstract class SchemaOperation {
 		void rollback() {
 			field.setIndexed(true);
 			field.setUnique(isUnique);
+			field.setIndexHashed(isHashed);
 			ZooClassDef def = field.getDeclaringType(); 
 			def.getProvidedContext().getIndexer().refreshWithSchema(def);
 		}
 	}
 
+	/**
+	 * Operation to create an n-gram index.
+	 */
+	public static class NgramIndexCreate extends SchemaOperation {
+		private final ZooFieldDef field;
+
+		public NgramIndexCreate(ZooFieldDef field) {
+			super(field.getDeclaringType().jdoZooGetNode());
+			this.field = field;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			field.setNgramIndexed(true);
+			ZooClassDef def = field.getDeclaringType(); 
+			def.getProvidedContext().getIndexer().refreshWithSchema(def);
+		}
+		
+		@Override
+		void commit() {
+			node.defineNgramIndex(field.getDeclaringType(), field);
+		}
+		
+		@Override
+		void rollback() {
+			field.setNgramIndexed(false);
+			ZooClassDef def = field.getDeclaringType(); 
+			def.getProvidedContext().getIndexer().refreshWithSchema(def);
+		}
+	}
+	
+	/**
+	 * Operation to remove an n-gram index.
+	 */
+	public static class NgramIndexRemove extends SchemaOperation {
+		private final ZooFieldDef field;
+
+		public NgramIndexRemove(ZooFieldDef field) {
+			super(field.getDeclaringType().jdoZooGetNode());
+			this.field = field;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			field.setNgramIndexed(false);
+			ZooClassDef def = field.getDeclaringType(); 
+			def.getProvidedContext().getIndexer().refreshWithSchema(def);
+		}
+		
+		@Override
+		void commit() {
+			node.removeNgramIndex(field.getDeclaringType(), field);
+		}
+		
+		@Override
+		void rollback() {
+			field.setNgramIndexed(true);
+			ZooClassDef def = field.getDeclaringType(); 
+			def.getProvidedContext().getIndexer().refreshWithSchema(def);
+		}
+	}
+
+	/**
+	 * Operation to create a composite index.
+	 */
+	public static class CompositeIndexCreate extends SchemaOperation {
+		private final ZooClassDef def;
+		private final ZooFieldDef[] fields;
+
+		public CompositeIndexCreate(ZooClassDef def, ZooFieldDef[] fields) {
+			super(def.jdoZooGetNode());
+			this.def = def;
+			this.fields = fields;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			def.addCompositeIndex(fields);
+			refreshIndexers(def);
+		}
+		
+		@Override
+		void commit() {
+			node.defineCompositeIndex(def, fields);
+		}
+		
+		@Override
+		void rollback() {
+			def.removeCompositeIndex(fields);
+			refreshIndexers(def);
+		}
+	}
+	
+	/**
+	 * Operation to remove a composite index.
+	 */
+	public static class CompositeIndexRemove extends SchemaOperation {
+		private final ZooClassDef def;
+		private final ZooFieldDef[] fields;
+
+		public CompositeIndexRemove(ZooClassDef def, ZooFieldDef[] fields) {
+			super(def.jdoZooGetNode());
+			this.def = def;
+			this.fields = fields;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			def.removeCompositeIndex(fields);
+			refreshIndexers(def);
+		}
+		
+		@Override
+		void commit() {
+			node.removeCompositeIndex(def, fields);
+		}
+		
+		@Override
+		void rollback() {
+			def.addCompositeIndex(fields);
+			refreshIndexers(def);
+		}
+	}
+	
+	/**
+	 * Operation to include fields in the index of another field.
+	 */
+	public static class IndexIncludeCreate extends SchemaOperation {
+		private final ZooFieldDef field;
+		private final ZooFieldDef[] included;
+
+		public IndexIncludeCreate(ZooFieldDef field, ZooFieldDef[] included) {
+			super(field.getDeclaringType().jdoZooGetNode());
+			this.field = field;
+			this.included = included;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			field.getDeclaringType().addIndexIncludes(field, included);
+			refreshIndexers(field.getDeclaringType());
+		}
+		
+		@Override
+		void commit() {
+			node.defineIndexIncludes(field.getDeclaringType(), field, included);
+		}
+		
+		@Override
+		void rollback() {
+			field.getDeclaringType().removeIndexIncludes(field, included);
+			refreshIndexers(field.getDeclaringType());
+		}
+	}
+	
+	/**
+	 * Operation to remove the included fields from the index of another field.
+	 */
+	public static class IndexIncludeRemove extends SchemaOperation {
+		private final ZooFieldDef field;
+		private final ZooFieldDef[] included;
+
+		public IndexIncludeRemove(ZooFieldDef field, ZooFieldDef[] included) {
+			super(field.getDeclaringType().jdoZooGetNode());
+			this.field = field;
+			this.included = included;
+			initial();
+		}
+		
+		@Override
+		void initial() {
+			field.getDeclaringType().removeIndexIncludes(field, included);
+			refreshIndexers(field.getDeclaringType());
+		}
+		
+		@Override
+		void commit() {
+			node.removeIndexIncludes(field.getDeclaringType(), field);
+		}
+		
+		@Override
+		void rollback() {
+			field.getDeclaringType().addIndexIncludes(field, included);
+			refreshIndexers(field.getDeclaringType());
+		}
+	}
+	
+	/**
+	 * Composite indexes and included fields are also maintained for instances of sub-classes.
+	 */
+	private static void refreshIndexers(ZooClassDef def) {
+		def.getProvidedContext().getIndexer().refreshWithSchema(def);
+		for (ZooClassProxy sub: def.getVersionProxy().getSubProxies()) {
+			refreshIndexers(sub.getSchemaDef());
+		}
+	}
+
 	public static class DropInstances extends SchemaOperation {
 		private final ZooClassProxy def;
 
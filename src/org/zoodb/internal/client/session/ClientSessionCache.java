@@ -16,12 +16,14 @@
 package org.zoodb.internal.client.session;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 
 import javax.jdo.ObjectState;
+import javax.jdo.listener.StoreCallback;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,6 +75,8 @@ public class ClientSessionCache implements AbstractCache {
 	private final PrimLongMapZ<GenericObject> genericObjects = new PrimLongMapZ<GenericObject>();
 	
 	private final Session session;
+	//Whether objects may be looked up and added by multiple threads concurrently
+	private final boolean isConcurrent;
 	private final ObjectGraphTraverser ogt;
 	private final OidBuffer oidBuffer;
 
@@ -80,6 +84,7 @@ public class ClientSessionCache implements AbstractCache {
 	
 	public ClientSessionCache(Session session, Node primary) {
 		this.session = session;
+		this.isConcurrent = session.getConfig().getConcurrentReads();
 		this.ogt = new ObjectGraphTraverser(this); 
 		this.oidBuffer = primary.getOidBuffer();
 		
@@ -231,9 +236,25 @@ public class ClientSessionCache implements AbstractCache {
 	}
 
 
+	/**
+	 * With concurrent reads, multiple threads may look up and add objects while holding the 
+	 * shared session lock. All other modifications of the cache require the exclusive lock.
+	 * Callers that need to look up and add an object atomically can synchronize on the cache.
+	 */
 	@Override
 	public final void addToCache(ZooPC obj, ZooClassDef classDef, long oid, 
 			ObjectState state) {
+		if (isConcurrent) {
+			synchronized (this) {
+				addToCachePrivate(obj, classDef, oid, state);
+			}
+		} else {
+			addToCachePrivate(obj, classDef, oid, state);
+		}
+	}
+	
+	private void addToCachePrivate(ZooPC obj, ZooClassDef classDef, long oid, 
+			ObjectState state) {
 		if (obj.getClass() == GenericObject.class) {
 			addGeneric((GenericObject) obj);
 			return;
@@ -251,6 +272,11 @@ public class ClientSessionCache implements AbstractCache {
 	
 	@Override
 	public final ZooPC findCoByOID(long oid) {
+		if (isConcurrent) {
+			synchronized (this) {
+				return objs.get(oid);
+			}
+		}
 		return objs.get(oid);
 	}
 
@@ -263,6 +289,15 @@ public class ClientSessionCache implements AbstractCache {
 	 */
 	@Override
 	public ZooClassDef getSchema(Class<?> cls, Node node) {
+		if (isConcurrent) {
+			synchronized (this) {
+				return getSchemaPrivate(cls, node);
+			}
+		}
+		return getSchemaPrivate(cls, node);
+	}
+	
+	private ZooClassDef getSchemaPrivate(Class<?> cls, Node node) {
 		ZooClassDef ret = nodeSchemata.get(node).get(cls);
 		if (ret == null) {
 			if (cls == null) {
@@ -553,6 +588,36 @@ public class ClientSessionCache implements AbstractCache {
 		return dirtyObjects;
 	}
 
+	/**
+	 * Marks modified objects as clean if none of their fields has changed, so that they are not
+	 * written during commit. This affects only objects whose dirty fields are tracked, see
+	 * {@link ZooPC#jdoZooGetDirtyFields()}.
+	 * Objects with a {@link StoreCallback} are always written, because the callback may 
+	 * modify them.
+	 * @return The number of objects that were marked clean.
+	 */
+	public int cleanUnchangedObjects() {
+		int n = 0;
+		int pos = 0;
+		for (int i = 0; i < dirtyObjects.size(); i++) {
+			ZooPC co = dirtyObjects.get(i);
+			if (co.jdoZooIsDirty() && !co.jdoZooIsNew() && !co.jdoZooIsDeleted() && 
+					!(co instanceof StoreCallback)) {
+				BitSet dirtyFields = co.jdoZooGetDirtyFields();
+				if (dirtyFields != null && dirtyFields.isEmpty()) {
+					co.jdoZooMarkClean();
+					n++;
+					continue;
+				}
+			}
+			dirtyObjects.set(pos++, co);
+		}
+		for (int i = dirtyObjects.size() - 1; i >= pos; i--) {
+			dirtyObjects.remove(i);
+		}
+		return n;
+	}
+
 	public void notifyDelete(ZooPC pc) {
 		if (pc.getClass() == GenericObject.class) {
 			dirtyGenObjects.add((GenericObject) pc);
@@ -579,6 +644,18 @@ public class ClientSessionCache implements AbstractCache {
     	return genericObjects.get(oid);
     }
 
+    /**
+     * Removes a generic object from the cache, unless it is dirty. This allows reading large 
+     * numbers of generic objects, for example during an export, without filling up the cache.
+     * @param go The generic object
+     */
+    @Override
+    public void evictGeneric(GenericObject go) {
+    	if (!go.jdoZooIsDirty()) {
+    		genericObjects.remove(go.getOid());
+    	}
+    }
+
 	public boolean hasDirtyPojos() {
 		//ignore generic objects for now, they need no traversing
 		return !dirtyObjects.isEmpty();
@@ -592,6 +669,13 @@ public class ClientSessionCache implements AbstractCache {
 		ogt.traverse();
 	}
 
+	/**
+	 * @return Whether {@link #persistReachableObjects()} may have to make objects persistent.
+	 */
+	public boolean isOGTraversalRequired() {
+		return ogt.isTraversalRequired() || hasDirtyPojos();
+	}
+
 	/**
 	 * Tell the OGT that the object graph has changed and that a new traversal is required.
 	 */
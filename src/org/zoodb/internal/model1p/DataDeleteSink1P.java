@@ -20,12 +20,14 @@ import java.util.Arrays;
 
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.DataDeleteSink;
+import org.zoodb.internal.DataIndexUpdater;
 import org.zoodb.internal.GenericObject;
 import org.zoodb.internal.SerializerTools;
 import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.server.index.BitTools;
 import org.zoodb.internal.server.index.LongLongIndex;
+import org.zoodb.internal.server.index.NgramTools;
 import org.zoodb.internal.server.index.PagedOidIndex;
 import org.zoodb.internal.server.index.PagedPosIndex;
 import org.zoodb.internal.server.index.SchemaIndex.SchemaIndexEntry;
@@ -132,9 +134,13 @@ public class DataDeleteSink1P implements DataDeleteSink {
     }
 
     private void flushBuffer() {
+        removeCompositeIndexEntries(buffer, bufferCnt);
+        removeIncludedIndexEntries(buffer, bufferCnt);
         updateFieldIndices();
         bufferCnt = 0;
         if (bufferGOCnt > 0) {
+	        removeCompositeIndexEntries(bufferGO, bufferGOCnt);
+	        removeIncludedIndexEntries(bufferGO, bufferGOCnt);
 	        updateFieldIndicesGO();
 	        bufferGOCnt = 0;
         }
@@ -148,7 +154,7 @@ public class DataDeleteSink1P implements DataDeleteSink {
         //remove field index entries
         int iInd = -1;
         for (ZooFieldDef field: cls.getAllFields()) {
-            if (!field.isIndexed()) {
+            if (!field.hasAnyIndex()) {
                 continue;
             }
             iInd++;
@@ -156,6 +162,12 @@ public class DataDeleteSink1P implements DataDeleteSink {
             //For now we define that an index is shared by all classes and sub-classes that have
             //a matching field. So there is only one index which is defined in the top-most class
             SchemaIndexEntry schemaTop = node.getSchemaIE(field.getDeclaringType()); 
+            if (field.isNgramIndexed()) {
+            	removeNgrams(buffer, bufferCnt, field, iInd, schemaTop.getNgramIndex(field));
+            }
+            if (!field.isIndexed()) {
+                continue;
+            }
             LongLongIndex fieldInd = schemaTop.getIndex(field);
             try {
                 Field jField = field.getJavaField();
@@ -200,6 +212,60 @@ public class DataDeleteSink1P implements DataDeleteSink {
         }
     }
     
+    /**
+     * Remove entries from composite indexes of this class and of all super-classes.
+     */
+    private void removeCompositeIndexEntries(ZooPC[] buffer, int bufferCnt) {
+    	DataIndexUpdater updater = cls.getProvidedContext().getIndexer();
+    	for (ZooClassDef def = cls; def != null; def = def.getSuperDef()) {
+    		for (ZooFieldDef[] fields: def.getCompositeIndexes()) {
+    			LongLongIndex ind = node.getSchemaIE(def).getCompositeIndex(fields);
+    			for (int i = 0; i < bufferCnt; i++) {
+    				ZooPC co = buffer[i];
+    				//The backup is null for objects that have not been modified
+    				long[] values = co.jdoZooGetBackup() != null 
+    						? co.jdoZooGetBackup().getA() : updater.getBackup(co).getA();
+    				ind.removeLong(updater.getCompositeKey(fields, values), co.jdoZooGetOid());
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Remove the values of included fields of this class and of all super-classes.
+     */
+    private void removeIncludedIndexEntries(ZooPC[] buffer, int bufferCnt) {
+    	for (ZooClassDef def = cls; def != null; def = def.getSuperDef()) {
+    		for (ZooFieldDef[] pair: def.getIndexIncludes()) {
+    			LongLongIndex.LongLongUIndex ind = 
+    					node.getSchemaIE(def).getIncludedIndex(pair[0], pair[1]);
+    			for (int i = 0; i < bufferCnt; i++) {
+    				ind.removeLongNoFail(buffer[i].jdoZooGetOid(), -1);
+    			}
+    		}
+    	}
+    }
+    
+    private void removeNgrams(ZooPC[] buffer, int bufferCnt, ZooFieldDef field, int iInd,
+    		LongLongIndex ngramInd) {
+    	for (int i = 0; i < bufferCnt; i++) {
+    		ZooPC co = buffer[i];
+    		String str;
+    		if (co.jdoZooGetBackup() != null) {
+    			str = (String) co.jdoZooGetBackup().getB()[iInd];
+    		} else if (co instanceof GenericObject) {
+    			str = (String) ((GenericObject) co).getField(field);
+    		} else {
+    			try {
+    				str = (String) field.getJavaField().get(co);
+    			} catch (IllegalArgumentException | IllegalAccessException e) {
+    				throw DBLogger.newFatal("Error accessing field: " + field.getName(), e);
+    			}
+    		}
+    		NgramTools.remove(ngramInd, str, co.jdoZooGetOid());
+    	}
+    }
+    
     private void updateFieldIndicesGO() {
         final GenericObject[] buffer = this.bufferGO;
         final int bufferCnt = this.bufferGOCnt;
@@ -207,7 +273,7 @@ public class DataDeleteSink1P implements DataDeleteSink {
         //remove field index entries
         int iInd = -1;
         for (ZooFieldDef field: cls.getAllFields()) {
-            if (!field.isIndexed()) {
+            if (!field.hasAnyIndex()) {
                 continue;
             }
             iInd++;
@@ -215,6 +281,12 @@ public class DataDeleteSink1P implements DataDeleteSink {
             //For now we define that an index is shared by all classes and sub-classes that have
             //a matching field. So there is only one index which is defined in the top-most class
             SchemaIndexEntry schemaTop = node.getSchemaIE(field.getDeclaringType()); 
+            if (field.isNgramIndexed()) {
+            	removeNgrams(buffer, bufferCnt, field, iInd, schemaTop.getNgramIndex(field));
+            }
+            if (!field.isIndexed()) {
+                continue;
+            }
             LongLongIndex fieldInd = schemaTop.getIndex(field);
             try {
                 for (int i = 0; i < bufferCnt; i++) {
@@ -269,13 +341,6 @@ public class DataDeleteSink1P implements DataDeleteSink {
 
     	//update class index and
     	//tell the FSM about the free page (if we have one)
-    	//prevPos.getValue() returns > 0, so the loop is performed at least once.
-    	do {
-    		//remove and report to FSM if applicable
-    		long nextPos = ois.removePosLongAndCheck(pos);
-    		//use mark for secondary pages
-    		nextPos = nextPos | PagedPosIndex.MARK_SECONDARY;
-    		pos = nextPos;
-    	} while (pos != PagedPosIndex.MARK_SECONDARY);
+    	ois.removeObject(pos);
     }
 }
\ No newline at end of file
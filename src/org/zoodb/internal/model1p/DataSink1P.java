@@ -18,10 +18,13 @@ package org.zoodb.internal.model1p;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Objects;
 
+import org.zoodb.api.DBCollection;
 import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.DataIndexUpdater;
 import org.zoodb.internal.DataSerializer;
 import org.zoodb.internal.DataSink;
 import org.zoodb.internal.GenericObject;
@@ -32,9 +35,11 @@ import org.zoodb.internal.client.AbstractCache;
 import org.zoodb.internal.server.ObjectWriter;
 import org.zoodb.internal.server.index.BitTools;
 import org.zoodb.internal.server.index.LongLongIndex;
+import org.zoodb.internal.server.index.NgramTools;
 import org.zoodb.internal.server.index.SchemaIndex.SchemaIndexEntry;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.internal.util.Util;
+import org.zoodb.tools.DBStatistics.STATS;
 
 
 /**
@@ -62,6 +67,7 @@ public class DataSink1P implements DataSink {
     private final GenericObject[] bufferGO = new GenericObject[BUFFER_SIZE];
     private int bufferGOCnt = 0;
     private boolean isStarted = false;
+    private int deltaCnt = 0;
     private final ArrayList<Pair>[] fieldUpdateBuffer;
 
     private static class Pair {
@@ -101,7 +107,11 @@ public class DataSink1P implements DataSink {
         preWrite();
 
         //write object
-        ds.writeObject(obj, cls);
+        if (isDeltaPossible(obj) && ds.writeObjectDelta(obj, cls)) {
+        	deltaCnt++;
+        } else {
+        	ds.writeObject(obj, cls);
+        }
 
         //updated index
         //This is buffered to reduce look-ups to find field indices.
@@ -111,6 +121,27 @@ public class DataSink1P implements DataSink {
         }
     }
 
+    /**
+     * Objects where only fixed-size fields (except Strings) have changed can be written as 
+     * delta record. This requires dirty field tracking to be enabled.
+     */
+    private static boolean isDeltaPossible(ZooPC obj) {
+    	if (obj instanceof DBCollection) {
+    		return false;
+    	}
+    	BitSet dirty = obj.jdoZooGetDirtyFields();
+    	if (dirty == null) {
+    		return false;
+    	}
+    	ZooFieldDef[] fields = obj.jdoZooGetClassDef().getAllFields();
+    	for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+    		if (!fields[i].isFixedSize() || fields[i].isString()) {
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+
     @Override
     public void writeGeneric(GenericObject obj) {
         preWrite();
@@ -130,6 +161,7 @@ public class DataSink1P implements DataSink {
     public void reset() {
         if (isStarted) {
             ow.flush();  //TODO reset?
+            deltaCnt = 0;
             //To avoid memory leaks...
             Arrays.fill(buffer, null);
             bufferCnt = 0;
@@ -150,6 +182,11 @@ public class DataSink1P implements DataSink {
         if (isStarted) {
             flushBuffer();
             ow.flush();
+            if (deltaCnt > 0) {
+            	cls.getProvidedContext().getSession().statsAdd(
+            			STATS.TX_OBJ_WRITE_DELTA_CNT, deltaCnt);
+            	deltaCnt = 0;
+            }
             //To avoid memory leaks...
             Arrays.fill(buffer, null);
             isStarted = false;
@@ -158,9 +195,13 @@ public class DataSink1P implements DataSink {
 
     private void flushBuffer() {
         updateFieldIndices();
+        updateCompositeIndices(buffer, bufferCnt);
+        updateIncludedIndices(buffer, bufferCnt);
         bufferCnt = 0;
         if (bufferGOCnt > 0) {
 	        updateFieldIndicesGO();
+	        updateCompositeIndices(bufferGO, bufferGOCnt);
+	        updateIncludedIndices(bufferGO, bufferGOCnt);
 	        bufferGOCnt = 0;
         }
 
@@ -236,7 +277,7 @@ public class DataSink1P implements DataSink {
         int iField = -1;
         for (ZooFieldDef field: cls.getAllFields()) {
             iField++;
-            if (!field.isIndexed()) {
+            if (!field.hasAnyIndex()) {
                 continue;
             }
             iInd++;
@@ -244,6 +285,12 @@ public class DataSink1P implements DataSink {
             //For now we define that an index is shared by all classes and sub-classes that have
             //a matching field. So there is only one index which is defined in the top-most class
             SchemaIndexEntry schemaTop = node.getSchemaIE(field.getDeclaringType()); 
+            if (field.isNgramIndexed()) {
+            	updateNgramIndex(buffer, bufferCnt, field, iInd, schemaTop.getNgramIndex(field));
+            }
+            if (!field.isIndexed()) {
+                continue;
+            }
             LongLongIndex fieldInd = schemaTop.getIndex(field);
             try {
                 Field jField = field.getJavaField();
@@ -300,6 +347,67 @@ public class DataSink1P implements DataSink {
         }
     }
 
+    private void updateNgramIndex(ZooPC[] buffer, int bufferCnt, ZooFieldDef field, int iInd,
+    		LongLongIndex ngramInd) {
+    	for (int i = 0; i < bufferCnt; i++) {
+    		ZooPC co = buffer[i];
+    		String str = getString(co, field);
+    		if (co.jdoZooIsNew()) {
+    			NgramTools.insert(ngramInd, str, co.jdoZooGetOid());
+    		} else {
+    			String strOld = (String) co.jdoZooGetBackup().getB()[iInd];
+    			if (!Objects.equals(str, strOld)) {
+    				NgramTools.update(ngramInd, strOld, str, co.jdoZooGetOid());
+    			}
+    		}
+    	}
+    }
+
+    /**
+     * Update composite indexes of this class and of all super-classes.
+     */
+    private void updateCompositeIndices(ZooPC[] buffer, int bufferCnt) {
+    	DataIndexUpdater updater = cls.getProvidedContext().getIndexer();
+    	for (ZooClassDef def = cls; def != null; def = def.getSuperDef()) {
+    		for (ZooFieldDef[] fields: def.getCompositeIndexes()) {
+    			LongLongIndex ind = node.getSchemaIE(def).getCompositeIndex(fields);
+    			for (int i = 0; i < bufferCnt; i++) {
+    				ZooPC co = buffer[i];
+    				long key = updater.getCompositeKey(fields, updater.getBackup(co).getA());
+    				if (!co.jdoZooIsNew()) {
+    					long keyOld = updater.getCompositeKey(fields, co.jdoZooGetBackup().getA());
+    					if (keyOld == key) {
+    						continue;
+    					}
+    					ind.removeLong(keyOld, co.jdoZooGetOid());
+    				}
+    				ind.insertLong(key, co.jdoZooGetOid());
+    			}
+    		}
+    	}
+    }
+
+    /**
+     * Update the values of included fields of this class and of all super-classes.
+     */
+    private void updateIncludedIndices(ZooPC[] buffer, int bufferCnt) {
+    	DataIndexUpdater updater = cls.getProvidedContext().getIndexer();
+    	for (ZooClassDef def = cls; def != null; def = def.getSuperDef()) {
+    		for (ZooFieldDef[] pair: def.getIndexIncludes()) {
+    			LongLongIndex ind = node.getSchemaIE(def).getIncludedIndex(pair[0], pair[1]);
+    			for (int i = 0; i < bufferCnt; i++) {
+    				ZooPC co = buffer[i];
+    				long value = updater.getValue(pair[1], updater.getBackup(co).getA());
+    				if (!co.jdoZooIsNew() && 
+    						updater.getValue(pair[1], co.jdoZooGetBackup().getA()) == value) {
+    					continue;
+    				}
+    				ind.insertLong(co.jdoZooGetOid(), value);
+    			}
+    		}
+    	}
+    }
+
     private void bufferIndexUpdate(int iField, ZooPC pc, long l) {
    		if (fieldUpdateBuffer[iField] == null) {
 			fieldUpdateBuffer[iField] = new ArrayList<Pair>();
@@ -319,7 +427,7 @@ public class DataSink1P implements DataSink {
         int iField = -1;
         for (ZooFieldDef field: cls.getAllFields()) {
             iField++;
-            if (!field.isIndexed()) {
+            if (!field.hasAnyIndex()) {
                 continue;
             }
             iInd++;
@@ -327,6 +435,12 @@ public class DataSink1P implements DataSink {
             //For now we define that an index is shared by all classes and sub-classes that have
             //a matching field. So there is only one index which is defined in the top-most class
             SchemaIndexEntry schemaTop = node.getSchemaIE(field.getDeclaringType()); 
+            if (field.isNgramIndexed()) {
+            	updateNgramIndex(buffer, bufferCnt, field, iInd, schemaTop.getNgramIndex(field));
+            }
+            if (!field.isIndexed()) {
+                continue;
+            }
             LongLongIndex fieldInd = schemaTop.getIndex(field);
             try {
                 for (int i = 0; i < bufferCnt; i++) {
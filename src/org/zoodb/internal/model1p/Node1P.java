@@ -32,6 +32,7 @@ import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.ZooHandleImpl;
 import org.zoodb.internal.client.SchemaManager;
 import org.zoodb.internal.client.session.ClientSessionCache;
+import org.zoodb.internal.server.DbChecker;
 import org.zoodb.internal.server.DiskAccess;
 import org.zoodb.internal.server.OptimisticTransactionResult;
 import org.zoodb.internal.server.ServerResponse;
@@ -205,8 +206,9 @@ public class Node1P extends Node {
 	}
 
 	@Override
-	public void defineIndex(ZooClassDef def, ZooFieldDef field, boolean isUnique) {
-		disk.defineIndex(def, field, isUnique);
+	public void defineIndex(ZooClassDef def, ZooFieldDef field, boolean isUnique, 
+			boolean isHashed) {
+		disk.defineIndex(def, field, isUnique, isHashed);
 	}
 
 	@Override
@@ -220,16 +222,81 @@ public class Node1P extends Node {
 		return disk.readObjectFromIndex(field, minValue, maxValue, loadFromCache);
 	}
 
+	@Override
+	public Iterator<ZooPC> readObjectFromIndex(ZooFieldDef field, long[] keys, 
+			boolean loadFromCache) {
+		return disk.readObjectFromIndex(field, keys, loadFromCache);
+	}
+
+	@Override
+	public void defineNgramIndex(ZooClassDef def, ZooFieldDef field) {
+		disk.defineNgramIndex(def, field);
+	}
+
+	@Override
+	public boolean removeNgramIndex(ZooClassDef def, ZooFieldDef field) {
+		return disk.removeNgramIndex(def, field);
+	}
+
+	@Override
+	public Iterator<ZooPC> readObjectFromNgramIndex(ZooFieldDef field, long[] ranges, 
+			boolean loadFromCache) {
+		return disk.readObjectFromNgramIndex(field, ranges, loadFromCache);
+	}
+
+	@Override
+	public void defineCompositeIndex(ZooClassDef def, ZooFieldDef[] fields) {
+		disk.defineCompositeIndex(def, fields);
+	}
+
+	@Override
+	public boolean removeCompositeIndex(ZooClassDef def, ZooFieldDef[] fields) {
+		return disk.removeCompositeIndex(def, fields);
+	}
+
+	@Override
+	public void defineIndexIncludes(ZooClassDef def, ZooFieldDef field, 
+			ZooFieldDef[] included) {
+		disk.defineIndexIncludes(def, field, included);
+	}
+
+	@Override
+	public boolean removeIndexIncludes(ZooClassDef def, ZooFieldDef field) {
+		return disk.removeIndexIncludes(def, field);
+	}
+
+	@Override
+	public CloseableIterator<long[]> readValuesFromIndex(ZooFieldDef field, long minValue,
+			long maxValue, ZooFieldDef[] values) {
+		return disk.readValuesFromIndex(field, minValue, maxValue, values);
+	}
+
+	@Override
+	public Iterator<ZooPC> readObjectFromCompositeIndex(ZooClassDef def, ZooFieldDef[] fields,
+			long minKey, long maxKey, boolean loadFromCache) {
+		return disk.readObjectFromCompositeIndex(def, fields, minKey, maxKey, loadFromCache);
+	}
+
 	@Override
 	public long getStats(STATS stats) {
 		return disk.getStats(stats);
 	}
 
+	@Override
+	public long getSchemaTxId() {
+		return disk.getSchemaTxId();
+	}
+
     @Override
     public String checkDb() {
         return disk.checkDb();
     }
 
+    @Override
+    public String checkDb(int nThreads, long minTxId, DbChecker.ProgressListener listener) {
+        return disk.checkDb(nThreads, minTxId, listener);
+    }
+
 	@Override
 	public void dropInstances(ZooClassProxy def) {
 		disk.dropInstances(def);
@@ -285,6 +352,16 @@ public class Node1P extends Node {
 		return disk.countInstances(clsDef, subClasses);
 	}
 
+	@Override
+	public long[] readObjectIds(ZooClassProxy clsDef) {
+		return disk.readObjectIds(clsDef);
+	}
+
+	@Override
+	public int truncateFile() {
+		return disk.truncateFile();
+	}
+
 	@Override
 	public GenericObject readGenericObject(ZooClassDef def, long oid) {
 		return disk.readGenericObject(def, oid);
@@ -107,7 +107,7 @@ public class ClassExtent<T> implements Iterable<T> {
     		return new ClosableIteratorWrapper<>(sessionConfig.getFailOnClosedQueries());
     	}
     	try {
-    		pm.getLock().lock();
+    		pm.getLock().lockShared();
     		@SuppressWarnings("unchecked")
 	    	SynchronizedROIterator<T> it = new SynchronizedROIterator<T>(
 	    			(CloseableIterator<T>) pm.loadAllInstances(
@@ -115,7 +115,7 @@ public class ClassExtent<T> implements Iterable<T> {
 	    	allIterators.add(it);
 	    	return it;
     	} finally {
-    		pm.getLock().unlock();
+    		pm.getLock().unlockShared();
     	}
     }
 
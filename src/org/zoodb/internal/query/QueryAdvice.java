@@ -15,7 +15,9 @@
  */
 package org.zoodb.internal.query;
 
+import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooFieldDef;
+import org.zoodb.internal.query.QueryExecutor.VariableInstance;
 import org.zoodb.internal.query.QueryOptimizerV4.MinMax;
 
 /**
@@ -50,6 +52,14 @@ public final class QueryAdvice {
 	
 	private final QueryTree query;
 	private ZooFieldDef index;
+	//Key ranges if the index is an n-gram index
+	private long[] ngramRanges;
+	//Class and fields if the index is a composite index
+	private ZooClassDef compositeOwner;
+	private ZooFieldDef[] compositeFields;
+	//Predicate on the referenced class and its optimized variables if the advice is a join
+	private QueryFunction joinPredicate;
+	private VariableInstance[] joinVariables;
 	private long min;
 	private long max;
 	private boolean ascending;
@@ -75,6 +85,58 @@ public final class QueryAdvice {
 		return a;
 	}
 	
+	public static QueryAdvice createForNgramIndex(QueryTree queryTree, ZooFieldDef index, 
+			long[] ranges, boolean isDependentOnParameter) {
+		QueryAdvice a = new QueryAdvice(queryTree, Type.INDEX_RANGE);
+		a.setIndex(index);
+		a.ngramRanges = ranges;
+		a.isDependentOnParameter = isDependentOnParameter;
+		return a;
+	}
+	
+	/**
+	 * @param queryTree The query
+	 * @param owner The class that defines the composite index
+	 * @param fields The fields of the composite index
+	 * @param minKey The minimum key, see {@link 
+	 * org.zoodb.internal.server.index.CompositeIndexTools#range}
+	 * @param maxKey The maximum key
+	 * @param isDependentOnParameter Whether any of the keys depends on a query parameter
+	 * @return The advice
+	 */
+	public static QueryAdvice createForCompositeIndex(QueryTree queryTree, ZooClassDef owner, 
+			ZooFieldDef[] fields, long minKey, long maxKey, boolean isDependentOnParameter) {
+		QueryAdvice a = new QueryAdvice(queryTree, 
+				minKey == maxKey ? Type.INDEX_EQUALS : Type.INDEX_RANGE);
+		//The last field is set as index for the checks that rely on 'index != null'
+		a.setIndex(fields[fields.length - 1]);
+		a.compositeOwner = owner;
+		a.compositeFields = fields;
+		a.setMin(minKey, isDependentOnParameter);
+		a.setMax(maxKey, isDependentOnParameter);
+		return a;
+	}
+	
+	/**
+	 * @param queryTree The query
+	 * @param refField The indexed reference field
+	 * @param predicate The predicate on the referenced class
+	 * @param variables The optimized variables for the predicate
+	 * @param isDependentOnParameter Whether the optimization of the predicate depends on a
+	 * query parameter
+	 * @return The advice
+	 */
+	public static QueryAdvice createForJoin(QueryTree queryTree, ZooFieldDef refField, 
+			QueryFunction predicate, VariableInstance[] variables, 
+			boolean isDependentOnParameter) {
+		QueryAdvice a = new QueryAdvice(queryTree, Type.INDEX_RANGE);
+		a.setIndex(refField);
+		a.joinPredicate = predicate;
+		a.joinVariables = variables;
+		a.isDependentOnParameter = isDependentOnParameter;
+		return a;
+	}
+	
 	public static QueryAdvice createForCollection(QueryTree queryTree, QueryFunction collection) {
 		QueryAdvice a = new QueryAdvice(queryTree, Type.COLLECTION);
 		a.setCollectionConstraint(collection);
@@ -101,6 +163,46 @@ public final class QueryAdvice {
 		this.index = index;
 	}
 
+	/**
+	 * @return The key ranges for the n-gram index or {@code null} if the advice does not use 
+	 * an n-gram index.
+	 * @see org.zoodb.internal.server.index.NgramTools
+	 */
+	public long[] getNgramRanges() {
+		return ngramRanges;
+	}
+
+	/**
+	 * @return The fields of the composite index or {@code null} if the advice does not use 
+	 * a composite index.
+	 * @see org.zoodb.internal.server.index.CompositeIndexTools
+	 */
+	public ZooFieldDef[] getCompositeFields() {
+		return compositeFields;
+	}
+
+	/**
+	 * @return The class that defines the composite index.
+	 */
+	public ZooClassDef getCompositeOwner() {
+		return compositeOwner;
+	}
+
+	/**
+	 * @return The predicate on the referenced class or {@code null} if the advice is not a
+	 * join. 
+	 */
+	public QueryFunction getJoinPredicate() {
+		return joinPredicate;
+	}
+
+	/**
+	 * @return The optimized variables for the join predicate.
+	 */
+	public VariableInstance[] getJoinVariables() {
+		return joinVariables;
+	}
+
 	public long getMin() {
 		return min;
 	}
@@ -16,6 +16,7 @@
 package org.zoodb.internal.query;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -107,8 +108,8 @@ public class QueryExecutor {
 			pm.statsInc(STATS.QU_EXECUTED_TOTAL);
 		}
 		long t1 = System.nanoTime();
+		boolean isExclusive = pm.lockQuery(ignoreCache);
 		try {
-			pm.lock();
 			pm.checkActiveRead();
 			if (isDummyQuery) {
 				//empty result if no schema is defined (auto-create schema)
@@ -123,7 +124,7 @@ public class QueryExecutor {
 					params);
 
 		} finally {
-			pm.unlock();
+			pm.unlockQuery(isExclusive);
 			if (LOGGER.isInfoEnabled()) {
 				long t2 = System.nanoTime();
 				LOGGER.info("query.execute(): Time={}ns; Class={}; filter={}", (t2-t1), candCls, filter);
@@ -287,6 +288,14 @@ public class QueryExecutor {
 			//TODO is cloning always necessary? Even if there are no parameters?
 		}
 
+		if (resultSettings != null && ext == null) {
+			Object ret = runQueryIndexOnly(vars, rangeMin, rangeMax, resultSettings, 
+					resultClass, ignoreCache, params);
+			if (ret != null) {
+				return ret;
+			}
+		}
+
 		//TODO can also return a list with (yet) unknown size. In that case size() should return
 		//Integer.MAX_VALUE (JDO 2.2 14.6.1)
 		Iterator<Object> ret = applyQueryOnExtentV4(queryTree, vars, ext, ignoreCache, params);
@@ -309,6 +318,75 @@ public class QueryExecutor {
 		return postProcessV4(ret, rangeMin, rangeMax, resultSettings, resultClass);
 	}
 
+	/**
+	 * Projections that contain only the indexed field and fields that are included in the 
+	 * index can be answered from the index, without loading any objects. This requires that
+	 * the index range contains exactly the matching objects and that no objects of the 
+	 * session are dirty.
+	 * @return The result or {@code null} if the query cannot be answered from the index.
+	 */
+	private Object runQueryIndexOnly(VariableInstance[] vars, long rangeMin, long rangeMax, 
+			String resultSettings, Class<?> resultClass, boolean ignoreCache, Object[] params) {
+		if (vars.length != 1 || vars[0].advices.size() != 1 || !subClasses 
+				|| (ordering != null && !ordering.isEmpty())) {
+			return null;
+		}
+		QueryAdvice qa = vars[0].advices.get(0);
+		ZooFieldDef field = qa.getIndex();
+		if (field == null || qa.getCompositeFields() != null || qa.getNgramRanges() != null 
+				|| qa.hasCollectionConstraint() || qa.getJoinPredicate() != null 
+				|| field.getDeclaringType() != candClsDef
+				|| !queryTree.getRootFn().isCoveredByIndexRange(field, params)) {
+			return null;
+		}
+		QueryResultProcessor rp = 
+				new QueryResultProcessor(resultSettings, candCls, candClsDef, resultClass);
+		if (!rp.isProjection()) {
+			return null;
+		}
+		ZooFieldDef[] fields = rp.getProjectionFields();
+		List<ZooFieldDef> included = Arrays.asList(candClsDef.getIndexIncludes(field));
+		for (ZooFieldDef f: fields) {
+			if (f != field && !included.contains(f)) {
+				return null;
+			}
+		}
+		if (!ignoreCache) {
+			ClientSessionCache cache = pm.internalGetCache();
+			if (!pm.getLock().isSharedByCurrentThread()) {
+				cache.persistReachableObjects();
+			}
+			if (cache.hasDirtyPojos() || !cache.getDirtyGenericObjects().isEmpty()) {
+				return null;
+			}
+		}
+		CloseableIterator<long[]> rows = pm.getPrimaryNode().readValuesFromIndex(field, 
+				qa.getMin(), qa.getMax(), fields);
+		if (rows == null) {
+			//the index has not been committed yet
+			return null;
+		}
+		if (DBStatistics.isEnabled()) {
+			pm.statsInc(STATS.QU_EXECUTED_INDEX_ONLY);
+		}
+		CloseableIterator<Object> ret = rp.processResultProjection(rows);
+		if (unique) {
+			try {
+				if (!ret.hasNext()) {
+					return null;
+				}
+				Object o = ret.next();
+				if (ret.hasNext()) {
+					throw DBLogger.newUser("Non-unique result encountered.");
+				}
+				return o;
+			} finally {
+				ret.close();
+			}
+		}
+		return new SynchronizedROCollection<>(ret, pm, rangeMin, rangeMax);
+	}
+
 	private void assignParametersToQueryTree() {
 		if (parameters.isEmpty()) {
 			return;
@@ -433,21 +511,12 @@ public class QueryExecutor {
 			Collections.sort(list, new QueryComparator<Object>(ordering));
 		}
 
-		//TODO Fix this! SynchedCollection should use Iterator!!!
-		//TODO Fix this! SynchedCollection should use Iterator!!!
-		//TODO Fix this! SynchedCollection should use Iterator!!!
-		//TODO Fix this! SynchedCollection should use Iterator!!!
-		//TODO Fix this! SynchedCollection should use Iterator!!!
-		if (list == null) {
-			list = new ArrayList<>();
-			while (iter.hasNext()) {
-				list.add(iter.next());
-			}
+		if (list != null) {
+			//To void remove() calls
+			return new SynchronizedROCollection<>(list, pm, rangeMin, rangeMax);
 		}
-
-		
-		//To void remove() calls
-		return new SynchronizedROCollection<>(list, pm, rangeMin, rangeMax);
+		//Results are evaluated while they are iterated, the range is applied by the result
+		return new SynchronizedROCollection<>(iter, pm, rangeMin, rangeMax);
 	}
 	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -455,13 +524,15 @@ public class QueryExecutor {
 			boolean ignoreCache, Object[] params) {
 		QueryTree queryTree = qa.getQuery();
 		Iterator<?> ext2;
-		if (!ignoreCache) {
+		if (!ignoreCache && !pm.getLock().isSharedByCurrentThread()) {
+			//Threads with only a shared lock must not modify the cache, see Session.lockQuery()
 			ClientSessionCache cache = pm.internalGetCache();
 			cache.persistReachableObjects();
 		}
 		if (qa.getIndex() != null) {
-			ext2 = pm.getPrimaryNode().readObjectFromIndex(qa.getIndex(),
-					qa.getMin(), qa.getMax(), !ignoreCache);
+			ext2 = TypeFilterIterator.filter(pm.getPrimaryNode().readObjectFromIndex(
+					qa.getIndex(), qa.getMin(), qa.getMax(), !ignoreCache),
+					qa.getIndex().getDeclaringType(), candClsDef, candCls);
 			if (!ignoreCache) {
 				ClientSessionCache cache = pm.internalGetCache();
 				ArrayList<ZooPC> dirtyObjs = cache.getDirtyObjects();
@@ -531,7 +602,8 @@ public class QueryExecutor {
 	
 	private Iterator<Object> applyQueryOnExtentV4(QueryTree queryTree, VariableInstance[] vars,
 			Iterable<?> ext, boolean ignoreCache, Object[] params) {
-		if (!ignoreCache) {
+		if (!ignoreCache && !pm.getLock().isSharedByCurrentThread()) {
+			//Threads with only a shared lock must not modify the cache, see Session.lockQuery()
 			ClientSessionCache cache = pm.internalGetCache();
 			cache.persistReachableObjects();
 		}
@@ -41,6 +41,7 @@ import org.zoodb.internal.query.QueryOptimizerV4.IndexProposalSet;
 import org.zoodb.internal.query.QueryParser.FNCT_OP;
 import org.zoodb.internal.query.TypeConverterTools.COMPARISON_TYPE;
 import org.zoodb.internal.server.index.BitTools;
+import org.zoodb.internal.server.index.NgramTools;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.jdo.impl.QueryImpl;
 
@@ -836,9 +837,12 @@ public class QueryFunction {
 			return true;
 		case STR_matches:
 		case STR_startsWith:
+		case STR_endsWith:
+		case STR_contains_NON_JDO:
 			//STR_matches works only if it is effectively '==' or 'startsWith'. 
 			//Right side has to be constant (startsWith). If it is not, we could
 			//at most index the first letter...
+			//N-gram indexes also support endsWith() and contains().
 			if (!param0.isFixed() && param1.isFixed()) {
 				arg1 = param0;
 				arg2 = param1;
@@ -879,21 +883,24 @@ public class QueryFunction {
 				return false;
 		}
 		
+		if (arg1.getParam0().op() != FNCT_OP.THIS) {
+			//path queries, i.e. the field belongs to a referenced object or a variable
+			return addJoinProposal(arg1, alternativeProposals);
+		}
+		
 		ZooFieldDef zField = arg1.zField; 
-		if (zField == null || !zField.isIndexed()) {
+		boolean hasNgramIndex = addNgramProposal(zField, arg1, arg2, alternativeProposals, params);
+		if (zField == null || !(zField.isIndexed() || zField.isCompositeIndexed())) {
 			//ignore fields that are not index
-			return false;
+			return hasNgramIndex;
 		}
-
-		//TODO
-		//TODO
-		//TODO
-		//TODO allow variable!=THIS
-		if (arg1.getParam0().op() != FNCT_OP.THIS) {
-			//TODO we don't support path queries yet, i.e. the string field must belong to
-			//the currently evaluated main-object, not to a referenced object.
-			return false;
+		//Fields that are only part of a composite index cannot be used on their own
+		boolean hasIndex = zField.isIndexed() || hasNgramIndex;
+		if (fnct == FNCT_OP.STR_endsWith || fnct == FNCT_OP.STR_contains_NON_JDO) {
+			//only supported by n-gram indexes
+			return hasNgramIndex;
 		}
+
 		//TODO
 		//TODO
 		//TODO
@@ -920,7 +927,7 @@ public class QueryFunction {
 				//TODO
 				throw new UnsupportedOperationException();
 			}
-			String str = (String) arg2.getConstant(params);
+			String str = convertToString(arg2.getConstant(params));
 			boolean isParam = arg2.isDependentOnParameter();
 			for (int i = 0; i < str.length(); i++) {
 				char c = str.charAt(i);
@@ -929,11 +936,11 @@ public class QueryFunction {
 					//simply use the leading part for a startsWith() query.
 					if (i == 0) {
 						QueryImpl.LOGGER.info("Ignoring index on String query because of regex characters.");
-						return false;
+						return hasNgramIndex;
 					}
 					str = str.substring(0, i);
 					setKeysForStringStartsWith(str, zField, indexProposal, isParam);
-					return true;
+					return hasIndex;
 				}
 			}
 			long key = BitTools.toSortableLong(str);
@@ -948,7 +955,7 @@ public class QueryFunction {
 				//TODO
 				throw new UnsupportedOperationException();
 			}
-			String str = (String) arg2.getConstant(params);
+			String str = convertToString(arg2.getConstant(params));
 			boolean isParam = arg2.isDependentOnParameter();
 			setKeysForStringStartsWith(str, zField, indexProposal, isParam);
 			break;
@@ -1038,13 +1045,59 @@ public class QueryFunction {
 			throw new IllegalArgumentException("Name: " + op());
 		}
 		
-		return true;
+		return hasIndex;
 	}
 	
 	boolean isDependentOnParameter() {
 		return isDependentOnParameter;
 	}
 
+	/**
+	 * Queries can only be answered from an index without loading objects if the index range
+	 * contains exactly the matching objects. This is the case for comparisons 
+	 * ({@code ==, <, <=, >, >=}) of an integer field of the candidate with an integer constant 
+	 * or parameter, and for conjunctions of these comparisons.
+	 * @param f The indexed field
+	 * @param params The query parameters
+	 * @return Whether the function is fully evaluated by the range of the index on the field.
+	 */
+	boolean isCoveredByIndexRange(ZooFieldDef f, Object[] params) {
+		switch (fnct) {
+		case L_AND:
+			return param1.isCoveredByIndexRange(f, params) 
+					&& param2.isCoveredByIndexRange(f, params);
+		case EQ:
+		case L:
+		case LE:
+		case G:
+		case GE:
+			//the field has to be on the left side of the comparison
+			if (param1.fnct != FNCT_OP.FIELD || param1.zField != f 
+					|| param1.param0.fnct != FNCT_OP.THIS || !param2.isFixed()) {
+				return false;
+			}
+			Object value = param2.getConstant(params);
+			if (f.getPrimitiveType() == null) {
+				return false;
+			}
+			switch (f.getPrimitiveType()) {
+			case CHAR: 
+				return value instanceof Character;
+			case BYTE:
+			case SHORT:
+			case INT:
+			case LONG:
+				return value instanceof Long || value instanceof Integer 
+						|| value instanceof Short || value instanceof Byte;
+			default:
+				//floating point comparisons may convert the value
+				return false;
+			}
+		default:
+			return false;
+		}
+	}
+
 	private static void analyzeEQ(QueryFunction f, IndexProposalSet[] alternativeProposals) {
 		if (f.param1.op() == FNCT_OP.VARIABLE) {
 			if (alternativeProposals[f.param1.fieldId] == null) {
@@ -1062,6 +1115,219 @@ public class QueryFunction {
 		}
 	}
 
+	/**
+	 * Propose an n-gram index for String predicates, see {@link NgramTools}.
+	 * @return Whether an n-gram index can be used.
+	 */
+	private boolean addNgramProposal(ZooFieldDef zField, QueryFunction arg1, QueryFunction arg2,
+			IndexProposalSet[] alternativeProposals, Object[] params) {
+		if (zField == null || !zField.isNgramIndexed() 
+				|| arg1.getParam0().op() != FNCT_OP.THIS) {
+			return false;
+		}
+		Object termVal = arg2.getConstant(params);
+		termVal = termVal instanceof Character ? String.valueOf((Character) termVal) : termVal;
+		if (!(termVal instanceof String)) {
+			//'null' is not indexed
+			return false;
+		}
+		String str = (String) termVal;
+		long[] ranges;
+		switch (fnct) {
+		case EQ: ranges = NgramTools.ranges(str, true, true); break;
+		case STR_startsWith: ranges = NgramTools.ranges(str, true, false); break;
+		case STR_endsWith: ranges = NgramTools.ranges(str, false, true); break;
+		case STR_contains_NON_JDO: ranges = NgramTools.ranges(str, false, false); break;
+		case STR_matches: ranges = NgramTools.rangesForRegex(str); break;
+		default: return false;
+		}
+		if (ranges == null || ranges.length == 0) {
+			//no useful constraint
+			return false;
+		}
+		if (alternativeProposals[0] == null) {
+			alternativeProposals[0] = new IndexProposalSet();
+		}
+		alternativeProposals[0].addNgramRanges(zField, ranges, arg2.isDependentOnParameter());
+		return true;
+	}
+
+	/**
+	 * Propose a join for predicates on referenced objects, such as 
+	 * {@code customer.country == x}. The predicate is evaluated on the referenced class
+	 * first, then the referencing objects are looked up in the index of the reference field. 
+	 * This requires an index on the reference field, but not on the field of the referenced 
+	 * class.
+	 * @return Whether a join can be used.
+	 */
+	private boolean addJoinProposal(QueryFunction arg1, IndexProposalSet[] alternativeProposals) {
+		switch (fnct) {
+		case EQ_BOOL:
+		case EQ:
+		case L:
+		case LE:
+		case G:
+		case GE:
+		case STR_matches:
+		case STR_startsWith:
+		case STR_endsWith:
+		case STR_contains_NON_JDO:
+			break;
+		default:
+			//'!=' is hardly selective
+			return false;
+		}
+		//find the reference that is read from the candidate object
+		QueryFunction ref = arg1;
+		while (ref.param0.op() == FNCT_OP.REF) {
+			ref = ref.param0;
+		}
+		if (ref.param0.op() != FNCT_OP.THIS || ref == arg1 || ref.returnTypeDef == null 
+				|| !ref.zField.isIndexed()) {
+			//Variables such as in 'customer == c && c.country == x' have already been 
+			//replaced, see replaceBoundVariables()
+			return false;
+		}
+		if (alternativeProposals[0] == null) {
+			alternativeProposals[0] = new IndexProposalSet();
+		}
+		alternativeProposals[0].addJoinPredicate(ref.zField, ref.returnTypeDef, 
+				rebase(ref, createThis(ref.returnTypeDef)));
+		return true;
+	}
+
+	/**
+	 * @param base The reference that should be replaced
+	 * @param newThis The new 'this'
+	 * @return A copy of this function where 'base' and 'this' are replaced by 'newThis'.
+	 */
+	private QueryFunction rebase(QueryFunction base, QueryFunction newThis) {
+		if (this == base || fnct == FNCT_OP.THIS) {
+			return newThis;
+		}
+		QueryFunction p0 = param0 != null ? param0.rebase(base, newThis) : null; 
+		QueryFunction p1 = param1 != null ? param1.rebase(base, newThis) : null; 
+		QueryFunction p2 = param2 != null ? param2.rebase(base, newThis) : null;
+		if (p0 == param0 && p1 == param1 && p2 == param2) {
+			return this;
+		}
+		return new QueryFunction(fnct, zField, constant, returnType, returnTypeDef, 
+				comparisonType, p0, p1, p2);
+	}
+
+	/**
+	 * Variables of persistent types that are bound to a reference of the candidate with 
+	 * '==' are replaced by the reference. For example, 
+	 * {@code customer == c && c.country == x} becomes 
+	 * {@code customer != null && customer.country == x}, which can be executed as join, see
+	 * {@link #addJoinProposal(QueryFunction, IndexProposalSet[])}. 
+	 * The binding has to be a term of the top level 'and', the type of the reference has to
+	 * be the type of the variable or a sub-type.
+	 * @param variables The declared variables, replaced variables are marked with 
+	 * {@link QueryVariable#setReplaced(boolean)}
+	 * @return A copy of this function without the replaced variables.
+	 */
+	QueryFunction replaceBoundVariables(List<QueryVariable> variables) {
+		for (QueryVariable v: variables) {
+			v.setReplaced(false);
+		}
+		QueryFunction root = this;
+		boolean hasReplaced;
+		do {
+			//A reference can be bound via another variable, such as 'b == v1 && v1.c == v2'
+			hasReplaced = false;
+			for (QueryVariable v: variables) {
+				QueryFunction eq = v.isReplaced() ? null : root.findBinding(v);
+				if (eq != null) {
+					QueryFunction ref = eq.param1.fnct == FNCT_OP.VARIABLE ? eq.param2 : eq.param1;
+					QueryFunction notNull = createComparison(FNCT_OP.NE, false, eq.param0, ref, 
+							createConstant(QueryTerm.NULL));
+					root = root.replace(eq, notNull, v, ref);
+					v.setReplaced(true);
+					hasReplaced = true;
+				}
+			}
+		} while (hasReplaced);
+		return root;
+	}
+
+	/**
+	 * @return The term of the top level 'and' that binds the variable to a reference of the
+	 * candidate, or {@code null} if there is no such term.
+	 */
+	private QueryFunction findBinding(QueryVariable v) {
+		switch (fnct) {
+		case L_AND:
+			QueryFunction eq = param1.findBinding(v);
+			return eq != null ? eq : param2.findBinding(v);
+		case EQ:
+			if ((param1.isVariable(v) && param2.isReferenceOfCandidate(v.getTypeDef()))
+					|| (param2.isVariable(v) && param1.isReferenceOfCandidate(v.getTypeDef()))) {
+				return this;
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	private boolean isVariable(QueryVariable v) {
+		return fnct == FNCT_OP.VARIABLE && constant == v;
+	}
+
+	private boolean isReferenceOfCandidate(ZooClassDef typeDef) {
+		if (fnct != FNCT_OP.REF || returnTypeDef == null || typeDef == null 
+				|| !typeDef.isSuperTypeOf(returnTypeDef)) {
+			return false;
+		}
+		QueryFunction f = param0;
+		while (f.fnct == FNCT_OP.REF) {
+			f = f.param0;
+		}
+		return f.fnct == FNCT_OP.THIS;
+	}
+
+	/**
+	 * @return A copy of this function where 'eq' is replaced by 'notNull' and the variable
+	 * is replaced by 'ref'.
+	 */
+	private QueryFunction replace(QueryFunction eq, QueryFunction notNull, QueryVariable v,
+			QueryFunction ref) {
+		if (this == eq) {
+			return notNull;
+		}
+		if (isVariable(v)) {
+			return ref;
+		}
+		QueryFunction p0 = param0 != null ? param0.replace(eq, notNull, v, ref) : null; 
+		QueryFunction p1 = param1 != null ? param1.replace(eq, notNull, v, ref) : null; 
+		QueryFunction p2 = param2 != null ? param2.replace(eq, notNull, v, ref) : null;
+		if (p0 == param0 && p1 == param1 && p2 == param2) {
+			return this;
+		}
+		return new QueryFunction(fnct, zField, constant, returnType, returnTypeDef, 
+				comparisonType, p0, p1, p2);
+	}
+
+	/**
+	 * @param b The binding
+	 * @return A copy of this function that uses the schema, parameters and variables of 
+	 * the binding. The copy has no query advice.
+	 */
+	QueryFunction bind(QueryPlanCache.Binding b) {
+		QueryFunction p0 = param0 != null ? param0.bind(b) : null; 
+		QueryFunction p1 = param1 != null ? param1.bind(b) : null; 
+		QueryFunction p2 = param2 != null ? param2.bind(b) : null;
+		Object c = constant;
+		if (fnct == FNCT_OP.PARAM) {
+			c = b.parameter((ParameterDeclaration) constant);
+		} else if (fnct == FNCT_OP.VARIABLE) {
+			c = b.variable((QueryVariable) constant);
+		}
+		return new QueryFunction(fnct, b.field(zField), c, returnType, 
+				b.classDef(returnTypeDef), comparisonType, p0, p1, p2);
+	}
+
 	private void setKeysForStringStartsWith(String prefix, ZooFieldDef f,
 			IndexProposalSet indexProposal, boolean isParam) {
 		long keyMin = BitTools.toSortableLongPrefixMinHash(prefix);
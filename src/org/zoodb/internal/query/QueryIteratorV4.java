@@ -16,6 +16,7 @@
 package org.zoodb.internal.query;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -28,6 +29,7 @@ import org.zoodb.internal.client.session.ClientSessionCache;
 import org.zoodb.internal.query.QueryExecutor.VariableInstance;
 import org.zoodb.internal.util.CloseableIterator;
 import org.zoodb.internal.util.DBLogger;
+import org.zoodb.internal.util.PrimLongArrayList;
 import org.zoodb.tools.DBStatistics;
 import org.zoodb.tools.DBStatistics.STATS;
 
@@ -38,7 +40,7 @@ import org.zoodb.tools.DBStatistics.STATS;
  * 
  * @author Tilmann Zäschke
  */
-public class QueryIteratorV4 implements Iterator<Object> {
+public class QueryIteratorV4 implements CloseableIterator<Object> {
 	
 	private final QueryFunction root;
 	private final VariableInstance[] vars;
@@ -215,16 +217,40 @@ public class QueryIteratorV4 implements Iterator<Object> {
 		Class<?> candCls = var.var.getType();
 		//For inner variables, always allow subclasses (?)
 		boolean subClasses = true;
-		if (var.hasCollectionConstraint()) {
+		if (var.var.isReplaced()) {
+			//The variable is not used, the query uses the reference that it was bound to
+			ext2 = Collections.singletonList(null).iterator();
+		} else if (var.hasCollectionConstraint()) {
 			ext2 = null;
 		} else if (var.hasAdvices()) {
 			QueryMergingIterator<ZooPC> qmi = null;
 			for (int ia = 0; ia < var.getAdvices().size(); ia++) {
 				QueryAdvice qa = var.getAdvices().get(ia);
-				if (!qa.hasCollectionConstraint() && !qa.hasIdentityConstraint()) {
+				if (qa.getNgramRanges() != null) {
 					qmi = qmi != null ? qmi : new QueryMergingIterator<>(); 
-					qmi.add( session.getPrimaryNode().readObjectFromIndex(qa.getIndex(),
-							qa.getMin(), qa.getMax(), !ignoreCache) );
+					Iterator<ZooPC> it = session.getPrimaryNode().readObjectFromNgramIndex(
+							qa.getIndex(), qa.getNgramRanges(), !ignoreCache);
+					qmi.add(TypeFilterIterator.filter(it,
+							qa.getIndex().getDeclaringType(), candClsDef, candCls));
+				} else if (qa.getCompositeFields() != null) {
+					qmi = qmi != null ? qmi : new QueryMergingIterator<>(); 
+					Iterator<ZooPC> it = session.getPrimaryNode().readObjectFromCompositeIndex(
+							qa.getCompositeOwner(), qa.getCompositeFields(), 
+							qa.getMin(), qa.getMax(), !ignoreCache);
+					qmi.add(TypeFilterIterator.filter(it,
+							qa.getCompositeOwner(), candClsDef, candCls));
+				} else if (qa.getJoinPredicate() != null) {
+					qmi = qmi != null ? qmi : new QueryMergingIterator<>(); 
+					Iterator<ZooPC> it = session.getPrimaryNode().readObjectFromIndex(
+							qa.getIndex(), executeJoinPredicate(qa), !ignoreCache);
+					qmi.add(TypeFilterIterator.filter(it,
+							qa.getIndex().getDeclaringType(), candClsDef, candCls));
+				} else if (!qa.hasCollectionConstraint() && !qa.hasIdentityConstraint()) {
+					qmi = qmi != null ? qmi : new QueryMergingIterator<>(); 
+					Iterator<ZooPC> it = session.getPrimaryNode().readObjectFromIndex(
+							qa.getIndex(), qa.getMin(), qa.getMax(), !ignoreCache);
+					qmi.add(TypeFilterIterator.filter(it,
+							qa.getIndex().getDeclaringType(), candClsDef, candCls));
 				}
 			}
 			if (qmi == null) {
@@ -255,6 +281,30 @@ public class QueryIteratorV4 implements Iterator<Object> {
 		var.setIterator(ext2);
 	}
 	
+	/**
+	 * Evaluates the predicate of a join on the referenced class. This uses an index on the 
+	 * referenced class if possible, otherwise the referenced class is scanned.
+	 * @return The OIDs of the matching objects.
+	 */
+	private long[] executeJoinPredicate(QueryAdvice qa) {
+		if (DBStatistics.isEnabled()) {
+			session.statsInc(STATS.QU_EXECUTED_JOIN);
+		}
+		VariableInstance[] innerVars = 
+				VariableInstance.cloneForConcurrentExecution(qa.getJoinVariables());
+		QueryIteratorV4 it = new QueryIteratorV4(qa.getJoinPredicate(), innerVars, 
+				executionParams, null, ignoreCache, false, session);
+		PrimLongArrayList oids = new PrimLongArrayList();
+		try {
+			while (it.hasNext()) {
+				oids.add(((ZooPC) it.next()).jdoZooGetOid());
+			}
+		} finally {
+			it.close();
+		}
+		return oids.toArray();
+	}
+	
 	static class Value {
 		CloseableIterator<?> iter;
 		//null indicates 'not set'
@@ -290,4 +340,19 @@ public class QueryIteratorV4 implements Iterator<Object> {
 		nextVal = null;
 		return ret;
 	}
+
+	/**
+	 * Close the iterators of all variables. Results are evaluated lazily, so this is 
+	 * necessary if the result is not fully iterated.
+	 */
+	@Override
+	public void close() {
+		finished = true;
+		nextVal = null;
+		for (VariableInstance var: vars) {
+			if (var.iter() instanceof CloseableIterator) {
+				((CloseableIterator<?>) var.iter()).close();
+			}
+		}
+	}
 }
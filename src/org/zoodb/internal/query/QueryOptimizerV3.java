@@ -96,6 +96,8 @@ public class QueryOptimizerV3 {
 		//the full query but only one side of every OR. All ORs are removed.
 		//-> Optimization: We remove only (and split only at) ORs where at least on branch
 		//   uses an index. TODO
+		//The tree may be shared with other queries, so we split a copy of it.
+		queryTree = queryTree.cloneBranch();
 		List<QueryTreeNode> subQueries = new LinkedList<>();
 		subQueries.add(queryTree);
 		queryTree.createSubs(subQueries);
@@ -425,6 +427,7 @@ public class QueryOptimizerV3 {
 	private QueryAdvice createQueryAdvice(
 			IdentityHashMap<ZooFieldDef, MinMax> minMaxMap, 
 			QueryTree queryTree) {
+		minMaxMap.entrySet().removeIf(e -> !QueryOptimizerV4.isIndexUsable(e.getKey(), e.getValue()));
 		if (minMaxMap.isEmpty()) {
 			//return default query
 			return QueryAdvice.createEmpty(queryTree);
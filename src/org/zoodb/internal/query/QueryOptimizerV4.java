@@ -17,6 +17,7 @@ package org.zoodb.internal.query;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,8 +26,10 @@ import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.query.QueryExecutor.VariableInstance;
 import org.zoodb.internal.query.QueryFunction.Constraint;
+import org.zoodb.internal.query.QueryParser.FNCT_OP;
 import org.zoodb.internal.query.QueryVariable.VarDeclaration;
 import org.zoodb.internal.server.index.BitTools;
+import org.zoodb.internal.server.index.CompositeIndexTools;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.jdo.impl.QueryImpl;
 
@@ -75,6 +78,13 @@ public class QueryOptimizerV4 {
 			return isMinDependentOnParameter 
 					|| isMaxDependentOnParameter;
 		}
+		/**
+		 * @return Whether the range contains only a single value. Hash indexes can only be 
+		 * used for single values.
+		 */
+		public boolean isSingleValue() {
+			return min == max;
+		}
 	}
 	
 	/**
@@ -88,6 +98,9 @@ public class QueryOptimizerV4 {
 	static class IndexProposalSet {
 		//proposals for concrete indexes (min/max for specific fields)
 		IdentityHashMap<ZooFieldDef, MinMax> minMaxMap = new IdentityHashMap<>();
+
+		//proposals for n-gram indexes (key ranges that all need to match)
+		final IdentityHashMap<ZooFieldDef, long[]> ngramMap = new IdentityHashMap<>();
 		
 		//List of 'collectionConstraints' through Map.contains()/Collections.contains().
 		final List<QueryFunction> collectionConstraints = new ArrayList<>();
@@ -95,6 +108,9 @@ public class QueryOptimizerV4 {
 		//List of 'identityConstraints' through '=='.
 		final List<QueryFunction> identityConstraints = new ArrayList<>();
 
+		//Predicates on referenced classes for joins, by reference field.
+		final IdentityHashMap<ZooFieldDef, JoinProposal> joinMap = new IdentityHashMap<>();
+
 		//List of proposals for cumulative indexes.
 		//Each 'inner' list represents a cumulative index
 		final List<List<IndexProposalSet>> indexesChoicesToMerge = new ArrayList<>();
@@ -139,9 +155,46 @@ public class QueryOptimizerV4 {
 			this.isDependentOnParameter |= isParameter;
 			minMaxMap.get(zField).adjustMax(newMax, isParameter);
 		}
+		
+		public void addJoinPredicate(ZooFieldDef refField, ZooClassDef innerDef, 
+				QueryFunction predicate) {
+			this.isDependentOnParameter |= predicate.isDependentOnParameter();
+			JoinProposal prev = joinMap.get(refField);
+			if (prev == null) {
+				joinMap.put(refField, new JoinProposal(innerDef, predicate));
+			} else if (prev.innerDef == innerDef) {
+				prev.predicate = QueryFunction.createJava(FNCT_OP.L_AND, 
+						QueryFunction.createThis(innerDef), prev.predicate, predicate);
+			}
+		}
+		
+		public void addNgramRanges(ZooFieldDef zField, long[] ranges, boolean isParameter) {
+			this.isDependentOnParameter |= isParameter;
+			long[] prev = ngramMap.get(zField);
+			if (prev != null) {
+				long[] all = Arrays.copyOf(prev, prev.length + ranges.length);
+				System.arraycopy(ranges, 0, all, prev.length, ranges.length);
+				ranges = all;
+			}
+			ngramMap.put(zField, ranges);
+		}
 	}
 	
 	
+	/**
+	 * Join proposal: The predicate is evaluated on the referenced class, the result is used
+	 * to look up the candidates in the index of the reference field.
+	 */
+	static class JoinProposal {
+		final ZooClassDef innerDef;
+		QueryFunction predicate;
+		
+		JoinProposal(ZooClassDef innerDef, QueryFunction predicate) {
+			this.innerDef = innerDef;
+			this.predicate = predicate;
+		}
+	}
+	
 	public static VariableInstance[] optimizeQuery(QueryTree tree, ZooClassDef clsDef,
 			List<QueryVariable> variableDecls, Object[] params) {
 		
@@ -169,7 +222,7 @@ public class QueryOptimizerV4 {
 		for (int i = 0; i < proposalsForEachVar.length; i++) {
 			VariableInstance var = variableIns[i];
 			List<QueryAdvice> result = var.advices;
-			createQueryAdvice(proposalsForEachVar[i], var, tree, result);
+			createQueryAdvice(proposalsForEachVar[i], var, tree, result, params);
 			var.prepareForUsage();
 			if (var.var.getTypeDef() == null && var.getAdvices().isEmpty()) {
 				throw DBLogger.newUser("Queries need identity constraints, such as "
@@ -271,24 +324,25 @@ public class QueryOptimizerV4 {
 	}
 	
 	private static void createQueryAdvice(IndexProposalSet proposalsForVar, 
-			VariableInstance var, QueryTree queryTree, List<QueryAdvice> result) {
+			VariableInstance var, QueryTree queryTree, List<QueryAdvice> result, 
+			Object[] params) {
 		if (proposalsForVar == null) {
 			//No index proposals found
 			return;
 		}
 		
-		QueryAdvice qa = createAdviceFromMap(queryTree, proposalsForVar, var);
+		QueryAdvice qa = createAdviceFromMap(queryTree, proposalsForVar, var, params);
 		if (qa != null) {
 			result.add(qa);
 			return;
 		}
 		//TODO we should always do that and compare them to the min/max indexes!
 		//analyze cumulative indexes
-		createAdviceFromCumulative(queryTree, proposalsForVar, var, result);
+		createAdviceFromCumulative(queryTree, proposalsForVar, var, result, params);
 	}
 	
 	private static QueryAdvice createAdviceFromMap(QueryTree queryTree,
-			IndexProposalSet proposalsForVar, VariableInstance var) {
+			IndexProposalSet proposalsForVar, VariableInstance var, Object[] params) {
 		//TODO
 		//TODO
 		//TODO
@@ -315,10 +369,13 @@ public class QueryOptimizerV4 {
 		}
 		
 		//TODO use [] with field IDs instead of maps
-		IdentityHashMap<ZooFieldDef, MinMax> minMaxMap = proposalsForVar.minMaxMap;
+		IdentityHashMap<ZooFieldDef, MinMax> minMaxMap = getIndexedFields(proposalsForVar);
+		QueryAdvice ngramQa = createAdviceFromNgramMap(queryTree, proposalsForVar);
 		if (minMaxMap.isEmpty()) {
-			//return default query
-			return null;
+			//return default query (null), n-gram index, composite index or join
+			QueryAdvice qa = preferComposite(queryTree, var.var.getTypeDef(), proposalsForVar, 
+					ngramQa);
+			return qa != null ? qa : createAdviceFromJoinMap(queryTree, proposalsForVar, params);
 		}
 
 		//the advised index to use...
@@ -330,7 +387,8 @@ public class QueryOptimizerV4 {
 		//TODO well, better not use it if it covers the whole range? Maybe for sorting?
 		if (minMaxMap.size() == 1) {
 			qa.setIndex( minMaxMap.keySet().iterator().next() );
-			return qa;
+			return preferComposite(queryTree, var.var.getTypeDef(), proposalsForVar, 
+					preferNgram(qa, ngramQa));
 		}
 		
 		for (Map.Entry<ZooFieldDef, MinMax> me2: minMaxMap.entrySet()) {
@@ -350,12 +408,171 @@ public class QueryOptimizerV4 {
 			qa.setMax(BitTools.getMaxPosInPage(qa.getMax()), qa.isDependentOnParameter());
 		}
 
-		return qa;
+		return preferComposite(queryTree, var.var.getTypeDef(), proposalsForVar, 
+				preferNgram(qa, ngramQa));
+	}
+
+	/**
+	 * @return Proposals for fields that have a normal index that can be used for the 
+	 * proposed range. The proposals may also contain fields that are only part of a 
+	 * composite index.
+	 */
+	private static IdentityHashMap<ZooFieldDef, MinMax> getIndexedFields(
+			IndexProposalSet proposalsForVar) {
+		IdentityHashMap<ZooFieldDef, MinMax> minMaxMap = proposalsForVar.minMaxMap;
+		//Scanning a whole index, for example for 'customer != null', is worse than a join 
+		//or than the indexes of an 'or'
+		boolean hasAlternative = !proposalsForVar.joinMap.isEmpty() 
+				|| !proposalsForVar.indexesChoicesToMerge.isEmpty();
+		for (Map.Entry<ZooFieldDef, MinMax> e: minMaxMap.entrySet()) {
+			if (!isIndexUsable(e.getKey(), e.getValue(), hasAlternative)) {
+				minMaxMap = new IdentityHashMap<>(minMaxMap);
+				minMaxMap.entrySet().removeIf(
+						e2 -> !isIndexUsable(e2.getKey(), e2.getValue(), hasAlternative));
+				break;
+			}
+		}
+		return minMaxMap;
+	}
+
+	private static boolean isIndexUsable(ZooFieldDef f, MinMax minMax, 
+			boolean hasAlternative) {
+		if (hasAlternative && minMax.min <= f.getMinValue() && minMax.max >= f.getMaxValue()) {
+			return false;
+		}
+		return isIndexUsable(f, minMax);
+	}
+
+	static boolean isIndexUsable(ZooFieldDef f, MinMax minMax) {
+		return f.isIndexed() && (!f.isIndexHashed() || minMax.isSingleValue());
+	}
+	
+	/**
+	 * Composite indexes are preferred if they constrain at least two fields or if the 
+	 * other advice is not an equality constraint. 
+	 * A composite index can be used if all fields except the last one are constrained 
+	 * with '=='.
+	 */
+	private static QueryAdvice preferComposite(QueryTree queryTree, ZooClassDef typeDef,
+			IndexProposalSet proposalsForVar, QueryAdvice qa) {
+		IdentityHashMap<ZooFieldDef, MinMax> minMaxMap = proposalsForVar.minMaxMap;
+		ZooClassDef bestOwner = null;
+		ZooFieldDef[] best = null;
+		int bestN = 0;
+		for (ZooClassDef def = typeDef; def != null; def = def.getSuperDef()) {
+			for (ZooFieldDef[] fields: def.getCompositeIndexes()) {
+				int n = countConstrainedFields(fields, minMaxMap);
+				if (n > bestN) {
+					bestOwner = def;
+					best = fields;
+					bestN = n;
+				}
+			}
+		}
+		if (best == null 
+				|| (bestN < 2 && qa != null && qa.getType() == QueryAdvice.Type.INDEX_EQUALS)) {
+			return qa;
+		}
+		
+		long[] values = new long[best.length];
+		boolean isDependentOnParameter = false;
+		for (int i = 0; i < best.length - 1; i++) {
+			MinMax mm = minMaxMap.get(best[i]);
+			values[i] = mm.min;
+			isDependentOnParameter |= mm.isDependentOnParameter();
+		}
+		ZooFieldDef last = best[best.length - 1];
+		MinMax mm = minMaxMap.get(last);
+		long min = mm != null ? mm.min : last.getMinValue();
+		long max = mm != null ? mm.max : last.getMaxValue();
+		if (mm != null) {
+			isDependentOnParameter |= mm.isDependentOnParameter();
+		}
+		if (last.isString()) {
+			//For String we have to extend the range because of the trailing hashcode
+			min = BitTools.getMinPosInPage(min);
+			max = BitTools.getMaxPosInPage(max);
+		}
+		long[] keys = CompositeIndexTools.range(best, values, min, max);
+		return QueryAdvice.createForCompositeIndex(queryTree, bestOwner, best, keys[0], keys[1], 
+				isDependentOnParameter);
+	}
+	
+	/**
+	 * @return The number of constrained fields of a composite index or 0 if the index cannot 
+	 * be used.
+	 */
+	private static int countConstrainedFields(ZooFieldDef[] fields, 
+			Map<ZooFieldDef, MinMax> minMaxMap) {
+		for (int i = 0; i < fields.length - 1; i++) {
+			MinMax mm = minMaxMap.get(fields[i]);
+			if (mm == null || mm.min != mm.max) {
+				return 0;
+			}
+		}
+		ZooFieldDef last = fields[fields.length - 1];
+		MinMax mm = minMaxMap.get(last);
+		if (mm != null && (mm.min > last.getMinValue() || mm.max < last.getMaxValue())) {
+			return fields.length;
+		}
+		return fields.length - 1;
+	}
+
+	private static QueryAdvice createAdviceFromNgramMap(QueryTree queryTree,
+			IndexProposalSet proposalsForVar) {
+		ZooFieldDef best = null;
+		long[] bestRanges = null;
+		for (Map.Entry<ZooFieldDef, long[]> me: proposalsForVar.ngramMap.entrySet()) {
+			//More ranges means more constraints
+			if (bestRanges == null || me.getValue().length > bestRanges.length) {
+				best = me.getKey();
+				bestRanges = me.getValue();
+			}
+		}
+		if (best == null) {
+			return null;
+		}
+		return QueryAdvice.createForNgramIndex(queryTree, best, bestRanges, 
+				proposalsForVar.isDependentOnParameter);
+	}
+	
+	/**
+	 * N-gram indexes are preferred over index ranges, because String ranges are
+	 * imprecise and usually cover many objects.
+	 */
+	private static QueryAdvice preferNgram(QueryAdvice qa, QueryAdvice ngramQa) {
+		if (ngramQa == null || qa.getType() == QueryAdvice.Type.INDEX_EQUALS) {
+			return qa;
+		}
+		return ngramQa;
+	}
+
+	/**
+	 * Joins are only used if no other index can be used. Joins that can use an index on the
+	 * referenced class (index nested loop join) are preferred over joins that need to scan 
+	 * the referenced class (scan + index probe).
+	 */
+	private static QueryAdvice createAdviceFromJoinMap(QueryTree queryTree,
+			IndexProposalSet proposalsForVar, Object[] params) {
+		QueryAdvice best = null;
+		for (Map.Entry<ZooFieldDef, JoinProposal> me: proposalsForVar.joinMap.entrySet()) {
+			JoinProposal jp = me.getValue();
+			QueryTree innerTree = QueryTree.create(jp.predicate);
+			VariableInstance[] innerVars = optimizeQuery(innerTree, jp.innerDef, 
+					Collections.emptyList(), params);
+			QueryAdvice qa = QueryAdvice.createForJoin(queryTree, me.getKey(), jp.predicate, 
+					innerVars, innerTree.requiresRerunForChangedParams());
+			if (best == null 
+					|| (!best.getJoinVariables()[0].hasAdvices() && innerVars[0].hasAdvices())) {
+				best = qa;
+			}
+		}
+		return best;
 	}
 
 	private static void createAdviceFromCumulative(QueryTree queryTree,
 			IndexProposalSet proposalsForVar, VariableInstance var,
-			List<QueryAdvice> result) {
+			List<QueryAdvice> result, Object[] params) {
 		if (proposalsForVar.indexesChoicesToMerge == null 
 				|| proposalsForVar.indexesChoicesToMerge.isEmpty()) {
 			return;
@@ -366,7 +583,7 @@ public class QueryOptimizerV4 {
 			if (!choice.isEmpty()) { 
 				for (int i = 0; i < choice.size(); i++) {
 					IndexProposalSet prop = choice.get(i); 
-					createQueryAdvice(prop, var, queryTree, result);
+					createQueryAdvice(prop, var, queryTree, result, params);
 				}
 				//TODO: compare with other proposals before returning!
 				return;
@@ -310,7 +310,7 @@ public final class QueryParserV4 implements QueryParserAPI {
 			}
 		}
 		
-		return lhsFn;
+		return lhsFn.replaceBoundVariables(variables);
 	}
 
 	private Object tokenToNumber() {
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.query;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zoodb.internal.ZooClassDef;
+import org.zoodb.internal.ZooFieldDef;
+import org.zoodb.internal.client.session.ClientSessionCache;
+import org.zoodb.internal.util.Pair;
+
+/**
+ * Cache for compiled queries that is shared by all sessions of a PersistenceManagerFactory.
+ * <p>
+ * Plans are looked up with the query string, the API parameter and variable declarations,
+ * the candidate class and the schema version that is seen by the compiling session, see
+ * {@link Key}. A changed schema or index results in a different key, so outdated plans are
+ * never used and are eventually evicted in LRU order.
+ * <p>
+ * The optimizer stores its advice in the query tree, so a plan is a template that is never
+ * executed. Every query gets a copy that is bound to the schema of its own session, see
+ * {@link Plan#bind}. The templates refer to the schema of the compiling session, they are
+ * removed when that session is closed.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class QueryPlanCache {
+
+	/**
+	 * Identifies a compiled query.
+	 */
+	public static final class Key {
+		private final long schemaTxId;
+		private final long candClassOid;
+		private final String query;
+		private final String apiParameters;
+		private final String apiVariables;
+		private final boolean isV4;
+		private final long rangeMin;
+		private final long rangeMax;
+		private final int hash;
+
+		/**
+		 * @param schemaTxId The schema version, see
+		 * {@link org.zoodb.internal.Node#getSchemaTxId()}
+		 * @param candClassOid The OID of the candidate class definition
+		 * @param query The query string, including range and ordering
+		 * @param apiParameters The parameters that were declared via the API
+		 * @param apiVariables The variables that were declared via the API
+		 * @param rangeMin The range that was set via the API
+		 * @param rangeMax The range that was set via the API
+		 * @param isV4 Whether the query is executed as V4 query
+		 */
+		public Key(long schemaTxId, long candClassOid, String query,
+				List<ParameterDeclaration> apiParameters, List<QueryVariable> apiVariables,
+				long rangeMin, long rangeMax, boolean isV4) {
+			this.schemaTxId = schemaTxId;
+			this.candClassOid = candClassOid;
+			this.query = query;
+			StringBuilder sb = new StringBuilder();
+			for (ParameterDeclaration p: apiParameters) {
+				sb.append(p.getType() == null ? null : p.getType().getName());
+				sb.append(' ').append(p.getName()).append(',');
+			}
+			this.apiParameters = sb.toString();
+			sb.setLength(0);
+			for (QueryVariable v: apiVariables) {
+				sb.append(v.getType() == null ? null : v.getType().getName());
+				sb.append(' ').append(v.getName()).append(',');
+			}
+			this.apiVariables = sb.toString();
+			this.rangeMin = rangeMin;
+			this.rangeMax = rangeMax;
+			this.isV4 = isV4;
+			int h = Long.hashCode(schemaTxId);
+			h = 31 * h + Long.hashCode(candClassOid);
+			h = 31 * h + query.hashCode();
+			h = 31 * h + this.apiParameters.hashCode();
+			h = 31 * h + this.apiVariables.hashCode();
+			h = 31 * h + Boolean.hashCode(isV4);
+			h = 31 * h + Long.hashCode(rangeMin);
+			h = 31 * h + Long.hashCode(rangeMax);
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) obj;
+			return hash == k.hash && schemaTxId == k.schemaTxId
+					&& candClassOid == k.candClassOid
+					&& rangeMin == k.rangeMin && rangeMax == k.rangeMax && isV4 == k.isV4
+					&& query.equals(k.query) && apiParameters.equals(k.apiParameters)
+					&& apiVariables.equals(k.apiVariables);
+		}
+	}
+
+	/**
+	 * A compiled query. Plans are immutable.
+	 */
+	public static final class Plan {
+		private final QueryTree tree;
+		private final List<ParameterDeclaration> parameters;
+		private final List<QueryVariable> variables;
+		private final List<Pair<ZooFieldDef, Boolean>> ordering;
+		private final int nApiParameters;
+		private final int nApiVariables;
+		private final long rangeMin;
+		private final long rangeMax;
+		private final Object owner;
+
+		/**
+		 * @param tree The query tree, the plan keeps a copy
+		 * @param parameters All parameters, starting with the ones that were declared via the API
+		 * @param variables All variables, starting with the ones that were declared via the API
+		 * @param ordering The ordering
+		 * @param rangeMin The range after parsing
+		 * @param rangeMax The range after parsing
+		 * @param owner The session that compiled the query
+		 */
+		public Plan(QueryTree tree, List<ParameterDeclaration> parameters,
+				List<QueryVariable> variables, List<Pair<ZooFieldDef, Boolean>> ordering,
+				long rangeMin, long rangeMax, Object owner) {
+			Binding b = new Binding(null);
+			this.tree = tree.bind(b);
+			this.parameters = new ArrayList<>();
+			int nApiP = 0;
+			for (ParameterDeclaration p: parameters) {
+				this.parameters.add(b.parameter(p));
+				nApiP += p.getDeclaration() == ParameterDeclaration.DECLARATION.API ? 1 : 0;
+			}
+			this.variables = new ArrayList<>();
+			int nApiV = 0;
+			for (QueryVariable v: variables) {
+				this.variables.add(b.variable(v));
+				nApiV += v.getDeclaration() == QueryVariable.VarDeclaration.API ? 1 : 0;
+			}
+			this.nApiParameters = nApiP;
+			this.nApiVariables = nApiV;
+			this.ordering = new ArrayList<>(ordering);
+			this.rangeMin = rangeMin;
+			this.rangeMax = rangeMax;
+			this.owner = owner;
+		}
+
+		/**
+		 * Create a copy of the query for a session. The copy uses the schema of the session
+		 * and the parameters and variables of the query that were declared via the API. The
+		 * remaining parameters, variables and the ordering are added to the given lists.
+		 * @param cache The cache of the session
+		 * @param parameters The parameters of the query that were declared via the API
+		 * @param variables The variables of the query that were declared via the API
+		 * @param ordering The ordering of the query, this should be empty
+		 * @return The query tree or {@code null} if the schema of the session does not match
+		 */
+		public QueryTree bind(ClientSessionCache cache, List<ParameterDeclaration> parameters,
+				List<QueryVariable> variables, List<Pair<ZooFieldDef, Boolean>> ordering) {
+			if (parameters.size() != nApiParameters || variables.size() != nApiVariables) {
+				return null;
+			}
+			Binding b = new Binding(cache);
+			for (int i = 0; i < nApiParameters; i++) {
+				b.map.put(this.parameters.get(i), parameters.get(i));
+			}
+			for (int i = 0; i < nApiVariables; i++) {
+				b.map.put(this.variables.get(i), variables.get(i));
+			}
+			QueryTree boundTree = tree.bind(b);
+			ArrayList<ParameterDeclaration> boundParams = new ArrayList<>();
+			for (int i = nApiParameters; i < this.parameters.size(); i++) {
+				boundParams.add(b.parameter(this.parameters.get(i)));
+			}
+			ArrayList<QueryVariable> boundVars = new ArrayList<>();
+			for (int i = nApiVariables; i < this.variables.size(); i++) {
+				boundVars.add(b.variable(this.variables.get(i)));
+			}
+			ArrayList<Pair<ZooFieldDef, Boolean>> boundOrdering = new ArrayList<>();
+			for (Pair<ZooFieldDef, Boolean> p: this.ordering) {
+				boundOrdering.add(new Pair<>(b.field(p.getA()), p.getB()));
+			}
+			if (!b.isComplete) {
+				return null;
+			}
+			parameters.addAll(boundParams);
+			variables.addAll(boundVars);
+			ordering.addAll(boundOrdering);
+			return boundTree;
+		}
+
+		public long getRangeMin() {
+			return rangeMin;
+		}
+
+		public long getRangeMax() {
+			return rangeMax;
+		}
+	}
+
+	/**
+	 * Maps the schema, parameters and variables of a query tree to the ones of a copy.
+	 * Without a session cache, the copy uses the same schema.
+	 */
+	static final class Binding {
+		private final ClientSessionCache cache;
+		private final IdentityHashMap<Object, Object> map = new IdentityHashMap<>();
+		private boolean isComplete = true;
+
+		private Binding(ClientSessionCache cache) {
+			this.cache = cache;
+		}
+
+		ZooClassDef classDef(ZooClassDef def) {
+			if (def == null || cache == null) {
+				return def;
+			}
+			ZooClassDef def2 = cache.getSchema(def.jdoZooGetOid());
+			if (def2 == null) {
+				isComplete = false;
+				return def;
+			}
+			return def2;
+		}
+
+		ZooFieldDef field(ZooFieldDef f) {
+			if (f == null || cache == null) {
+				return f;
+			}
+			ZooFieldDef[] fields = classDef(f.getDeclaringType()).getAllFields();
+			int pos = f.getFieldPos();
+			if (pos < fields.length && fields[pos].getName().equals(f.getName())) {
+				return fields[pos];
+			}
+			isComplete = false;
+			return f;
+		}
+
+		ParameterDeclaration parameter(ParameterDeclaration p) {
+			if (p == null) {
+				return null;
+			}
+			ParameterDeclaration p2 = (ParameterDeclaration) map.get(p);
+			if (p2 == null) {
+				p2 = new ParameterDeclaration(p.getType(), (String) p.getName(),
+						p.getDeclaration(), p.getPosition());
+				p2.setTypeDef(classDef(p.getTypeDef()));
+				map.put(p, p2);
+			}
+			return p2;
+		}
+
+		QueryVariable variable(QueryVariable v) {
+			QueryVariable v2 = (QueryVariable) map.get(v);
+			if (v2 == null) {
+				v2 = new QueryVariable(v.getType(), (String) v.getName(),
+						v.getDeclaration(), v.getId());
+				v2.setTypeDef(classDef(v.getTypeDef()));
+				v2.setReplaced(v.isReplaced());
+				map.put(v, v2);
+			}
+			return v2;
+		}
+	}
+
+	private final int maxSize;
+	private final LinkedHashMap<Key, Plan> plans;
+	//The database that the plans belong to
+	private Object database;
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	/**
+	 * @param maxSize Maximum number of plans in the cache
+	 */
+	public QueryPlanCache(final int maxSize) {
+		this.maxSize = maxSize;
+		//Access ordered, the eldest plan comes first.
+		this.plans = new LinkedHashMap<Key, Plan>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Plan> eldest) {
+				return size() > QueryPlanCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Attach the cache to a database. If the cache was attached to a different instance
+	 * before, all plans are discarded, because the schema may have changed in between.
+	 * @param database The database instance
+	 */
+	public synchronized void attach(Object database) {
+		if (this.database != database) {
+			plans.clear();
+			this.database = database;
+		}
+	}
+
+	/**
+	 * @param key The key
+	 * @return The plan or {@code null} if no plan is cached.
+	 */
+	public synchronized Plan get(Key key) {
+		Plan plan = plans.get(key);
+		if (plan == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return plan;
+	}
+
+	public synchronized void put(Key key, Plan plan) {
+		plans.put(key, plan);
+	}
+
+	/**
+	 * Remove the plans that refer to the schema of a session.
+	 * @param owner The session
+	 */
+	public synchronized void remove(Object owner) {
+		Iterator<Plan> it = plans.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().owner == owner) {
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		plans.clear();
+	}
+
+	public synchronized int size() {
+		return plans.size();
+	}
+
+	public synchronized long statsGetHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long statsGetMissCount() {
+		return missCount;
+	}
+}
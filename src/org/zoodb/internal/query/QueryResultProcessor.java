@@ -19,9 +19,11 @@ import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import org.zoodb.internal.SerializerTools;
 import org.zoodb.internal.SerializerTools.PRIMITIVE;
 import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooFieldDef;
+import org.zoodb.internal.util.CloseableIterator;
 import org.zoodb.internal.util.DBLogger;
 
 /**
@@ -359,6 +361,52 @@ class QueryResultProcessor {
 		return r;
 	} 
 
+	/**
+	 * @return The fields of a projection, in the order of the result.
+	 */
+	ZooFieldDef[] getProjectionFields() {
+		ZooFieldDef[] ret = new ZooFieldDef[items.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = items.get(i).field;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Projection of values that are read from an index instead of objects.
+	 * @param rows The values of the fields of {@link #getProjectionFields()} as sortable longs.
+	 * Only primitive fields are supported.
+	 * @return The projection, it is computed while the rows are iterated
+	 */
+	CloseableIterator<Object> processResultProjection(CloseableIterator<long[]> rows) {
+		return new CloseableIterator<Object>() {
+			@Override
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			@Override
+			public Object next() {
+				long[] row = rows.next();
+				if (items.size() == 1) {
+					return SerializerTools.longToPrimitive(row[0], 
+							items.get(0).field.getPrimitiveType());
+				}
+				Object[] oa = new Object[items.size()];
+				for (int i = 0; i < oa.length; i++) {
+					oa[i] = SerializerTools.longToPrimitive(row[i], 
+							items.get(i).field.getPrimitiveType());
+				}
+				return oa;
+			}
+
+			@Override
+			public void close() {
+				rows.close();
+			}
+		};
+	}
+
 	Object processResultAggregation(Iterator<Object> in) {
 		//aggregations
 		while (in.hasNext()) {
@@ -199,6 +199,28 @@ public final class QueryTerm {
 		}
 	}
 
+	private QueryTerm(QueryTerm t, QueryPlanCache.Binding b) {
+		this.lhsParam = b.parameter(t.lhsParam);
+		this.lhsValue = t.lhsValue;
+		this.lhsFieldDef = b.field(t.lhsFieldDef);
+		this.lhsFunction = t.lhsFunction != null ? t.lhsFunction.bind(b) : null;
+		this.op = t.op;
+		this.rhsParamName = t.rhsParamName;
+		this.rhsValue = t.rhsValue;
+		this.rhsParam = b.parameter(t.rhsParam);
+		this.rhsFieldDef = b.field(t.rhsFieldDef);
+		this.rhsFunction = t.rhsFunction != null ? t.rhsFunction.bind(b) : null;
+		this.compType = t.compType;
+	}
+
+	/**
+	 * @param b The binding
+	 * @return A copy of this term that uses the schema and parameters of the binding.
+	 */
+	QueryTerm bind(QueryPlanCache.Binding b) {
+		return new QueryTerm(this, b);
+	}
+
 	public boolean isParametrized() {
 		return rhsParamName != null;
 	}
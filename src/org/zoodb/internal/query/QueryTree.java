@@ -114,6 +114,17 @@ public class QueryTree {
 		return QueryOptimizerV4.optimizeQuery(this, candClsDef, variables, executionParams); 
 	}
 
+	/**
+	 * @param b The binding
+	 * @return A copy of this tree that uses the schema, parameters and variables of the binding.
+	 */
+	QueryTree bind(QueryPlanCache.Binding b) {
+		return new QueryTree(rootFn != null ? rootFn.bind(b) : null,
+				rootNode != null ? rootNode.bind(b, null) : null,
+				rangeMin, rangeMax,
+				b.parameter(rangeMinParameter), b.parameter(rangeMaxParameter));
+	}
+
 	public boolean requiresRerunForChangedParams() {
 		if (rootNode != null) {
 			throw new UnsupportedOperationException();
@@ -71,6 +71,20 @@ public final class QueryTreeNode {
 		relateToChildren();
 	}
 
+	/**
+	 * @param b The binding
+	 * @param parent The parent of the copy
+	 * @return A copy of this branch that uses the schema and parameters of the binding.
+	 */
+	QueryTreeNode bind(QueryPlanCache.Binding b, QueryTreeNode parent) {
+		QueryTreeNode n = new QueryTreeNode(null, t1 != null ? t1.bind(b) : null, op, null, 
+				t2 != null ? t2.bind(b) : null, false);
+		n.n1 = n1 != null ? n1.bind(b, n) : null;
+		n.n2 = n2 != null ? n2.bind(b, n) : null;
+		n.p = parent;
+		return n;
+	}
+
 	QueryTreeNode relateToChildren() {
 		if (n1 != null) {
 			n1.p = this;
@@ -263,7 +277,7 @@ public final class QueryTreeNode {
 		return ret;
 	}
 	
-	private QueryTreeNode cloneBranch() {
+	QueryTreeNode cloneBranch() {
 		QueryTreeNode node1 = null;
 		if (n1 != null) {
 			node1 = n1.cloneBranch();
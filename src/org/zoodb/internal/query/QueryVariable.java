@@ -45,6 +45,7 @@ public final class QueryVariable {
 	private VarDeclaration declaration;
 	private ZooClassDef typeDef;
 	private final int id;
+	private boolean isReplaced = false;
 
 	public QueryVariable(Class<?> type, String name, VarDeclaration declaration, int id) {
 		this.type = type;
@@ -89,4 +90,16 @@ public final class QueryVariable {
 	public int getId() {
 		return id;
 	}
+
+	/**
+	 * @return Whether the variable has been replaced in the query by the reference that it is
+	 * bound to, see {@link QueryFunction#replaceBoundVariables(java.util.List)}.
+	 */
+	public boolean isReplaced() {
+		return isReplaced;
+	}
+
+	public void setReplaced(boolean isReplaced) {
+		this.isReplaced = isReplaced;
+	}
 }
\ No newline at end of file
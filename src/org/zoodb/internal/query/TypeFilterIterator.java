@@ -0,0 +1,93 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.query;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.ZooClassDef;
+import org.zoodb.internal.util.CloseableIterator;
+
+/**
+ * Skips objects that are not instances of the candidate class.
+ * <p>
+ * The index of a field also contains the instances of the class that declares the field
+ * (and of all its sub-classes). A query on a sub-class of the declaring class has to
+ * filter the objects that are returned by the index.
+ *
+ * @author Tilmann Zaeschke
+ */
+final class TypeFilterIterator implements CloseableIterator<ZooPC> {
+
+	private final Iterator<ZooPC> it;
+	private final Class<?> type;
+	private ZooPC next;
+
+	private TypeFilterIterator(Iterator<ZooPC> it, Class<?> type) {
+		this.it = it;
+		this.type = type;
+	}
+
+	/**
+	 * @param it An iterator over an index
+	 * @param indexDef The class that owns the index
+	 * @param candClsDef The candidate class of the query
+	 * @param candCls The candidate class of the query
+	 * @return The iterator, or a filtering iterator if the index belongs to a super-class
+	 * of the candidate class
+	 */
+	static Iterator<ZooPC> filter(Iterator<ZooPC> it, ZooClassDef indexDef,
+			ZooClassDef candClsDef, Class<?> candCls) {
+		if (indexDef == candClsDef) {
+			return it;
+		}
+		return new TypeFilterIterator(it, candCls);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (next == null && it.hasNext()) {
+			ZooPC o = it.next();
+			if (type.isInstance(o)) {
+				next = o;
+			}
+		}
+		return next != null;
+	}
+
+	@Override
+	public ZooPC next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ZooPC ret = next;
+		next = null;
+		return ret;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		if (it instanceof CloseableIterator) {
+			((CloseableIterator<?>) it).close();
+		}
+	}
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.index.BitTools;
+import org.zoodb.internal.server.index.FreeSpaceManager;
+import org.zoodb.internal.server.index.LongLongIndex;
+import org.zoodb.internal.server.index.LongLongIndex.PageVisitor;
+import org.zoodb.internal.server.index.PagedOidIndex;
+import org.zoodb.internal.server.index.PagedPosIndex;
+import org.zoodb.internal.server.index.SchemaIndex;
+import org.zoodb.internal.server.index.SchemaIndex.SchemaIndexEntry;
+import org.zoodb.internal.util.FormattedStringBuilder;
+import org.zoodb.internal.util.PrimLongArrayList;
+
+/**
+ * Consistency check for the database file.
+ * <p>
+ * The check runs in two phases. First, the OID index, the POS indexes, the attribute indexes
+ * and the free space manager are traversed concurrently, each by a separate task. The
+ * collected page usage is merged to find pages that are used twice or that are used and free
+ * at the same time. Second, the headers of all data pages are verified concurrently.
+ * <p>
+ * In incremental mode only pages that were written after a given transaction are checked.
+ * Unchanged parts of the indexes are skipped entirely, see
+ * {@link LongLongIndex#debugVisitPages(long, PageVisitor)}. Object counts and unused pages
+ * are only reported by a full check.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class DbChecker {
+
+	/**
+	 * Receives progress reports of a running check.
+	 */
+	public interface ProgressListener {
+		/**
+		 * Called whenever a task has finished. This may be called concurrently by different
+		 * threads.
+		 * @param task Description of the finished task
+		 * @param nDone The number of finished tasks
+		 * @param nTotal The total number of tasks of the current phase
+		 */
+		void progress(String task, int nDone, int nTotal);
+	}
+
+	private static final byte ROOT = 1;
+	private static final byte IDX_FSM = 2;
+	private static final byte IDX_OID = 3;
+	private static final byte IDX_POS = 4;
+	private static final byte IDX_ATTR = 5;
+	private static final byte IDX_SCH = 6;
+	private static final byte DATA = 7;
+	private static final byte FREE = 8;
+
+	private static final String[] USAGE =
+		{"unused", "ROOT", "FSM", "OID", "POS", "ATTR", "SCH", "DATA", "FREE"};
+
+	/** Number of pages that are verified by a single task. */
+	private static final int PAGES_PER_TASK = 1024;
+
+	/** Maximum number of errors that are listed in the report. */
+	private static final int MAX_ERRORS = 100;
+
+	private final IOResourceProvider file;
+	private final FreeSpaceManager freeIndex;
+	private final PagedOidIndex oidIndex;
+	private final SchemaIndex schemaIndex;
+	private final long lastTxId;
+	private final long minTxId;
+	private final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * @param file Channel for reading data pages
+	 * @param freeIndex The free space manager
+	 * @param oidIndex The OID index
+	 * @param schemaIndex The schema index
+	 * @param lastTxId The ID of the last committed transaction
+	 * @param minTxId Only pages that were written after this transaction are checked,
+	 * 0 checks all pages.
+	 */
+	DbChecker(IOResourceProvider file, FreeSpaceManager freeIndex, PagedOidIndex oidIndex,
+			SchemaIndex schemaIndex, long lastTxId, long minTxId) {
+		this.file = file;
+		this.freeIndex = freeIndex;
+		this.oidIndex = oidIndex;
+		this.schemaIndex = schemaIndex;
+		this.lastTxId = lastTxId;
+		this.minTxId = minTxId;
+	}
+
+	/**
+	 * Base class for tasks that can be executed concurrently.
+	 */
+	private abstract class Task implements Runnable {
+		final String name;
+		Task(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Collects the pages used by an index. Each task traverses a different index.
+	 */
+	private abstract class IndexTask extends Task implements PageVisitor {
+		private final byte pageUsage;
+		/** page IDs and usage, see {@link DbChecker#pack(int, byte)} */
+		final PrimLongArrayList pages = new PrimLongArrayList();
+		int nIndexPages = 0;
+		int nEntries = 0;
+		//only used for POS indexes
+		int nObjects = 0;
+
+		IndexTask(String name, byte pageUsage) {
+			super(name);
+			this.pageUsage = pageUsage;
+		}
+
+		@Override
+		public void visitPage(int pageId, long txId) {
+			checkTxId(pageId, txId);
+			pages.add(pack(pageId, pageUsage));
+			nIndexPages++;
+		}
+
+		@Override
+		public void visitEntry(long key, long value) {
+			nEntries++;
+		}
+	}
+
+	private class FsmTask extends IndexTask {
+		final PrimLongArrayList freePages = new PrimLongArrayList();
+		final PrimLongArrayList freeValues = new PrimLongArrayList();
+		FsmTask() {
+			super("FSM index", IDX_FSM);
+		}
+		@Override
+		public void run() {
+			freeIndex.debugVisitPages(minTxId, this);
+		}
+		@Override
+		public void visitEntry(long key, long value) {
+			super.visitEntry(key, value);
+			freePages.add(key);
+			freeValues.add(value);
+		}
+	}
+
+	/**
+	 * Verifies the headers of a range of data pages.
+	 */
+	private class PageTask extends Task {
+		private final long[] pages;
+		PageTask(long[] pages) {
+			super("Pages " + unpackPage(pages[0]) + " - " + unpackPage(pages[pages.length - 1]));
+			this.pages = pages;
+		}
+		@Override
+		public void run() {
+			StorageChannelInput in = file.getInputChannel();
+			try {
+				for (long p: pages) {
+					int pageId = unpackPage(p);
+					try {
+						in.seekPageForRead(PAGE_TYPE.DATA, pageId);
+						checkTxId(pageId, in.getHeaderTimestamp());
+					} catch (RuntimeException e) {
+						error("Invalid page header: " + pageId + ": " + e.getMessage());
+					}
+				}
+			} finally {
+				file.returnInputChannel(in);
+			}
+		}
+	}
+
+	/**
+	 * Run the check.
+	 * @param nThreads The number of threads
+	 * @param listener Progress listener, may be {@code null}
+	 * @return The report
+	 */
+	String check(int nThreads, ProgressListener listener) {
+		boolean isFull = minTxId <= 0;
+
+		//Phase 1: traverse indexes
+		ArrayList<IndexTask> indexTasks = new ArrayList<>();
+		IndexTask oidTask = new IndexTask("OID index", IDX_OID) {
+			@Override
+			public void run() {
+				oidIndex.debugVisitPages(minTxId, this);
+			}
+			@Override
+			public void visitEntry(long key, long value) {
+				super.visitEntry(key, value);
+				pages.add(pack(BitTools.getPage(value), DATA));
+			}
+		};
+		indexTasks.add(oidTask);
+		ArrayList<IndexTask> posTasks = new ArrayList<>();
+		for (SchemaIndexEntry se: schemaIndex.getSchemata()) {
+			for (int v = 0; v < se.getObjectIndexVersionCount(); v++) {
+				final PagedPosIndex ppi = se.getObjectIndexVersion(v);
+				IndexTask t = new IndexTask("POS index " + posTasks.size(), IDX_POS) {
+					@Override
+					public void run() {
+						ppi.debugVisitPages(minTxId, this);
+					}
+					@Override
+					public void visitEntry(long key, long value) {
+						super.visitEntry(key, value);
+						pages.add(pack(BitTools.getPage(key), DATA));
+						if (PagedPosIndex.isObjectStart(key, value)) {
+							nObjects++;
+						}
+					}
+				};
+				posTasks.add(t);
+			}
+		}
+		indexTasks.addAll(posTasks);
+		ArrayList<IndexTask> attrTasks = new ArrayList<>();
+		for (final LongLongIndex idx: schemaIndex.debugGetAttrIndexes()) {
+			attrTasks.add(new IndexTask("ATTR index " + attrTasks.size(), IDX_ATTR) {
+				@Override
+				public void run() {
+					idx.debugVisitPages(minTxId, this);
+				}
+			});
+		}
+		indexTasks.addAll(attrTasks);
+		FsmTask fsmTask = new FsmTask();
+		indexTasks.add(fsmTask);
+		runTasks(indexTasks, nThreads, listener);
+
+		//merge
+		int nPages = freeIndex.getPageCount();
+		byte[] pages = new byte[nPages];
+		pages[0] = ROOT;
+		pages[1] = ROOT;
+		pages[2] = ROOT;
+		for (IndexTask t: indexTasks) {
+			for (int i = 0; i < t.pages.size(); i++) {
+				long p = t.pages.get(i);
+				assign(pages, unpackPage(p), unpackUsage(p));
+			}
+		}
+		//The schema index is not a tree and has only few pages, we always check all of them.
+		//Their page headers do not contain a valid transaction ID.
+		int nSchemaIndexPages = 0;
+		StorageChannelInput in = file.getInputChannel();
+		try {
+			for (int pageId: schemaIndex.debugGetPages()) {
+				try {
+					in.seekPageForRead(PAGE_TYPE.SCHEMA_INDEX, pageId);
+				} catch (RuntimeException e) {
+					error("Invalid page header: " + pageId + ": " + e.getMessage());
+				}
+				assign(pages, pageId, IDX_SCH);
+				nSchemaIndexPages++;
+			}
+		} finally {
+			file.returnInputChannel(in);
+		}
+		int nPagesFree = 0;
+		int nPagesFreeDoNotUse = 0;
+		for (int i = 0; i < fsmTask.freePages.size(); i++) {
+			int pageId = (int) fsmTask.freePages.get(i);
+			nPagesFree++;
+			if (pageId < 0 || pageId >= nPages) {
+				error("Free page is out of range: " + pageId);
+			} else if (pages[pageId] == 0) {
+				pages[pageId] = FREE;
+			} else if (fsmTask.freeValues.get(i) == 0) {
+				error("Page is free and assigned at the same time: " + pageId + " (" +
+						USAGE[pages[pageId]] + ")");
+			} else {
+				nPagesFreeDoNotUse++;
+			}
+		}
+
+		//Phase 2: verify page headers of data pages
+		ArrayList<PageTask> pageTasks = new ArrayList<>();
+		PrimLongArrayList toVerify = new PrimLongArrayList();
+		for (int i = 0; i < nPages; i++) {
+			if (pages[i] == DATA) {
+				toVerify.add(pack(i, DATA));
+				if (toVerify.size() == PAGES_PER_TASK) {
+					pageTasks.add(new PageTask(toVerify.toArray()));
+					toVerify.clear();
+				}
+			}
+		}
+		if (!toVerify.isEmpty()) {
+			pageTasks.add(new PageTask(toVerify.toArray()));
+		}
+		runTasks(pageTasks, nThreads, listener);
+
+		int nPagesFree2 = 0;
+		int nPagesRoot = 0;
+		int nPagesData = 0;
+		int nPagesUnknown = 0;
+		int nIndexPages = 0;
+		for (byte b: pages) {
+			switch (b) {
+			case ROOT: nPagesRoot++; break;
+			case DATA: nPagesData++; break;
+			case FREE: nPagesFree2++; break;
+			case IDX_FSM:
+			case IDX_ATTR:
+			case IDX_OID:
+			case IDX_POS:
+			case IDX_SCH: nIndexPages++; break;
+			default: nPagesUnknown++;
+			}
+		}
+		int nObjectsByPos = 0;
+		int nPosEntries = 0;
+		int nPosIndexPages = 0;
+		for (IndexTask t: posTasks) {
+			nObjectsByPos += t.nObjects;
+			nPosEntries += t.nEntries;
+			nPosIndexPages += t.nIndexPages;
+		}
+		int nAttrIndexPages = 0;
+		for (IndexTask t: attrTasks) {
+			nAttrIndexPages += t.nIndexPages;
+		}
+		int nOidPages = oidTask.nIndexPages;
+		int nFsmPages = fsmTask.nIndexPages;
+
+		FormattedStringBuilder sb = new FormattedStringBuilder();
+		if (isFull) {
+			sb.appendln("Objects:                " + oidTask.nEntries + " / " + nObjectsByPos);
+			if (oidTask.nEntries != nObjectsByPos) {
+				sb.appendln("ERROR Object count mismatch for OID index and POS index!");
+			}
+		} else {
+			sb.appendln("Checked transactions:   " + minTxId + " - " + lastTxId);
+			sb.appendln("Changed objects:        " + oidTask.nEntries + " / " + nObjectsByPos);
+		}
+		sb.appendln("Transaction ID:         " + lastTxId);
+		sb.appendln("Schemata:               " + schemaIndex.getSchemata().size());
+		sb.appendln("Pos entries:            " + nPosEntries);
+		sb.appendln();
+		sb.appendln("OID index pages:        " + nOidPages);
+		sb.appendln("FSM index pages:        " + nFsmPages);
+		sb.appendln("(FSM-do-not-use pages): " + nPagesFreeDoNotUse);
+		sb.appendln("POS index pages:        " + nPosIndexPages);
+		sb.appendln("ATTR index pages:       " + nAttrIndexPages);
+		sb.appendln("SCH index pages:        " + nSchemaIndexPages);
+		sb.appendln("Total index pages:      " + nIndexPages);
+		sb.appendln();
+		sb.appendln("Free pages:             " + nPagesFree + " / " + nPagesFree2);
+		sb.appendln("Data pages:             " + nPagesData);
+		sb.appendln("Root pages:             " + nPagesRoot);
+		sb.appendln("Index pages:            " + nIndexPages);
+		if (isFull) {
+			sb.appendln("Unknown pages:          " + nPagesUnknown);
+		}
+		sb.appendln("Total pages:            " + nPages);
+		synchronized (errors) {
+			for (int i = 0; i < errors.size() && i < MAX_ERRORS; i++) {
+				sb.appendln("ERROR " + errors.get(i));
+			}
+			if (errors.size() > MAX_ERRORS) {
+				sb.appendln("ERROR ... " + (errors.size() - MAX_ERRORS) + " more errors");
+			}
+		}
+		return sb.toString();
+	}
+
+	private void assign(byte[] pages, int pageId, byte usage) {
+		if (pageId < 0 || pageId >= pages.length) {
+			error("Page is out of range: " + pageId + " (" + USAGE[usage] + ")");
+			return;
+		}
+		byte prev = pages[pageId];
+		if (prev != 0 && (prev != usage || usage != DATA)) {
+			error("Page is double-assigned: " + pageId + " (" + USAGE[prev] + "/" +
+					USAGE[usage] + ")");
+		}
+		pages[pageId] = usage;
+	}
+
+	private void checkTxId(int pageId, long txId) {
+		if (txId > lastTxId) {
+			error("Page " + pageId + " was written by transaction " + txId +
+					", but the last committed transaction is " + lastTxId);
+		}
+	}
+
+	private void error(String msg) {
+		errors.add(msg);
+	}
+
+	private static long pack(int pageId, byte usage) {
+		return ((long) pageId << 8) | usage;
+	}
+
+	private static int unpackPage(long packed) {
+		return (int) (packed >>> 8);
+	}
+
+	private static byte unpackUsage(long packed) {
+		return (byte) (packed & 0xFF);
+	}
+
+	private void runTasks(List<? extends Task> tasks, int nThreads,
+			final ProgressListener listener) {
+		final ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<>(tasks);
+		final int nTotal = tasks.size();
+		final AtomicInteger nDone = new AtomicInteger();
+		Runnable worker = new Runnable() {
+			@Override
+			public void run() {
+				Task t;
+				while ((t = queue.poll()) != null) {
+					try {
+						t.run();
+					} catch (RuntimeException e) {
+						error(t.name + ": " + e.getMessage());
+					}
+					if (listener != null) {
+						listener.progress(t.name, nDone.incrementAndGet(), nTotal);
+					}
+				}
+			}
+		};
+		if (nThreads <= 1 || nTotal <= 1) {
+			worker.run();
+			return;
+		}
+		ArrayList<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < Math.min(nThreads, nTotal); i++) {
+			Thread t = new Thread(worker, "ZooCheckDb-" + i);
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t: threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
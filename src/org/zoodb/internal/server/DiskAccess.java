@@ -17,7 +17,8 @@ package org.zoodb.internal.server;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Iterator;
+import java.util.List;
 
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.DataDeSerializer;
@@ -26,6 +27,7 @@ import org.zoodb.internal.ZooClassDef;
 import org.zoodb.internal.ZooClassProxy;
 import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.ZooHandleImpl;
+import org.zoodb.internal.server.index.PagedHashLongLong;
 import org.zoodb.internal.server.index.PagedOidIndex;
 import org.zoodb.internal.server.index.SchemaIndex.SchemaIndexEntry;
 import org.zoodb.internal.util.CloseableIterator;
@@ -56,8 +58,9 @@ public interface DiskAccess {
 	 * @param cls The class for which an index should be defined
 	 * @param field The field for which an index should be defined
 	 * @param isUnique Whether the index should be unique
+	 * @param isHashed Whether the index should be a hash index, see {@link PagedHashLongLong}
 	 */
-	void defineIndex(ZooClassDef cls, ZooFieldDef field, boolean isUnique);
+	void defineIndex(ZooClassDef cls, ZooFieldDef field, boolean isUnique, boolean isHashed);
 
 	boolean removeIndex(ZooClassDef def, ZooFieldDef field);
 
@@ -74,10 +77,100 @@ public interface DiskAccess {
 	Iterator<ZooPC> readObjectFromIndex(ZooFieldDef field, 
 			long minValue, long maxValue, boolean loadFromCache);
 
+	/**
+	 * @param field Field The indexed field
+	 * @param keys The keys to look up, for example OIDs for joins via a reference field, see
+	 * {@link org.zoodb.internal.server.index.JoinTools}
+	 * @param loadFromCache Whether to load object from cache, if possible
+	 * @return An iterator over all objects that have one of the keys
+	 */
+	Iterator<ZooPC> readObjectFromIndex(ZooFieldDef field, long[] keys, boolean loadFromCache);
+
+	/**
+	 * Defines an n-gram index and populates it, see {@link #defineIndex}.
+	 * @param cls The class for which an index should be defined
+	 * @param field The String field for which an index should be defined
+	 */
+	void defineNgramIndex(ZooClassDef cls, ZooFieldDef field);
+
+	boolean removeNgramIndex(ZooClassDef def, ZooFieldDef field);
+
+	/**
+	 * @param field Field The field with n-gram index
+	 * @param ranges The key ranges, see 
+	 * {@link org.zoodb.internal.server.index.NgramTools#find}
+	 * @param loadFromCache Whether to load object from cache, if possible
+	 * @return An iterator over all objects that have an entry in each of the ranges. 
+	 */
+	Iterator<ZooPC> readObjectFromNgramIndex(ZooFieldDef field, 
+			long[] ranges, boolean loadFromCache);
+
+	/**
+	 * Defines a composite index and populates it with all instances of the class and its 
+	 * sub-classes.
+	 * @param cls The class for which an index should be defined
+	 * @param fields The fields of the index
+	 */
+	void defineCompositeIndex(ZooClassDef cls, ZooFieldDef[] fields);
+
+	boolean removeCompositeIndex(ZooClassDef cls, ZooFieldDef[] fields);
+
+	/**
+	 * @param cls The class that defines the composite index
+	 * @param fields The fields of the index
+	 * @param minKey The minimum key, see 
+	 * {@link org.zoodb.internal.server.index.CompositeIndexTools#range}
+	 * @param maxKey The maximum key
+	 * @param loadFromCache Whether to load object from cache, if possible
+	 * @return An iterator over all objects with a key in the given range. 
+	 */
+	Iterator<ZooPC> readObjectFromCompositeIndex(ZooClassDef cls, ZooFieldDef[] fields, 
+			long minKey, long maxKey, boolean loadFromCache);
+
+	/**
+	 * Defines indexes for the values of fields that are included in the index of another 
+	 * field and populates them with all instances of the class and its sub-classes.
+	 * @param cls The class that defines the indexed field
+	 * @param field The indexed field
+	 * @param included The included fields
+	 */
+	void defineIndexIncludes(ZooClassDef cls, ZooFieldDef field, ZooFieldDef[] included);
+
+	boolean removeIndexIncludes(ZooClassDef cls, ZooFieldDef field);
+
+	/**
+	 * Reads values from the index of a field and from the indexes of its included fields,
+	 * without loading any objects.
+	 * @param field The indexed field
+	 * @param minValue The minimum value of the indexed field
+	 * @param maxValue The maximum value of the indexed field
+	 * @param values The fields to read, each must be the indexed field or an included field
+	 * @return An iterator over the values of the requested fields for each object in the
+	 * range, as sortable longs, or {@code null} if one of the required indexes does not exist.
+	 */
+	CloseableIterator<long[]> readValuesFromIndex(ZooFieldDef field, long minValue, long maxValue, 
+			ZooFieldDef[] values);
+
 	long getStats(STATS stats);
 
+	/**
+	 * @return The ID of the last transaction that changed the schema or the schema indexes
+	 * that are used by this session.
+	 */
+	long getSchemaTxId();
+
     String checkDb();
 
+	/**
+	 * Check the database file.
+	 * @param nThreads The number of threads used for checking
+	 * @param minTxId Only pages that were written after this transaction are checked,
+	 * 0 checks all pages.
+	 * @param listener Progress listener, may be {@code null}
+	 * @return The report
+	 */
+	String checkDb(int nThreads, long minTxId, DbChecker.ProgressListener listener);
+
 	void dropInstances(ZooClassProxy def);
 
 	void defineSchema(ZooClassDef def);
@@ -108,6 +201,20 @@ public interface DiskAccess {
 
 	long countInstances(ZooClassProxy clsDef, boolean subClasses);
 
+	/**
+	 * @param clsDef The class
+	 * @return The sorted OIDs of all instances of the latest schema version of a class, 
+	 * excluding sub-classes.
+	 */
+	long[] readObjectIds(ZooClassProxy clsDef);
+
+	/**
+	 * Release free pages at the end of the database file. This requires that there is no
+	 * active transaction in the current session.
+	 * @return The number of pages in the database file.
+	 */
+	int truncateFile();
+
 	boolean checkIfObjectExists(long oid);
 
 	long beginTransaction();
@@ -16,9 +16,10 @@
 package org.zoodb.internal.server;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +28,7 @@ import org.slf4j.MarkerFactory;
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.DataDeSerializer;
 import org.zoodb.internal.DataDeSerializerNoClass;
+import org.zoodb.internal.DataIndexUpdater;
 import org.zoodb.internal.GenericObject;
 import org.zoodb.internal.Node;
 import org.zoodb.internal.ZooClassDef;
@@ -34,13 +36,17 @@ import org.zoodb.internal.ZooClassProxy;
 import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.ZooHandleImpl;
 import org.zoodb.internal.client.AbstractCache;
+import org.zoodb.internal.query.QueryPlanCache;
 import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
 import org.zoodb.internal.server.ServerResponse.RESULT;
+import org.zoodb.internal.server.SessionManager.Snapshot;
 import org.zoodb.internal.server.index.BitTools;
 import org.zoodb.internal.server.index.FreeSpaceManager;
 import org.zoodb.internal.server.index.LongLongIndex;
 import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
-import org.zoodb.internal.server.index.LongLongIndex.LongLongIterator;
+import org.zoodb.internal.server.index.JoinTools;
+import org.zoodb.internal.server.index.NgramTools;
+import org.zoodb.internal.server.index.IndexValueIterator;
 import org.zoodb.internal.server.index.ObjectIterator;
 import org.zoodb.internal.server.index.ObjectPosIterator;
 import org.zoodb.internal.server.index.PagedOidIndex;
@@ -49,10 +55,11 @@ import org.zoodb.internal.server.index.PagedPosIndex;
 import org.zoodb.internal.server.index.SchemaIndex;
 import org.zoodb.internal.server.index.SchemaIndex.SchemaIndexEntry;
 import org.zoodb.internal.server.index.ZooHandleIteratorAdapter;
+import org.zoodb.internal.util.ClientLock;
 import org.zoodb.internal.util.CloseableIterator;
 import org.zoodb.internal.util.DBLogger;
-import org.zoodb.internal.util.FormattedStringBuilder;
 import org.zoodb.internal.util.PoolDDS;
+import org.zoodb.internal.util.PrimLongArrayList;
 import org.zoodb.internal.util.PrimLongSetZ;
 import org.zoodb.internal.util.Util;
 import org.zoodb.tools.DBStatistics.STATS;
@@ -124,11 +131,49 @@ public class DiskAccessOneFile implements DiskAccess {
     
     private long txId;
 	private final TxContext txContext = new TxContext(); 
+	private boolean hasLock;
+	
+	//Snapshot reads: Transactions do not hold a lock. Instead, they read from read-only 
+	//copies of the indexes of the snapshot that was pinned when the transaction started.
+	//The copies are shared with other sessions that read the same snapshot.
+	//The master indexes are only used for writing, i.e. during commit while holding the 
+	//write lock.
+	private final boolean isSnapshotReads;
+	private Snapshot pinnedSnapshot;
+	private Snapshot viewSnapshot;
+	private boolean isCommitting = false;
+	
+	//Second level cache that is shared with other sessions, may be null
+	private final SharedObjectCache sharedCache;
+	private final boolean isReadOnly;
+	private ArrayList<TxObjInfo> commitUpdates;
+	
+	//Concurrent reads: Multiple threads of the session may read objects while holding the
+	//shared session lock. The indexes are only accessed while holding the 'indexLock', 
+	//objects are de-serialized outside of it, each thread with its own de-serializer.
+	//Both are null without concurrent reads.
+	private final ReentrantLock indexLock;
+	private final ClientLock loadLock;
+	
+	//Number of data pages that extent iterators read ahead, 0 to disable
+	private final int extentReadAhead;
 	
 	DiskAccessOneFile(Node node, AbstractCache cache, SessionManager sm) {
 		this.sm = sm;
 		this.node = node;
 		this.cache = cache;
+		//Clients of a server always read from snapshots, see PageServer
+		this.isSnapshotReads = node.getSession().getConfig().getSnapshotReads() || sm.isRemote();
+		//Updates of other clients would not be reported to the cache
+		this.sharedCache = sm.isRemote() ? null : node.getSession().getConfig().getSharedCache();
+		this.isReadOnly = node.getSession().getConfig().getReadOnly() || sm.isReadOnly();
+		if (node.getSession().getConfig().getConcurrentReads()) {
+			this.indexLock = new ReentrantLock();
+			this.loadLock = node.getSession().getLock();
+		} else {
+			this.indexLock = null;
+			this.loadLock = null;
+		}
 
 		LOGGER.info(LOCKING_MARKER, "DAOF.this() RLOCK");
 		//We need a write lock because we modify data structures here, 
@@ -140,9 +185,33 @@ public class DiskAccessOneFile implements DiskAccess {
 //		} else {
 //			sm.writeLock(this);
 //		}
+		hasLock = true;
 		
 		this.freeIndex = sm.getFsm();
 		this.file = sm.getFile().createChannel();
+		int readerPoolSize = node.getSession().getConfig().getReaderPoolSize();
+		if (node.getSession().getConfig().getPageScrubber()) {
+			sm.startScrubber();
+		}
+		if (node.getSession().getConfig().getWriteAheadLog() && !isReadOnly) {
+			//We hold the read lock, so there is no commit in progress
+			sm.startWriteAheadLog();
+		}
+		if (readerPoolSize > 0) {
+			//The index pool is shared with other sessions of the database
+			file.getInputChannelPool().setMaxSize(readerPoolSize);
+			sm.getFile().getIndexChannel().getInputChannelPool().setMaxSize(readerPoolSize);
+		}
+		int indexPageBudget = node.getSession().getConfig().getIndexPageBudget();
+		if (indexPageBudget > 0) {
+			//The budget is shared with other sessions of the database
+			sm.getFile().getIndexPageResidency().setMaxPages(indexPageBudget);
+		}
+		if (node.getSession().getConfig().getIndexOffHeap()) {
+			//Pages that are already in memory remain on the heap until they are written
+			sm.getFile().getIndexPageResidency().setOffHeap(true);
+		}
+		this.extentReadAhead = node.getSession().getConfig().getExtentReadAhead();
 		
 		
 		//OIDs
@@ -153,14 +222,149 @@ public class DiskAccessOneFile implements DiskAccess {
 		
         objectReader = new ObjectReader(file);
 		
-		ddsPool = new PoolDDS(file, this.cache);
+		ddsPool = new PoolDDS(file, this.cache, loadLock);
 
 		fileInAP = file.createReader(true);
+		
+		if (sharedCache != null) {
+			sm.addSharedCache(sharedCache);
+		}
+		QueryPlanCache planCache = node.getSession().getConfig().getQueryPlanCache();
+		if (planCache != null) {
+			//Plans of a previously opened instance of the database may be outdated
+			planCache.attach(sm);
+		}
+	}
+	
+	/**
+	 * @return The OID index for reading objects.
+	 */
+	private PagedOidIndex readOidIndex() {
+		if (!isSnapshotReads || isCommitting) {
+			return oidIndex;
+		}
+		return updateSnapshotView().getOidIndex();
+	}
+	
+	/**
+	 * @return The schema index for reading objects.
+	 */
+	private SchemaIndex readSchemaIndex() {
+		if (!isSnapshotReads || isCommitting) {
+			return schemaIndex;
+		}
+		return updateSnapshotView().getSchemaIndex();
+	}
+	
+	/**
+	 * Acquire the indexes of the pinned snapshot, if this is not done yet. 
+	 * Non-transactional reads pin the latest snapshot. It remains pinned until the next
+	 * transaction ends or the session is closed, because objects and iterators of a 
+	 * non-transactional read may still access its pages. 
+	 * @return The snapshot
+	 */
+	private synchronized Snapshot updateSnapshotView() {
+		if (pinnedSnapshot == null) {
+			pinnedSnapshot = sm.pinSnapshot(this);
+		}
+		Snapshot s = pinnedSnapshot;
+		if (s == viewSnapshot) {
+			return s;
+		}
+		releaseSnapshotView();
+		//buffered pages may have been reused by other sessions
+		file.resetReaders();
+		sm.acquireView(s);
+		viewSnapshot = s;
+		return s;
+	}
+	
+	private synchronized void releaseSnapshotView() {
+		if (viewSnapshot != null) {
+			sm.releaseView(viewSnapshot);
+			viewSnapshot = null;
+		}
+	}
+	
+	/**
+	 * The shared cache is only used while the session reads a committed state that cannot 
+	 * change, i.e. while it holds a read lock or has pinned a snapshot. During commit the 
+	 * master indexes may already point to objects that are not committed yet.
+	 * Schema objects are not cached, they are loaded only once per session anyway.
+	 * @return Whether the shared cache can be used for reading.
+	 */
+	private boolean isSharedCacheUsable() {
+		if (sharedCache == null || isCommitting || ALLOW_READ_CONCURRENCY) {
+			return false;
+		}
+		return isSnapshotReads ? pinnedSnapshot != null : hasLock;
+	}
+	
+	private void readObject(DataDeSerializer dds, ZooPC pc, FilePos oie) {
+		if (!isSharedCacheUsable() || pc instanceof ZooClassDef) {
+			dds.readObject(pc, oie.getPage(), oie.getOffs());
+			return;
+		}
+		long oid = pc.jdoZooGetOid();
+		long pos = BitTools.getPos(oie.getPage(), oie.getOffs());
+		byte[] image = sharedCache.get(oid, pos);
+		if (image != null) {
+			dds.readObject(pc, image);
+			return;
+		}
+		dds.startRecording();
+		dds.readObject(pc, oie.getPage(), oie.getOffs());
+		byte[] recorded = dds.stopRecording();
+		if (recorded != null) {
+			sharedCache.put(oid, pos, recorded, pc.getClass());
+		}
+	}
+	
+	private ZooPC readObject(DataDeSerializer dds, FilePos oie) {
+		if (!isSharedCacheUsable()) {
+			return dds.readObject(oie.getPage(), oie.getOffs(), false);
+		}
+		long pos = BitTools.getPos(oie.getPage(), oie.getOffs());
+		byte[] image = sharedCache.get(oie.getOID(), pos);
+		if (image != null) {
+			return dds.readObject(image);
+		}
+		dds.startRecording();
+		ZooPC pc = dds.readObject(oie.getPage(), oie.getOffs(), false);
+		byte[] recorded = dds.stopRecording();
+		if (recorded != null && !(pc instanceof ZooClassDef)) {
+			sharedCache.put(oie.getOID(), pos, recorded, pc.getClass());
+		}
+		return pc;
+	}
+	
+	/**
+	 * @param oid The OID
+	 * @return The position of the object or {@code null} if the OID is not in the index
+	 */
+	private FilePos findOid(long oid) {
+		if (indexLock == null) {
+			return readOidIndex().findOid(oid);
+		}
+		indexLock.lock();
+		try {
+			return readOidIndex().findOid(oid);
+		} finally {
+			indexLock.unlock();
+		}
+	}
+	
+	private void unpinSnapshot() {
+		synchronized (this) {
+			pinnedSnapshot = null;
+		}
+		isCommitting = false;
+		sm.unpinSnapshot(this);
 	}
 	
 	@Override
 	public void refreshSchema(ZooClassDef def) {
-		schemaIndex.refreshSchema(def, this);
+		readSchemaIndex().refreshSchema(def, this);
 	}
 
 	
@@ -169,7 +373,7 @@ public class DiskAccessOneFile implements DiskAccess {
 	 */
 	@Override
 	public Collection<ZooClassDef> readSchemaAll() {
-		Collection<ZooClassDef> all = schemaIndex.readSchemaAll(this, node);
+		Collection<ZooClassDef> all = readSchemaIndex().readSchemaAll(this, node);
 		if (all.isEmpty()) {
 			//new database, need to initialize!
 			
@@ -212,18 +416,19 @@ public class DiskAccessOneFile implements DiskAccess {
 
 	@Override
 	public long[] allocateOids(int oidAllocSize) {
-		return oidIndex.allocateOids(oidAllocSize);
+		return sm.allocateOids(oidAllocSize);
 	}
 		
 	@Override
 	public void dropInstances(ZooClassProxy def) {
+		checkNotRemote("dropInstances()");
 	    //ensure latest
 	    SchemaIndexEntry sie = schemaIndex.getSchema(def.getSchemaId());
 	    //we treat dropInstances as a schema operation, otherwise it would be significant slower.
 	    schemaIndex.markResetRequired();
 	    for (int i = 0; i < sie.getObjectIndexVersionCount(); i++) {
 	        PagedPosIndex oi = sie.getObjectIndexVersion(i);
-    		PagedPosIndex.ObjectPosIterator it = oi.iteratorObjects();
+    		PagedPosIndex.ObjectPosIterator it = oi.iteratorRecords();
     		
     		//clean oid index
     		DataDeSerializerNoClass dds = new DataDeSerializerNoClass(fileInAP);
@@ -259,12 +464,32 @@ public class DiskAccessOneFile implements DiskAccess {
 	
 	@Override
 	public long countInstances(ZooClassProxy clsDef, boolean subClasses) {
-		return schemaIndex.countInstances(clsDef, subClasses);
+		return readSchemaIndex().countInstances(clsDef, subClasses);
 	}
 
+	@Override
+	public long[] readObjectIds(ZooClassProxy clsDef) {
+		SchemaIndexEntry se = readSchemaIndex().getSchema(clsDef.getSchemaId());
+		if (se == null) {
+			throw DBLogger.newUser("Schema not found for class: " + clsDef);
+		}
+		PrimLongArrayList oids = new PrimLongArrayList();
+		PagedPosIndex.ObjectPosIterator it = 
+				se.getObjectIndexLatestSchemaVersion().iteratorObjects();
+		DataDeSerializerNoClass dds = new DataDeSerializerNoClass(fileInAP);
+		while (it.hasNextOPI()) {
+			dds.seekPos(it.nextPos());
+			oids.add(dds.getOid());
+		}
+		it.close();
+		long[] ret = oids.toArray();
+		Arrays.sort(ret);
+		return ret;
+	}
+	
 	@Override
 	public ObjectWriter getWriter(ZooClassDef def) {
-	    return new ObjectWriterSV(file, oidIndex, def, schemaIndex);
+	    return new ObjectWriterSV(file, oidIndex, def, schemaIndex, sm.hasDeltaRecords());
 	}
 	
 	/**
@@ -276,13 +501,28 @@ public class DiskAccessOneFile implements DiskAccess {
 	 */
 	@Override
 	public CloseableIterator<ZooPC> readAllObjects(long schemaId, boolean loadFromCache) {
-		SchemaIndexEntry se = schemaIndex.getSchema(schemaId);
+		if (indexLock == null) {
+			return new ObjectPosIterator(readPosIndex(schemaId), 
+					new DataDeSerializer(objectReader, cache), loadFromCache, null, null,
+					file.getPagePrefetcher(), extentReadAhead);
+		}
+		PagedPosIndex.ObjectPosIteratorMerger iter;
+		indexLock.lock();
+		try {
+			iter = readPosIndex(schemaId);
+		} finally {
+			indexLock.unlock();
+		}
+		return new ObjectPosIterator(iter, ddsPool.get(), loadFromCache, indexLock, ddsPool,
+				file.getPagePrefetcher(), extentReadAhead);
+	}
+	
+	private PagedPosIndex.ObjectPosIteratorMerger readPosIndex(long schemaId) {
+		SchemaIndexEntry se = readSchemaIndex().getSchema(schemaId);
 		if (se == null) {
 			throw DBLogger.newUser("Schema not found for class: " + schemaId);
 		}
-		
-		return new ObjectPosIterator(se.getObjectIndexIterator(), cache, objectReader, 
-		        loadFromCache);
+		return se.getObjectIndexIterator();
 	}
 	
 	/**
@@ -291,10 +531,87 @@ public class DiskAccessOneFile implements DiskAccess {
 	@Override
 	public CloseableIterator<ZooPC> readObjectFromIndex(
 			ZooFieldDef field, long minValue, long maxValue, boolean loadFromCache) {
-		SchemaIndexEntry se = schemaIndex.getSchema(field.getDeclaringType());
-		LongLongIndex fieldInd = se.getIndex(field);
-		LLEntryIterator iter = fieldInd.iterator(minValue, maxValue);
-		return new ObjectIterator(iter, cache, this, objectReader, loadFromCache);
+		if (indexLock == null) {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			LongLongIndex fieldInd = se.getIndex(field);
+			LLEntryIterator iter = fieldInd.iterator(minValue, maxValue);
+			return new ObjectIterator(iter, cache, this, new DataDeSerializer(objectReader, cache),
+					loadFromCache, null, null);
+		}
+		LLEntryIterator iter;
+		indexLock.lock();
+		try {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			LongLongIndex fieldInd = se.getIndex(field);
+			iter = fieldInd.iterator(minValue, maxValue);
+		} finally {
+			indexLock.unlock();
+		}
+		return new ObjectIterator(iter, cache, this, ddsPool.get(), loadFromCache, indexLock, 
+				ddsPool);
+	}	
+	
+	@Override
+	public CloseableIterator<ZooPC> readObjectFromIndex(
+			ZooFieldDef field, long[] keys, boolean loadFromCache) {
+		if (indexLock == null) {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			LLEntryIterator iter = JoinTools.find(se.getIndex(field), keys);
+			return new ObjectIterator(iter, cache, this, new DataDeSerializer(objectReader, cache),
+					loadFromCache, null, null);
+		}
+		LLEntryIterator iter;
+		indexLock.lock();
+		try {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			iter = JoinTools.find(se.getIndex(field), keys);
+		} finally {
+			indexLock.unlock();
+		}
+		return new ObjectIterator(iter, cache, this, ddsPool.get(), loadFromCache, indexLock, 
+				ddsPool);
+	}	
+	
+	@Override
+	public CloseableIterator<ZooPC> readObjectFromNgramIndex(
+			ZooFieldDef field, long[] ranges, boolean loadFromCache) {
+		if (indexLock == null) {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			LLEntryIterator iter = NgramTools.find(se.getNgramIndex(field), ranges);
+			return new ObjectIterator(iter, cache, this, new DataDeSerializer(objectReader, cache),
+					loadFromCache, null, null);
+		}
+		LLEntryIterator iter;
+		indexLock.lock();
+		try {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+			iter = NgramTools.find(se.getNgramIndex(field), ranges);
+		} finally {
+			indexLock.unlock();
+		}
+		return new ObjectIterator(iter, cache, this, ddsPool.get(), loadFromCache, indexLock, 
+				ddsPool);
+	}	
+	
+	@Override
+	public CloseableIterator<ZooPC> readObjectFromCompositeIndex(ZooClassDef def, 
+			ZooFieldDef[] fields, long minKey, long maxKey, boolean loadFromCache) {
+		if (indexLock == null) {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(def);
+			LLEntryIterator iter = se.getCompositeIndex(fields).iterator(minKey, maxKey);
+			return new ObjectIterator(iter, cache, this, new DataDeSerializer(objectReader, cache),
+					loadFromCache, null, null);
+		}
+		LLEntryIterator iter;
+		indexLock.lock();
+		try {
+			SchemaIndexEntry se = readSchemaIndex().getSchema(def);
+			iter = se.getCompositeIndex(fields).iterator(minKey, maxKey);
+		} finally {
+			indexLock.unlock();
+		}
+		return new ObjectIterator(iter, cache, this, ddsPool.get(), loadFromCache, indexLock, 
+				ddsPool);
 	}	
 	
     /**
@@ -306,7 +623,7 @@ public class DiskAccessOneFile implements DiskAccess {
      */
     @Override
     public CloseableIterator<ZooHandleImpl> oidIterator(ZooClassProxy clsPx, boolean subClasses) {
-        SchemaIndexEntry se = schemaIndex.getSchema(clsPx.getSchemaId());
+        SchemaIndexEntry se = readSchemaIndex().getSchema(clsPx.getSchemaId());
         if (se == null) {
             throw new IllegalStateException("Schema not found for class: " + clsPx);
         }
@@ -334,7 +651,7 @@ public class DiskAccessOneFile implements DiskAccess {
 	@Override
 	public ServerResponse readObject(ZooPC pc) {
 		long oid = pc.jdoZooGetOid();
-		FilePos oie = oidIndex.findOid(oid);
+		FilePos oie = findOid(oid);
 		if (oie == null) {
 			return new ServerResponse(RESULT.OBJECT_NOT_FOUND,
 					"ERROR OID not found: " + Util.oidToString(oid));
@@ -344,7 +661,7 @@ public class DiskAccessOneFile implements DiskAccess {
 		
 		try {
 	        final DataDeSerializer dds = ddsPool.get();
-            dds.readObject(pc, oie.getPage(), oie.getOffs());
+            readObject(dds, pc, oie);
 	        ddsPool.offer(dds);
 		} catch (RuntimeException e) {
 			if (DBLogger.isUser(e)) {
@@ -357,7 +674,7 @@ public class DiskAccessOneFile implements DiskAccess {
 
 	@Override
 	public GenericObject readGenericObject(ZooClassDef def, long oid) {
-		FilePos oie = oidIndex.findOid(oid);
+		FilePos oie = findOid(oid);
 		if (oie == null) {
 			throw DBLogger.newObjectNotFoundException(
 					"ERROR OID not found: " + Util.oidToString(oid));
@@ -385,23 +702,27 @@ public class DiskAccessOneFile implements DiskAccess {
 	 */
 	@Override
 	public ZooPC readObject(DataDeSerializer dds, long oid) {
-		FilePos oie = oidIndex.findOid(oid);
+		FilePos oie = findOid(oid);
 		if (oie == null) {
 			throw DBLogger.newObjectNotFoundException("OID not found: " + Util.oidToString(oid));
 		}
 		
-		return dds.readObject(oie.getPage(), oie.getOffs(), false);
+		return readObject(dds, oie);
 	}
 
 	@Override
 	public boolean checkIfObjectExists(long oid) {
-		FilePos oie = oidIndex.findOid(oid);
+		FilePos oie = findOid(oid);
 		return oie != null;
 	}
 
 	@Override
 	public void close() {
 		LOGGER.info("Closing DB session: {}", node.getDbPath());
+		if (isSnapshotReads) {
+			releaseSnapshotView();
+			unpinSnapshot();
+		}
 		try {
 			sm.writeLock(this);
 			sm.close(file);
@@ -414,6 +735,15 @@ public class DiskAccessOneFile implements DiskAccess {
 	@Override
 	public long beginTransaction() {
 		txContext.reset();
+		if (isSnapshotReads) {
+			//No lock, the indexes of the snapshot are loaded lazily
+			txId = sm.getNextTxId();
+			synchronized (this) {
+				//This replaces the pin of preceding non-transactional reads
+				pinnedSnapshot = sm.pinSnapshot(this);
+			}
+			return txId;
+		}
 		//TODO
 		//TODO
 		//TODO
@@ -434,6 +764,10 @@ public class DiskAccessOneFile implements DiskAccess {
 //		} else {
 //			sm.writeLock(this);
 //		}
+		hasLock = true;
+		//Buffered pages may have been rewritten by other sessions since our last commit, for 
+		//example after a rollback or a failed optimistic commit.
+		file.resetReaders();
 		//lock.lock();
 //		try {
 //			DBLogger.debugPrintln(1, "DAOF.beginTransaction() WLOCK");
@@ -477,8 +811,19 @@ public class DiskAccessOneFile implements DiskAccess {
 			txContext.setSchemaIndexTxId(schemaIndex.getTxIdOfLastWriteThatRequiresRefresh());
 			return txr;
 		} finally {
-			LOGGER.info(LOCKING_MARKER, "DAOF.rollback() release lock");
-			sm.release(this);
+			commitUpdates = null;
+			isCommitting = false;
+			if (isSnapshotReads) {
+				//The oldest active TX protects pages from being reused, see pinSnapshot()
+				sm.getTxManager().deRegisterTx(txId);
+				unpinSnapshot();
+			}
+			//With snapshot reads we hold a lock only if the commit failed
+			if (hasLock) {
+				LOGGER.info(LOCKING_MARKER, "DAOF.rollback() release lock");
+				hasLock = false;
+				sm.release(this);
+			}
 		}
 	}
 	
@@ -536,14 +881,29 @@ public class DiskAccessOneFile implements DiskAccess {
 	public OptimisticTransactionResult beginCommit(ArrayList<TxObjInfo> updates) {
 		//change read-lock to write-lock
 		LOGGER.info(LOCKING_MARKER, "DAOF.beginCommit() WLOCK");
-		sm.release(this);
-		//sm.getLock().writeLock(this);
-		if (ALLOW_READ_CONCURRENCY) {
-			//TODO should be read-lock! We allow this only for the tests to pass...
-			sm.readLock(this);
-		} else {
+		if (isSnapshotReads) {
+			//From now on we read and write the shared indexes
 			sm.writeLock(this);
+			hasLock = true;
+		} else {
+			sm.release(this);
+			//sm.getLock().writeLock(this);
+			if (ALLOW_READ_CONCURRENCY) {
+				//TODO should be read-lock! We allow this only for the tests to pass...
+				sm.readLock(this);
+			} else {
+				sm.writeLock(this);
+			}
+		}
+		if (isReadOnly && !updates.isEmpty()) {
+			throw DBLogger.newUser("The session is read-only.");
+		}
+		if (!isReadOnly && !sm.beginCommit(txId)) {
+			throw DBLogger.newUser("Schema changes can not be committed because the database " +
+					"was updated by another client. Please rollback and try again.");
 		}
+		isCommitting = true;
+		commitUpdates = updates;
 
 		OptimisticTransactionResult ovr = checkConsistencyInternal(updates, false);
 		if (ovr.hasFailed()) {
@@ -560,20 +920,60 @@ public class DiskAccessOneFile implements DiskAccess {
 
 	@Override
 	public void commit() {
-		int oidPage = file.writeIndex(oidIndex::write);
-		int schemaPage1 = schemaIndex.write(file, txId);
-		txContext.setSchemaTxId(schemaIndex.getTxIdOfLastWrite());
-		txContext.setSchemaIndexTxId(schemaIndex.getTxIdOfLastWriteThatRequiresRefresh());
-
-		sm.commitInfrastructure(file, oidPage, schemaPage1, oidIndex.getLastUsedOid(), txId);
+		if (isReadOnly) {
+			//Nothing to write, see beginCommit()
+			sm.getTxManager().deRegisterTx(txId);
+		} else {
+			int oidPage = file.writeIndex(oidIndex::write);
+			int schemaPage1 = schemaIndex.write(file, txId);
+			txContext.setSchemaTxId(schemaIndex.getTxIdOfLastWrite());
+			txContext.setSchemaIndexTxId(schemaIndex.getTxIdOfLastWriteThatRequiresRefresh());
+	
+			sm.commitInfrastructure(file, oidPage, schemaPage1, oidIndex.getLastUsedOid(), txId);
+			//Dropped instances are not listed in the updates, so we clear the caches
+			sm.notifySharedCaches(commitUpdates, schemaIndex.getTxIdOfLastWrite() == txId);
+		}
+		commitUpdates = null;
+		isCommitting = false;
 		txContext.reset();
+		if (isSnapshotReads) {
+			unpinSnapshot();
+		}
 
 		//we release the lock only if the commit succeeds. Otherwise we keep the lock until
 		//everything was rolled back.
 		LOGGER.info(LOCKING_MARKER, "DAOF.commit() lock release");
+		hasLock = false;
 		sm.release(this);
 	}
 
+	@Override
+	public int truncateFile() {
+		if (isReadOnly) {
+			throw DBLogger.newUser("The session is read-only.");
+		}
+		checkNotRemote("truncateFile()");
+		LOGGER.info(LOCKING_MARKER, "DAOF.truncateFile() WLOCK");
+		sm.writeLock(this);
+		try {
+			//Each round may free the pages of the previous FSM, so we repeat until the file 
+			//stops shrinking.
+			int pageCount = Integer.MAX_VALUE;
+			int prevPageCount;
+			do {
+				prevPageCount = pageCount;
+				txId = sm.getNextTxId();
+				file.startWriting(txId);
+				sm.startWriting(txId);
+				pageCount = sm.truncate(file, txId);
+			} while (pageCount < prevPageCount);
+			return pageCount;
+		} finally {
+			LOGGER.info(LOCKING_MARKER, "DAOF.truncateFile() release lock");
+			sm.release(this);
+		}
+	}
+
 	/**
 	 * This can be called after a failed commit (or JDO flush()). In case the root pages have not 
 	 * been rewritten, this method will revert existing changes.
@@ -606,9 +1006,11 @@ public class DiskAccessOneFile implements DiskAccess {
 	 * purpose implementation of the deserializer, which would have the need for a cache removed.
 	 */
 	@Override
-	public void defineIndex(ZooClassDef def, ZooFieldDef field, boolean isUnique) {
+	public void defineIndex(ZooClassDef def, ZooFieldDef field, boolean isUnique, 
+			boolean isHashed) {
+		checkNotRemote("defineIndex()");
 		SchemaIndexEntry se = schemaIndex.getSchema(def);
-		LongLongIndex fieldInd = se.defineIndex(field, isUnique);
+		LongLongIndex fieldInd = se.defineIndex(field, isUnique, isHashed);
 		
 		//fill index with existing objects
 		PagedPosIndex ind = se.getObjectIndexLatestSchemaVersion();
@@ -645,18 +1047,180 @@ public class DiskAccessOneFile implements DiskAccess {
         iter.close();
 	}
 
+	/**
+	 * Some operations modify the shared indexes before the commit. They are not supported 
+	 * by clients of a server, because the shared indexes are loaded only when committing, 
+	 * see {@link SessionManager#beginCommit(long)}.
+	 */
+	private void checkNotRemote(String operation) {
+		if (sm.isRemote()) {
+			throw DBLogger.newUser("Not supported by clients of a database server: " + operation);
+		}
+	}
+
 	@Override
 	public boolean removeIndex(ZooClassDef cls, ZooFieldDef field) {
 		SchemaIndexEntry e = schemaIndex.getSchema(cls);
 		return e.removeIndex(field);
 	}
 
+	/**
+	 * Defines an n-gram index and populates it. Unlike {@link #defineIndex}, this requires
+	 * reading the whole String, so the objects are read as generic objects. They are 
+	 * removed from the cache afterwards.
+	 */
+	@Override
+	public void defineNgramIndex(ZooClassDef def, ZooFieldDef field) {
+		checkNotRemote("defineNgramIndex()");
+		SchemaIndexEntry se = schemaIndex.getSchema(def);
+		LongLongIndex ngramInd = se.defineNgramIndex(field);
+		fillNgramIndex(def, field, ngramInd);
+	}
+
+	private void fillNgramIndex(ZooClassDef def, ZooFieldDef field, LongLongIndex ngramInd) {
+		PagedPosIndex ind = schemaIndex.getSchema(def).getObjectIndexLatestSchemaVersion();
+		PagedPosIndex.ObjectPosIterator iter = ind.iteratorObjects();
+		DataDeSerializer dds = new DataDeSerializer(objectReader, cache);
+		while (iter.hasNext()) {
+			long pos = iter.nextPos();
+			GenericObject go = dds.readGenericObject(BitTools.getPage(pos), BitTools.getOffs(pos));
+			NgramTools.insert(ngramInd, (String) go.getField(field), go.getOid());
+			cache.evictGeneric(go);
+		}
+		iter.close();
+		//n-gram indexes also contain instances of sub-classes
+		for (ZooClassProxy sub: def.getVersionProxy().getSubProxies()) {
+			fillNgramIndex(sub.getSchemaDef(), field, ngramInd);
+		}
+	}
+
+	@Override
+	public boolean removeNgramIndex(ZooClassDef cls, ZooFieldDef field) {
+		SchemaIndexEntry e = schemaIndex.getSchema(cls);
+		return e.removeNgramIndex(field);
+	}
+
+	/**
+	 * Defines a composite index and populates it. Like {@link #defineNgramIndex}, the objects
+	 * are read as generic objects.
+	 */
+	@Override
+	public void defineCompositeIndex(ZooClassDef def, ZooFieldDef[] fields) {
+		checkNotRemote("defineCompositeIndex()");
+		SchemaIndexEntry se = schemaIndex.getSchema(def);
+		LongLongIndex compInd = se.defineCompositeIndex(fields);
+		fillCompositeIndex(def, fields, compInd);
+	}
+
+	private void fillCompositeIndex(ZooClassDef def, ZooFieldDef[] fields, 
+			LongLongIndex compInd) {
+		DataIndexUpdater updater = new DataIndexUpdater(def);
+		PagedPosIndex ind = schemaIndex.getSchema(def).getObjectIndexLatestSchemaVersion();
+		PagedPosIndex.ObjectPosIterator iter = ind.iteratorObjects();
+		DataDeSerializer dds = new DataDeSerializer(objectReader, cache);
+		while (iter.hasNext()) {
+			long pos = iter.nextPos();
+			GenericObject go = dds.readGenericObject(BitTools.getPage(pos), BitTools.getOffs(pos));
+			long key = updater.getCompositeKey(fields, updater.getBackup(go).getA());
+			compInd.insertLong(key, go.getOid());
+			cache.evictGeneric(go);
+		}
+		iter.close();
+		//composite indexes also contain instances of sub-classes
+		for (ZooClassProxy sub: def.getVersionProxy().getSubProxies()) {
+			fillCompositeIndex(sub.getSchemaDef(), fields, compInd);
+		}
+	}
+
+	@Override
+	public boolean removeCompositeIndex(ZooClassDef cls, ZooFieldDef[] fields) {
+		SchemaIndexEntry e = schemaIndex.getSchema(cls);
+		return e.removeCompositeIndex(fields);
+	}
+
+	/**
+	 * Defines the indexes of included fields and populates them. Like 
+	 * {@link #defineCompositeIndex}, the objects are read as generic objects.
+	 */
+	@Override
+	public void defineIndexIncludes(ZooClassDef def, ZooFieldDef field, 
+			ZooFieldDef[] included) {
+		checkNotRemote("defineIndexIncludes()");
+		SchemaIndexEntry se = schemaIndex.getSchema(def);
+		for (ZooFieldDef f: included) {
+			LongLongIndex valueInd = se.defineIncludedIndex(field, f);
+			fillIncludedIndex(def, f, valueInd);
+		}
+	}
+
+	private void fillIncludedIndex(ZooClassDef def, ZooFieldDef included, 
+			LongLongIndex valueInd) {
+		DataIndexUpdater updater = new DataIndexUpdater(def);
+		PagedPosIndex ind = schemaIndex.getSchema(def).getObjectIndexLatestSchemaVersion();
+		PagedPosIndex.ObjectPosIterator iter = ind.iteratorObjects();
+		DataDeSerializer dds = new DataDeSerializer(objectReader, cache);
+		while (iter.hasNext()) {
+			long pos = iter.nextPos();
+			GenericObject go = dds.readGenericObject(BitTools.getPage(pos), BitTools.getOffs(pos));
+			long value = updater.getValue(included, updater.getBackup(go).getA());
+			valueInd.insertLong(go.getOid(), value);
+			cache.evictGeneric(go);
+		}
+		iter.close();
+		//included values are also stored for instances of sub-classes
+		for (ZooClassProxy sub: def.getVersionProxy().getSubProxies()) {
+			fillIncludedIndex(sub.getSchemaDef(), included, valueInd);
+		}
+	}
+
+	@Override
+	public boolean removeIndexIncludes(ZooClassDef cls, ZooFieldDef field) {
+		SchemaIndexEntry e = schemaIndex.getSchema(cls);
+		return e.removeIndexIncludes(field);
+	}
+
+	@Override
+	public CloseableIterator<long[]> readValuesFromIndex(ZooFieldDef field, long minValue,
+			long maxValue, ZooFieldDef[] values) {
+		if (indexLock == null) {
+			return readValuesFromIndexInternal(field, minValue, maxValue, values);
+		}
+		indexLock.lock();
+		try {
+			return readValuesFromIndexInternal(field, minValue, maxValue, values);
+		} finally {
+			indexLock.unlock();
+		}
+	}
+
+	private CloseableIterator<long[]> readValuesFromIndexInternal(ZooFieldDef field,
+			long minValue, long maxValue, ZooFieldDef[] values) {
+		SchemaIndexEntry se = readSchemaIndex().getSchema(field.getDeclaringType());
+		LongLongIndex fieldInd = se.getIndex(field);
+		if (fieldInd == null) {
+			return null;
+		}
+		//'null' indicates the indexed field itself
+		LongLongIndex.LongLongUIndex[] valueInds = 
+				new LongLongIndex.LongLongUIndex[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != field) {
+				valueInds[i] = se.getIncludedIndex(field, values[i]);
+				if (valueInds[i] == null) {
+					return null;
+				}
+			}
+		}
+		return new IndexValueIterator(fieldInd.iterator(minValue, maxValue), valueInds,
+				indexLock);
+	}
+
     /**
      * Get the class of a given object.
      */
 	@Override
 	public long getObjectClass(long oid) {
-		FilePos oie = oidIndex.findOid(oid);
+		FilePos oie = findOid(oid);
 		if (oie == null) {
 			throw DBLogger.newObjectNotFoundException("OID not found: " + Util.oidToString(oid));
 		}
@@ -670,6 +1234,12 @@ public class DiskAccessOneFile implements DiskAccess {
 		}
 	}
 	
+	@Override
+	public long getSchemaTxId() {
+		//every schema write uses a new and higher transaction ID
+		return Math.max(txContext.getSchemaTxId(), txContext.getSchemaIndexTxId());
+	}
+
 	@Override
 	public long getStats(STATS stats) {
 		switch (stats) {
@@ -683,6 +1253,28 @@ public class DiskAccessOneFile implements DiskAccess {
 			return file.statsGetReadCountUnique();
 		case IO_PAGE_WRITE_CNT:
 			return file.statsGetWriteCount();
+		case IO_READER_POOL_SIZE:
+			return sm.getFile().getIndexChannel().getInputChannelPool().statsGetSize();
+		case IO_READER_POOL_IN_USE:
+			return sm.getFile().getIndexChannel().getInputChannelPool().statsGetInUse();
+		case IO_READER_POOL_PEAK:
+			return sm.getFile().getIndexChannel().getInputChannelPool().statsGetPeakInUse();
+		case IO_READER_POOL_WAIT_CNT:
+			return sm.getFile().getIndexChannel().getInputChannelPool().statsGetWaitCount();
+		case IO_READER_POOL_WAIT_NS:
+			return sm.getFile().getIndexChannel().getInputChannelPool().statsGetWaitTimeNs();
+		case IO_INDEX_PAGE_RESIDENT_CNT:
+			return sm.getFile().getIndexPageResidency().statsGetResidentCount();
+		case IO_INDEX_PAGE_EVICTED_CNT:
+			return sm.getFile().getIndexPageResidency().statsGetEvictedCount();
+		case IO_PAGE_PREFETCH_CNT: {
+			PagePrefetcher pp = file.getPagePrefetcher();
+			return pp == null ? 0 : pp.statsGetReadCount();
+		}
+		case IO_PAGE_PREFETCH_HIT_CNT: {
+			PagePrefetcher pp = file.getPagePrefetcher();
+			return pp == null ? 0 : pp.statsGetHitCount();
+		}
 		case DB_PAGE_CNT:
 			return file.statsGetPageCount();
 		case DB_PAGE_CNT_IDX_FSM:
@@ -715,6 +1307,18 @@ public class DiskAccessOneFile implements DiskAccess {
 			return sm.getTxManager().statsGetBufferedTxCount();
 		case TX_MGR_BUFFERED_OID_CNT:
 			return sm.getTxManager().statsGetBufferedOidCount();
+		case DB_SCRUB_PAGE_CNT: {
+			PageScrubber scrubber = sm.getScrubber();
+			return scrubber == null ? 0 : scrubber.statsGetPageCount();
+		}
+		case DB_SCRUB_RUN_CNT: {
+			PageScrubber scrubber = sm.getScrubber();
+			return scrubber == null ? 0 : scrubber.statsGetRunCount();
+		}
+		case DB_SCRUB_ERROR_CNT: {
+			PageScrubber scrubber = sm.getScrubber();
+			return scrubber == null ? 0 : scrubber.statsGetErrorCount();
+		}
 		default:
 			throw new IllegalArgumentException("Unknown stat:" + stats);
 		}
@@ -722,166 +1326,20 @@ public class DiskAccessOneFile implements DiskAccess {
 
     @Override
     public String checkDb() {
-        final byte ROOT = 1;
-        final byte IDX_FSM = 2;
-        final byte IDX_OID = 3;
-        final byte IDX_POS = 4;
-        final byte IDX_ATTR = 5;
-        final byte IDX_SCH = 6;
-        final byte DATA = 7;
-        final byte FREE = 8;
-        
-        int nObjects = 0;
-        int nObjectsByPos = 0;
-        int nPosEntries = 0;
-        int nPagesFree = 0;
-        int nPagesRoot = 0;
-        int nPagesData = 0;
-        
-        int nPages = freeIndex.getPageCount(); 
-        
-        byte[] pages = new byte[nPages];
-        pages[0] = ROOT;
-        pages[1] = ROOT;
-        pages[2] = ROOT;
-        
-        //count objects
-        Iterator<FilePos> oi = oidIndex.iterator();
-        while (oi.hasNext()) {
-            FilePos fp = oi.next();
-            pages[fp.getPage()] = DATA;
-            nObjects++;
-        }
-        
-        Collection<SchemaIndexEntry> sList = schemaIndex.getSchemata();
-        int nPosIndexPages = 0;
-        for (SchemaIndexEntry se: sList) {
-        	for (int v = 0; v < se.getObjectIndexVersionCount(); v++) {
-        		PagedPosIndex ppi = se.getObjectIndexVersion(v);
-        		LongLongIterator<LongLongIndex.LLEntry> it = ppi.iteratorPositions();
-        		while (it.hasNext()) {
-        			LongLongIndex.LLEntry lle = it.next();
-        			nPosEntries++;
-        			long pos = lle.getKey();
-        			pages[BitTools.getPage(pos)] = DATA;
-        			if (lle.getValue() == 0) {
-        				nObjectsByPos++;
-        			}
-        		}
-        		it.close();
-        	}
-            //pages used by pos-index
-            for (int v = 0; v < se.getObjectIndexVersionCount(); v++) {
-                List<Integer> pageList = se.getObjectIndexVersion(v).debugPageIds();
-                nPosIndexPages += pageList.size();
-                for (Integer i: pageList) {
-                    if (pages[i] != 0) {
-                        System.err.println("Page is double-assigned: " + i);
-                    }
-                    pages[i] = IDX_POS;
-                }
-            }
-        }
+        return checkDb(1, 0, null);
+    }
 
-        //pages used by attr-index
-        List<Integer> pageList = schemaIndex.debugPageIdsAttrIdx();
-        int nAttrIndexPages = pageList.size();
-        for (Integer i: pageList) {
-            if (pages[i] != 0) {
-                System.err.println("Page is double-assigned: " + i);
-            }
-            pages[i] = IDX_ATTR;
-        }
-        
-        //index pages
-        pageList = oidIndex.debugPageIds();
-        int nOidPages = pageList.size();
-        for (Integer i: pageList) {
-            if (pages[i] != 0) {
-                System.err.println("Page is double-assigned: " + i);
-            }
-            pages[i] = IDX_OID;
-        }
-        
-        pageList = freeIndex.debugPageIds();
-        int nFsmPages = pageList.size();
-        for (Integer i: pageList) {
-            if (pages[i] != 0) {
-                System.err.println("Page is double-assigned: " + i);
-            }
-            pages[i] = IDX_FSM;
-        }
-        
-
-        //free pages
-        Iterator<LongLongIndex.LLEntry> fiIter = freeIndex.debugIterator();
-        int nPagesFreeDoNotUse = 0;
-        while (fiIter.hasNext()) {
-            LongLongIndex.LLEntry e = fiIter.next();
-            if (pages[(int) e.getKey()] != 0) {
-            	if (e.getValue() == 0) {
-            		System.err.println("Page is free and assigned at the same time: " + e.getKey());
-            	} else {
-            		nPagesFreeDoNotUse++;
-            	}
-            }
-            pages[(int) e.getKey()] = FREE;
-            nPagesFree++;
-        }
-        
-        //SchemaIndex
-        int nSchemaIndexPages = 0;
-        for (int pageId: schemaIndex.debugGetPages()) {
-        	if (pages[pageId] != 0) {
-        		System.err.println("Pages is already assigned: page[" + pageId + "] = " + pages[pageId]);
-        	}
-        	pages[pageId] = IDX_SCH;
-        	nSchemaIndexPages++;
-        }
-        
-
-        int nPagesFree2 = 0;
-        int nPagesUnknown = 0;
-        int nIndexPages = 0;
-        int nnn=0;
-        for (byte b: pages) {
-            switch (b) {
-            case ROOT: nPagesRoot++; break;
-            case DATA: nPagesData++; break;
-            case FREE: nPagesFree2++; break;
-            case IDX_FSM: 
-            case IDX_ATTR:
-            case IDX_OID:
-            case IDX_POS:
-            case IDX_SCH: nIndexPages++; break;
-            default: nPagesUnknown++; System.out.print("up=" + nnn + "; ");
-            }
-            nnn++;
-        }
-        
-        FormattedStringBuilder sb = new FormattedStringBuilder();
-        sb.appendln("Objects:                " + nObjects + " / " + nObjectsByPos);
-        if (nObjects != nObjectsByPos) {
-            sb.appendln("ERROR Object count mismatch for OID index and POS index!");
-        }
-        sb.appendln("Schemata:               " + sList.size());
-        sb.appendln("Pos entries:            " + nPosEntries);
-        sb.appendln();
-        sb.appendln("OID index pages:        " + nOidPages);
-        sb.appendln("FSM index pages:        " + nFsmPages);
-        sb.appendln("(FSM-do-not-use pages): " + nPagesFreeDoNotUse);
-        sb.appendln("POS index pages:        " + nPosIndexPages);
-        sb.appendln("ATTR index pages:       " + nAttrIndexPages);
-        sb.appendln("SCH index pages:        " + nSchemaIndexPages);
-        sb.appendln("Total index pages:      " + nIndexPages);
-        sb.appendln();
-        sb.appendln("Free pages:             " + nPagesFree + " / " + nPagesFree2);
-        sb.appendln("Data pages:             " + nPagesData);
-        sb.appendln("Root pages:             " + nPagesRoot);
-        sb.appendln("Index pages:            " + nIndexPages);
-        sb.appendln("Unknown pages:          " + nPagesUnknown);
-        sb.appendln("Total pages:            " + nPages);
-        
-        return sb.toString();
+    @Override
+    public String checkDb(int nThreads, long minTxId, DbChecker.ProgressListener listener) {
+		LOGGER.info(LOCKING_MARKER, "DAOF.checkDb() RLOCK");
+		sm.readLock(this);
+		try {
+			DbChecker checker = new DbChecker(file, freeIndex, oidIndex, schemaIndex, 
+					sm.getCurrentRootPage().getTxID(), minTxId);
+			return checker.check(nThreads, listener);
+		} finally {
+			LOGGER.info(LOCKING_MARKER, "DAOF.checkDb() release lock");
+			sm.release(this);
+		}
     }
 }
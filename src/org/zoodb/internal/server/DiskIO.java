@@ -19,9 +19,21 @@ public interface DiskIO {
 
 	int DB_FILE_TYPE_ID = 13031975;
 	int DB_FILE_VERSION_MAJ = 1;
-	int DB_FILE_VERSION_MIN = 5;
+	int DB_FILE_VERSION_MIN = 6;
+	/** Oldest minor version that can still be read, it has no flags in the file header. */
+	int DB_FILE_VERSION_MIN_COMPATIBLE = 5;
 
 	short PAGE_FORMAT_VERSION = 1;
+	/** Page format of databases with {@link #DB_FLAG_PAGE_CHECKSUMS}. */
+	short PAGE_FORMAT_VERSION_CHECKSUM = 2;
+	
+	/** Flag in the file header: all pages with page header carry a checksum. */
+	int DB_FLAG_PAGE_CHECKSUMS = 1;
+	/** 
+	 * Flag in the file header: the file may contain delta records, see 
+	 * {@link ObjectWriter#DELTA_RECORD_MARK}. Files without this flag only get full records.
+	 */
+	int DB_FLAG_DELTA_RECORDS = 2;
 	
 	enum PAGE_TYPE {
 		DB_HEADER(1, false), //not used
@@ -67,7 +79,9 @@ public interface DiskIO {
 	int S_LONG = 8;
 	int S_SHORT = 2;
 	
-	int PAGE_HEADER_SIZE = 12; //type, dummy, tx-id
-	int PAGE_HEADER_SIZE_DATA = PAGE_HEADER_SIZE + 8; //class-oid
+	int PAGE_HEADER_SIZE = 12; //type, dummy, version, tx-id
+	int PAGE_HEADER_SIZE_CHECKSUM = PAGE_HEADER_SIZE + 4; //checksum
+	int PAGE_HEADER_CHECKSUM_POS = PAGE_HEADER_SIZE;
+	int PAGE_HEADER_SIZE_DATA = 8; //class-oid, in addition to the page header
 
 }
@@ -28,6 +28,7 @@ public class FileHeader {
 	private int versionMajor;
 	private int pageSize;
 	private final int[] rootPages = new int[2];
+	private int flags;
 	private final ArrayList<String> error = new ArrayList<>();
 	
 	public static FileHeader read(StorageChannelInput in) {
@@ -45,7 +46,7 @@ public class FileHeader {
 		            "; Software version: " + 
 		            DiskIO.DB_FILE_VERSION_MAJ + "." + DiskIO.DB_FILE_VERSION_MIN);
 		}
-		if (min != DiskIO.DB_FILE_VERSION_MIN) { 
+		if (min < DiskIO.DB_FILE_VERSION_MIN_COMPATIBLE || min > DiskIO.DB_FILE_VERSION_MIN) { 
 			header.error.add("Illegal minor file version: " + maj + "." + min +
 					"; Software version: " + 
 					DiskIO.DB_FILE_VERSION_MAJ + "." + DiskIO.DB_FILE_VERSION_MIN);
@@ -61,6 +62,9 @@ public class FileHeader {
 		//main directory
 		header.rootPages[0] = in.readInt();
 		header.rootPages[1] = in.readInt();
+		if (min > DiskIO.DB_FILE_VERSION_MIN_COMPATIBLE) {
+			header.flags = in.readInt();
+		}
 		
 		header.fileID = fid;
 		header.versionMinor = min;
@@ -89,6 +93,20 @@ public class FileHeader {
 		return rootPages;
 	}
 
+	/**
+	 * @return Whether pages carry a checksum that is verified when a page is read
+	 */
+	public boolean hasPageChecksums() {
+		return (flags & DiskIO.DB_FLAG_PAGE_CHECKSUMS) != 0;
+	}
+
+	/**
+	 * @return Whether objects may be written as delta record
+	 */
+	public boolean hasDeltaRecords() {
+		return (flags & DiskIO.DB_FLAG_DELTA_RECORDS) != 0;
+	}
+
 	public boolean successfulRead() {
 	    return error.isEmpty();
 	}
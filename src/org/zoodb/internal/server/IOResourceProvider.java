@@ -17,6 +17,8 @@ package org.zoodb.internal.server;
 
 import java.util.function.ToIntFunction;
 
+import org.zoodb.internal.server.index.PageResidencyManager;
+
 public interface IOResourceProvider {
 
 	void reportFreePage(int pageId);
@@ -25,16 +27,32 @@ public interface IOResourceProvider {
 
 	int getPageSize();
 
+	/**
+	 * @return The size of the header of every page, except the file header
+	 */
+	int getPageHeaderSize();
+
 	/**
 	 * This method is thread safe.
-	 * @return a temporary input channel (with autopaging enabled)
+	 * If all channels of the pool are in use, this method waits until one is returned.
+	 * @return a temporary input channel (without autopaging)
 	 */
 	StorageChannelInput getInputChannel();
 
 	void returnInputChannel(StorageChannelInput in);
 
+	/**
+	 * @return The pool of the temporary input channels, see {@link #getInputChannel()}
+	 */
+	StorageReaderPool getInputChannelPool();
+
 	void flush();
 
+	/**
+	 * Write all buffered pages, but do not force them to disk.
+	 */
+	void flushNoForce();
+
 	int writeIndex(ToIntFunction<StorageChannelOutput> writer);
 	
 	void startWriting(long txId);
@@ -48,7 +66,7 @@ public interface IOResourceProvider {
 	int statsGetPageCount();
 
 	/**
-	 * Create a managed input channel. This method is NOT thread safe.
+	 * Create a managed input channel. This method is thread safe.
 	 * @param autoPaging Whether a new page should be allocated when the end of 
 	 * the page is reached.
 	 * @return a new input channel
@@ -64,11 +82,36 @@ public interface IOResourceProvider {
 	StorageChannelOutput createWriter(boolean autoPaging);
 
 	/**
-	 * Drop an input channel. This method is slow and NOT thread safe.
+	 * Drop an input channel. This method is slow, but thread safe.
 	 * @param in the input channel
 	 */
 	void dropReader(StorageChannelInput in);
 	
+	/**
+	 * Drop an output channel. This method is slow and NOT thread safe.
+	 * @param out the output channel
+	 */
+	void dropWriter(StorageChannelOutput out);
+	
+	/**
+	 * Discard the buffered pages of all input channels. This is required before reading
+	 * from a newer snapshot, because pages may have been reused in the meantime.
+	 */
+	void resetReaders();
+
+	/**
+	 * @return The manager that limits the number of index pages in memory. It is shared by
+	 * all channels of the database.
+	 */
+	PageResidencyManager getIndexPageResidency();
+
+	/**
+	 * @return The background reader for pages that will be read soon, or {@code null} if
+	 * the storage does not support reading ahead. It is shared by all channels of the 
+	 * database.
+	 */
+	PagePrefetcher getPagePrefetcher();
+	
 	void close();
 
 	boolean debugIsPageIdInFreeList(int pageId);
@@ -15,16 +15,30 @@
  */
 package org.zoodb.internal.server;
 
+import java.nio.ByteBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.zoodb.internal.GenericObjectReader;
 import org.zoodb.internal.SerialInput;
+import org.zoodb.internal.SerializerTools;
+import org.zoodb.internal.ZooClassDef;
+import org.zoodb.internal.ZooFieldDef;
 import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.index.BitTools;
 import org.zoodb.internal.util.PrimLongSetZ;
 import org.zoodb.tools.DBStatistics;
 
 /**
  * This class serves as a mediator between the serializer and the file access class.
+ * <p>
+ * The reader can record the image of an object while it is read from disk, see 
+ * {@link #startRecording()}. Such an image can later be replayed with 
+ * {@link #setImage(byte[])} instead of reading the object from disk again.
+ * <p>
+ * Objects that are stored as delta record (see {@link ObjectWriter#DELTA_RECORD_MARK}) are
+ * read from two locations: The fixed-size fields are read from the delta record, the 
+ * variable-size fields from the base record, see {@link #startReadingVariableFields(ZooClassDef)}.
  * 
  * @author Tilmann Zaeschke
  */
@@ -33,78 +47,223 @@ public class ObjectReader implements SerialInput {
 	public static final Logger LOGGER = LoggerFactory.getLogger(ObjectReader.class);
 
 	private final SerialInput in;
+	//the current source, this is either 'in' or a replayed image 
+	private SerialInput src;
+	private byte[] image;
+	private boolean isRecordingRequested = false;
+	private ImageRecorder recorder;
+	//position of the base record if the current object is read from a delta record
+	private long basePos = -1;
 	
 	public ObjectReader(IOResourceProvider file) {
 		this.in = file.createReader(true);
+		this.src = in;
 	}
 
 	public ObjectReader(SerialInput in) {
 		this.in = in;
+		this.src = in;
 	}
 
     @Override
     public int readInt() {
-        return in.readInt();
+        int v = src.readInt();
+        if (recorder != null) {
+        	recorder.putInt(v);
+        }
+        return v;
     }
 
     @Override
     public long readLong() {
-        return in.readLong();
+        long v = src.readLong();
+        if (recorder != null) {
+        	recorder.putLong(v);
+        }
+        return v;
     }
 
     @Override
     public boolean readBoolean() {
-        return in.readBoolean();
+        boolean v = src.readBoolean();
+        if (recorder != null) {
+        	recorder.put(v ? (byte)1 : (byte)0);
+        }
+        return v;
     }
 
     @Override
     public byte readByte() {
-        return in.readByte();
+        byte v = src.readByte();
+        if (recorder != null) {
+        	recorder.put(v);
+        }
+        return v;
     }
 
     @Override
     public char readChar() {
-        return in.readChar();
+        char v = src.readChar();
+        if (recorder != null) {
+        	recorder.putChar(v);
+        }
+        return v;
     }
 
     @Override
     public double readDouble() {
-        return in.readDouble();
+        double v = src.readDouble();
+        if (recorder != null) {
+        	recorder.putDouble(v);
+        }
+        return v;
     }
 
     @Override
     public float readFloat() {
-        return in.readFloat();
+        float v = src.readFloat();
+        if (recorder != null) {
+        	recorder.putFloat(v);
+        }
+        return v;
     }
 
     @Override
     public short readShort() {
-        return in.readShort();
+        short v = src.readShort();
+        if (recorder != null) {
+        	recorder.putShort(v);
+        }
+        return v;
     }
 
     @Override
     public void readFully(byte[] array) {
-    	in.readFully(array);
+    	src.readFully(array);
+        if (recorder != null) {
+        	recorder.put(array);
+        }
     }
 
     @Override
     public String readString() {
-        return in.readString();
+        String v = src.readString();
+        if (recorder != null) {
+        	recorder.putString(v);
+        }
+        return v;
     }
 
     @Override
     public void skipRead(int nBytes) {
-    	in.skipRead(nBytes);
+    	src.skipRead(nBytes);
+        if (recorder != null) {
+        	recorder.put(new byte[nBytes]);
+        }
     }
 
+    /**
+     * Start reading an object. If an image was set with {@link #setImage(byte[])}, the
+     * object is read from the image and page and offset are ignored.
+     * @param page page id
+     * @param offs offset in page
+     * @return The OID of the schema of the object
+     */
     public long startReading(int page, int offs) {
+    	recorder = null;
+    	basePos = -1;
+    	if (image != null) {
+    		src = new GenericObjectReader(ByteBuffer.wrap(image));
+    		image = null;
+    		isRecordingRequested = false;
+    		return src.getHeaderClassOID();
+    	}
+    	src = in;
     	//TODO Hmm this is dirty...
         ((StorageChannelInput)in).seekPage(PAGE_TYPE.DATA, page, offs);
         if (DBStatistics.isEnabled()) {
         	statNRead++;
         	statNReadUnique.add(page);
         }
-        return in.getHeaderClassOID();
+        long clsOid = in.getHeaderClassOID();
+        if (isRecordingRequested) {
+        	isRecordingRequested = false;
+        	recorder = new ImageRecorder(clsOid, in.getHeaderTimestamp());
+        }
+        if (in.readLong() == ObjectWriter.DELTA_RECORD_MARK) {
+        	basePos = in.readLong();
+        } else {
+        	//not a delta record, go back to the OID
+        	((StorageChannelInput)in).seekPage(PAGE_TYPE.DATA, page, offs);
+        }
+        return clsOid;
+    }
+    
+    /**
+     * This has to be called after reading the fixed-size fields. If the object is read from a
+     * delta record, the reader is moved to the variable-size fields of the base record.
+     * Skipping the fixed-size fields of the base record is not recorded. 
+     * @param def The schema of the object
+     */
+    public void startReadingVariableFields(ZooClassDef def) {
+    	if (basePos < 0) {
+    		return;
+    	}
+        ((StorageChannelInput)in).seekPosAP(PAGE_TYPE.DATA, basePos);
+        if (DBStatistics.isEnabled()) {
+        	statNRead++;
+        	statNReadUnique.add(BitTools.getPage(basePos));
+        }
+        basePos = -1;
+        //skip OID
+        in.readLong();
+        for (ZooFieldDef fd: def.getAllFields()) {
+        	if (fd.isPrimitiveType()) {
+        		in.skipRead(fd.getLength());
+        	} else if (fd.isFixedSize()) {
+        		//This mirrors DataDeSerializer.deserializeObjectNoSco()
+        		byte id = in.readByte();
+        		if (id == SerializerTools.REF_NULL_ID) {
+        			in.skipRead(fd.getLength() - 1);
+        		} else if (id == SerializerTools.REF_PERS_ID) {
+        			//schema OID + OID
+        			in.skipRead(16);
+        		} else {
+        			//String magic number or Date 
+        			in.skipRead(8);
+        		}
+        	}
+        }
+    }
+    
+    /**
+     * The next object is read from the given image instead of the disk. 
+     * @param image An image that was recorded with {@link #startRecording()}
+     */
+    public void setImage(byte[] image) {
+    	this.image = image;
+    }
+    
+    /**
+     * Record the image of the next object that is read from disk. 
+     * @see #stopRecording()
+     */
+    public void startRecording() {
+    	isRecordingRequested = true;
+    }
+    
+    /**
+     * @return The image of the object that was read since {@link #startRecording()}, or 
+     * {@code null} if no object was recorded.
+     */
+    public byte[] stopRecording() {
+    	isRecordingRequested = false;
+    	if (recorder == null) {
+    		return null;
+    	}
+    	byte[] ret = recorder.toArray();
+    	recorder = null;
+    	return ret;
     }
     
 	private static final PrimLongSetZ statNReadUnique = new PrimLongSetZ();
@@ -126,12 +285,93 @@ public class ObjectReader implements SerialInput {
 
 	@Override
 	public long getHeaderClassOID() {
-		return in.getHeaderClassOID();
+		return src.getHeaderClassOID();
 	}
 
 	@Override
 	public long getHeaderTimestamp() {
-		return in.getHeaderTimestamp();
+		return src.getHeaderTimestamp();
+	}
+
+	/**
+	 * Writes an object image in the format of the {@link GenericObjectReader}.
+	 */
+	private static final class ImageRecorder {
+		
+		private ByteBuffer buf = ByteBuffer.allocate(256);
+		
+		ImageRecorder(long clsOid, long txTimestamp) {
+			buf.putLong(clsOid);
+			buf.putLong(txTimestamp);
+		}
+		
+		private void ensureCapacity(int n) {
+			if (buf.remaining() < n) {
+				ByteBuffer b2 = ByteBuffer.allocate(Math.max(buf.capacity() * 2, 
+						buf.position() + n));
+				buf.flip();
+				b2.put(buf);
+				buf = b2;
+			}
+		}
+		
+		void put(byte b) {
+			ensureCapacity(1);
+			buf.put(b);
+		}
+		
+		void put(byte[] ba) {
+			ensureCapacity(ba.length);
+			buf.put(ba);
+		}
+		
+		void putChar(char c) {
+			ensureCapacity(2);
+			buf.putChar(c);
+		}
+		
+		void putShort(short s) {
+			ensureCapacity(2);
+			buf.putShort(s);
+		}
+		
+		void putInt(int i) {
+			ensureCapacity(4);
+			buf.putInt(i);
+		}
+		
+		void putLong(long l) {
+			ensureCapacity(8);
+			buf.putLong(l);
+		}
+		
+		void putFloat(float f) {
+			ensureCapacity(4);
+			buf.putFloat(f);
+		}
+		
+		void putDouble(double d) {
+			ensureCapacity(8);
+			buf.putDouble(d);
+		}
+		
+		void putString(String s) {
+			ensureCapacity(5 + 2 * s.length());
+			buf.putInt(s.length());
+			//Align for 2-byte writing
+			if ((buf.position() & 0x00000001) == 1) {
+				buf.put((byte) 0);
+			}
+			for (int i = 0; i < s.length(); i++) {
+				buf.putChar(s.charAt(i));
+			}
+		}
+		
+		byte[] toArray() {
+			byte[] ret = new byte[buf.position()];
+			System.arraycopy(buf.array(), 0, ret, 0, ret.length);
+			return ret;
+		}
 	}
 
 	
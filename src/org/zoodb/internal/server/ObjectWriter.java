@@ -28,10 +28,33 @@ import org.zoodb.internal.SerialOutput;
  */
 public interface ObjectWriter extends SerialOutput {
 
+	/**
+	 * First long of a delta record. A delta record contains only the fixed-size fields of an
+	 * object, the variable-size fields are read from the base record, which is the last full
+	 * record of the object. The layout is:
+	 * DELTA_RECORD_MARK, position of the base record, OID, fixed-size fields.
+	 * The mark cannot be confused with an OID, because OIDs are always positive.
+	 */
+	long DELTA_RECORD_MARK = Long.MIN_VALUE;
+	
 	void startObject(long oid, int prevSchemaVersion);
 
 	void finishObject();
 
+	/**
+	 * Start writing a delta record for an object that has been written before. After this
+	 * call the caller has to write the OID and the fixed-size fields of the object, followed
+	 * by {@link #finishDelta()}.
+	 * @param oid The OID of the object
+	 * @param maxSize The maximum size of the OID and fixed-size fields
+	 * @return {@code false} if no delta record can be written, for example because there is
+	 * no previous record with the current schema version. In this case nothing is written
+	 * and the object has to be written with {@link #startObject(long, int)}.
+	 */
+	boolean startDelta(long oid, int maxSize);
+
+	void finishDelta();
+
 	void flush();
 	
 	/**
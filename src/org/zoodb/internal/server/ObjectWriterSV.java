@@ -45,10 +45,24 @@ public class ObjectWriterSV implements ObjectWriter, CallbackPageWrite {
 	private int currentPage = -1;
 	private long currentOffs = -1;
 	private final long headerForWrite;
+	private final int maxPos;
+	private final int maxDeltaSize;
 	
+	/**
+	 * @param file The file
+	 * @param oidIndex The OID index
+	 * @param def The class of the objects
+	 * @param schemaIndex The schema index
+	 * @param hasDeltaRecords Whether the file header allows delta records, see 
+	 * {@link FileHeader#hasDeltaRecords()}. Otherwise all objects are written as full record.
+	 */
 	public ObjectWriterSV(IOResourceProvider file, PagedOidIndex oidIndex,
-            ZooClassDef def, SchemaIndex schemaIndex) {
+            ZooClassDef def, SchemaIndex schemaIndex, boolean hasDeltaRecords) {
         this.out = file.createWriter(true);
+        //The last 4 bytes of a page are used for the ID of the following page
+        this.maxPos = file.getPageSize() - 4;
+        this.maxDeltaSize = hasDeltaRecords ? 
+        		maxPos - file.getPageHeaderSize() - DiskIO.PAGE_HEADER_SIZE_DATA : -1;
         this.oidIndex = oidIndex;
         out.setOverflowCallbackWrite(this);
         this.def = def;
@@ -56,14 +70,18 @@ public class ObjectWriterSV implements ObjectWriter, CallbackPageWrite {
         this.schemaIndex = schemaIndex;
     }
 
-    @Override
-	public void startObject(long oid, int prevSchemaVersion) {
+    private void initPosIndex() {
         if (posIndex == null) {
             if (schemaIndexEntry == null) {
                 schemaIndexEntry = schemaIndex.getSchema(def); 
             }
             posIndex = schemaIndexEntry.getObjectIndexLatestSchemaVersion();
         }
+    }
+
+    @Override
+	public void startObject(long oid, int prevSchemaVersion) {
+        initPosIndex();
         PagedPosIndex prevIndex = schemaIndexEntry.getObjectIndexVersion(prevSchemaVersion);
 		currentPage = out.getPage();
 		currentOffs = out.getOffset();
@@ -71,21 +89,13 @@ public class ObjectWriterSV implements ObjectWriter, CallbackPageWrite {
         //first remove possible previous position
         final LongLongIndex.LLEntry objPos = oidIndex.findOidGetLong(oid);
         if (objPos != null) {
-	        long pos = objPos.getValue(); //long with 32=page + 32=offs
-	        //prevPos.getValue() returns > 0, so the loop is performed at least once.
-	        do {
-	            //remove and report to FSM if applicable
-                //TODO
-                //In cache, use separate list for evolved objects to be written (Map<PC/OID, OriginalClassDef)
-                //Do not put those objects in dirty-list
-                //When checking for dirty (external) return whether contained in dirty-list.
-                //When...???
-	        	
-	            long nextPos = prevIndex.removePosLongAndCheck(pos);
-	            //all secondary pages are marked.
-	            nextPos |= PagedPosIndex.MARK_SECONDARY;
-	            pos = nextPos;
-	        } while (pos != PagedPosIndex.MARK_SECONDARY);
+	        //remove and report to FSM if applicable
+            //TODO
+            //In cache, use separate list for evolved objects to be written (Map<PC/OID, OriginalClassDef)
+            //Do not put those objects in dirty-list
+            //When checking for dirty (external) return whether contained in dirty-list.
+            //When...???
+	        prevIndex.removeObject(objPos.getValue()); //long with 32=page + 32=offs
         }
         //Update pos index
         oidIndex.insertLong(oid, currentPage, (int)currentOffs);
@@ -104,6 +114,40 @@ public class ObjectWriterSV implements ObjectWriter, CallbackPageWrite {
 	    posIndex.addPos(currentPage, currentOffs, 0);
 	}
 	
+	@Override
+	public boolean startDelta(long oid, int maxSize) {
+		//mark + base position + data
+		int len = 8 + 8 + maxSize;
+		if (len > maxDeltaSize) {
+			return false;
+		}
+        final LongLongIndex.LLEntry objPos = oidIndex.findOidGetLong(oid);
+        if (objPos == null) {
+        	return false;
+        }
+        initPosIndex();
+        //The previous record must have the latest schema version
+        long basePos = posIndex.prepareDelta(objPos.getValue());
+        if (basePos < 0) {
+        	return false;
+        }
+        //delta records are never split
+        if (out.getOffset() + len > maxPos) {
+        	newPage();
+        }
+		currentPage = out.getPage();
+		currentOffs = out.getOffset();
+        oidIndex.insertLong(oid, currentPage, (int)currentOffs);
+        out.writeLong(DELTA_RECORD_MARK);
+        out.writeLong(basePos);
+		return true;
+	}
+	
+	@Override
+	public void finishDelta() {
+		posIndex.addDelta(currentPage, currentOffs);
+	}
+	
 	/**
 	 * This can be necessary when subsequent objects are of a different class.
 	 */
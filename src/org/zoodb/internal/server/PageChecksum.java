@@ -0,0 +1,69 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Checksums of pages. The checksum is a CRC32 of the whole page, except for the checksum
+ * field in the page header, see {@link DiskIO#PAGE_HEADER_CHECKSUM_POS}.
+ * <p>
+ * Instances are not thread safe.
+ *
+ * @author Tilmann Zaeschke
+ */
+final class PageChecksum {
+
+	private static final int POS = DiskIO.PAGE_HEADER_CHECKSUM_POS;
+
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * @param buf A page buffer. Position and limit are not changed.
+	 * @return The checksum of the page
+	 */
+	int compute(ByteBuffer buf) {
+		int pos = buf.position();
+		int limit = buf.limit();
+		crc.reset();
+		buf.limit(POS);
+		buf.position(0);
+		crc.update(buf);
+		buf.limit(buf.capacity());
+		buf.position(POS + 4);
+		crc.update(buf);
+		buf.limit(limit);
+		buf.position(pos);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Compute the checksum and write it into the page header.
+	 * @param buf A page buffer. Position and limit are not changed.
+	 */
+	void write(ByteBuffer buf) {
+		buf.putInt(POS, compute(buf));
+	}
+
+	/**
+	 * @param buf A page buffer. Position and limit are not changed.
+	 * @return Whether the checksum in the page header is valid
+	 */
+	boolean verify(ByteBuffer buf) {
+		return buf.getInt(POS) == compute(buf);
+	}
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.zoodb.internal.server.SessionManager.Snapshot;
+import org.zoodb.internal.util.DBLogger;
+
+/**
+ * Client of a {@link PageServer}.
+ * <p>
+ * The client uses two connections. The lock connection is used only to wait for the commit
+ * lock, all other requests use the main connection. Written pages are not sent immediately,
+ * they are sent together with the next request that has a reply. Pages that follow a requested page are read ahead and kept in a
+ * small cache.
+ *
+ * @author Tilmann Zaeschke
+ */
+final class PageClient {
+
+	static final String URL_PREFIX = "zoodb://";
+
+	/** Number of pages that are requested when a page is not in the cache. */
+	private static final int READ_AHEAD = 8;
+	private static final int CACHE_SIZE = 256;
+
+	private final String url;
+	private final Connection main;
+	private final Connection lock;
+	private final int pageSize;
+
+	//The following fields are guarded by 'main'
+	private final LinkedHashMap<Long, byte[]> cache =
+			new LinkedHashMap<Long, byte[]>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	//The following fields are guarded by 'this'
+	private Snapshot latest;
+	private long oldestActiveTxId;
+	private long commitTxId = -1;
+
+	/**
+	 * The state of the database when the commit lock was granted.
+	 */
+	static final class CommitState {
+		/** Pages freed by this or later transactions may still be read by other clients. */
+		final long oldestReaderTxId;
+		final long schemaTxId;
+		final long schemaIndexTxId;
+		final Snapshot latest;
+
+		private CommitState(long oldestReaderTxId, long schemaTxId, long schemaIndexTxId,
+				Snapshot latest) {
+			this.oldestReaderTxId = oldestReaderTxId;
+			this.schemaTxId = schemaTxId;
+			this.schemaIndexTxId = schemaIndexTxId;
+			this.latest = latest;
+		}
+	}
+
+	/**
+	 * @param url The URL of the server, for example {@code zoodb://localhost:4242}
+	 */
+	PageClient(String url) {
+		this.url = url;
+		String address = url.substring(URL_PREFIX.length());
+		int slash = address.indexOf('/');
+		if (slash >= 0) {
+			//The path allows opening the same server with different SessionManagers
+			address = address.substring(0, slash);
+		}
+		int colon = address.lastIndexOf(':');
+		if (colon < 0) {
+			throw DBLogger.newUser("Port missing in database URL: " + url);
+		}
+		String host = address.substring(0, colon);
+		int port;
+		try {
+			port = Integer.parseInt(address.substring(colon + 1));
+		} catch (NumberFormatException e) {
+			throw DBLogger.newUser("Invalid port in database URL: " + url, e);
+		}
+		main = new Connection(host, port);
+		try {
+			lock = new Connection(host, port);
+		} catch (RuntimeException e) {
+			main.close();
+			throw e;
+		}
+		pageSize = main.hello();
+		lock.hello();
+	}
+
+	/**
+	 * @param dbPath A database name or path
+	 * @return Whether the database is accessed through a {@link PageServer}
+	 */
+	static boolean isRemote(String dbPath) {
+		return dbPath.startsWith(URL_PREFIX);
+	}
+
+	int getPageSize() {
+		return pageSize;
+	}
+
+	void readPage(ByteBuffer buf, long pageId) {
+		synchronized (main) {
+			byte[] page = cache.get(pageId);
+			if (page == null) {
+				try {
+					main.out.writeByte(PageServer.READ);
+					main.out.writeLong(pageId);
+					main.out.writeInt(READ_AHEAD);
+					DataInputStream in = main.request();
+					int n = in.readInt();
+					page = readPage(in);
+					for (int i = 1; i < n; i++) {
+						cache.put(pageId + i, readPage(in));
+					}
+				} catch (IOException e) {
+					throw main.fail(e);
+				}
+			}
+			buf.put(page);
+		}
+	}
+
+	private static byte[] readPage(DataInputStream in) throws IOException {
+		byte[] page = new byte[in.readInt()];
+		in.readFully(page);
+		return page;
+	}
+
+	void write(ByteBuffer buf, long pageId) {
+		synchronized (main) {
+			cache.remove(pageId);
+			try {
+				int len = buf.remaining();
+				main.out.writeByte(PageServer.WRITE);
+				main.out.writeLong(pageId);
+				main.out.writeInt(len);
+				if (buf.hasArray()) {
+					main.out.write(buf.array(), buf.arrayOffset() + buf.position(), len);
+					buf.position(buf.limit());
+				} else {
+					byte[] page = new byte[len];
+					buf.get(page);
+					main.out.write(page);
+				}
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+	}
+
+	void force() {
+		synchronized (main) {
+			try {
+				main.out.writeByte(PageServer.FORCE);
+				main.request();
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+	}
+
+	int getPageCount() {
+		synchronized (main) {
+			try {
+				main.out.writeByte(PageServer.SIZE);
+				return main.request().readInt();
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Start a new transaction. Pages that may be read by the transaction are not reused
+	 * by other clients before the transaction ends.
+	 * @return The ID of the new transaction
+	 */
+	long begin() {
+		synchronized (main) {
+			try {
+				main.out.writeByte(PageServer.BEGIN);
+				DataInputStream in = main.request();
+				long txId = in.readLong();
+				long oldest = in.readLong();
+				readSnapshot(in);
+				synchronized (this) {
+					oldestActiveTxId = oldest;
+				}
+				return txId;
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+	}
+
+	synchronized long getOldestActiveTxId() {
+		return oldestActiveTxId;
+	}
+
+	/**
+	 * @return The latest committed state that is known to this client
+	 */
+	synchronized Snapshot getLatestSnapshot() {
+		return latest;
+	}
+
+	/**
+	 * Check for conflicts with other transactions of all clients.
+	 * @param txId The transaction
+	 * @param updates The updated and deleted objects
+	 * @param isTrialRun Whether the updates should be recorded
+	 * @return A list of conflicting objects or {@code null} if there are no conflicts
+	 */
+	List<Long> checkForConflicts(long txId, ArrayList<TxObjInfo> updates,
+			boolean isTrialRun) {
+		synchronized (main) {
+			try {
+				DataOutputStream out = main.out;
+				out.writeByte(PageServer.CHECK);
+				out.writeLong(txId);
+				out.writeBoolean(isTrialRun);
+				out.writeInt(updates.size());
+				for (TxObjInfo info: updates) {
+					out.writeLong(info.getOid());
+					out.writeLong(info.getTS());
+					out.writeBoolean(info.isDeleted());
+				}
+				DataInputStream in = main.request();
+				int n = in.readInt();
+				if (n == 0) {
+					return null;
+				}
+				ArrayList<Long> conflicts = new ArrayList<>(n);
+				for (int i = 0; i < n; i++) {
+					conflicts.add(in.readLong());
+				}
+				return conflicts;
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the commit lock of the server. The lock is released by
+	 * {@link #endTx(long, long, long)}.
+	 * @param txId The committing transaction
+	 * @return The state of the database
+	 */
+	CommitState beginCommit(long txId) {
+		synchronized (this) {
+			commitTxId = txId;
+		}
+		synchronized (lock) {
+			try {
+				lock.out.writeByte(PageServer.BEGIN_COMMIT);
+				lock.out.writeLong(txId);
+				DataInputStream in = lock.request();
+				long oldest = in.readLong();
+				long schemaTxId = in.readLong();
+				long schemaIndexTxId = in.readLong();
+				Snapshot s = readSnapshot(in);
+				return new CommitState(oldest, schemaTxId, schemaIndexTxId, s);
+			} catch (IOException e) {
+				throw lock.fail(e);
+			}
+		}
+	}
+
+	/**
+	 * End a transaction and release the commit lock, if it is held by the transaction.
+	 * In that case we wait until the server has loaded the new state, so other clients can
+	 * see the commit as soon as this method returns. 
+	 * @param txId The transaction
+	 * @param schemaTxId See {@link org.zoodb.internal.server.index.SchemaIndex#getTxIdOfLastWrite()}
+	 * @param schemaIndexTxId See
+	 * {@link org.zoodb.internal.server.index.SchemaIndex#getTxIdOfLastWriteThatRequiresRefresh()}
+	 */
+	void endTx(long txId, long schemaTxId, long schemaIndexTxId) {
+		boolean isCommit;
+		synchronized (this) {
+			isCommit = txId == commitTxId;
+			if (isCommit) {
+				commitTxId = -1;
+			}
+		}
+		synchronized (main) {
+			try {
+				main.out.writeByte(PageServer.END_TX);
+				main.out.writeBoolean(isCommit);
+				main.out.writeLong(txId);
+				main.out.writeLong(schemaTxId);
+				main.out.writeLong(schemaIndexTxId);
+				if (isCommit) {
+					main.request();
+					return;
+				}
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+			//The transaction may prevent other clients from reusing pages
+			main.flush();
+		}
+	}
+
+	/**
+	 * @param n The number of OIDs
+	 * @return New OIDs, they are unique for all clients
+	 */
+	long[] allocateOids(int n) {
+		long first;
+		synchronized (main) {
+			try {
+				main.out.writeByte(PageServer.ALLOCATE_OIDS);
+				main.out.writeInt(n);
+				first = main.request().readLong();
+			} catch (IOException e) {
+				throw main.fail(e);
+			}
+		}
+		long[] oids = new long[n];
+		for (int i = 0; i < n; i++) {
+			oids[i] = first + i;
+		}
+		return oids;
+	}
+
+	/**
+	 * Read a committed state. If it is newer than the latest known state, cached pages
+	 * may be outdated.
+	 */
+	private Snapshot readSnapshot(DataInputStream in) throws IOException {
+		Snapshot s = new Snapshot(in.readLong(), in.readInt(), in.readInt(), in.readLong());
+		synchronized (this) {
+			if (latest != null && s.commitCount <= latest.commitCount) {
+				return s;
+			}
+			latest = s;
+		}
+		synchronized (main) {
+			cache.clear();
+		}
+		return s;
+	}
+
+	void close() {
+		main.close();
+		lock.close();
+	}
+
+	private final class Connection {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		Connection(String host, int port) {
+			try {
+				socket = new Socket(host, port);
+				socket.setTcpNoDelay(true);
+				in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			} catch (IOException e) {
+				throw DBLogger.newFatalDataStore("Cannot connect to database server: " + url, e);
+			}
+		}
+
+		int hello() {
+			synchronized (this) {
+				try {
+					out.writeByte(PageServer.HELLO);
+					out.writeInt(PageServer.VERSION);
+					return request().readInt();
+				} catch (IOException e) {
+					throw fail(e);
+				}
+			}
+		}
+
+		/**
+		 * Send all buffered requests and wait for the reply of the last request.
+		 * @return The stream with the reply
+		 */
+		DataInputStream request() throws IOException {
+			out.flush();
+			byte status = in.readByte();
+			if (status != PageServer.OK) {
+				throw DBLogger.newFatal("Server error: " + in.readUTF());
+			}
+			return in;
+		}
+
+		void flush() {
+			synchronized (this) {
+				try {
+					out.flush();
+				} catch (IOException e) {
+					throw fail(e);
+				}
+			}
+		}
+
+		RuntimeException fail(IOException e) {
+			return DBLogger.newFatalDataStore("Connection to database server failed: " + url, e);
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				DBLogger.LOGGER.warn("Error while closing connection: {}", e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.zoodb.internal.util.DBLogger;
+
+/**
+ * Background thread that reads pages ahead of time, for example for extent iterators,
+ * see {@link org.zoodb.api.ZooConstants#PROPERTY_EXTENT_READ_AHEAD}.
+ * <p>
+ * Requested pages are read in the order of the requests and kept in memory until they are
+ * read by {@link StorageRoot#readPage(ByteBuffer, long)}, which then only copies the page.
+ * The number of pages in memory is limited, if they are not read then the oldest pages are
+ * dropped. A page that is written is dropped as well, a read that started before the write
+ * is discarded.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PagePrefetcher implements Runnable {
+
+	/**
+	 * Reads a page from the storage.
+	 */
+	interface PageReader {
+		void readPage(ByteBuffer buf, long pageId);
+	}
+
+	/** Maximum number of pages that are waiting to be read or read but not yet used. */
+	private static final int MAX_PAGES = 1024;
+
+	private final PageReader reader;
+	private final int pageSize;
+	private final String name;
+	private Thread thread;
+	private boolean isStopped = false;
+	//Whether any page is requested, loading or in memory. Readers only lock if it is set.
+	private volatile boolean isActive = false;
+
+	//All fields below are guarded by 'this'
+	//In order of the requests
+	private final LinkedHashSet<Long> requests = new LinkedHashSet<>();
+	//Access ordered, the eldest page comes first.
+	private final LinkedHashMap<Long, ByteBuffer> pages =
+			new LinkedHashMap<Long, ByteBuffer>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+			return size() > MAX_PAGES;
+		}
+	};
+	//Buffers of pages that have been used
+	private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+	private long loading = -1;
+	private long writeCount = 0;
+	private long nRead = 0;
+	private long nHit = 0;
+
+	PagePrefetcher(PageReader reader, int pageSize, String name) {
+		this.reader = reader;
+		this.pageSize = pageSize;
+		this.name = name;
+	}
+
+	/**
+	 * Request a page to be read in the background. The request is ignored if the page is
+	 * already requested or in memory, or if too many pages are requested.
+	 * @param pageId The page ID
+	 */
+	public synchronized void prefetch(long pageId) {
+		if (isStopped || pageId == loading || pages.containsKey(pageId)
+				|| requests.size() + pages.size() >= MAX_PAGES || requests.contains(pageId)) {
+			return;
+		}
+		if (thread == null) {
+			thread = new Thread(this, "ZooDB page prefetcher: " + name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		isActive = true;
+		requests.add(pageId);
+		notifyAll();
+	}
+
+	/**
+	 * Copy a page to the given buffer if it has been read ahead. Otherwise any pending
+	 * request for the page is removed, because the caller reads the page itself.
+	 * @param buf The buffer
+	 * @param pageId The page ID
+	 * @return Whether the page was copied
+	 */
+	boolean take(ByteBuffer buf, long pageId) {
+		if (!isActive) {
+			return false;
+		}
+		synchronized (this) {
+			return takePrivate(buf, pageId);
+		}
+	}
+
+	private boolean takePrivate(ByteBuffer buf, long pageId) {
+		ByteBuffer page = pages.remove(pageId);
+		if (page == null) {
+			requests.remove(pageId);
+			if (pageId == loading) {
+				//discard the result
+				loading = -1;
+			}
+			updateActive();
+			return false;
+		}
+		page.rewind();
+		page.limit(Math.min(page.capacity(), buf.remaining()));
+		buf.put(page);
+		if (freeBuffers.size() < 16) {
+			freeBuffers.add(page);
+		}
+		nHit++;
+		updateActive();
+		return true;
+	}
+
+	private void updateActive() {
+		isActive = loading != -1 || !requests.isEmpty() || !pages.isEmpty();
+	}
+
+	/**
+	 * Drop a page that is about to be written.
+	 * @param pageId The page ID
+	 */
+	void invalidate(long pageId) {
+		if (!isActive) {
+			//no page is loading, so no read can be outdated by this write
+			return;
+		}
+		synchronized (this) {
+			writeCount++;
+			pages.remove(pageId);
+			updateActive();
+		}
+	}
+
+	/**
+	 * Drop all pages, for example when the file is truncated.
+	 */
+	synchronized void clear() {
+		writeCount++;
+		pages.clear();
+		requests.clear();
+		updateActive();
+	}
+
+	void stop() {
+		Thread t;
+		synchronized (this) {
+			isStopped = true;
+			pages.clear();
+			requests.clear();
+			updateActive();
+			notifyAll();
+			t = thread;
+		}
+		if (t != null) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		ByteBuffer buf = null;
+		try {
+			while (true) {
+				long pageId;
+				long wc;
+				synchronized (this) {
+					while (requests.isEmpty() && !isStopped) {
+						wait();
+					}
+					if (isStopped) {
+						return;
+					}
+					Iterator<Long> it = requests.iterator();
+					pageId = it.next();
+					it.remove();
+					loading = pageId;
+					wc = writeCount;
+					if (buf == null) {
+						buf = freeBuffers.poll();
+					}
+				}
+				if (buf == null) {
+					buf = ByteBuffer.allocateDirect(pageSize);
+				}
+				buf.clear();
+				reader.readPage(buf, pageId);
+				synchronized (this) {
+					//The page may have been changed or read by the caller in the meantime
+					boolean isValid = loading == pageId && wc == writeCount && !isStopped;
+					loading = -1;
+					if (isValid) {
+						nRead++;
+						pages.put(pageId, buf);
+						buf = null;
+					}
+					updateActive();
+				}
+			}
+		} catch (InterruptedException e) {
+			//stopped
+		} catch (RuntimeException e) {
+			DBLogger.LOGGER.error("Page prefetcher failed: " + name, e);
+			synchronized (this) {
+				isStopped = true;
+				loading = -1;
+				requests.clear();
+				updateActive();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of pages that were read ahead.
+	 */
+	public synchronized long statsGetReadCount() {
+		return nRead;
+	}
+
+	/**
+	 * @return The number of page reads that were served by pages that were read ahead.
+	 */
+	public synchronized long statsGetHitCount() {
+		return nHit;
+	}
+}
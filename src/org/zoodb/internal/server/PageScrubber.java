@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.nio.ByteBuffer;
+
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.index.FreeSpaceManager;
+import org.zoodb.internal.util.DBLogger;
+import org.zoodb.internal.util.PrimLongSetZ;
+import org.zoodb.internal.util.RWSemaphore;
+
+/**
+ * Background thread that verifies the checksums of all pages of a database, see
+ * {@link FileHeader#hasPageChecksums()}. This finds corrupted pages before they are read by a
+ * query. Corrupted pages are logged and counted, they are not repaired.
+ * <p>
+ * The scrubber runs with low priority. It reads only few pages at a time while holding the
+ * read lock of the database, so commits are not delayed significantly. Pages that are free
+ * or that were never written are ignored.
+ *
+ * @author Tilmann Zaeschke
+ */
+class PageScrubber implements Runnable {
+
+	/** Number of pages that are verified while holding the lock. */
+	private static final int PAGES_PER_BATCH = 64;
+	/** Pause between two batches. */
+	private static final long PAUSE_BATCH_MS = 10;
+	/** Pause between two runs over the whole database. */
+	private static final long PAUSE_RUN_MS = 60_000;
+
+	private final StorageRoot file;
+	private final FreeSpaceManager fsm;
+	private final RWSemaphore<DiskAccess> lock;
+	private final String name;
+	private Thread thread;
+	private volatile boolean isStopped = false;
+
+	private volatile long nPagesVerified = 0;
+	private volatile long nRuns = 0;
+	//Guarded by 'this'
+	private final PrimLongSetZ corruptedPages = new PrimLongSetZ();
+
+	PageScrubber(StorageRoot file, FreeSpaceManager fsm, RWSemaphore<DiskAccess> lock,
+			String name) {
+		this.file = file;
+		this.fsm = fsm;
+		this.lock = lock;
+		this.name = name;
+	}
+
+	void start() {
+		thread = new Thread(this, "ZooDB page scrubber: " + name);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	void stop() {
+		isStopped = true;
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		ByteBuffer buf = ByteBuffer.allocateDirect(file.getPageSize());
+		PageChecksum checksum = new PageChecksum();
+		try {
+			while (!isStopped) {
+				int pageId = 1;
+				while (!isStopped && pageId < file.statsGetPageCount()) {
+					lock.readLock(null);
+					try {
+						int max = Math.min(pageId + PAGES_PER_BATCH, file.statsGetPageCount());
+						for ( ; pageId < max; pageId++) {
+							verifyPage(buf, checksum, pageId);
+						}
+					} finally {
+						lock.releaseRead();
+					}
+					Thread.sleep(PAUSE_BATCH_MS);
+				}
+				nRuns++;
+				Thread.sleep(PAUSE_RUN_MS);
+			}
+		} catch (InterruptedException e) {
+			//stopped
+		} catch (RuntimeException e) {
+			DBLogger.LOGGER.error("Page scrubber failed: " + name, e);
+		}
+	}
+
+	private void verifyPage(ByteBuffer buf, PageChecksum checksum, int pageId) {
+		buf.clear();
+		file.readPage(buf, pageId);
+		nPagesVerified++;
+		if (!hasHeader(buf.get(0)) || checksum.verify(buf)) {
+			return;
+		}
+		if (fsm.debugIsPageIdInFreeList(pageId)) {
+			return;
+		}
+		synchronized (this) {
+			if (corruptedPages.add(pageId)) {
+				DBLogger.LOGGER.error("Page checksum mismatch, the database is corrupted. " +
+						"PageId={} in {}", pageId, name);
+			}
+		}
+	}
+
+	private static boolean hasHeader(byte pageType) {
+		for (PAGE_TYPE t: PAGE_TYPE.values()) {
+			if (t.getId() == pageType) {
+				return t.hasHeader();
+			}
+		}
+		//never written
+		return false;
+	}
+
+	/**
+	 * @return The number of pages that have been verified
+	 */
+	long statsGetPageCount() {
+		return nPagesVerified;
+	}
+
+	/**
+	 * @return The number of completed runs over all pages
+	 */
+	long statsGetRunCount() {
+		return nRuns;
+	}
+
+	/**
+	 * @return The number of corrupted pages that have been found
+	 */
+	synchronized int statsGetErrorCount() {
+		return corruptedPages.size();
+	}
+}
@@ -0,0 +1,512 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zoodb.internal.server.SessionManager.Snapshot;
+import org.zoodb.internal.util.DBLogger;
+
+/**
+ * A server that shares a database file with other processes. Clients open the database
+ * with a URL of the form {@code zoodb://host:port}, see {@link PageClient}.
+ * <p>
+ * The server owns the database file and its {@link SessionManager}. It does not load
+ * objects, instead it serves pages: clients read and write pages and maintain the indexes
+ * themselves, as if they had opened the file directly. The server coordinates the
+ * transactions of all clients:
+ * <ul>
+ * <li>Transaction IDs and OIDs are allocated by the server.</li>
+ * <li>Optimistic conflict detection uses the {@link TxManager} of the server, clients
+ * send their updated objects as lists of {@link TxObjInfo}.</li>
+ * <li>Only one client can commit at a time. Before a client writes, it loads the latest
+ * committed state.</li>
+ * <li>Pages are not reused while they may be read by a transaction of any client, see
+ * {@link SessionManager#pinSnapshot(DiskAccess)}.</li>
+ * </ul>
+ * Each connection is handled by its own thread. Requests are processed in the order in
+ * which they arrive on a connection.
+ * <p>
+ * The protocol has no authentication and no encryption. Every client that can connect to
+ * the port can read and modify the whole database. The server should therefore only listen
+ * on the loopback address or on a network that is trusted.
+ *
+ * @author Tilmann Zaeschke
+ */
+public final class PageServer implements Closeable {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(PageServer.class);
+
+	static final int VERSION = 1;
+
+	//Requests. WRITE has no reply, it is pipelined by the client. END_TX has a reply only if
+	//the transaction has committed, see PageClient.endTx().
+	static final byte HELLO = 1;
+	static final byte READ = 2;
+	static final byte WRITE = 3;
+	static final byte FORCE = 4;
+	static final byte SIZE = 5;
+	static final byte BEGIN = 6;
+	static final byte CHECK = 7;
+	static final byte BEGIN_COMMIT = 8;
+	static final byte END_TX = 9;
+	static final byte ALLOCATE_OIDS = 10;
+
+	//Replies start with a status
+	static final byte OK = 0;
+	static final byte ERROR = 1;
+
+	/** Maximum number of pages that are returned by one READ request. */
+	static final int MAX_READ_PAGES = 64;
+
+	private final String dbPath;
+	private final SessionManager sm;
+	private final StorageRoot file;
+	private final TxManager txManager;
+	private final ServerSocket serverSocket;
+	private final Thread acceptThread;
+	//Pages are not read while they are written
+	private final ReentrantReadWriteLock pageLock = new ReentrantReadWriteLock();
+
+	//The following fields are guarded by 'this'
+	private final ArrayList<Connection> connections = new ArrayList<>();
+	//Active transactions and the oldest transaction that was active when they started
+	private final HashMap<Long, Long> pinnedTxIds = new HashMap<>();
+	//The transaction that holds the commit lock, -1 if none
+	private long commitTxId = -1;
+	private Connection commitConnection = null;
+	private boolean isClosed = false;
+
+	/**
+	 * Open the database file and start listening for clients.
+	 * @param dbPath The path of the database file
+	 * @param bindAddress The local address on which the server listens, for example
+	 * {@link InetAddress#getLoopbackAddress()}. Any client that can reach this address has
+	 * full access to the database.
+	 * @param port The port, 0 means that any free port is used
+	 */
+	public PageServer(String dbPath, InetAddress bindAddress, int port) {
+		if (bindAddress == null) {
+			throw new IllegalArgumentException("No bind address");
+		}
+		this.dbPath = dbPath;
+		sm = new SessionManager(dbPath, dbPath, false);
+		file = sm.getFile();
+		txManager = sm.getTxManager();
+		txManager.setMultiSession();
+		try {
+			serverSocket = new ServerSocket(port, 0, bindAddress);
+		} catch (IOException e) {
+			sm.closeFile();
+			throw DBLogger.newUser("Cannot open port " + port + " on " + 
+					bindAddress.getHostAddress() + " for database: " + dbPath, e);
+		}
+		acceptThread = new Thread(this::accept, "ZooDB page server: " + dbPath);
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+		LOGGER.info("Serving {} on {}:{}", dbPath, bindAddress.getHostAddress(), getPort());
+		if (!bindAddress.isLoopbackAddress()) {
+			LOGGER.warn("The page server has no authentication, every client that can reach " +
+					"{}:{} has full access to {}", bindAddress.getHostAddress(), getPort(), dbPath);
+		}
+	}
+
+	/**
+	 * @return The port on which the server listens
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return The local address on which the server listens
+	 */
+	public InetAddress getBindAddress() {
+		return serverSocket.getInetAddress();
+	}
+
+	/**
+	 * @return The URL of the database for clients on the same host
+	 */
+	public String getUrl() {
+		InetAddress a = getBindAddress();
+		String host = a.isLoopbackAddress() || a.isAnyLocalAddress() ? 
+				"localhost" : a.getHostAddress();
+		return PageClient.URL_PREFIX + host + ":" + getPort();
+	}
+
+	/**
+	 * Disconnect all clients and close the database file.
+	 */
+	@Override
+	public void close() {
+		List<Connection> open;
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+			isClosed = true;
+			open = new ArrayList<>(connections);
+			notifyAll();
+		}
+		try {
+			serverSocket.close();
+			acceptThread.join();
+			for (Connection c: open) {
+				c.socket.close();
+				c.thread.join();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Error while closing server: {}", e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sm.closeFile();
+		LOGGER.info("Closed server for {}", dbPath);
+	}
+
+	private void accept() {
+		while (true) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					LOGGER.error("Server stopped: " + dbPath, e);
+				}
+				return;
+			}
+			synchronized (this) {
+				if (isClosed) {
+					closeSocket(socket);
+					return;
+				}
+				try {
+					Connection c = new Connection(socket);
+					connections.add(c);
+					c.thread.start();
+				} catch (IOException e) {
+					LOGGER.warn("Connection failed: {}", e.getMessage());
+					closeSocket(socket);
+				}
+			}
+		}
+	}
+
+	private static void closeSocket(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			//ignore
+		}
+	}
+
+	private synchronized long begin(Connection c) {
+		long txId = txManager.getNextTxId();
+		pinnedTxIds.put(txId, txManager.getOldestActiveTxId());
+		c.txIds.add(txId);
+		return txId;
+	}
+
+	/**
+	 * Wait for the commit lock. The lock is released when the transaction ends.
+	 */
+	private synchronized void lockCommit(Connection c, long txId) {
+		while (commitTxId >= 0 && !isClosed) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw DBLogger.newFatal("Interrupted while waiting for commit", e);
+			}
+		}
+		if (isClosed) {
+			throw DBLogger.newFatal("The server is closed: " + dbPath);
+		}
+		commitTxId = txId;
+		commitConnection = c;
+	}
+
+	/**
+	 * @return The oldest transaction ID whose freed pages may still be read by active
+	 * transactions.
+	 */
+	private synchronized long getOldestPinnedTxId() {
+		long min = Long.MAX_VALUE;
+		for (long txId: pinnedTxIds.values()) {
+			min = Math.min(min, txId);
+		}
+		return min;
+	}
+
+	private synchronized void endTx(Connection c, long txId, long schemaTxId,
+			long schemaIndexTxId) {
+		c.txIds.remove(txId);
+		pinnedTxIds.remove(txId);
+		if (commitTxId == txId) {
+			//Publish the new state (if any) before the TX is deregistered, see
+			//SessionManager.pinSnapshot()
+			sm.refresh(schemaTxId, schemaIndexTxId);
+			releaseCommit();
+		}
+		txManager.deRegisterTx(txId);
+	}
+
+	private void releaseCommit() {
+		commitTxId = -1;
+		commitConnection = null;
+		notifyAll();
+	}
+
+	/**
+	 * Clean up after a client has disconnected. The client may have crashed, so we roll back
+	 * all its transactions.
+	 */
+	private synchronized void disconnect(Connection c) {
+		connections.remove(c);
+		for (long txId: new ArrayList<>(c.txIds)) {
+			endTx(c, txId, -1, -1);
+		}
+		if (commitConnection == c) {
+			releaseCommit();
+		}
+	}
+
+	private final class Connection implements Runnable {
+
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final Thread thread;
+		private final ByteBuffer buf = ByteBuffer.allocate(file.getPageSize());
+		//Active transactions that were started through this connection, guarded by the server
+		private final HashSet<Long> txIds = new HashSet<>();
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			this.thread = new Thread(this, "ZooDB page server connection: " +
+					socket.getRemoteSocketAddress());
+			this.thread.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				int request;
+				while ((request = in.read()) >= 0) {
+					process((byte) request);
+				}
+			} catch (EOFException e) {
+				//disconnected
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					LOGGER.info("Connection closed: {}", e.getMessage());
+				}
+			} catch (RuntimeException e) {
+				LOGGER.error("Request failed, closing connection", e);
+			} finally {
+				closeSocket(socket);
+				disconnect(this);
+			}
+		}
+
+		private void process(byte request) throws IOException {
+			switch (request) {
+			case WRITE:
+				write();
+				return;
+			case END_TX:
+				if (!in.readBoolean()) {
+					endTx(this, in.readLong(), in.readLong(), in.readLong());
+					return;
+				}
+				break;
+			default:
+			}
+			try {
+				reply(request);
+			} catch (RuntimeException e) {
+				LOGGER.error("Request failed: " + request, e);
+				out.writeByte(ERROR);
+				out.writeUTF(String.valueOf(e.getMessage()));
+			}
+			out.flush();
+		}
+
+		/**
+		 * Process requests that have a reply. The reply is written only after the request
+		 * has succeeded.
+		 */
+		private void reply(byte request) throws IOException {
+			switch (request) {
+			case HELLO: {
+				int version = in.readInt();
+				if (version != VERSION) {
+					throw DBLogger.newUser("Incompatible client version: " + version);
+				}
+				out.writeByte(OK);
+				out.writeInt(file.getPageSize());
+				break;
+			}
+			case READ:
+				read(in.readLong(), in.readInt());
+				break;
+			case FORCE:
+				file.force();
+				out.writeByte(OK);
+				break;
+			case SIZE: {
+				int n = file.statsGetPageCount();
+				out.writeByte(OK);
+				out.writeInt(n);
+				break;
+			}
+			case BEGIN: {
+				long txId = begin(this);
+				long oldest = txManager.getOldestActiveTxId();
+				Snapshot s = sm.getSnapshot();
+				out.writeByte(OK);
+				out.writeLong(txId);
+				out.writeLong(oldest);
+				writeSnapshot(s);
+				break;
+			}
+			case CHECK:
+				check();
+				break;
+			case BEGIN_COMMIT: {
+				long txId = in.readLong();
+				lockCommit(this, txId);
+				long oldest = getOldestPinnedTxId();
+				Snapshot s = sm.getSnapshot();
+				out.writeByte(OK);
+				out.writeLong(oldest);
+				out.writeLong(sm.getSchemaIndex().getTxIdOfLastWrite());
+				out.writeLong(sm.getSchemaIndex().getTxIdOfLastWriteThatRequiresRefresh());
+				writeSnapshot(s);
+				break;
+			}
+			case END_TX:
+				endTx(this, in.readLong(), in.readLong(), in.readLong());
+				out.writeByte(OK);
+				break;
+			case ALLOCATE_OIDS: {
+				long[] oids = sm.getOidIndex().allocateOids(in.readInt());
+				out.writeByte(OK);
+				out.writeLong(oids.length > 0 ? oids[0] : 0);
+				break;
+			}
+			default:
+				throw DBLogger.newFatalInternal("Unknown request: " + request);
+			}
+		}
+
+		private void writeSnapshot(Snapshot s) throws IOException {
+			out.writeLong(s.commitCount);
+			out.writeInt(s.oidIndexPage);
+			out.writeInt(s.schemaIndexPage);
+			out.writeLong(s.lastUsedOid);
+		}
+
+		/**
+		 * Return the requested page and up to (n-1) following pages.
+		 */
+		private void read(long pageId, int n) throws IOException {
+			int nPages = file.statsGetPageCount();
+			n = (int) Math.max(1, Math.min(Math.min(n, MAX_READ_PAGES), nPages - pageId));
+			byte[][] pages = new byte[n][];
+			pageLock.readLock().lock();
+			try {
+				for (int i = 0; i < n; i++) {
+					buf.clear();
+					file.readPage(buf, pageId + i);
+					pages[i] = new byte[buf.position()];
+					buf.flip();
+					buf.get(pages[i]);
+				}
+			} finally {
+				pageLock.readLock().unlock();
+			}
+			out.writeByte(OK);
+			out.writeInt(n);
+			for (byte[] page: pages) {
+				out.writeInt(page.length);
+				out.write(page);
+			}
+		}
+
+		private void write() throws IOException {
+			long pageId = in.readLong();
+			int len = in.readInt();
+			buf.clear();
+			in.readFully(buf.array(), 0, len);
+			buf.limit(len);
+			pageLock.writeLock().lock();
+			try {
+				file.write(buf, pageId);
+			} finally {
+				pageLock.writeLock().unlock();
+			}
+		}
+
+		private void check() throws IOException {
+			long txId = in.readLong();
+			boolean isTrialRun = in.readBoolean();
+			int n = in.readInt();
+			ArrayList<TxObjInfo> updates = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				updates.add(new TxObjInfo(in.readLong(), in.readLong(), in.readBoolean()));
+			}
+			synchronized (PageServer.this) {
+				if (!isTrialRun && commitTxId != txId) {
+					throw DBLogger.newFatalInternal("Commit is not locked: " + txId);
+				}
+			}
+			TxContext txContext = new TxContext();
+			txContext.addOidUpdates(updates);
+			List<Long> conflicts = txManager.addUpdates(txId, txContext, isTrialRun);
+			out.writeByte(OK);
+			if (conflicts == null) {
+				out.writeInt(0);
+				return;
+			}
+			out.writeInt(conflicts.size());
+			for (long oid: conflicts) {
+				out.writeLong(oid);
+			}
+		}
+	}
+}
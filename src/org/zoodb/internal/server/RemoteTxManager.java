@@ -0,0 +1,63 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.util.List;
+
+import org.zoodb.internal.server.index.SchemaIndex;
+
+/**
+ * Transaction manager of a client of a {@link PageServer}. Transactions are registered 
+ * with the server, so conflicts are detected for the transactions of all clients.
+ * 
+ * @author Tilmann Zaeschke
+ */
+final class RemoteTxManager extends TxManager {
+
+	private final PageClient client;
+	private final SchemaIndex schemaIndex;
+
+	RemoteTxManager(PageClient client, SchemaIndex schemaIndex) {
+		super(0);
+		this.client = client;
+		this.schemaIndex = schemaIndex;
+	}
+
+	@Override
+	List<Long> addUpdates(long txId, TxContext txContext, boolean isTrialRun) {
+		return client.checkForConflicts(txId, txContext.getUpdatesAndDeletes(), isTrialRun);
+	}
+
+	/**
+	 * This also releases the commit lock of the server. If the transaction committed, the 
+	 * server loads the new state with the schema IDs of this client. 
+	 */
+	@Override
+	void deRegisterTx(long txId) {
+		client.endTx(txId, schemaIndex.getTxIdOfLastWrite(), 
+				schemaIndex.getTxIdOfLastWriteThatRequiresRefresh());
+	}
+
+	@Override
+	long getNextTxId() {
+		return client.begin();
+	}
+
+	@Override
+	long getOldestActiveTxId() {
+		return client.getOldestActiveTxId();
+	}
+}
@@ -180,6 +180,13 @@ final class RootPage {
         return txId;
     }
 
+    /**
+     * @return The page ID from which this root page was read or to which it was written last
+     */
+    int getPageId() {
+        return lastUsedPageId;
+    }
+
     @Override
     public String toString() {
         return "RootPage: lastUsedPageId=" + lastUsedPageId +
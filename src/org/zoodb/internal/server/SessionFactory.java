@@ -18,10 +18,9 @@ package org.zoodb.internal.server;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +30,11 @@ import org.zoodb.internal.plugin.PluginLoader;
 import org.zoodb.internal.util.DBLogger;
 
 /**
+ * The SessionFactory keeps track of all open database files. There is one 
+ * {@link SessionManager} per open file, which is shared by all sessions on that file.
+ * <p>
+ * Open files are indexed by their canonical path. Sessions on different files can be 
+ * opened and closed concurrently, only sessions on the same file are synchronized.
  * 
  * @author Tilmann Zaeschke
  */
@@ -48,7 +52,19 @@ public class SessionFactory {
 	@Deprecated
 	public static boolean MULTIPLE_SESSIONS_ARE_OPEN = false;
 	
-	private static final List<SessionManager> sessions = new ArrayList<>();
+	/**
+	 * An open database file. All fields are guarded by the entry.
+	 */
+	private static final class SessionEntry {
+		private SessionManager sm;
+		//Number of sessions, including sessions that are being created
+		private int nSessions = 0;
+		//Closed entries have been removed from the map and must not be used anymore
+		private boolean isClosed = false;
+	}
+	
+	private static final ConcurrentHashMap<String, SessionEntry> sessions = 
+			new ConcurrentHashMap<>();
 	
 	static {
 		PluginLoader.activatePlugins();
@@ -58,84 +74,124 @@ public class SessionFactory {
 		String dbPath = node.getDbPath();
 		LOGGER.info("Opening DB file: {}", dbPath);
 
-		Path path = FileSystems.getDefault().getPath(dbPath); 
+		//Clients of a database server are identified by the URL
+		String key = PageClient.isRemote(dbPath) ? 
+				dbPath : getFileKey(FileSystems.getDefault().getPath(dbPath));
+		boolean isReadOnly = node.getSession().getConfig().getReadOnly();
 
-		SessionManager sm = null;
-		synchronized (sessions) {
-			try {
-				//TODO this does not scale
-				for (SessionManager smi: sessions) {
-					if (Files.isSameFile(smi.getPath(), path)) {
-						sm = smi;
-						break;
-					}
+		SessionManager sm;
+		while (true) {
+			SessionEntry entry = sessions.computeIfAbsent(key, k -> new SessionEntry());
+			synchronized (entry) {
+				if (entry.isClosed) {
+					//The last session has just been closed, try again
+					continue;
 				}
-			} catch (IOException e) {
-				throw DBLogger.newFatal("Failed while accessing path: " + dbPath, e);
-			}
-
-			if (sm == null) {
-				//create DB file
-				sm = new SessionManager(path);
-				sessions.add(sm);
-			} else {
-				MULTIPLE_SESSIONS_ARE_OPEN = true;
-				if (FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ) {
-					throw DBLogger.newFatal("Not supported: Can't use non-transactional read with "
-							+ "mutliple sessions");
+				if (entry.sm == null) {
+					//open DB file
+					try {
+						entry.sm = new SessionManager(dbPath, key, isReadOnly);
+					} catch (RuntimeException e) {
+						entry.isClosed = true;
+						sessions.remove(key, entry);
+						throw e;
+					}
+				} else {
+					//Read-only sessions can use a writable file, but not vice versa
+					if (entry.sm.isReadOnly() && !isReadOnly) {
+						throw DBLogger.newUser("The database is opened in read-only mode by "
+								+ "another PersistenceManager: " + dbPath);
+					}
+					MULTIPLE_SESSIONS_ARE_OPEN = true;
+					if (FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ) {
+						throw DBLogger.newFatal("Not supported: Can't use non-transactional read "
+								+ "with mutliple sessions");
+					}
 				}
+				//This prevents the file from being closed while we create the session.
+				entry.nSessions++;
+				sm = entry.sm;
 			}
-			//The following needs to be synchronized because it requests read/write channels.
-			//The channel-list may be accessed concurrently from this.removeSession().
-			//Also, simply making the List synchronized resulted in occasional deadlocks.
+			break;
+		}
+		
+		//The session is created outside the lock because it waits for the lock of the
+		//SessionManager. Closing a session holds the lock of the SessionManager and then 
+		//calls removeSession().
+		try {
 			return sm.createSession(node, cache);
+		} catch (RuntimeException e) {
+			removeSession(sm);
+			throw e;
+		}
+	}
+	
+	/**
+	 * @param path A file path
+	 * @return The canonical path of the file or the path itself if no such file exists, for
+	 * example for in-memory databases.
+	 */
+	private static String getFileKey(Path path) {
+		try {
+			return path.toRealPath().toString();
+		} catch (NoSuchFileException e) {
+			return path.toString();
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Failed while accessing path: " + path, e);
 		}
 	}
 	
+	/**
+	 * Deregister a session of the SessionManager. If this is the last session, the 
+	 * database file is closed and the SessionManager is removed.
+	 * @param sm The SessionManager
+	 */
 	static void removeSession(SessionManager sm) {
-		synchronized (sessions) {
-			//TODO this does not scale
-			if (!sessions.remove(sm)) {
+		SessionEntry entry = sessions.get(sm.getFileKey());
+		if (entry == null) {
+			throw DBLogger.newFatalInternal("Server session not found for: " + sm.getPath());
+		}
+		synchronized (entry) {
+			if (entry.sm != sm) {
 				throw DBLogger.newFatalInternal("Server session not found for: " + sm.getPath());
 			}
-			if (sessions.size() <= 1) {
-				MULTIPLE_SESSIONS_ARE_OPEN = false;
-			}
-			if (sessions.isEmpty()) {
-				FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
+			if (--entry.nSessions > 0) {
+				return;
 			}
+			//Close the file before removing the entry, otherwise the file may still be 
+			//locked when it is opened again.
+			sm.closeFile();
+			entry.isClosed = true;
+			sessions.remove(sm.getFileKey(), entry);
+		}
+		if (sessions.size() <= 1) {
+			MULTIPLE_SESSIONS_ARE_OPEN = false;
+		}
+		if (sessions.isEmpty()) {
+			FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
 		}
 	}
 
 	public static void clear() {
-		synchronized (sessions) {
-			sessions.clear();
-			FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
-			MULTIPLE_SESSIONS_ARE_OPEN = false;
-		}
+		sessions.clear();
+		FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
+		MULTIPLE_SESSIONS_ARE_OPEN = false;
 	}
 
 	public static void cleanUp(File dbFile) {
-		Path path = dbFile.toPath(); 
-
-		try {
-			synchronized (sessions) {
-				//TODO this does not scale
-				for (SessionManager smi: sessions) {
-					if (Files.isSameFile(smi.getPath(), path)) {
-						if (smi.isLocked()) {
-							throw DBLogger.newUser("Found open session on " + dbFile);
-						}
-						sessions.remove(smi);
-						break;
-					}
+		String key = getFileKey(dbFile.toPath());
+		SessionEntry entry = sessions.get(key);
+		if (entry != null) {
+			synchronized (entry) {
+				if (entry.sm != null && entry.sm.isLocked()) {
+					throw DBLogger.newUser("Found open session on " + dbFile);
 				}
-				FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
-				MULTIPLE_SESSIONS_ARE_OPEN = false;
+				entry.isClosed = true;
+				sessions.remove(key, entry);
 			}
-		} catch (IOException e) {
-			throw DBLogger.newFatal("Failed while accessing path: " + dbFile, e);
 		}
+		FAIL_BECAUSE_OF_ACTIVE_NON_TX_READ = false;
+		MULTIPLE_SESSIONS_ARE_OPEN = false;
 	}
 	
 	public static FileHeader readHeader(Path path) {
@@ -18,7 +18,10 @@ package org.zoodb.internal.server;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,10 +46,18 @@ class SessionManager {
 
 	private final FreeSpaceManager fsm;
 	private final StorageRoot file;
-	private final Path path;
-
-	private final RootPage rootPage;
+	private final String dbPath;
+	private final String fileKey;
+	private final boolean isReadOnly;
+	// Connection to the server in client mode, otherwise 'null'.
+	private final PageClient remote;
+	// In client mode: the oldest transaction of all clients that may read from free pages.
+	// This is set by beginCommit().
+	private long remoteOldestReaderTxId = Long.MAX_VALUE;
+
+	private RootPage rootPage;
 	private final int[] rootPages;
+	private final boolean hasDeltaRecords;
 	private int rootPageID;
 	// This differs from tx-ID in that it is strictly increasing during commit.
 	// Contrary to that, tx-IDs are strictly increasing during TX begin, but they
@@ -58,12 +69,95 @@ class SessionManager {
 	private final StorageChannelOutput fileOut;
 	private final RWSemaphore<DiskAccess> lock = new RWSemaphore<>();
 	private final TxManager txManager;
+
+	// The latest committed state and the oldest active transaction of each session that 
+	// currently reads from a snapshot. Both are guarded by 'snapshotLock'.
+	private Snapshot snapshot;
+	private final IdentityHashMap<DiskAccess, Long> pinnedSnapshots = new IdentityHashMap<>();
+	private final Object snapshotLock = new Object();
+	
+	// Second level caches of all factories that have sessions on this database
+	private final CopyOnWriteArrayList<SharedObjectCache> sharedCaches = 
+			new CopyOnWriteArrayList<>();
+
+	// Verifies page checksums in the background, may be null. Guarded by 'this'.
+	private PageScrubber scrubber;
+
+	/**
+	 * A committed state of the database. Sessions with snapshot reads share read-only 
+	 * copies of the OID index and the schema index of the snapshot, see 
+	 * {@link SessionManager#acquireView(Snapshot)}.
+	 * Pages of a snapshot are not reused before all transactions that read from the snapshot
+	 * have ended.
+	 */
+	static final class Snapshot {
+		final long commitCount;
+		final int oidIndexPage;
+		final int schemaIndexPage;
+		final long lastUsedOid;
+		//The number of sessions that use the indexes. Guarded by 'snapshotLock'.
+		private int nViews;
+		//Loaded lazily, guarded by 'this'.
+		private PagedOidIndex oidIndex;
+		private SchemaIndex schemaIndex;
+
+		private Snapshot(long commitCount, RootPage root) {
+			this(commitCount, root.getOidIndexPage(), root.getSchemaIndexPage(), 
+					root.getLastUsedOID());
+		}
+
+		Snapshot(long commitCount, int oidIndexPage, int schemaIndexPage, long lastUsedOid) {
+			this.commitCount = commitCount;
+			this.oidIndexPage = oidIndexPage;
+			this.schemaIndexPage = schemaIndexPage;
+			this.lastUsedOid = lastUsedOid;
+		}
+
+		synchronized PagedOidIndex getOidIndex() {
+			return oidIndex;
+		}
+
+		synchronized SchemaIndex getSchemaIndex() {
+			return schemaIndex;
+		}
+
+		private synchronized void load(IOResourceProvider channel) {
+			if (oidIndex == null) {
+				oidIndex = new PagedOidIndex(channel, oidIndexPage, lastUsedOid);
+				schemaIndex = new SchemaIndex(channel, schemaIndexPage, false);
+			}
+		}
+
+		private synchronized void unload() {
+			if (schemaIndex != null) {
+				schemaIndex.close();
+			}
+			oidIndex = null;
+			schemaIndex = null;
+		}
+	}
 	
-	public SessionManager(Path path) {
-		this.path = path;
+	/**
+	 * @param dbPath The path of the database file or the URL of a {@link PageServer}
+	 * @param fileKey The key of the database in the {@link SessionFactory}
+	 * @param isReadOnly Whether the database is opened in read-only mode
+	 */
+	SessionManager(String dbPath, String fileKey, boolean isReadOnly) {
+		this.dbPath = dbPath;
+		this.fileKey = fileKey;
+		this.isReadOnly = isReadOnly;
 		fsm = new FreeSpaceManager();
-		file = createPageAccessFile(path, "rw", fsm);
+		if (PageClient.isRemote(dbPath)) {
+			remote = new PageClient(dbPath);
+			file = new StorageRootRemote(remote, fsm);
+		} else {
+			remote = null;
+			file = createPageAccessFile(dbPath, isReadOnly ? "r" : "rw", fsm);
+		}
 
+		//In client mode, the transaction prevents other clients from reusing the pages that
+		//we are reading.
+		long initTxId = remote != null ? remote.begin() : 0;
 		IOResourceProvider rootChannel = file.getIndexChannel();
 		StorageChannelInput in = rootChannel.createReader(false);
 
@@ -73,30 +167,14 @@ class SessionManager {
 		    file.close();
 		    throw DBLogger.newFatal(header.errorMsg().get(0));
 		}
+		file.setPageChecksums(header.hasPageChecksums());
+		hasDeltaRecords = header.hasDeltaRecords();
 		this.rootPages = header.getRootPages();
-		RootPage rootPage0 = RootPage.read(in, rootPages[0]);
-		RootPage rootPage1 = RootPage.read(in, rootPages[1]);
-
-		//check root pages
-		//we have two root pages. They are used alternatingly.
-		long r0 = rootPage0.getCommitId();
-		long r1 = rootPage1.getCommitId();
-		if (r0 > r1) {
-			rootPageID = 0;
-			this.rootPage = rootPage0;
-		} else {
-			rootPageID = 1;
-			this.rootPage = rootPage1;
-		}
-		if (r0 == ID_FAULTY_PAGE && r1 == ID_FAULTY_PAGE) {
-			String m = "Database is corrupted and cannot be recovered. Please restore from backup.";
-			LOGGER.error(m);
-			throw DBLogger.newFatal(m);
-		}
+		this.rootPage = readRootPage(in);
+		rootPageID = rootPage.getPageId() == rootPages[0] ? 0 : 1;
 		rootChannel.dropReader(in);
 
 		RootPage root = rootPage;
-		txManager = new TxManager(root.getTxID());
 		commitCount = root.getCommitId();
 
 		//OIDs
@@ -108,11 +186,37 @@ class SessionManager {
 		//free space index
 		fsm.initBackingIndexLoad(rootChannel, root.getFMSPage(), root.getFSMPageCount());
 
+		if (remote != null) {
+			txManager = new RemoteTxManager(remote, schemaIndex);
+			txManager.deRegisterTx(initTxId);
+		} else {
+			txManager = new TxManager(root.getTxID());
+		}
 		fileOut = rootChannel.createWriter(false);
+		snapshot = new Snapshot(commitCount, root);
+	}
+
+	/**
+	 * Read both root pages and return the one of the latest commit.
+	 */
+	private RootPage readRootPage(StorageChannelInput in) {
+		RootPage rootPage0 = RootPage.read(in, rootPages[0]);
+		RootPage rootPage1 = RootPage.read(in, rootPages[1]);
+
+		//check root pages
+		//we have two root pages. They are used alternatingly.
+		long r0 = rootPage0.getCommitId();
+		long r1 = rootPage1.getCommitId();
+		if (r0 == ID_FAULTY_PAGE && r1 == ID_FAULTY_PAGE) {
+			String m = "Database is corrupted and cannot be recovered. Please restore from backup.";
+			LOGGER.error(m);
+			throw DBLogger.newFatal(m);
+		}
+		return r0 > r1 ? rootPage0 : rootPage1;
 	}
 
 	static FileHeader readHeader(Path path) {
-	    StorageRoot file = createPageAccessFile(path, "rw", new FreeSpaceManager());
+	    StorageRoot file = createPageAccessFile(path.toString(), "rw", new FreeSpaceManager());
         IOResourceProvider rootChannel = file.getIndexChannel();
         StorageChannelInput in = rootChannel.createReader(false);
 	    FileHeader header = FileHeader.read(in);
@@ -129,9 +233,8 @@ class SessionManager {
 		return session;
 	}
 	
-	private static StorageRoot createPageAccessFile(Path path, String options, 
+	private static StorageRoot createPageAccessFile(String dbPath, String options, 
 			FreeSpaceManager fsm) {
-		String dbPath = path.toString();
 		try {
 			Class<?> cls = Class.forName(ZooConfig.getFileProcessor());
 			Constructor<?> con = cls.getConstructor(String.class, String.class, Integer.TYPE, 
@@ -150,15 +253,56 @@ class SessionManager {
 	
 	void close(IOResourceProvider channel) {
 		channel.close();
-		if (file.getDataChannelCount() == 0) {
-			LOGGER.info("Closing DB file: {}", path);
-			file.close();
-			SessionFactory.removeSession(this);
+		SessionFactory.removeSession(this);
+	}
+
+	/**
+	 * Close the database file. To be called by the {@link SessionFactory} when the last 
+	 * session is removed.
+	 */
+	void closeFile() {
+		LOGGER.info("Closing DB file: {}", dbPath);
+		synchronized (this) {
+			if (scrubber != null) {
+				scrubber.stop();
+				scrubber = null;
+			}
 		}
+		file.close();
+	}
+
+	String getPath() {
+		return dbPath;
 	}
 
-	Path getPath() {
-		return path;
+	/**
+	 * @return Whether the database is accessed through a {@link PageServer}
+	 */
+	boolean isRemote() {
+		return remote != null;
+	}
+
+	/**
+	 * @return Whether the database file is opened in read-only mode. In this case all
+	 * sessions are read-only.
+	 */
+	boolean isReadOnly() {
+		return isReadOnly;
+	}
+
+	/**
+	 * @return Whether the file header allows delta records, see 
+	 * {@link FileHeader#hasDeltaRecords()}.
+	 */
+	boolean hasDeltaRecords() {
+		return hasDeltaRecords;
+	}
+
+	/**
+	 * @return The key of the database file in the {@link SessionFactory}
+	 */
+	String getFileKey() {
+		return fileKey;
 	}
 
 	FreeSpaceManager getFsm() {
@@ -182,7 +326,12 @@ class SessionManager {
 		
 		if (rootPage.hasChanged(userPage, oidPage, schemaPage, indexPage, freePage)) {
 			// flush the file including all splits 
-			channel.flush(); 
+			if (file.hasWriteAheadLog()) {
+				//The log ensures that the root page is written only after all other pages
+				channel.flushNoForce();
+			} else {
+				channel.flush(); 
+			}
 			// Switch to use other root page
 	        rootPageID = (rootPageID + 1) % 2;
 	        // This uniquely identifies the commit and imposes total ordering,
@@ -192,6 +341,10 @@ class SessionManager {
 			rootPage.write(commitCount, txId, fileOut, rootPages[rootPageID]);
 			//Second flush to update root pages.
 			channel.flush(); 
+			//Publish the new state before the TX is deregistered, see pinSnapshot().
+			synchronized (snapshotLock) {
+				publishSnapshot(new Snapshot(commitCount, rootPage));
+			}
 		}
 		
 		//tell FSM that new free pages can now be reused.
@@ -207,6 +360,24 @@ class SessionManager {
 		txManager.deRegisterTx(txId);
 	}
 
+	/**
+	 * Release free pages at the end of the database file. This writes a new FSM and root page,
+	 * therefore it requires the write lock.
+	 * @param channel The channel to use for writing
+	 * @param txId The current transaction ID
+	 * @return The new number of pages in the database file
+	 */
+	int truncate(IOResourceProvider channel, long txId) {
+		fsm.truncateFreePages();
+		RootPage rootPage = getCurrentRootPage();
+		commitInfrastructure(channel, rootPage.getOidIndexPage(), rootPage.getSchemaIndexPage(), 
+				oidIndex.getLastUsedOid(), txId);
+		//The root page refers only to pages below the FSM page count
+		int pageCount = fsm.getPageCount();
+		file.truncate(pageCount);
+		return pageCount;
+	}
+
 	RootPage getCurrentRootPage() {
 		return rootPage;
 	}
@@ -258,6 +429,223 @@ class SessionManager {
 	
 	void startWriting(long txId) {
 		// set index channel txid
-		fsm.notifyBegin(txId);
+		fsm.notifyBegin(txId, Math.min(getOldestPinnedTxId(), remoteOldestReaderTxId));
+	}
+
+	/**
+	 * Prepare a commit, the caller must hold the write lock. In client mode this waits for 
+	 * the commit lock of the server and loads the latest committed state. The commit lock 
+	 * is released when the transaction is deregistered.
+	 * @param txId The ID of the committing transaction
+	 * @return {@code false} if the latest state could not be loaded because the shared 
+	 * schema index has changes that are not committed yet.
+	 */
+	boolean beginCommit(long txId) {
+		if (remote == null) {
+			return true;
+		}
+		PageClient.CommitState s = remote.beginCommit(txId);
+		remoteOldestReaderTxId = s.oldestReaderTxId;
+		if (s.latest.commitCount <= commitCount) {
+			return true;
+		}
+		if (schemaIndex.hasChanges()) {
+			return false;
+		}
+		refresh(s.schemaTxId, s.schemaIndexTxId);
+		return true;
+	}
+
+	/**
+	 * Load the latest committed state. This is required if the database is shared with 
+	 * other processes, see {@link PageServer}. The shared indexes are reloaded, so the caller 
+	 * must hold the write lock.
+	 * @param schemaTxId See {@link SchemaIndex#getTxIdOfLastWrite()}
+	 * @param schemaIndexTxId See {@link SchemaIndex#getTxIdOfLastWriteThatRequiresRefresh()}
+	 * @return Whether a newer state was loaded
+	 */
+	boolean refresh(long schemaTxId, long schemaIndexTxId) {
+		IOResourceProvider rootChannel = file.getIndexChannel();
+		//buffered pages may have been rewritten
+		rootChannel.resetReaders();
+		StorageChannelInput in = rootChannel.createReader(false);
+		RootPage root = readRootPage(in);
+		rootChannel.dropReader(in);
+		if (root.getCommitId() <= commitCount) {
+			return false;
+		}
+		rootPage = root;
+		rootPageID = root.getPageId() == rootPages[0] ? 0 : 1;
+		commitCount = root.getCommitId();
+		oidIndex.revert(root.getOidIndexPage(), root.getLastUsedOID());
+		schemaIndex.revert(root.getSchemaIndexPage(), schemaTxId, schemaIndexTxId);
+		fsm.revert(root.getFMSPage(), root.getFSMPageCount());
+		synchronized (snapshotLock) {
+			if (snapshot.commitCount < commitCount) {
+				publishSnapshot(new Snapshot(commitCount, root));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param n The number of OIDs
+	 * @return New OIDs. In client mode they are allocated by the server.
+	 */
+	long[] allocateOids(int n) {
+		return remote != null ? remote.allocateOids(n) : oidIndex.allocateOids(n);
+	}
+
+	/**
+	 * Pin the latest committed state for reading. Until the session calls 
+	 * {@link #unpinSnapshot(DiskAccess)}, pages of this state are not reused. 
+	 * <p>
+	 * A page that is freed by a commit is tagged with the ID of the committing transaction. 
+	 * Any commit that happens after this call belongs to a transaction that is currently 
+	 * active or that starts later, so it is sufficient to protect all pages that were freed by 
+	 * transactions that are not older than the oldest currently active transaction.
+	 * @param key The session
+	 * @return The latest committed state
+	 */
+	Snapshot pinSnapshot(DiskAccess key) {
+		synchronized (snapshotLock) {
+			pinnedSnapshots.put(key, txManager.getOldestActiveTxId());
+			return latestSnapshot();
+		}
+	}
+
+	void unpinSnapshot(DiskAccess key) {
+		synchronized (snapshotLock) {
+			pinnedSnapshots.remove(key);
+		}
+	}
+
+	/**
+	 * @return The latest committed state. This is not pinned.
+	 */
+	Snapshot getSnapshot() {
+		synchronized (snapshotLock) {
+			return latestSnapshot();
+		}
+	}
+
+	/**
+	 * Load the read-only indexes of a snapshot, unless another session has already loaded 
+	 * them. The indexes are shared until the last session calls 
+	 * {@link #releaseView(Snapshot)}. The caller must have pinned the snapshot.
+	 * @param s The snapshot
+	 */
+	void acquireView(Snapshot s) {
+		synchronized (snapshotLock) {
+			s.nViews++;
+		}
+		//The indexes are loaded outside of the 'snapshotLock' to avoid blocking commits
+		s.load(file.getIndexChannel());
+	}
+
+	/**
+	 * Release the indexes of a snapshot. The indexes of an outdated snapshot are dropped
+	 * when no session uses them anymore.
+	 * @param s The snapshot
+	 */
+	void releaseView(Snapshot s) {
+		synchronized (snapshotLock) {
+			if (--s.nViews == 0 && s != snapshot) {
+				s.unload();
+			}
+		}
+	}
+
+	/**
+	 * The caller must hold the 'snapshotLock'.
+	 */
+	private void publishSnapshot(Snapshot s) {
+		if (snapshot.nViews == 0) {
+			snapshot.unload();
+		}
+		snapshot = s;
+	}
+
+	/**
+	 * In client mode, other clients may have committed a newer state. This is reported by 
+	 * the server when a transaction begins. Pages of that state are protected in the same 
+	 * way as pages of local commits, see {@link #pinSnapshot(DiskAccess)}.
+	 * The caller must hold the 'snapshotLock'.
+	 */
+	private Snapshot latestSnapshot() {
+		if (remote != null) {
+			Snapshot s = remote.getLatestSnapshot();
+			if (s.commitCount > snapshot.commitCount) {
+				publishSnapshot(s);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return The oldest transaction ID that is protected by a pinned snapshot or 
+	 * {@code Long.MAX_VALUE} if no snapshot is pinned.
+	 */
+	private long getOldestPinnedTxId() {
+		synchronized (snapshotLock) {
+			long min = Long.MAX_VALUE;
+			for (long txId: pinnedSnapshots.values()) {
+				min = Math.min(min, txId);
+			}
+			return min;
+		}
+	}
+
+	/**
+	 * Start verifying page checksums in the background. This has no effect if the scrubber is
+	 * already running or if the database has no page checksums.
+	 */
+	synchronized void startScrubber() {
+		if (scrubber == null && file.hasPageChecksums()) {
+			scrubber = new PageScrubber(file, fsm, lock, dbPath);
+			scrubber.start();
+		}
+	}
+
+	/**
+	 * Use a write-ahead log for all following commits. This must not be called while a 
+	 * commit is in progress.
+	 */
+	synchronized void startWriteAheadLog() {
+		file.startWriteAheadLog();
+	}
+
+	/**
+	 * @return The page scrubber or {@code null} if it is not running
+	 */
+	synchronized PageScrubber getScrubber() {
+		return scrubber;
+	}
+
+	/**
+	 * Register a second level cache. Committed updates are reported to all registered caches.
+	 * @param cache The cache
+	 */
+	void addSharedCache(SharedObjectCache cache) {
+		if (sharedCaches.addIfAbsent(cache)) {
+			cache.attach(this);
+		}
+	}
+
+	/**
+	 * Remove updated objects from all second level caches. This must be called after the 
+	 * new state is committed.
+	 * @param updates The updated and deleted objects
+	 * @param clearAll Whether all entries should be removed, for example because instances 
+	 * were dropped
+	 */
+	void notifySharedCaches(ArrayList<TxObjInfo> updates, boolean clearAll) {
+		for (SharedObjectCache cache: sharedCaches) {
+			if (clearAll) {
+				cache.clear();
+			} else {
+				cache.invalidate(updates);
+			}
+		}
 	}
 }
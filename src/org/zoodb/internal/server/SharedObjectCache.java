@@ -0,0 +1,294 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Second level cache that is shared by multiple sessions.
+ * <p>
+ * The cache contains the serialized images of objects as they were read from disk, see
+ * {@link ObjectReader#startRecording()}. Images are immutable, every session de-serializes
+ * its own instance from them.
+ * <p>
+ * Every entry is tagged with the position of the object in the file. Updated objects are
+ * always written to a new position, so an entry is only used if its position matches the
+ * position in the OID index of the reading session. This way, sessions that read an older
+ * snapshot never see newer versions and vice versa. In addition, all entries of objects
+ * that are updated or deleted are removed when the transaction is committed, see
+ * {@link SessionManager#notifySharedCaches(ArrayList, boolean)}.
+ * <p>
+ * Entries are evicted in LRU order when the cache is full. Pinned entries are never evicted,
+ * except if the object is updated, and they do not count towards the size of the cache.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class SharedObjectCache {
+
+	private static final class Entry {
+		final long pos;
+		final byte[] image;
+		final Class<?> cls;
+		Entry(long pos, byte[] image, Class<?> cls) {
+			this.pos = pos;
+			this.image = image;
+			this.cls = cls;
+		}
+	}
+
+	private static final class ClassPin {
+		final Class<?> cls;
+		final boolean subclasses;
+		ClassPin(Class<?> cls, boolean subclasses) {
+			this.cls = cls;
+			this.subclasses = subclasses;
+		}
+	}
+
+	private final int maxSize;
+	private final LinkedHashMap<Long, Entry> entries;
+	private final HashMap<Long, Entry> pinnedEntries = new HashMap<>();
+	private final HashSet<Long> pinnedOids = new HashSet<>();
+	private final ArrayList<ClassPin> pinnedClasses = new ArrayList<>();
+	//The database that the entries belong to
+	private SessionManager sm;
+	private long hitCount = 0;
+	private long missCount = 0;
+
+	/**
+	 * @param maxSize Maximum number of unpinned objects in the cache
+	 */
+	public SharedObjectCache(final int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, SharedObjectCache.Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Attach the cache to a database. If the cache was attached to a different instance
+	 * before, all entries are discarded, because commits may have happened in between.
+	 * @param sm The SessionManager of the database
+	 */
+	synchronized void attach(SessionManager sm) {
+		if (this.sm != sm) {
+			clear();
+			this.sm = sm;
+		}
+	}
+
+	/**
+	 * @param oid The OID
+	 * @param pos The position of the object in the file
+	 * @return The image of the object or {@code null} if it is not cached at this position
+	 */
+	public synchronized byte[] get(long oid, long pos) {
+		Entry e = pinnedEntries.get(oid);
+		if (e == null) {
+			e = entries.get(oid);
+		}
+		if (e != null && e.pos == pos) {
+			hitCount++;
+			return e.image;
+		}
+		missCount++;
+		return null;
+	}
+
+	/**
+	 * @param oid The OID
+	 * @param pos The position of the object in the file
+	 * @param image The image of the object
+	 * @param cls The class of the object
+	 */
+	public synchronized void put(long oid, long pos, byte[] image, Class<?> cls) {
+		Entry e = new Entry(pos, image, cls);
+		if (isPinned(oid, cls)) {
+			pinnedEntries.put(oid, e);
+		} else {
+			entries.put(oid, e);
+		}
+	}
+
+	/**
+	 * Remove all entries of objects that have been updated or deleted.
+	 * @param updates The updated objects
+	 */
+	synchronized void invalidate(Collection<TxObjInfo> updates) {
+		for (TxObjInfo info: updates) {
+			entries.remove(info.getOid());
+			pinnedEntries.remove(info.getOid());
+		}
+	}
+
+	/**
+	 * Remove all entries, including pinned entries. Pins are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		pinnedEntries.clear();
+	}
+
+	/**
+	 * @param oid The object to remove, unless it is pinned
+	 */
+	public synchronized void evict(long oid) {
+		entries.remove(oid);
+	}
+
+	/**
+	 * Remove all unpinned entries.
+	 */
+	public synchronized void evictAll() {
+		entries.clear();
+	}
+
+	/**
+	 * Remove all unpinned entries of a class.
+	 * @param cls The class
+	 * @param subclasses Whether to include subclasses
+	 */
+	public synchronized void evictAll(Class<?> cls, boolean subclasses) {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (matches(cls, subclasses, it.next().cls)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param oid The object to keep in the cache
+	 */
+	public synchronized void pin(long oid) {
+		pinnedOids.add(oid);
+		Entry e = entries.remove(oid);
+		if (e != null) {
+			pinnedEntries.put(oid, e);
+		}
+	}
+
+	/**
+	 * @param oid The object that may be evicted again
+	 */
+	public synchronized void unpin(long oid) {
+		pinnedOids.remove(oid);
+		Entry e = pinnedEntries.get(oid);
+		if (e != null && !isPinned(oid, e.cls)) {
+			pinnedEntries.remove(oid);
+			entries.put(oid, e);
+		}
+	}
+
+	/**
+	 * Keep all instances of a class in the cache, including instances that are loaded later.
+	 * @param cls The class
+	 * @param subclasses Whether to include subclasses
+	 */
+	public synchronized void pinAll(Class<?> cls, boolean subclasses) {
+		pinnedClasses.add(new ClassPin(cls, subclasses));
+		Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Entry> e = it.next();
+			if (matches(cls, subclasses, e.getValue().cls)) {
+				pinnedEntries.put(e.getKey(), e.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Revert {@link #pinAll(Class, boolean)}.
+	 * @param cls The class
+	 * @param subclasses Whether to include subclasses
+	 */
+	public synchronized void unpinAll(Class<?> cls, boolean subclasses) {
+		Iterator<ClassPin> itP = pinnedClasses.iterator();
+		while (itP.hasNext()) {
+			ClassPin p = itP.next();
+			if (p.cls == cls && p.subclasses == subclasses) {
+				itP.remove();
+			}
+		}
+		Iterator<Map.Entry<Long, Entry>> it = pinnedEntries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Entry> e = it.next();
+			if (!isPinned(e.getKey(), e.getValue().cls)) {
+				entries.put(e.getKey(), e.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	private boolean isPinned(long oid, Class<?> cls) {
+		if (pinnedOids.contains(oid)) {
+			return true;
+		}
+		for (int i = 0; i < pinnedClasses.size(); i++) {
+			ClassPin p = pinnedClasses.get(i);
+			if (matches(p.cls, p.subclasses, cls)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(Class<?> cls, boolean subclasses, Class<?> entryCls) {
+		return cls == entryCls || (subclasses && cls.isAssignableFrom(entryCls));
+	}
+
+	/**
+	 * @return The number of objects in the cache, including pinned objects
+	 */
+	public synchronized int size() {
+		return entries.size() + pinnedEntries.size();
+	}
+
+	/**
+	 * @return The maximum number of unpinned objects in the cache
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of lookups that returned an image
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return The number of lookups that did not find a valid image
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+}
@@ -39,4 +39,14 @@ public interface StorageChannel {
 
 	int getNextPage(int prevPage);
 
+	/**
+	 * @return Whether pages carry a checksum that is verified when a page is read
+	 */
+	boolean hasPageChecksums();
+
+	/**
+	 * @return The size of the page header, this depends on {@link #hasPageChecksums()}
+	 */
+	int getPageHeaderSize();
+
 }
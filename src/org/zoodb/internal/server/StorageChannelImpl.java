@@ -17,9 +17,9 @@ package org.zoodb.internal.server;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.function.ToIntFunction;
 
+import org.zoodb.internal.server.index.PageResidencyManager;
 import org.zoodb.internal.util.DBLogger;
 
 /**
@@ -31,13 +31,11 @@ import org.zoodb.internal.util.DBLogger;
  */
 public final class StorageChannelImpl implements StorageChannel, IOResourceProvider {
 
-	public static final int POOL_SIZE_READER = 1;
-	
 	//Reader pool without auto paging
 	//The reader pool is multithreaded, because session allow multi-threaded reading.
-	//TODO just use an array list and 'synchronized' or a Lock. 
-	private final ArrayBlockingQueue<StorageChannelInput> readerPoolAPFalse = 
-			new ArrayBlockingQueue<>(POOL_SIZE_READER, false);
+	private final StorageReaderPool readerPoolAPFalse = 
+			new StorageReaderPool(this, StorageReaderPool.DEFAULT_MAX_SIZE);
+	//Guarded by 'this', readers may be created by concurrently reading threads of a session.
 	private final ArrayList<StorageChannelInput> viewsIn = new ArrayList<>();
 	private final ArrayList<StorageChannelOutput> viewsOut = new ArrayList<>();
 	private final StorageChannelOutput privateIndexWriter;
@@ -48,9 +46,6 @@ public final class StorageChannelImpl implements StorageChannel, IOResourceProvi
 
 	public StorageChannelImpl(StorageRoot root) {
 		this.root = root;
-		for (int i = 0; i < POOL_SIZE_READER; i++) {
-			readerPoolAPFalse.add(new StorageReader(this, false));
-		}
 		privateIndexWriter = new StorageWriter(this, false);
 		viewsOut.add(privateIndexWriter);
 	}
@@ -68,33 +63,34 @@ public final class StorageChannelImpl implements StorageChannel, IOResourceProvi
 		}
 		isClosed = true;
 		flush();
+		root.getIndexPageResidency().remove(this);
 		root.close(this);
 	}
 
 	@Override
 	public StorageChannelInput getInputChannel() {
-		try {
-			return readerPoolAPFalse.take();
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-		}
-		return null;
+		return readerPoolAPFalse.take();
 	}
 
 	@Override
 	public void returnInputChannel(StorageChannelInput in) {
-		readerPoolAPFalse.add(in);
+		readerPoolAPFalse.offer(in);
 	}
 
 	@Override
-	public final StorageChannelInput createReader(boolean autoPaging) {
+	public StorageReaderPool getInputChannelPool() {
+		return readerPoolAPFalse;
+	}
+
+	@Override
+	public final synchronized StorageChannelInput createReader(boolean autoPaging) {
 		StorageChannelInput in = new StorageReader(this, autoPaging);
 		viewsIn.add(in);
 		return in;
 	}
 	
 	@Override
-	public final void dropReader(StorageChannelInput in) {
+	public final synchronized void dropReader(StorageChannelInput in) {
 		if (!viewsIn.remove(in)) {
 			throw new IllegalArgumentException();
 		}
@@ -107,6 +103,31 @@ public final class StorageChannelImpl implements StorageChannel, IOResourceProvi
 		return out;
 	}
 	
+	@Override
+	public final void dropWriter(StorageChannelOutput out) {
+		if (out == privateIndexWriter || !viewsOut.remove(out)) {
+			throw new IllegalArgumentException();
+		}
+	}
+	
+	@Override
+	public synchronized void resetReaders() {
+		for (StorageChannelInput in: viewsIn) {
+			in.reset();
+		}
+		readerPoolAPFalse.reset();
+	}
+
+	@Override
+	public PageResidencyManager getIndexPageResidency() {
+		return root.getIndexPageResidency();
+	}
+
+	@Override
+	public PagePrefetcher getPagePrefetcher() {
+		return root.getPagePrefetcher();
+	}
+	
 	/**
 	 * Not a true flush, just writes the stuff...
 	 */
@@ -116,6 +137,7 @@ public final class StorageChannelImpl implements StorageChannel, IOResourceProvi
 		root.force();
 	}
 
+	@Override
 	public void flushNoForce() {
 		//flush associated splits.
 		for (StorageChannelOutput paf: viewsOut) {
@@ -142,6 +164,17 @@ public final class StorageChannelImpl implements StorageChannel, IOResourceProvi
 		root.write(buf, pageId);
 	}
 
+	@Override
+	public boolean hasPageChecksums() {
+		return root.hasPageChecksums();
+	}
+
+	@Override
+	public int getPageHeaderSize() {
+		return root.hasPageChecksums() ? 
+				DiskIO.PAGE_HEADER_SIZE_CHECKSUM : DiskIO.PAGE_HEADER_SIZE;
+	}
+
 	@Override
 	@Deprecated //use root.xyz() 
 	public final int statsGetReadCount() {
@@ -15,6 +15,8 @@
  */
 package org.zoodb.internal.server;
 
+import java.nio.ByteBuffer;
+
 import org.zoodb.internal.SerialInput;
 
 /**
@@ -52,6 +54,14 @@ public interface StorageChannelInput extends SerialInput, DiskIO {
 
 	void noCheckReadAsInt(long[] array, int nElements);
 
+	/**
+	 * Copy raw bytes of the current page into a buffer. The current position is not changed.
+	 * @param dst The buffer, the bytes are written at its current position
+	 * @param pageOffset The position of the first byte in the page
+	 * @param len The number of bytes
+	 */
+	void copyPageBytes(ByteBuffer dst, int pageOffset, int len);
+
 	void reset();
 
 	void setOverflowCallbackRead(CallbackPageRead readCallback);
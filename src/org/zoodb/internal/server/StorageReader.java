@@ -43,6 +43,7 @@ public class StorageReader implements StorageChannelInput {
 	
 	private CallbackPageRead overflowCallback = null;
 	private PAGE_TYPE currentType;
+	private final PageChecksum checksum = new PageChecksum();
 
 	/**
 	 * Use for creating an additional view on a given file.
@@ -90,6 +91,9 @@ public class StorageReader implements StorageChannelInput {
 			currentPage = pageId;
 			buf.clear();
 			root.readPage(buf, pageId);
+			if (type != PAGE_TYPE.DB_HEADER) {
+				verifyChecksum();
+			}
 		}
 
 		currentType = type;
@@ -100,10 +104,10 @@ public class StorageReader implements StorageChannelInput {
 		
 		if (pageOffset == 0) {
 			if (isAutoPaging) {
-				pageOffset = PAGE_HEADER_SIZE_DATA; //TODO this is dirty...
+				pageOffset = root.getPageHeaderSize() + PAGE_HEADER_SIZE_DATA; //TODO this is dirty...
 			} else {
 				if (type != PAGE_TYPE.DB_HEADER) {
-					pageOffset = PAGE_HEADER_SIZE;
+					pageOffset = root.getPageHeaderSize();
 				}
 			}
 		}
@@ -252,6 +256,14 @@ public class StorageReader implements StorageChannelInput {
 //		}
 	}
 	
+	@Override
+	public void copyPageBytes(ByteBuffer dst, int pageOffset, int len) {
+		ByteBuffer src = buf.duplicate();
+		src.limit(pageOffset + len);
+		src.position(pageOffset);
+		dst.put(src);
+	}
+	
 	@Override
 	public int readInt() {
 		if (!checkPos(S_INT)) {
@@ -309,6 +321,7 @@ public class StorageReader implements StorageChannelInput {
 			currentPage = pageId;
 			buf.clear();
 			root.readPage(buf, pageId);
+			verifyChecksum();
 			buf.rewind();
 			//read header
 			readHeader();
@@ -318,17 +331,27 @@ public class StorageReader implements StorageChannelInput {
 		}
  	}
 
+	private void verifyChecksum() {
+		if (root.hasPageChecksums() && !checksum.verify(buf)) {
+			int pageId = currentPage;
+			currentPage = -1;
+			throw DBLogger.newFatalDataStore("Page checksum mismatch, the database is " +
+					"corrupted. PageId=" + pageId, null);
+		}
+	}
+
 	private void readHeader() {
 		byte pageType = buf.get();
 		buf.get(); //dummy
 		buf.getShort(); //pageVersion
 		txTimeStamp = buf.getLong();
+		//skip checksum, see verifyChecksum()
 		if (pageType != currentType.getId()) {
 			throw DBLogger.newFatalInternal("Page type mismatch, expected " + 
 					currentType.getId() + "/" + currentType + " (tx=" + root.getTxId() +
 					") but got " + pageType + " (tx=" + txTimeStamp + "). PageId=" + currentPage);
 		}
-		buf.position(PAGE_HEADER_SIZE);
+		buf.position(root.getPageHeaderSize());
 		if (isAutoPaging) {
 			headerClassOID = buf.getLong();
 		}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of readers (without auto-paging) that are used for reading index pages.
+ * <p>
+ * The pool starts empty and creates readers on demand, up to the maximum size. Only if all
+ * readers are in use, threads have to wait for a reader to be returned. Readers that have
+ * not been used for a while are dropped when other readers are returned, except for the
+ * last one.
+ * <p>
+ * Readers buffer the last page that they have read. To make use of the buffer, a thread
+ * gets the reader that it used last, if that reader is available. Otherwise it gets the
+ * reader that was returned last.
+ *
+ * @author Tilmann Zaeschke
+ */
+public final class StorageReaderPool {
+
+	/** Default maximum number of readers. */
+	public static final int DEFAULT_MAX_SIZE =
+			Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/** Readers that are idle for longer than this are dropped. */
+	static final long IDLE_TIMEOUT_NS = 10_000_000_000L;
+
+	private static final class IdleReader {
+		final StorageChannelInput in;
+		final long threadId;
+		final long returnedNs;
+		IdleReader(StorageChannelInput in, long threadId, long returnedNs) {
+			this.in = in;
+			this.threadId = threadId;
+			this.returnedNs = returnedNs;
+		}
+	}
+
+	private final StorageChannelImpl channel;
+	private int maxSize;
+	//ordered by return time
+	private final ArrayList<IdleReader> idle = new ArrayList<>();
+	private final ArrayList<StorageChannelInput> all = new ArrayList<>();
+
+	private int inUse = 0;
+	private int peakInUse = 0;
+	private long waitCount = 0;
+	private long waitTimeNs = 0;
+
+	StorageReaderPool(StorageChannelImpl channel, int maxSize) {
+		this.channel = channel;
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * Get a reader, create a new one or wait until a reader is returned.
+	 * @return A reader
+	 */
+	synchronized StorageChannelInput take() {
+		StorageChannelInput in = takeIdle();
+		if (in == null && all.size() < maxSize) {
+			in = new StorageReader(channel, false);
+			all.add(in);
+		}
+		if (in == null) {
+			long t0 = System.nanoTime();
+			waitCount++;
+			try {
+				while ((in = takeIdle()) == null) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} finally {
+				waitTimeNs += System.nanoTime() - t0;
+			}
+		}
+		inUse++;
+		if (inUse > peakInUse) {
+			peakInUse = inUse;
+		}
+		return in;
+	}
+
+	private StorageChannelInput takeIdle() {
+		if (idle.isEmpty()) {
+			return null;
+		}
+		long threadId = Thread.currentThread().getId();
+		for (int i = idle.size() - 1; i >= 0; i--) {
+			if (idle.get(i).threadId == threadId) {
+				return idle.remove(i).in;
+			}
+		}
+		return idle.remove(idle.size() - 1).in;
+	}
+
+	/**
+	 * @param in A reader that was returned by {@link #take()}
+	 */
+	synchronized void offer(StorageChannelInput in) {
+		long now = System.nanoTime();
+		inUse--;
+		//drop readers that have not been used for a while, but keep at least one
+		while (!idle.isEmpty() && now - idle.get(0).returnedNs > IDLE_TIMEOUT_NS) {
+			all.remove(idle.remove(0).in);
+		}
+		if (all.size() > maxSize) {
+			//the pool has been shrunk
+			all.remove(in);
+			return;
+		}
+		idle.add(new IdleReader(in, Thread.currentThread().getId(), now));
+		notify();
+	}
+
+	/**
+	 * Discard the buffered pages of all readers.
+	 */
+	synchronized void reset() {
+		for (StorageChannelInput in: all) {
+			in.reset();
+		}
+	}
+
+	/**
+	 * @param maxSize The maximum number of readers
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Invalid reader pool size: " + maxSize);
+		}
+		this.maxSize = maxSize;
+		while (all.size() > maxSize && !idle.isEmpty()) {
+			all.remove(idle.remove(0).in);
+		}
+		notifyAll();
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of readers in the pool, including readers that are in use
+	 */
+	public synchronized int statsGetSize() {
+		return all.size();
+	}
+
+	/**
+	 * @return The number of readers that are currently in use
+	 */
+	public synchronized int statsGetInUse() {
+		return inUse;
+	}
+
+	/**
+	 * @return The maximum number of readers that were in use at the same time
+	 */
+	public synchronized int statsGetPeakInUse() {
+		return peakInUse;
+	}
+
+	/**
+	 * @return The number of times that a thread had to wait for a reader
+	 */
+	public synchronized long statsGetWaitCount() {
+		return waitCount;
+	}
+
+	/**
+	 * @return The total time in nanoseconds that threads waited for readers
+	 */
+	public synchronized long statsGetWaitTimeNs() {
+		return waitTimeNs;
+	}
+}
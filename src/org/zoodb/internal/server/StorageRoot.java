@@ -17,6 +17,8 @@ package org.zoodb.internal.server;
 
 import java.nio.ByteBuffer;
 
+import org.zoodb.internal.server.index.PageResidencyManager;
+
 public interface StorageRoot {
 
 	void close(IOResourceProvider channel);
@@ -47,8 +49,41 @@ public interface StorageRoot {
 
 	IOResourceProvider getIndexChannel();
 
+	/**
+	 * @return The manager that limits the number of index pages in memory
+	 */
+	PageResidencyManager getIndexPageResidency();
+
+	/**
+	 * @return The background reader for pages that will be read soon, or {@code null} if
+	 * reading ahead is not supported
+	 */
+	PagePrefetcher getPagePrefetcher();
+
+	/**
+	 * @param flag Whether pages carry a checksum, see {@link FileHeader#hasPageChecksums()}
+	 */
+	void setPageChecksums(boolean flag);
+
+	boolean hasPageChecksums();
+
+	/**
+	 * Use a write-ahead log for all following commits, see {@link WriteAheadLog}. This has no
+	 * effect if the log is already used or if the storage is not a file.
+	 */
+	void startWriteAheadLog();
+
+	boolean hasWriteAheadLog();
+
 	void close();
 
 	boolean debugIsPageIdInFreeList(int pageId);
+
+	/**
+	 * Shrink the storage to the given number of pages. The caller has to ensure that none of
+	 * the removed pages is in use.
+	 * @param pageCount The new number of pages
+	 */
+	void truncate(int pageCount);
 	
 }
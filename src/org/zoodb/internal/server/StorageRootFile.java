@@ -19,12 +19,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.util.ArrayList;
 
 import org.zoodb.internal.server.index.FreeSpaceManager;
+import org.zoodb.internal.server.index.PageResidencyManager;
 import org.zoodb.internal.util.DBLogger;
 import org.zoodb.internal.util.PrimLongSetZ;
 import org.zoodb.tools.DBStatistics;
@@ -33,6 +35,10 @@ import org.zoodb.tools.ZooDebug;
 /**
  * A common root for multiple file views. Each view accesses its own page,
  * the root contains the common file resource.
+ * <p>
+ * In read-only mode (options="r") the file is protected with a shared lock, so it can be
+ * opened by several processes at the same time. The file is memory mapped, which allows
+ * the processes to share the pages in the OS page cache. 
  * 
  * @author Tilmann Zaeschke
  *
@@ -43,19 +49,33 @@ public final class StorageRootFile implements StorageRoot {
 	private final StorageChannelImpl indexChannel;
 
 	private final FreeSpaceManager fsm;
+	private final PageResidencyManager indexPageResidency = new PageResidencyManager();
+	private final String dbPath;
 	private final RandomAccessFile raf;
 	private final FileLock fileLock;
 	private final FileChannel fc;
 	// use LONG to enforce long-arithmetic in calculations
 	private final long PAGE_SIZE;
+	private final boolean isReadOnly;
+	// Memory mapped file in read-only mode, otherwise 'null'. Each segment contains only 
+	// whole pages.
+	private final MappedByteBuffer[] segments;
+	private final long segmentSize;
 
 	private int statNRead; 
 	private int statNWrite; 
 	private final PrimLongSetZ statNReadUnique = new PrimLongSetZ();
+	
+	private volatile boolean hasPageChecksums = false;
+	private volatile WriteAheadLog wal = null;
+	private final PagePrefetcher prefetcher;
 
 	public StorageRootFile(String dbPath, String options, int pageSize, FreeSpaceManager fsm) {
 		this.fsm = fsm;
+		this.dbPath = dbPath;
 		PAGE_SIZE = pageSize;
+		isReadOnly = "r".equals(options);
+		segmentSize = (Integer.MAX_VALUE / PAGE_SIZE) * PAGE_SIZE;
 		File file = new File(dbPath);
 		if (!file.exists()) {
 			throw DBLogger.newUser("DB file does not exist: " + dbPath);
@@ -65,7 +85,7 @@ public final class StorageRootFile implements StorageRoot {
 			fc = raf.getChannel();
 			try {
 				//tryLock is supposed to return null, but it throws an Exception
-				fileLock = fc.tryLock();
+				fileLock = fc.tryLock(0, Long.MAX_VALUE, isReadOnly);
 				if (fileLock == null) {
 					fc.close();
 					raf.close();
@@ -80,12 +100,44 @@ public final class StorageRootFile implements StorageRoot {
 			if (ZooDebug.isTesting()) {
 				ZooDebug.registerFile(fc);
 			}
+			//recover from a crash
+			File logFile = WriteAheadLog.getFile(dbPath);
+			if (logFile.exists()) {
+				if (isReadOnly) {
+					fileLock.release();
+					fc.close();
+					raf.close();
+					throw DBLogger.newUser("The database needs to be recovered, please open it "
+							+ "once in read-write mode: " + dbPath);
+				}
+				WriteAheadLog.replay(logFile, fc, pageSize);
+			}
+			segments = isReadOnly ? map() : null;
 		} catch (IOException e) {
 			throw DBLogger.newFatal("Error opening database: " + dbPath, e);
 		}
+		//Mapped files are read ahead by the OS
+		prefetcher = segments != null ? null : 
+			new PagePrefetcher(this::readPageFromFile, pageSize, dbPath);
 		this.indexChannel = new StorageChannelImpl(this);
 	}
 
+	private MappedByteBuffer[] map() throws IOException {
+		long size = fc.size();
+		MappedByteBuffer[] ret = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+		for (int i = 0; i < ret.length; i++) {
+			long pos = i * segmentSize;
+			ret[i] = fc.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(segmentSize, size - pos));
+		}
+		return ret;
+	}
+
+	private void checkWritable() {
+		if (isReadOnly) {
+			throw DBLogger.newUser("The database is opened in read-only mode: " + dbPath);
+		}
+	}
+
 	@Override
 	public int getNextPage(int prevPage) {
 		return fsm.getNextPage(prevPage);
@@ -99,9 +151,17 @@ public final class StorageRootFile implements StorageRoot {
 	@Override
 	public final void close() {
 		indexChannel.close();
+		if (prefetcher != null) {
+			prefetcher.stop();
+		}
+		if (wal != null) {
+			wal.close();
+		}
 		//TODO flush();
 		try {
-			fc.force(true);
+			if (!isReadOnly) {
+				fc.force(true);
+			}
 			fileLock.release();
 			fc.close();
 			raf.close();
@@ -119,7 +179,14 @@ public final class StorageRootFile implements StorageRoot {
 
 	@Override
 	public void force() {
+		if (isReadOnly) {
+			return;
+		}
 		indexChannel.flushNoForce();
+		if (wal != null) {
+			wal.commit();
+			return;
+		}
 		try {
 			fc.force(false);
 		} catch (IOException e) {
@@ -139,6 +206,34 @@ public final class StorageRootFile implements StorageRoot {
 		return indexChannel;
 	}
 
+	@Override
+	public PageResidencyManager getIndexPageResidency() {
+		return indexPageResidency;
+	}
+
+	@Override
+	public void setPageChecksums(boolean flag) {
+		this.hasPageChecksums = flag;
+	}
+
+	@Override
+	public boolean hasPageChecksums() {
+		return hasPageChecksums;
+	}
+
+	@Override
+	public void startWriteAheadLog() {
+		checkWritable();
+		if (wal == null) {
+			wal = new WriteAheadLog(WriteAheadLog.getFile(dbPath), fc, (int) PAGE_SIZE);
+		}
+	}
+
+	@Override
+	public boolean hasWriteAheadLog() {
+		return wal != null;
+	}
+
 	@Override
 	public int getDataChannelCount() {
 		return views.size();
@@ -146,19 +241,44 @@ public final class StorageRootFile implements StorageRoot {
 	
 	@Override
 	public final void readPage(ByteBuffer buf, long pageId) {
+		if (segments != null) {
+			readMapped(buf, pageId * PAGE_SIZE);
+		} else if (!prefetcher.take(buf, pageId)) {
+			readPageFromFile(buf, pageId);
+		}
+		if (DBStatistics.isEnabled()) {
+			statNRead++;
+			statNReadUnique.add(pageId);
+		}
+	}
+
+	private void readPageFromFile(ByteBuffer buf, long pageId) {
 		try {
 			fc.read(buf, pageId * PAGE_SIZE);
-			if (DBStatistics.isEnabled()) {
-				statNRead++;
-				statNReadUnique.add(pageId);
-			}
 		} catch (IOException e) {
 			throw DBLogger.newFatal("Error loading Page: " + pageId, e);
 		}
 	}
 
+	private void readMapped(ByteBuffer buf, long pos) {
+		int i = (int) (pos / segmentSize);
+		if (i >= segments.length) {
+			//like FileChannel.read() beyond the end of the file
+			return;
+		}
+		ByteBuffer segment = segments[i].duplicate();
+		int offset = (int) (pos % segmentSize);
+		if (offset >= segment.limit()) {
+			return;
+		}
+		segment.position(offset);
+		segment.limit(Math.min(segment.limit(), offset + buf.remaining()));
+		buf.put(segment);
+	}
+
 	@Override
 	public final void write(ByteBuffer buf, long pageId) {
+		checkWritable();
 		try {
 			if (pageId<0) {
 				return;
@@ -166,9 +286,16 @@ public final class StorageRootFile implements StorageRoot {
 			if (DBStatistics.isEnabled()) {
 				statNWrite++;
 			}
+			if (wal != null && wal.append(buf, pageId)) {
+				//written by the log
+				return;
+			}
 			fc.write(buf, pageId * PAGE_SIZE);
 		} catch (IOException e) {
 			throw DBLogger.newFatal("Error writing page: " + pageId, e);
+		} finally {
+			//after writing, this also discards reads that overlap with the write
+			prefetcher.invalidate(pageId);
 		}
 	}
 
@@ -203,9 +330,31 @@ public final class StorageRootFile implements StorageRoot {
 		}
 	}
 
+	@Override
+	public PagePrefetcher getPagePrefetcher() {
+		return prefetcher;
+	}
+
 	@Override
 	public boolean debugIsPageIdInFreeList(int pageId) {
 		return fsm.debugIsPageIdInFreeList(pageId);
 	}
 
+	@Override
+	public void truncate(int pageCount) {
+		checkWritable();
+		if (wal != null) {
+			//otherwise a replay could write pages beyond the end of the file
+			wal.checkpoint();
+		}
+		try {
+			if (fc.size() > pageCount * PAGE_SIZE) {
+				fc.truncate(pageCount * PAGE_SIZE);
+			}
+			prefetcher.clear();
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error truncating database file.", e);
+		}
+	}
+
 }
@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import org.zoodb.internal.server.index.FreeSpaceManager;
+import org.zoodb.internal.server.index.PageResidencyManager;
 import org.zoodb.internal.util.PrimLongSetZ;
 import org.zoodb.tools.DBStatistics;
 import org.zoodb.tools.impl.DataStoreManagerInMemory;
@@ -29,6 +30,7 @@ public class StorageRootInMemory implements StorageRoot {
 	private final StorageChannelImpl indexChannel;
 
 	private final FreeSpaceManager fsm;
+	private final PageResidencyManager indexPageResidency = new PageResidencyManager();
 	// use bucket version of array List
 	private final ArrayList<ByteBuffer> buffers;
 
@@ -38,6 +40,8 @@ public class StorageRootInMemory implements StorageRoot {
 	private int statNWrite = 0;
 	private final PrimLongSetZ statNReadUnique = new PrimLongSetZ();
 	
+	private volatile boolean hasPageChecksums = false;
+	
 	/**
 	 * Constructor for use by DataStoreManager.
 	 * @param dbPath The database file path
@@ -122,6 +126,37 @@ public class StorageRootInMemory implements StorageRoot {
 		return indexChannel;
 	}
 
+	@Override
+	public PageResidencyManager getIndexPageResidency() {
+		return indexPageResidency;
+	}
+
+	@Override
+	public PagePrefetcher getPagePrefetcher() {
+		//pages are in memory anyway
+		return null;
+	}
+
+	@Override
+	public void setPageChecksums(boolean flag) {
+		this.hasPageChecksums = flag;
+	}
+
+	@Override
+	public boolean hasPageChecksums() {
+		return hasPageChecksums;
+	}
+
+	@Override
+	public void startWriteAheadLog() {
+		//In-memory databases are not durable anyway
+	}
+
+	@Override
+	public boolean hasWriteAheadLog() {
+		return false;
+	}
+
 	@Override
 	public int getDataChannelCount() {
 		return views.size();
@@ -187,4 +222,11 @@ public class StorageRootInMemory implements StorageRoot {
 	public boolean debugIsPageIdInFreeList(int pageId) {
 		return fsm.debugIsPageIdInFreeList(pageId);
 	}
+
+	@Override
+	public void truncate(int pageCount) {
+		while (buffers.size() > pageCount) {
+			buffers.remove(buffers.size() - 1);
+		}
+	}
 }
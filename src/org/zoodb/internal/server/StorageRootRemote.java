@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.zoodb.internal.server.index.FreeSpaceManager;
+import org.zoodb.internal.server.index.PageResidencyManager;
+import org.zoodb.internal.util.DBLogger;
+import org.zoodb.internal.util.PrimLongSetZ;
+import org.zoodb.tools.DBStatistics;
+
+/**
+ * Storage of a database that is accessed through a {@link PageServer}.
+ * 
+ * @author Tilmann Zaeschke
+ */
+final class StorageRootRemote implements StorageRoot {
+
+	private final ArrayList<IOResourceProvider> views = new ArrayList<>();
+	private final StorageChannelImpl indexChannel;
+
+	private final FreeSpaceManager fsm;
+	private final PageResidencyManager indexPageResidency = new PageResidencyManager();
+	private final PageClient client;
+
+	private final int PAGE_SIZE;
+	
+	private int statNRead = 0;
+	private int statNWrite = 0;
+	private final PrimLongSetZ statNReadUnique = new PrimLongSetZ();
+	
+	private volatile boolean hasPageChecksums = false;
+	
+	/**
+	 * @param client The connection to the server
+	 * @param fsm The free space manager instance
+	 */
+	StorageRootRemote(PageClient client, FreeSpaceManager fsm) {
+		this.client = client;
+		this.fsm = fsm;
+		//The page size is defined by the database file of the server
+		PAGE_SIZE = client.getPageSize();
+		this.indexChannel = new StorageChannelImpl(this);
+	}
+
+	@Override
+	public int getNextPage(int prevPage) {
+		return fsm.getNextPage(prevPage);
+	}
+
+	@Override
+	public void reportFreePage(int pageId) {
+		fsm.reportFreePage(pageId);
+	}
+
+	@Override
+	public void close() {
+		indexChannel.close();
+		client.close();
+	}
+
+	@Override
+	public void close(IOResourceProvider channel) {
+		if (!views.remove(channel) && channel != indexChannel) {
+			throw new IllegalStateException();
+		}
+	}
+
+	@Override
+	public void force() {
+		indexChannel.flushNoForce();
+		client.force();
+	}
+
+	@Override
+	public final IOResourceProvider createChannel() {
+		IOResourceProvider c = new StorageChannelImpl(this);
+		views.add(c);
+		return c;
+	}
+
+	@Override
+	public final IOResourceProvider getIndexChannel() {
+		return indexChannel;
+	}
+
+	@Override
+	public PageResidencyManager getIndexPageResidency() {
+		return indexPageResidency;
+	}
+
+	@Override
+	public PagePrefetcher getPagePrefetcher() {
+		//not supported by the page server
+		return null;
+	}
+
+	@Override
+	public void setPageChecksums(boolean flag) {
+		this.hasPageChecksums = flag;
+	}
+
+	@Override
+	public boolean hasPageChecksums() {
+		return hasPageChecksums;
+	}
+
+	@Override
+	public void startWriteAheadLog() {
+		//Durability is the responsibility of the server
+	}
+
+	@Override
+	public boolean hasWriteAheadLog() {
+		return false;
+	}
+
+	@Override
+	public int getDataChannelCount() {
+		return views.size();
+	}
+
+	@Override
+	public void readPage(ByteBuffer buf, long pageId) {
+		client.readPage(buf, pageId);
+		if (DBStatistics.isEnabled()) {
+			statNRead++;
+			statNReadUnique.add(pageId);
+		}
+	}
+
+	@Override
+	public void write(ByteBuffer buf, long pageId) {
+		if (pageId<0) {
+			return;
+		}
+		if (DBStatistics.isEnabled()) {
+			statNWrite++;
+		}
+		client.write(buf, pageId);
+	}
+	
+	@Override
+	public int statsGetReadCount() {
+		return statNRead;
+	}
+
+	@Override
+	public int statsGetReadCountUnique() {
+		int ret = statNReadUnique.size();
+		statNReadUnique.clear();
+		return ret;
+	}
+
+	@Override
+	public int statsGetWriteCount() {
+		return statNWrite;
+	}
+
+	@Override
+	public int getPageSize() {
+		return PAGE_SIZE;
+	}
+
+	@Override
+	public int statsGetPageCount() {
+		return client.getPageCount();
+	}
+
+	@Override
+	public boolean debugIsPageIdInFreeList(int pageId) {
+		return fsm.debugIsPageIdInFreeList(pageId);
+	}
+
+	@Override
+	public void truncate(int pageCount) {
+		throw DBLogger.newUser("Database files can not be truncated by clients of a server.");
+	}
+}
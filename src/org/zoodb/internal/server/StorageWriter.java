@@ -31,6 +31,9 @@ public class StorageWriter implements StorageChannelOutput {
 	//indicate whether to automatically allocate and move to next page when page end is reached.
 	private final boolean isAutoPaging;
 	private boolean isWriting = true;  //TODO merge with currentPage=-1
+	//Whether the current page has a page header (and a checksum)
+	private boolean hasHeader = false;
+	private final PageChecksum checksum = new PageChecksum();
 	//The header is only written in auto-paging mode
 	private long classOid = -1;
 	
@@ -72,6 +75,7 @@ public class StorageWriter implements StorageChannelOutput {
 		isWriting = true;
 		currentPage = pageId;
 		buf.clear();
+		hasHeader = false;
 		currentDataType = type;
 		if (type != PAGE_TYPE.DB_HEADER) {
 			writeHeader();
@@ -111,6 +115,7 @@ public class StorageWriter implements StorageChannelOutput {
 	        isWriting = true;
 			currentPage = pageId;
 			buf.clear();
+			hasHeader = false;
 			if (currentDataType != PAGE_TYPE.DB_HEADER) {
 				writeHeader();
 			}
@@ -132,7 +137,13 @@ public class StorageWriter implements StorageChannelOutput {
 	
 	private void writeData() {
 		if (isWriting) {
-			buf.flip();
+			if (hasHeader && root.hasPageChecksums()) {
+				//The checksum covers the whole page, so we also write the whole page
+				checksum.write(buf);
+				buf.clear();
+			} else {
+				buf.flip();
+			}
 			root.write(buf, currentPage);
 		}
 	}
@@ -341,8 +352,15 @@ public class StorageWriter implements StorageChannelOutput {
 	private void writeHeader() {
 		buf.put(currentDataType.getId());
 		buf.put((byte) 0); //dummy
-		buf.putShort(PAGE_FORMAT_VERSION);
-		buf.putLong(root.getTxId());
+		if (root.hasPageChecksums()) {
+			buf.putShort(PAGE_FORMAT_VERSION_CHECKSUM);
+			buf.putLong(root.getTxId());
+			buf.putInt(0); //checksum, see writeData()
+		} else {
+			buf.putShort(PAGE_FORMAT_VERSION);
+			buf.putLong(root.getTxId());
+		}
+		hasHeader = true;
 		if (isAutoPaging) {
 			buf.putLong(classOid);
 		}
@@ -15,11 +15,11 @@
  */
 package org.zoodb.internal.server;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
-import org.zoodb.internal.util.Pair;
+import org.zoodb.internal.util.CritBit64;
 import org.zoodb.internal.util.PrimLongMapZ;
 
 /**
@@ -46,24 +46,50 @@ import org.zoodb.internal.util.PrimLongMapZ;
  * In other words: a transaction can be removed if it ended before any CURRENTLY ACTIVE transaction 
  * started.
  * 
+ * Data structures:
+ * - Active transactions are kept in a crit-bit tree, ordered by their ID, so the oldest active 
+ *   transaction can be found and removed without scanning.
+ * - Committed transactions are kept in a queue in the order that they ended. Pruning removes 
+ *   transactions from the head of the queue until it finds one that ended after the oldest 
+ *   active transaction started. The cost of pruning depends only on the number of 
+ *   removed OIDs.
+ * - For each OID, the summary contains the latest update. Conflict detection requires only
+ *   one lookup per updated object.
  * 
  * @author Tilmann Zaeschke
  */
 class TxManager {
 
-	/** This stores a history of all objects that were modified or deleted in a transaction. */
-	private final PrimLongMapZ<ArrayList<TxObjInfo>> updateHistory = new PrimLongMapZ<>();
+	/** 
+	 * A committed transaction that may still conflict with active transactions.
+	 */
+	private static final class CommittedTx {
+		final long txId;
+		//The latest TX-ID at the time the TX ended
+		final long end;
+		final long[] oids;
+		CommittedTx(long txId, long end, long[] oids) {
+			this.txId = txId;
+			this.end = end;
+			this.oids = oids;
+		}
+	}
+
+	/** The updated or deleted OIDs of transactions that are committing. */
+	private final PrimLongMapZ<long[]> committingTx = new PrimLongMapZ<>();
 	
-	private final PrimLongMapZ<TxObjInfo> updateSummary = new PrimLongMapZ<>();
+	/** Committed transactions, ordered by the time they ended. */
+	private final ArrayDeque<CommittedTx> endedTx = new ArrayDeque<>();
 	
-	//TODO use CritBit tree?
-	//Maps tx-end to tx-ID
-	//Transactions are added in the order that they end. This means they are ordered by txEnd.
-	private final LinkedList<Pair<Long, Long>> endedTx = new LinkedList<>();
+	/** The latest update of every OID in the history. */
+	private final PrimLongMapZ<TxObjInfo> updateSummary = new PrimLongMapZ<>();
 	
 	private boolean isSingleSession = true;
 	
-	private final LinkedList<Long> activeTXs = new LinkedList<>();
+	/** Active transactions. The values are not used. */
+	private final CritBit64<Boolean> activeTXs = CritBit64.create();
+	/** The oldest active transaction or -1 if there is none. */
+	private long oldestActiveTx = -1;
 	private long latestTxId;
 	
 	public TxManager(long txId) {
@@ -124,12 +150,16 @@ class TxManager {
 		}
 		
 		//apply updates
-		updateHistory.put(txId, updatesAndDeletes);
-		for (TxObjInfo info: updatesAndDeletes) {
+		//We copy the OIDs, the list of the TxContext is reused.
+		long[] oids = new long[updatesAndDeletes.size()];
+		for (int i = 0; i < oids.length; i++) {
+			TxObjInfo info = updatesAndDeletes.get(i);
 			// +1 to ensure conflicts even with latest transaction
 			info.setTxId(txId);
 			updateSummary.put(info.getOid(), info);
+			oids[i] = info.getOid();
 		}
+		committingTx.put(txId, oids);
 		//not very clean: 'null' indicates no conflicts.
 		return null;
 	}
@@ -140,39 +170,38 @@ class TxManager {
 	 * @param txId TX ID
 	 */
 	synchronized void deRegisterTx(long txId) {
-		activeTXs.remove(txId);
+		if (activeTXs.remove(txId) != null && txId == oldestActiveTx) {
+			CritBit64.CBIterator<Boolean> it = activeTXs.iterator();
+			oldestActiveTx = it.hasNext() ? it.nextKey() : -1;
+		}
 		if (isSingleSession) {
 			//no need to record history
 			return;
 		}
 		
 		//cache only if there are active TXs
-		if (activeTXs.isEmpty()) {
-			updateHistory.clear();
+		if (activeTXs.size() == 0) {
+			committingTx.clear();
+			endedTx.clear();
 			updateSummary.clear();
 			return;
 		}
 		
-		endedTx.add(new Pair<>(latestTxId, txId));
+		long[] oids = committingTx.remove(txId);
+		if (oids != null) {
+			endedTx.add(new CommittedTx(txId, latestTxId, oids));
+		}
 		
 		//drop all tx with END < min(active_start), i.e. drop all that ended before any of the 
 		//remaining active transactions started.
-		
-		long minOpenTx = activeTXs.getFirst();
-		while (!endedTx.isEmpty() && endedTx.getFirst().getA() < minOpenTx) {
-			long beginID = endedTx.getFirst().getB();
-			ArrayList<TxObjInfo> allUpdates = updateHistory.get(beginID);
-			if (allUpdates != null) {
-				for (TxObjInfo info: allUpdates) {
-					long oid = info.getOid();
-					long tx = updateSummary.get(oid).getTxId();
-					if (tx == beginID) {
-						updateSummary.remove(oid);
-					}
+		while (!endedTx.isEmpty() && endedTx.peekFirst().end < oldestActiveTx) {
+			CommittedTx tx = endedTx.removeFirst();
+			for (long oid: tx.oids) {
+				TxObjInfo info = updateSummary.get(oid);
+				if (info != null && info.getTxId() == tx.txId) {
+					updateSummary.remove(oid);
 				}
-				updateHistory.remove(beginID);
 			}
-			endedTx.removeFirst();
 		}
 	}
 
@@ -181,19 +210,27 @@ class TxManager {
 	 * @return ID for the new TX
 	 */
 	synchronized long getNextTxId() {
-		//this is synchronized to ensure correct ordering of the list.
-		//alternatively we could use a sorted list, but this is probably not cheaper... ?
 		latestTxId++;
-		activeTXs.add(latestTxId);
+		activeTXs.put(latestTxId, Boolean.TRUE);
+		if (oldestActiveTx < 0) {
+			oldestActiveTx = latestTxId;
+		}
 		return latestTxId;
 	}
 
+	/**
+	 * @return The ID of the oldest transaction that has neither committed nor rolled back.
+	 */
+	synchronized long getOldestActiveTxId() {
+		return oldestActiveTx < 0 ? latestTxId + 1 : oldestActiveTx;
+	}
+
 	synchronized void setMultiSession() {
 		isSingleSession = false;
 	}
 	
 	synchronized int statsGetBufferedTxCount() {
-		return updateHistory.size();
+		return endedTx.size() + committingTx.size();
 	}
 	
 	synchronized int statsGetBufferedOidCount() {
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.util.DBLogger;
+import org.zoodb.tools.ZooDebug;
+
+/**
+ * Redo log for database files.
+ * <p>
+ * All pages that are written to the database file are also appended to the log. A commit
+ * appends a commit record and forces only the log, which is much faster than forcing the
+ * database file, because the log is written sequentially. The database file is forced later
+ * by a checkpoint, after which the log is cleared. Checkpoints are performed in the
+ * background when the log exceeds {@link #CHECKPOINT_SIZE} and when the database is closed.
+ * <p>
+ * Root pages are written to the database file only after the log has been forced. Otherwise
+ * a root page could end up on disk while the pages that it refers to do not.
+ * <p>
+ * When a database file is opened and a log exists, all pages of completed commits are
+ * written to the database file. Pages of incomplete commits are ignored, these can only be
+ * pages that are free in the last committed state.
+ * <p>
+ * Format: A header (id, page size, generation) is followed by records (type, id, length,
+ * data, CRC). The generation is increased whenever the log is cleared, it is part of the CRC
+ * to avoid that old records are replayed if the truncation of the log did not reach the disk.
+ *
+ * @author Tilmann Zaeschke
+ */
+public final class WriteAheadLog {
+
+	/** Suffix of the log file, the log file is stored next to the database file. */
+	public static final String FILE_SUFFIX = ".wal";
+
+	/** A background checkpoint is started when the log exceeds this size. */
+	static final long CHECKPOINT_SIZE = 4 << 20;
+	/** Commits perform a checkpoint when the log exceeds this size. */
+	static final long MAX_SIZE = 64 << 20;
+	/** Pause before a checkpoint is retried, if it had to be aborted because of a commit. */
+	private static final long RETRY_MS = 10;
+
+	private static final int LOG_ID = 0x7A57A100;
+	private static final int HEADER_SIZE = 4 + 4 + 8; //id, page size, generation
+	private static final int RECORD_HEADER_SIZE = 1 + 8 + 4; //type, id, length
+	private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4; //CRC
+	private static final byte RECORD_PAGE = 1;
+	private static final byte RECORD_COMMIT = 2;
+
+	private final File file;
+	private final FileChannel log;
+	private final FileChannel db;
+	private final int pageSize;
+	private final ByteBuffer buf;
+	private final ByteBuffer crcHeader = ByteBuffer.allocate(8);
+	private final CRC32 crc = new CRC32();
+	//root pages that are written after the next commit
+	private final Map<Long, ByteBuffer> deferred = new LinkedHashMap<>();
+	private final Thread checkpointer;
+
+	//All fields below are guarded by 'this'
+	private long generation;
+	private long commitId = 0;
+	//bytes in the log file, excluding the buffer
+	private long filePos;
+	private long committedPos;
+	private boolean isCheckpointRequested = false;
+	private boolean isClosed = false;
+
+	WriteAheadLog(File file, FileChannel db, int pageSize) {
+		this.file = file;
+		this.db = db;
+		this.pageSize = pageSize;
+		int bufSize = Math.max(1 << 16, 2 * (pageSize + RECORD_OVERHEAD));
+		this.buf = ByteBuffer.allocateDirect(bufSize);
+		try {
+			log = new RandomAccessFile(file, "rw").getChannel();
+			if (ZooDebug.isTesting()) {
+				ZooDebug.registerFile(log);
+			}
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error creating write-ahead log: " + file, e);
+		}
+		generation = System.nanoTime();
+		clear();
+
+		checkpointer = new Thread(this::runCheckpoints, "ZooDB checkpoint: " + file);
+		checkpointer.setDaemon(true);
+		checkpointer.start();
+	}
+
+	/**
+	 * @param dbPath Path of a database file
+	 * @return The log file of the database
+	 */
+	public static File getFile(String dbPath) {
+		return new File(dbPath + FILE_SUFFIX);
+	}
+
+	/**
+	 * Append a page to the log.
+	 * @param page The page, position and limit are not changed
+	 * @param pageId The page ID
+	 * @return Whether writing the page to the database file has to be deferred until the
+	 * next commit. The log takes care of writing the page in this case.
+	 */
+	synchronized boolean append(ByteBuffer page, long pageId) {
+		writeRecord(RECORD_PAGE, pageId, page.duplicate());
+		if (page.get(page.position()) != PAGE_TYPE.ROOT_PAGE.getId()) {
+			return false;
+		}
+		ByteBuffer copy = ByteBuffer.allocate(page.remaining());
+		copy.put(page.duplicate());
+		copy.flip();
+		deferred.put(pageId, copy);
+		return true;
+	}
+
+	/**
+	 * Make all pages that were appended so far durable.
+	 */
+	synchronized void commit() {
+		writeRecord(RECORD_COMMIT, ++commitId, null);
+		flushBuffer();
+		try {
+			log.force(false);
+			for (Map.Entry<Long, ByteBuffer> e: deferred.entrySet()) {
+				db.write(e.getValue(), e.getKey() * pageSize);
+			}
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing write-ahead log: " + file, e);
+		}
+		deferred.clear();
+		committedPos = filePos;
+		if (filePos > MAX_SIZE) {
+			//the background checkpoints do not keep up
+			checkpoint();
+		} else if (filePos > CHECKPOINT_SIZE && !isCheckpointRequested) {
+			isCheckpointRequested = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Force the database file and clear the log. This must only be called while no commit
+	 * is in progress.
+	 */
+	synchronized void checkpoint() {
+		try {
+			db.force(false);
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing database file.", e);
+		}
+		clear();
+	}
+
+	/**
+	 * Perform a checkpoint and delete the log. This must only be called while no commit
+	 * is in progress.
+	 */
+	void close() {
+		synchronized (this) {
+			isClosed = true;
+			notifyAll();
+		}
+		try {
+			checkpointer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkpoint();
+		try {
+			log.close();
+			Files.delete(file.toPath());
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error closing write-ahead log: " + file, e);
+		}
+	}
+
+	private void runCheckpoints() {
+		try {
+			while (true) {
+				synchronized (this) {
+					while (!isCheckpointRequested && !isClosed) {
+						wait();
+					}
+					if (isClosed) {
+						return;
+					}
+				}
+				if (!tryCheckpoint()) {
+					Thread.sleep(RETRY_MS);
+				}
+			}
+		} catch (InterruptedException e) {
+			//closed
+		} catch (RuntimeException e) {
+			DBLogger.LOGGER.error("Checkpoint failed: " + file, e);
+		}
+	}
+
+	/**
+	 * Force the database file without blocking commits. The log is cleared only if no
+	 * commit started in the meantime.
+	 * @return Whether the log was cleared
+	 */
+	private boolean tryCheckpoint() {
+		long end;
+		synchronized (this) {
+			end = filePos + buf.position();
+			if (end != committedPos) {
+				//commit in progress
+				return false;
+			}
+		}
+		try {
+			db.force(false);
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing database file.", e);
+		}
+		synchronized (this) {
+			if (filePos + buf.position() != end) {
+				return false;
+			}
+			clear();
+			return true;
+		}
+	}
+
+	private void clear() {
+		isCheckpointRequested = false;
+		generation++;
+		commitId = 0;
+		buf.clear();
+		writeHeader();
+		try {
+			log.truncate(HEADER_SIZE);
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing write-ahead log: " + file, e);
+		}
+	}
+
+	private void writeHeader() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(LOG_ID).putInt(pageSize).putLong(generation);
+		header.flip();
+		try {
+			while (header.hasRemaining()) {
+				log.write(header, header.position());
+			}
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing write-ahead log: " + file, e);
+		}
+		filePos = HEADER_SIZE;
+		committedPos = HEADER_SIZE;
+	}
+
+	private void writeRecord(byte type, long id, ByteBuffer data) {
+		int len = data == null ? 0 : data.remaining();
+		if (buf.remaining() < RECORD_OVERHEAD + len) {
+			flushBuffer();
+		}
+		int start = buf.position();
+		buf.put(type).putLong(id).putInt(len);
+		if (data != null) {
+			buf.put(data);
+		}
+		ByteBuffer record = buf.duplicate();
+		record.position(start);
+		record.limit(buf.position());
+		buf.putInt(computeCrc(crc, crcHeader, generation, record));
+	}
+
+	private void flushBuffer() {
+		buf.flip();
+		try {
+			while (buf.hasRemaining()) {
+				filePos += log.write(buf, filePos);
+			}
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error writing write-ahead log: " + file, e);
+		}
+		buf.clear();
+	}
+
+	private static int computeCrc(CRC32 crc, ByteBuffer crcHeader, long generation,
+			ByteBuffer record) {
+		crc.reset();
+		crcHeader.clear();
+		crcHeader.putLong(generation);
+		crcHeader.flip();
+		crc.update(crcHeader);
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Write all pages of completed commits to the database file and delete the log.
+	 * @param file The log file
+	 * @param db The database file
+	 * @param pageSize The page size
+	 */
+	static void replay(File file, FileChannel db, int pageSize) {
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				FileChannel log = raf.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				if (readFully(log, header, 0) && header.getInt(0) == LOG_ID) {
+					if (header.getInt(4) != pageSize) {
+						throw DBLogger.newFatal("Incompatible page size in write-ahead log: "
+								+ header.getInt(4) + " in " + file);
+					}
+					long generation = header.getLong(8);
+					long end = readRecords(log, generation, pageSize, null, log.size());
+					if (end > HEADER_SIZE) {
+						DBLogger.LOGGER.warn("Replaying write-ahead log: {}", file);
+						readRecords(log, generation, pageSize, db, end);
+						db.force(false);
+					}
+				}
+			}
+			Files.delete(file.toPath());
+		} catch (IOException e) {
+			throw DBLogger.newFatal("Error reading write-ahead log: " + file, e);
+		}
+	}
+
+	/**
+	 * @param db The database file to write the pages to or {@code null} if the log should
+	 * only be checked
+	 * @param end End of the records
+	 * @return The end of the last complete commit
+	 */
+	private static long readRecords(FileChannel log, long generation, int pageSize,
+			FileChannel db, long end) throws IOException {
+		ByteBuffer record = ByteBuffer.allocateDirect(RECORD_OVERHEAD + pageSize);
+		CRC32 crc = new CRC32();
+		ByteBuffer crcHeader = ByteBuffer.allocate(8);
+		long pos = HEADER_SIZE;
+		long lastCommit = HEADER_SIZE;
+		while (pos < end) {
+			record.clear();
+			record.limit(RECORD_HEADER_SIZE);
+			if (!readFully(log, record, pos)) {
+				break;
+			}
+			byte type = record.get(0);
+			long id = record.getLong(1);
+			int len = record.getInt(9);
+			if (len < 0 || len > pageSize) {
+				break;
+			}
+			record.limit(RECORD_OVERHEAD + len);
+			if (!readFully(log, record, pos)) {
+				break;
+			}
+			record.flip();
+			int recordCrc = record.getInt(RECORD_HEADER_SIZE + len);
+			record.limit(RECORD_HEADER_SIZE + len);
+			if (computeCrc(crc, crcHeader, generation, record) != recordCrc) {
+				break;
+			}
+			pos += RECORD_OVERHEAD + len;
+			if (type == RECORD_COMMIT) {
+				lastCommit = pos;
+			} else if (type == RECORD_PAGE && db != null) {
+				record.position(RECORD_HEADER_SIZE);
+				while (record.hasRemaining()) {
+					db.write(record, id * pageSize + record.position() - RECORD_HEADER_SIZE);
+				}
+			}
+		}
+		return lastCommit;
+	}
+
+	private static boolean readFully(FileChannel log, ByteBuffer buf, long pos)
+			throws IOException {
+		while (buf.hasRemaining()) {
+			if (log.read(buf, pos + buf.position()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
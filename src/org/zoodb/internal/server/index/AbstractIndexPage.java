@@ -90,6 +90,7 @@ abstract class AbstractIndexPage {
 		//if the page is already dirty, then the parent is as well.
 		//no further action is necessary. Parent and index wrapper are already cloned and dirty.
 		if (!isDirty()) {
+            ensureOnHeap();
             setDirty( true );
             if (getParent() != null) {
                 //Don't clone parent. Clone only if parent actually changes.
@@ -135,6 +136,7 @@ abstract class AbstractIndexPage {
 		AbstractIndexPage page = subPages[pos];
 		if (page != null) {
 			//page is in memory
+			ind.notifyPageAccess(page);
 			return page;
 		}
 		
@@ -164,6 +166,7 @@ abstract class AbstractIndexPage {
 	    AbstractIndexPage page = subPages[pos];
 		if (page != null) {
 			//page is in memory
+			ind.notifyPageAccess(page);
 			return page;
 		}
 		
@@ -201,6 +204,7 @@ abstract class AbstractIndexPage {
 		}
 		out.flush();
 		setDirty( false );
+		ind.notifyPageWritten(this);
 		ind.statNWrittenPages++;
 		return pageId;
 	}
@@ -273,6 +277,7 @@ abstract class AbstractIndexPage {
 		}
 		out.flush();
 		setDirty( false );
+		ind.notifyPageWritten(this);
 		ind.statNWrittenPages++;
 		return pageId;
 	}
@@ -386,6 +391,7 @@ abstract class AbstractIndexPage {
 	protected AbstractIndexPage getPageByPos(int pos) {
 		AbstractIndexPage page = subPages[pos];
 		if (page != null) {
+			ind.notifyPageAccess(page);
 			return page;
 		}
 		page = ind.readPage(subPageIds[pos], this);
@@ -469,9 +475,16 @@ abstract class AbstractIndexPage {
 				subPages[i] = null;
 			}
 		}
+		ensureOnHeap();
 		setNEntries(-1);
 		setDirty(true);
 	}
 
+	/**
+	 * Called before a clean page is modified. Pages that keep their entries outside the 
+	 * Java heap have to copy them into arrays, dirty pages are always on the heap.
+	 */
+	abstract void ensureOnHeap();
+
 	abstract void setNEntries(int n);
 }
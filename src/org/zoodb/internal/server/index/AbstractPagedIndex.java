@@ -22,12 +22,12 @@ import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.zoodb.internal.server.DiskIO;
 import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
 import org.zoodb.internal.server.IOResourceProvider;
 import org.zoodb.internal.server.StorageChannelInput;
 import org.zoodb.internal.server.StorageChannelOutput;
 import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.server.index.LongLongIndex.PageVisitor;
 import org.zoodb.internal.util.DBLogger;
 
 /**
@@ -54,6 +54,7 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 	
 	private int modCount = 0;
 	private final PAGE_TYPE dataType;
+	private final PageResidencyManager.ResourcePages residency;
 	
 
 	/**
@@ -73,6 +74,7 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 		
 		int pageSize = getIO().getPageSize();
 		this.dataType = dataType;
+		this.residency = getIO().getIndexPageResidency().getPages(getIO());
 		
 		keySize = keyLen;
 		valSize = valLen;
@@ -96,7 +98,7 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 		//- n values
 		//---> n = (PAGE_SIZE - 4) / (keyLen + valLen)
 
-		final int pageHeader = 4 + DiskIO.PAGE_HEADER_SIZE; // 2 + 2 + general_header
+		final int pageHeader = 4 + getIO().getPageHeaderSize(); // 2 + 2 + general_header
 		final int refLen = 4;  //one int for pageID
 		// we use only int, so it should round down automatically...
 		maxLeafN = (pageSize - pageHeader) / (keyLen + valLen);
@@ -129,6 +131,8 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 		
 		int ret = getRoot().write(out);
 		markClean();
+		//written pages are clean and can be evicted
+		residency.evict(null);
 		return ret;
 	}
 
@@ -165,23 +169,63 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 		//no need to store number of entries in leaf pages? Max number is given in code, 
 		//actual number is where pageID!=0.
 		StorageChannelInput in = getIO().getInputChannel();
-		in.seekPageForRead(dataType, pageId);
-		int nL = in.readShort();
 		AbstractIndexPage newPage;
-		if (nL == 0) {
-			newPage = createPage(parentPage, true);
-			newPage.readData(in);
-		} else {
-			newPage = createPage(parentPage, false);
-			in.noCheckRead(newPage.subPageIds);
-			newPage.readKeys(in);
+		try {
+			in.seekPageForRead(dataType, pageId);
+			int nL = in.readShort();
+			if (nL == 0) {
+				newPage = createPage(parentPage, true);
+				newPage.readData(in);
+			} else {
+				newPage = createPage(parentPage, false);
+				in.noCheckRead(newPage.subPageIds);
+				newPage.readKeys(in);
+			}
+		} finally {
+			//the reader must be returned, otherwise the pool shrinks permanently
+			getIO().returnInputChannel(in);
 		}
 		newPage.setPageId( pageId );  //the page ID is for exampled used to return the page to the FSM
 		newPage.setDirty( false );
-		getIO().returnInputChannel(in);
+		if (parentPage != null) {
+			residency.register(newPage);
+			residency.evict(newPage);
+		}
 		return newPage;
 	}
 
+	/**
+	 * Called when a page in memory is accessed.
+	 * @param page The page
+	 */
+	final void notifyPageAccess(AbstractIndexPage page) {
+		residency.touch(page);
+	}
+
+	/**
+	 * Called when a page has been written and is clean again.
+	 * @param page The page
+	 */
+	final void notifyPageWritten(AbstractIndexPage page) {
+		if (page.isLeaf && isOffHeap()) {
+			((LLIndexPage) page).moveOffHeap();
+		}
+		if (page.getParent() != null) {
+			residency.register(page);
+		}
+	}
+
+	/**
+	 * @return Whether clean leaf pages should keep their entries outside the Java heap.
+	 */
+	final boolean isOffHeap() {
+		return residency.isOffHeap();
+	}
+
+	final OffHeapPool getOffHeapPool() {
+		return residency.getOffHeapPool();
+	}
+
 	protected abstract void updateRoot(AbstractIndexPage newRoot);
 
 	public int statsGetInnerN() {
@@ -210,6 +254,39 @@ public abstract class AbstractPagedIndex extends AbstractIndex {
 	    return pages;
 	}
 	
+	public void debugVisitPages(long minTxId, PageVisitor visitor) {
+		debugVisitPages(getRoot(), minTxId, visitor);
+	}
+
+	private void debugVisitPages(AbstractIndexPage page, long minTxId, PageVisitor visitor) {
+		if (page.isDirty()) {
+			//not written yet
+			return;
+		}
+		StorageChannelInput in = getIO().getInputChannel();
+		long txId;
+		try {
+			in.seekPageForRead(dataType, page.pageId());
+			txId = in.getHeaderTimestamp();
+		} finally {
+			getIO().returnInputChannel(in);
+		}
+		if (txId <= minTxId) {
+			return;
+		}
+		visitor.visitPage(page.pageId(), txId);
+		if (page.isLeaf) {
+			LLIndexPage leaf = (LLIndexPage) page;
+			for (int i = 0; i < leaf.getNKeys(); i++) {
+				visitor.visitEntry(leaf.getKey(i), leaf.getValue(i));
+			}
+			return;
+		}
+		for (int i = 0; i <= page.getNKeys(); i++) {
+			debugVisitPages(page.readPage(i), minTxId, visitor);
+		}
+	}
+
 	private void debugGetSubPageIDs(AbstractIndexPage page, ArrayList<Integer> pages) {
 	    if (page.isLeaf) {
 	        return;
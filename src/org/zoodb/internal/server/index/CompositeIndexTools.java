@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import org.zoodb.internal.ZooFieldDef;
+
+/**
+ * Tools for composite indexes, i.e. indexes over two or more fields.
+ * <p>
+ * A composite index is a normal {@link LongLongIndex} where the value is the OID of the object.
+ * The key combines the values of all fields: the upper bits contain a hash of all fields
+ * except the last one, the lower bits contain the value of the last field in an order
+ * preserving encoding. This allows queries with equality constraints on all but the last field
+ * and an arbitrary range on the last field, for example {@code customer == x && date > y}.
+ * <p>
+ * Values of 32 bit types ({@code int}, {@code float}, ...) in the last field are encoded without
+ * loss, leaving 32 bits for the hash. For 64 bit types, the upper 48 bits of the value are
+ * used, leaving 16 bits for the hash. Because of hash collisions and lost bits, the index
+ * returns a super-set of the matching objects, so the query still needs to be evaluated on
+ * the returned objects.
+ * <p>
+ * The field values are given as sortable {@code long}, as used in normal field indexes.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class CompositeIndexTools {
+
+	private CompositeIndexTools() {
+		//not used
+	}
+
+	private static int lastBits(ZooFieldDef last) {
+		if (last.getPrimitiveType() == null) {
+			//String, reference
+			return 48;
+		}
+		switch (last.getPrimitiveType()) {
+		case LONG:
+		case DOUBLE: return 48;
+		default: return 32;
+		}
+	}
+
+	private static long prefix(long[] values, int lastBits) {
+		long h = 0;
+		for (int i = 0; i < values.length - 1; i++) {
+			h = (h ^ values[i]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 31;
+		}
+		return h & (-1L << lastBits);
+	}
+
+	private static long last(long value, int lastBits) {
+		if (lastBits == 32) {
+			value = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+			return value - Integer.MIN_VALUE;
+		}
+		return (value ^ Long.MIN_VALUE) >>> (64 - lastBits);
+	}
+
+	/**
+	 * @param fields The fields of the index
+	 * @param values The values of all fields, as sortable longs
+	 * @return The key for the index
+	 */
+	public static long key(ZooFieldDef[] fields, long[] values) {
+		int lastBits = lastBits(fields[fields.length - 1]);
+		return prefix(values, lastBits) | last(values[values.length - 1], lastBits);
+	}
+
+	/**
+	 * Calculates the key range for equality constraints on all but the last field and a range
+	 * constraint on the last field.
+	 * @param fields The fields of the index
+	 * @param values The values of all fields, the value of the last field is ignored
+	 * @param min The minimum value of the last field
+	 * @param max The maximum value of the last field
+	 * @return The minimum and maximum key
+	 */
+	public static long[] range(ZooFieldDef[] fields, long[] values, long min, long max) {
+		int lastBits = lastBits(fields[fields.length - 1]);
+		long prefix = prefix(values, lastBits);
+		return new long[]{prefix | last(min, lastBits), prefix | last(max, lastBits)};
+	}
+}
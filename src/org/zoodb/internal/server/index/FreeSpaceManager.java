@@ -261,6 +261,33 @@ public class FreeSpaceManager {
 		return lastPage.addAndGet(1);
 	}
 
+	/**
+	 * Removes all pages from the end of the file that are free and can be reused in the current
+	 * transaction. Pages that were freed in the current transaction and pages that are marked
+	 * as PID_DO_NOT_USE are not removed. This must only be called during a write transaction
+	 * while no other transaction is active.
+	 * @return The new number of allocated pages.
+	 */
+	public int truncateFreePages() {
+		int last = lastPage.get();
+		while (last > 0 && !toAdd.contains(last)) {
+			LongLongIndex.LLEntry e = idx.findValue(last);
+			if (e == null || e.getValue() < 0 || e.getValue() > maxFreeTxId) {
+				break;
+			}
+			last--;
+		}
+		for (int pageId = lastPage.get(); pageId > last; pageId--) {
+			idx.removeLong(pageId);
+		}
+		lastPage.set(last);
+		
+		//The iterator may still point to removed pages
+		iter.close();
+		iter = idx.iterator(1, Long.MAX_VALUE);
+		return last + 1;
+	}
+
 	public void reportFreePage(int prevPage) {
 		if (prevPage > 0) {
 			toAdd.add(prevPage);
@@ -275,10 +302,18 @@ public class FreeSpaceManager {
 	}
 	
 	public void notifyBegin(long newTxId) {
+		notifyBegin(newTxId, Long.MAX_VALUE);
+	}
+	
+	/**
+	 * @param newTxId The ID of the writing transaction
+	 * @param oldestReaderTxId Pages that were freed by this or any later transaction are not 
+	 * reused because they may still be read by other sessions.
+	 */
+	public void notifyBegin(long newTxId, long oldestReaderTxId) {
 		currentTxId = newTxId;
 		
-		//TODO not good for multi-session
-		maxFreeTxId = currentTxId - 1;
+		maxFreeTxId = Math.min(currentTxId, oldestReaderTxId) - 1;
 		
 		if (iter != null) {
 			throw DBLogger.newFatalInternal("Free space manager has unexpected open iterator.");
@@ -308,6 +343,10 @@ public class FreeSpaceManager {
         return idx.debugPageIds();
     }
 
+    public void debugVisitPages(long minTxId, LongLongIndex.PageVisitor visitor) {
+        idx.debugVisitPages(minTxId, visitor);
+    }
+
     /**
      * Simply speaking, this returns {@code true} if the given pageId is considered free.
      * Returns {@code true} if the given pageId is in the known (currently free) or newly freed
@@ -333,8 +372,11 @@ public class FreeSpaceManager {
 		idx = null;
 		toAdd.clear();
 		toDelete.clear();
-		iter.close();
-		iter = null;
+		if (iter != null) {
+			//null if there is no commit in progress
+			iter.close();
+			iter = null;
+		}
 		initBackingIndexLoad(file, pageId, pageCount);
 	}
 	
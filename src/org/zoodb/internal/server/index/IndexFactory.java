@@ -100,6 +100,27 @@ public class IndexFactory {
 		return LOAD_UNIQUE_INDEX.load(type, storage, pageId);
 	}
 	
+	/**
+	 * @param type The page type for index pages
+	 * @param storage The output stream
+	 * @return a new unique hash index, see {@link PagedHashLongLong}
+	 */
+	public static LongLongIndex.LongLongUIndex createHashIndex(PAGE_TYPE type, 
+			IOResourceProvider storage) {
+		return new PagedHashLongLong(type, storage);
+	}
+	
+	/**
+	 * @param type The page type for index pages
+	 * @param storage The output stream
+	 * @param pageId page id of the root page
+	 * @return a unique hash index reconstructed from disk, see {@link PagedHashLongLong}
+	 */
+	public static LongLongIndex.LongLongUIndex loadHashIndex(PAGE_TYPE type, 
+			IOResourceProvider storage, int pageId) {
+		return new PagedHashLongLong(type, storage, pageId);
+	}
+	
 	/**
 	 * EXPERIMENTAL! Index that has bit width of key and value as parameters.
 	 * @param type The page type for index pages
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+
+import org.zoodb.internal.server.index.LongLongIndex.LLEntry;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.server.index.LongLongIndex.LongLongUIndex;
+import org.zoodb.internal.util.CloseableIterator;
+import org.zoodb.internal.util.DBLogger;
+import org.zoodb.internal.util.Util;
+
+/**
+ * Iterates over the entries of a field index and returns the values of the indexed field
+ * and of its included fields, without loading any objects.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class IndexValueIterator implements CloseableIterator<long[]> {
+
+	private final LLEntryIterator iter;
+	private final LongLongUIndex[] valueInds;
+	private final Lock indexLock;
+	private long[] next = null;
+
+	/**
+	 * @param iter An entry iterator of the field index
+	 * @param valueInds The OID-&gt;value indexes of the returned fields, {@code null}
+	 * indicates the indexed field itself
+	 * @param indexLock Lock for accessing the index, may be {@code null} if the index is not
+	 * accessed concurrently
+	 */
+	public IndexValueIterator(LLEntryIterator iter, LongLongUIndex[] valueInds,
+			Lock indexLock) {
+		this.iter = iter;
+		this.valueInds = valueInds;
+		this.indexLock = indexLock;
+		findNext();
+	}
+
+	@Override
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	@Override
+	public long[] next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		long[] ret = next;
+		findNext();
+		return ret;
+	}
+
+	private void findNext() {
+		if (indexLock == null) {
+			next = readNext();
+		} else {
+			indexLock.lock();
+			try {
+				next = readNext();
+			} finally {
+				indexLock.unlock();
+			}
+		}
+		if (next == null) {
+			close();
+		}
+	}
+
+	private long[] readNext() {
+		if (!iter.hasNextULL()) {
+			return null;
+		}
+		LLEntry e = iter.nextULL();
+		long[] row = new long[valueInds.length];
+		for (int i = 0; i < valueInds.length; i++) {
+			if (valueInds[i] == null) {
+				row[i] = e.getKey();
+			} else {
+				LLEntry v = valueInds[i].findValue(e.getValue());
+				if (v == null) {
+					throw DBLogger.newFatal("Included value not found for OID: " +
+							Util.oidToString(e.getValue()));
+				}
+				row[i] = v.getValue();
+			}
+		}
+		return row;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		next = null;
+		if (indexLock == null) {
+			iter.close();
+			return;
+		}
+		indexLock.lock();
+		try {
+			iter.close();
+		} finally {
+			indexLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.Arrays;
+
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.util.PrimLongArrayList;
+
+/**
+ * Tools for joins via the index of a reference field.
+ * <p>
+ * A query such as {@code customer.country == x} can be executed as a join: The predicate is
+ * evaluated on the referenced class first, the OIDs of the matching objects are then used as
+ * keys for the index on the reference field, which returns the referencing objects.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class JoinTools {
+
+	private JoinTools() {
+		//not used
+	}
+
+	/**
+	 * Find all objects that have one of the given keys.
+	 * @param index The index
+	 * @param keys The keys, they do not need to be sorted or distinct
+	 * @return An iterator over the OIDs of the objects, in ascending order. Keys and values
+	 * of the returned entries are both the OID.
+	 */
+	public static LLEntryIterator find(LongLongIndex index, long[] keys) {
+		keys = keys.clone();
+		Arrays.sort(keys);
+		PrimLongArrayList oids = new PrimLongArrayList();
+		for (int i = 0; i < keys.length; i++) {
+			if (i > 0 && keys[i] == keys[i - 1]) {
+				continue;
+			}
+			LLEntryIterator it = index.iterator(keys[i], keys[i]);
+			while (it.hasNextULL()) {
+				oids.add(it.nextULL().getValue());
+			}
+			it.close();
+		}
+		//Every object has only one key, so the OIDs are distinct
+		long[] sorted = oids.toArray();
+		Arrays.sort(sorted);
+		return new OidArrayIterator(sorted);
+	}
+}
@@ -110,8 +110,8 @@ class LLDescendingIterator extends AbstractPageIterator<LongLongIndex.LLEntry> {
     	//(TODO check for pos after goToPage())
         //we only need to check the value.
         
-        nextKey = currentPage.getKeys()[currentPos];
-        nextValue = currentPage.getValues()[currentPos];
+        nextKey = currentPage.getKey(currentPos);
+        nextValue = currentPage.getValue(currentPos);
         hasValue = true;
         currentPos--;
         
@@ -126,7 +126,7 @@ class LLDescendingIterator extends AbstractPageIterator<LongLongIndex.LLEntry> {
         }
         
         //check for invalid value
-        if (currentPage.getKeys()[currentPos] < minKey) {
+        if (currentPage.getKey(currentPos) < minKey) {
             close();
         }
     }
@@ -146,7 +146,7 @@ class LLDescendingIterator extends AbstractPageIterator<LongLongIndex.LLEntry> {
         currentPos = (short) pos;
         
         //check pos
-        if (currentPos < 0 || currentPage.getKeys()[currentPos] < minKey) {
+        if (currentPos < 0 || currentPage.getKey(currentPos) < minKey) {
             close();
             return;
         }
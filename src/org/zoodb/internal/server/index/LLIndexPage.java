@@ -15,6 +15,7 @@
  */
 package org.zoodb.internal.server.index;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 
@@ -26,10 +27,18 @@ import org.zoodb.internal.util.FormattedStringBuilder;
 
 class LLIndexPage extends AbstractIndexPage {
 	private LLIndexPage parent;
-	private final long[] keys;
-	private final long[] values;
+	private long[] keys;
+	private long[] values;
 	/** number of keys. There are nEntries+1 subPages in any leaf page. */
 	private short nEntries;
+	/** 
+	 * Keys and values of a clean leaf page in a direct buffer, see {@link #moveOffHeap()}. 
+	 * If this is not {@code null}, then keys and values are {@code null}. The keys are 
+	 * encoded as on disk and start at position 0, the values start at offHeapValOffs.
+	 */
+	private ByteBuffer offHeap;
+	private OffHeapPool.Lease offHeapLease;
+	private int offHeapValOffs;
 	
 	
 	public LLIndexPage(AbstractPagedIndex ind, LLIndexPage parent, boolean isLeaf) {
@@ -52,9 +61,19 @@ class LLIndexPage extends AbstractIndexPage {
 
 	public LLIndexPage(LLIndexPage p) {
 		super(p);
-		keys = p.keys.clone();
 		nEntries = p.nEntries;
 		parent = p.parent;
+		if (p.offHeap != null) {
+			//the buffer of 'p' is returned to the pool when 'p' is modified
+			ByteBuffer src = p.offHeap.duplicate();
+			src.flip();
+			allocateOffHeap().put(src);
+			offHeapValOffs = p.offHeapValOffs;
+			keys = null;
+			values = null;
+			return;
+		}
+		keys = p.keys.clone();
 		if (isLeaf) {
 			values = p.values.clone();
 		} else {
@@ -69,10 +88,152 @@ class LLIndexPage extends AbstractIndexPage {
 	@Override
 	void readData(StorageChannelInput in) {
 		nEntries = in.readShort();
+		if (ind.isOffHeap()) {
+			readDataOffHeap(in);
+			return;
+		}
 		readArrayFromRaf(in, ind.keySize, keys, nEntries);
 		readArrayFromRaf(in, ind.valSize, values, nEntries);
 	}
 	
+	/**
+	 * Copy the keys and values from the page into a direct buffer, without decoding them.
+	 * The page layout is the one used by {@link #readArrayFromRaf}.
+	 */
+	private void readDataOffHeap(StorageChannelInput in) {
+		int n = nEntries > 0 ? nEntries : 0;
+		int keyPos = rawArrayStart(in.getOffset(), ind.keySize);
+		int valPos = rawArrayStart(keyPos + rawArrayLength(ind.keySize, n), ind.valSize);
+		ByteBuffer buf = allocateOffHeap();
+		in.copyPageBytes(buf, keyPos, n * ind.keySize);
+		in.copyPageBytes(buf, valPos, n * ind.valSize);
+		offHeapValOffs = n * ind.keySize;
+		keys = null;
+		values = null;
+	}
+	
+	private static int rawArrayStart(int pos, int bitWidth) {
+		if (bitWidth == 4) {
+			//int arrays are aligned
+			return (pos + 3) & ~3;
+		}
+		return pos;
+	}
+
+	private int rawArrayLength(int bitWidth, int nEntries) {
+		if (nEntries <= 0) {
+			return 0;
+		}
+		if (bitWidth == 8) {
+			//long arrays are always written completely
+			return bitWidth * ind.maxLeafN;
+		}
+		return bitWidth * nEntries;
+	}
+	
+	/**
+	 * Move the keys and values of a clean leaf page into a direct buffer. They remain there 
+	 * until the page is modified, see {@link #ensureOnHeap()}.
+	 */
+	void moveOffHeap() {
+		if (!isLeaf || offHeap != null || isDirty()) {
+			return;
+		}
+		int n = nEntries > 0 ? nEntries : 0;
+		ByteBuffer buf = allocateOffHeap();
+		writeOffHeap(buf, ind.keySize, keys, n);
+		writeOffHeap(buf, ind.valSize, values, n);
+		offHeapValOffs = n * ind.keySize;
+		keys = null;
+		values = null;
+	}
+
+	@Override
+	void ensureOnHeap() {
+		if (offHeap == null) {
+			return;
+		}
+		long[] k = new long[ind.maxLeafN];
+		long[] v = new long[ind.maxLeafN];
+		for (int i = 0; i < nEntries; i++) {
+			k[i] = getKey(i);
+			v[i] = getValue(i);
+		}
+		keys = k;
+		values = v;
+		offHeap = null;
+		ind.getOffHeapPool().release(offHeapLease);
+		offHeapLease = null;
+	}
+
+	/**
+	 * Buffers are taken from a pool, because allocating a direct buffer for each page
+	 * is slow. The entries of a leaf page always fit into a buffer of one page.
+	 */
+	private ByteBuffer allocateOffHeap() {
+		offHeapLease = ind.getOffHeapPool().allocate(this, ind.getIO().getPageSize());
+		offHeap = offHeapLease.buf;
+		return offHeap;
+	}
+
+	private static void writeOffHeap(ByteBuffer buf, int bitWidth, long[] array, int nEntries) {
+		for (int i = 0; i < nEntries; i++) {
+			switch (bitWidth) {
+			case 8: buf.putLong(array[i]); break;
+			case 4: buf.putInt((int) array[i]); break;
+			case 1: buf.put((byte) array[i]); break;
+			case 0: break;
+			default : throw new IllegalStateException("bit-width=" + bitWidth);
+			}
+		}
+	}
+
+	private long readOffHeap(int bitWidth, int offs, int pos) {
+		switch (bitWidth) {
+		case 8: return offHeap.getLong(offs + (pos << 3));
+		case 4: return offHeap.getInt(offs + (pos << 2));
+		case 1: return offHeap.get(offs + pos);
+		case 0: return 0;
+		default : throw new IllegalStateException("bit-width=" + bitWidth);
+		}
+	}
+
+	private long[] getLeafKeys() {
+		if (offHeap == null) {
+			return keys;
+		}
+		long[] a = new long[nEntries > 0 ? nEntries : 0];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = getKey(i);
+		}
+		return a;
+	}
+
+	private long[] getLeafValues() {
+		if (offHeap == null) {
+			return values;
+		}
+		long[] a = new long[nEntries > 0 ? nEntries : 0];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = getValue(i);
+		}
+		return a;
+	}
+
+	final long getKey(int pos) {
+		if (offHeap != null) {
+			return readOffHeap(ind.keySize, 0, pos);
+		}
+		return keys[pos];
+	}
+
+	final long getValue(int pos) {
+		if (offHeap != null) {
+			return readOffHeap(ind.valSize, offHeapValOffs, pos);
+		}
+		return values[pos];
+	}
+	
 	@Override
 	void writeData(StorageChannelOutput out) {
 		out.writeShort(nEntries);
@@ -201,7 +362,7 @@ class LLIndexPage extends AbstractIndexPage {
 		}
 		int pos = binarySearchUnique(0, nEntries, oid);
 		if (pos >= 0) {
-            return new LongLongIndex.LLEntry( oid, values[pos]);
+            return new LongLongIndex.LLEntry( oid, getValue(pos));
 		}
 		//Even if non-unique, if the value could is not on this page, it does not exist.
 		return null;
@@ -236,7 +397,7 @@ class LLIndexPage extends AbstractIndexPage {
 
 		while (low <= high) {
 			int mid = (low + high) >>> 1;
-        	long midVal = keys[mid];
+        	long midVal = getKey(mid);
 
         	if (midVal < key)
         		low = mid + 1;
@@ -258,8 +419,8 @@ class LLIndexPage extends AbstractIndexPage {
 
 		while (low <= high) {
 			int mid = (low + high) >>> 1;
-			long midVal1 = keys[mid];
-			long midVal2 = values[mid];
+			long midVal1 = getKey(mid);
+			long midVal2 = getValue(mid);
 
         	if (midVal1 < key1) {
         		low = mid + 1;
@@ -294,7 +455,7 @@ class LLIndexPage extends AbstractIndexPage {
         //key found? -> pos >=0
         if (pos >= 0) {
         	//check if values changes
-            if (value != values[pos]) {
+            if (value != getValue(pos)) {
                 markPageDirtyAndClone();
                 values[pos] = value;
             }
@@ -318,6 +479,9 @@ class LLIndexPage extends AbstractIndexPage {
 			LLIndexPage newP;
 			boolean isNew = false;
 			boolean isPrev = false;
+			//Mark dirty before reading neighbour pages, dirty pages are not evicted,
+			//see PageResidencyManager
+			markPageDirtyAndClone();
 			//use ind.maxLeafN -1 to avoid pretty much pointless copying (and possible endless 
 			//loops, see iterator tests)
 			LLIndexPage next = (LLIndexPage) parent.getNextLeafPage(this);
@@ -340,7 +504,6 @@ class LLIndexPage extends AbstractIndexPage {
 				}
 			}
 			
-			markPageDirtyAndClone();
 			int nEntriesToKeep = (nEntries + newP.nEntries) >> 1;
 			if (isNew) {
 				if (ind.isUnique()) {
@@ -505,10 +668,10 @@ class LLIndexPage extends AbstractIndexPage {
 					ii = 0;
 				} else {
 					System.arraycopy(keys, 0, keys, 1, nEntries);
-					long oldKey = subPages[0].getMinKey();
+					long oldKey = readPage(0).getMinKey();
 					if (!ind.isUnique()) {
 						System.arraycopy(values, 0, values, 1, nEntries);
-						long oldValue = subPages[0].getMinKeyValue();
+						long oldValue = readPage(0).getMinKeyValue();
 						if ((minKey > oldKey) || (minKey==oldKey && minValue > oldValue)) {
 							ii = 1;
 							keys[0] = minKey;
@@ -591,7 +754,7 @@ class LLIndexPage extends AbstractIndexPage {
 	@Override
 	long getMinKey() {
 		if (isLeaf) {
-			return keys[0];
+			return getKey(0);
 		}
 		return readPage(0).getMinKey();
 	}
@@ -599,7 +762,7 @@ class LLIndexPage extends AbstractIndexPage {
 	@Override
 	long getMinKeyValue() {
 		if (isLeaf) {
-			return values[0];
+			return getValue(0);
 		}
 		return readPage(0).getMinKeyValue();
 	}
@@ -609,8 +772,8 @@ class LLIndexPage extends AbstractIndexPage {
 	    FormattedStringBuilder sb = new FormattedStringBuilder();
 		if (isLeaf) {
 			sb.appendln(indent + "Leaf page(id=" + pageId() + "): nK=" + nEntries + " keys=" + 
-					Arrays.toString(keys));
-			sb.appendln(indent + "                         " + Arrays.toString(values));
+					Arrays.toString(getLeafKeys()));
+			sb.appendln(indent + "                         " + Arrays.toString(getLeafValues()));
 		} else {
 		    sb.appendln(indent + "Inner page(id=" + pageId() + "): nK=" + nEntries + " keys=" + 
 					Arrays.toString(keys));
@@ -641,8 +804,8 @@ class LLIndexPage extends AbstractIndexPage {
 		sb.appendln("PrintLocal() for " + this);
 		if (isLeaf) {
 		    sb.appendln("Leaf page(id=" + pageId() + "): nK=" + nEntries + " oids=" + 
-					Arrays.toString(keys));
-		    sb.appendln("                         " + Arrays.toString(values));
+					Arrays.toString(getLeafKeys()));
+		    sb.appendln("                         " + Arrays.toString(getLeafValues()));
 		} else {
 		    sb.appendln("Inner page(id=" + pageId() + "): nK=" + nEntries + " oids=" + 
 					Arrays.toString(keys));
@@ -854,7 +1017,7 @@ class LLIndexPage extends AbstractIndexPage {
 			if (nEntries == 0) {
 				return Long.MIN_VALUE;
 			}
-			return keys[nEntries-1];
+			return getKey(nEntries-1);
 		}
 		//handle empty indices
 		if (nEntries == -1) {
@@ -882,13 +1045,12 @@ class LLIndexPage extends AbstractIndexPage {
 		//We assume that the key exists. Otherwise we get an exception anyway in the remove-method.
 		//-> no such calculation: posKey = -(posKey+1);
 		//First we cover the most frequent cases, which are also fastest to check.
-		long[] keys = pageKey.getKeys();
 		if (posKey > 0) {
-			if (keys[posKey-1] >= min) {
+			if (pageKey.getKey(posKey-1) >= min) {
                 return pageKey.remove(key);
 			}
 			if (posKey < pageKey.nEntries-1) {
-	            if (keys[posKey+1] <= max) {
+	            if (pageKey.getKey(posKey+1) <= max) {
 	                return pageKey.remove(key);
 	            }
 	            //we are in the middle of the page surrounded by values outside the range
@@ -896,7 +1058,7 @@ class LLIndexPage extends AbstractIndexPage {
                 return pageKey.remove(key);
 			}
 		} else if (posKey == 0 && pageKey.nEntries > 1) {
-			if (keys[posKey+1] <= max) {
+			if (pageKey.getKey(posKey+1) <= max) {
 				return pageKey.remove(key);
 			}
 		}
@@ -937,14 +1099,6 @@ class LLIndexPage extends AbstractIndexPage {
 		nEntries++;
 	}
 
-	final long[] getKeys() {
-		return keys;
-	}
-
-	final long[] getValues() {
-		return values;
-	}
-
 	@Override
 	final void setNEntries(int n) {
 		nEntries = (short) n;
@@ -157,8 +157,8 @@ class LLIterator extends AbstractPageIterator<LongLongIndex.LLEntry> implements
 		// (TODO check for pos after goToPage())
 		// we only need to check the value.
 		
-		nextKey = currentPage.getKeys()[currentPos];
-		nextValue = currentPage.getValues()[currentPos];
+		nextKey = currentPage.getKey(currentPos);
+		nextValue = currentPage.getValue(currentPos);
 		hasValue = true;
 		currentPos++;
 		
@@ -173,7 +173,7 @@ class LLIterator extends AbstractPageIterator<LongLongIndex.LLEntry> implements
 		}
 		
 		// Check for invalid value
-		if (currentPage.getKeys()[currentPos] > maxKey) {
+		if (currentPage.getKey(currentPos) > maxKey) {
 			close();
 		}
 	}
@@ -208,7 +208,7 @@ class LLIterator extends AbstractPageIterator<LongLongIndex.LLEntry> implements
 			}
 		}
 		if (currentPos >= currentPage.getNKeys() 
-				|| currentPage.getKeys()[currentPos] > maxKey) {
+				|| currentPage.getKey(currentPos) > maxKey) {
 			close();
 			return;
 		}
@@ -67,6 +67,24 @@ public interface LongLongIndex {
 		long nextKey();
 	}
 
+	/**
+	 * Callback for traversing the pages of an index.
+	 */
+	interface PageVisitor {
+		/**
+		 * @param pageId The ID of the visited page
+		 * @param txId The ID of the transaction that wrote the page
+		 */
+		void visitPage(int pageId, long txId);
+
+		/**
+		 * Called for every entry in a visited leaf page.
+		 * @param key The key
+		 * @param value The value
+		 */
+		void visitEntry(long key, long value);
+	}
+
 	/**
 	 * Interface with special methods for unique indices. 
 	 */
@@ -167,6 +185,15 @@ public interface LongLongIndex {
 	 */
 	List<Integer> debugPageIds();
 
+	/**
+	 * Visit all pages that were written after a given transaction. Index pages are 
+	 * copy-on-write, so if a page was not rewritten, none of its sub-pages was rewritten either.
+	 * Such pages are skipped.
+	 * @param minTxId Only pages written after this transaction are visited, 0 visits all pages
+	 * @param visitor The visitor
+	 */
+	void debugVisitPages(long minTxId, PageVisitor visitor);
+
 	int statsGetWrittenPagesN();
 
 	boolean isDirty();
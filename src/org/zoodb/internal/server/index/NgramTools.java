@@ -0,0 +1,286 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.util.PrimLongSetZ;
+
+/**
+ * Tools for n-gram indexes on String fields.
+ * <p>
+ * An n-gram index contains one entry for every distinct trigram of a String. The key of an
+ * entry consists of the three characters of the trigram (16 bit each), the value is the OID of
+ * the object. Before splitting a String into trigrams, two {@code '\0'} characters are added
+ * at the beginning and at the end, so that the first and last characters of a String result
+ * in their own trigrams. 'null' Strings are not indexed.
+ * <p>
+ * Query predicates are translated into a list of key ranges, each matching String has at least
+ * one entry in every range. Intersecting the objects of all ranges results in a super-set of the
+ * matching objects, so the predicate still needs to be evaluated on the returned objects.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class NgramTools {
+
+	private static final char PAD = '\0';
+	private static final long[] NO_RANGES = {};
+
+	private NgramTools() {
+		//not used
+	}
+
+	private static long key(char c0, char c1, char c2) {
+		return ((long)c0 << 32) | ((long)c1 << 16) | c2;
+	}
+
+	/**
+	 * @param s A String
+	 * @return The sorted keys of all distinct trigrams of the String. Returns an empty array
+	 * for 'null'.
+	 */
+	public static long[] keys(String s) {
+		if (s == null) {
+			return NO_RANGES;
+		}
+		int len = s.length();
+		long[] keys = new long[len + 2];
+		char c0 = PAD;
+		char c1 = PAD;
+		for (int i = 0; i < len + 2; i++) {
+			char c2 = i < len ? s.charAt(i) : PAD;
+			keys[i] = key(c0, c1, c2);
+			c0 = c1;
+			c1 = c2;
+		}
+		return sortDistinct(keys);
+	}
+
+	private static long[] sortDistinct(long[] keys) {
+		Arrays.sort(keys);
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (n == 0 || keys[n - 1] != keys[i]) {
+				keys[n++] = keys[i];
+			}
+		}
+		return n == keys.length ? keys : Arrays.copyOf(keys, n);
+	}
+
+	public static void insert(LongLongIndex index, String s, long oid) {
+		for (long key: keys(s)) {
+			index.insertLong(key, oid);
+		}
+	}
+
+	public static void remove(LongLongIndex index, String s, long oid) {
+		for (long key: keys(s)) {
+			index.removeLong(key, oid);
+		}
+	}
+
+	/**
+	 * Update the entries of an object. Trigrams that occur in the old and the new String are
+	 * not touched.
+	 * @param index The n-gram index
+	 * @param sOld The previous value
+	 * @param sNew The new value
+	 * @param oid The OID of the object
+	 */
+	public static void update(LongLongIndex index, String sOld, String sNew, long oid) {
+		long[] kOld = keys(sOld);
+		long[] kNew = keys(sNew);
+		int iOld = 0;
+		int iNew = 0;
+		while (iOld < kOld.length || iNew < kNew.length) {
+			if (iNew >= kNew.length || (iOld < kOld.length && kOld[iOld] < kNew[iNew])) {
+				index.removeLong(kOld[iOld++], oid);
+			} else if (iOld >= kOld.length || kNew[iNew] < kOld[iOld]) {
+				index.insertLong(kNew[iNew++], oid);
+			} else {
+				iOld++;
+				iNew++;
+			}
+		}
+	}
+
+	/**
+	 * Key ranges for a String literal that occurs in the String.
+	 * @param literal The literal
+	 * @param isStart Whether the literal must occur at the start of the String
+	 * @param isEnd Whether the literal must occur at the end of the String
+	 * @return Pairs of min/max keys. An empty array indicates that the literal does not
+	 * constrain the result.
+	 */
+	public static long[] ranges(String literal, boolean isStart, boolean isEnd) {
+		if (literal.isEmpty() && !(isStart && isEnd)) {
+			return NO_RANGES;
+		}
+		StringBuilder sb = new StringBuilder(literal.length() + 4);
+		if (isStart) {
+			sb.append(PAD).append(PAD);
+		}
+		sb.append(literal);
+		if (isEnd) {
+			sb.append(PAD).append(PAD);
+		}
+		if (sb.length() < 2) {
+			//single characters are too frequent to be useful
+			return NO_RANGES;
+		}
+		if (sb.length() == 2) {
+			//all trigrams that start with the two characters
+			long min = key(sb.charAt(0), sb.charAt(1), (char) 0);
+			return new long[]{min, min | 0xFFFF};
+		}
+		long[] keys = new long[sb.length() - 2];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = key(sb.charAt(i), sb.charAt(i + 1), sb.charAt(i + 2));
+		}
+		keys = sortDistinct(keys);
+		long[] ranges = new long[keys.length * 2];
+		for (int i = 0; i < keys.length; i++) {
+			ranges[2 * i] = keys[i];
+			ranges[2 * i + 1] = keys[i];
+		}
+		return ranges;
+	}
+
+	/**
+	 * Key ranges for a regular expression that must match the whole String, as in
+	 * {@link String#matches(String)}. Only the literal parts of simple regular expressions are
+	 * considered, for example {@code "abc.*def"} or {@code "ab?c+d\\.e"}.
+	 * @param regex The regular expression
+	 * @return Pairs of min/max keys or {@code null} if the expression is not supported.
+	 */
+	public static long[] rangesForRegex(String regex) {
+		ArrayList<long[]> ranges = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		boolean isStart = true;
+		int i = 0;
+		int len = regex.length();
+		if (len > 0 && regex.charAt(0) == '^') {
+			i++;
+		}
+		if (len > i && regex.charAt(len - 1) == '$'
+				&& (len < 2 || regex.charAt(len - 2) != '\\')) {
+			len--;
+		}
+		for (; i < len; i++) {
+			char c = regex.charAt(i);
+			switch (c) {
+			case '\\':
+				if (i + 1 >= len) {
+					return null;
+				}
+				c = regex.charAt(++i);
+				if (Character.isLetterOrDigit(c)) {
+					if (c == 'Q' || c == 'E') {
+						return null;
+					}
+					//character classes, such as \d, or back-references
+					ranges.add(ranges(literal.toString(), isStart, false));
+					literal.setLength(0);
+					isStart = false;
+				} else {
+					literal.append(c);
+				}
+				break;
+			case '?':
+			case '*':
+				//the previous character is optional
+				if (literal.length() > 0) {
+					literal.setLength(literal.length() - 1);
+				}
+				//fall through
+			case '+':
+			case '.':
+				ranges.add(ranges(literal.toString(), isStart, false));
+				literal.setLength(0);
+				isStart = false;
+				break;
+			case '[':
+			case ']':
+			case '(':
+			case ')':
+			case '{':
+			case '}':
+			case '|':
+			case '^':
+			case '$':
+				return null;
+			default:
+				literal.append(c);
+			}
+		}
+		ranges.add(ranges(literal.toString(), isStart, true));
+		int n = 0;
+		for (long[] r: ranges) {
+			n += r.length;
+		}
+		long[] ret = new long[n];
+		n = 0;
+		for (long[] r: ranges) {
+			System.arraycopy(r, 0, ret, n, r.length);
+			n += r.length;
+		}
+		return ret;
+	}
+
+	/**
+	 * Find all objects that have at least one entry in each of the given ranges.
+	 * @param index The n-gram index
+	 * @param ranges Pairs of min/max keys, see {@link #ranges(String, boolean, boolean)}
+	 * @return An iterator over the OIDs of the objects, in ascending order. Keys and values
+	 * of the returned entries are both the OID.
+	 */
+	public static LLEntryIterator find(LongLongIndex index, long[] ranges) {
+		PrimLongSetZ oids = null;
+		//Exact keys first, they are usually more selective
+		for (int pass = 0; pass < 2; pass++) {
+			for (int i = 0; i < ranges.length; i += 2) {
+				if ((ranges[i] == ranges[i + 1]) != (pass == 0)) {
+					continue;
+				}
+				PrimLongSetZ next = new PrimLongSetZ();
+				LLEntryIterator it = index.iterator(ranges[i], ranges[i + 1]);
+				while (it.hasNextULL()) {
+					long oid = it.nextULL().getValue();
+					if (oids == null || oids.contains(oid)) {
+						next.add(oid);
+					}
+				}
+				it.close();
+				oids = next;
+				if (oids.size() == 0) {
+					return new OidArrayIterator(NO_RANGES);
+				}
+			}
+		}
+		if (oids == null) {
+			throw new IllegalArgumentException("No ranges given.");
+		}
+		long[] sorted = new long[oids.size()];
+		int n = 0;
+		for (Long oid: oids) {
+			sorted[n++] = oid;
+		}
+		Arrays.sort(sorted);
+		return new OidArrayIterator(sorted);
+	}
+}
@@ -16,14 +16,15 @@
 package org.zoodb.internal.server.index;
 
 import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
 
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.DataDeSerializer;
 import org.zoodb.internal.client.AbstractCache;
 import org.zoodb.internal.server.DiskAccessOneFile;
-import org.zoodb.internal.server.ObjectReader;
 import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
 import org.zoodb.internal.util.CloseableIterator;
+import org.zoodb.internal.util.PoolDDS;
 
 /**
  * TODO
@@ -42,6 +43,8 @@ public class ObjectIterator implements CloseableIterator<ZooPC> {
 	private final DataDeSerializer deSer;
 	private final boolean loadFromCache;
 	private final AbstractCache cache;
+	private final Lock indexLock;
+	private PoolDDS pool;
 	private ZooPC pc = null;
 	
 	/**
@@ -53,16 +56,23 @@ public class ObjectIterator implements CloseableIterator<ZooPC> {
 	 * @param iter An entry iterator
 	 * @param cache The cache
 	 * @param file File handle
-	 * @param in Object input stream
+	 * @param deSer The de-serializer, it is used exclusively by this iterator
 	 * @param loadFromCache Whether to load from cache, if possible
+	 * @param indexLock Lock for accessing the index, may be {@code null} if the index is not
+	 * accessed concurrently
+	 * @param pool The pool that the de-serializer is returned to when the iterator is closed,
+	 * may be {@code null}
 	 */
 	public ObjectIterator(LLEntryIterator iter, AbstractCache cache, 
-			DiskAccessOneFile file, ObjectReader in, boolean loadFromCache) {
+			DiskAccessOneFile file, DataDeSerializer deSer, boolean loadFromCache, 
+			Lock indexLock, PoolDDS pool) {
 		this.iter = iter;
 		this.file = file;
-		this.deSer = new DataDeSerializer(in, cache);
+		this.deSer = deSer;
 		this.loadFromCache = loadFromCache; 
 		this.cache = cache;
+		this.indexLock = indexLock;
+		this.pool = pool;
 		findNext();
 	}
 
@@ -81,9 +91,21 @@ public class ObjectIterator implements CloseableIterator<ZooPC> {
 		return ret;
 	}
 	
+	private LongLongIndex.LLEntry nextEntry() {
+		if (indexLock == null) {
+			return iter.hasNextULL() ? iter.nextULL() : null;
+		}
+		indexLock.lock();
+		try {
+			return iter.hasNextULL() ? iter.nextULL() : null;
+		} finally {
+			indexLock.unlock();
+		}
+	}
+	
 	private void findNext() {
-		while (iter.hasNextULL()) {
-			LongLongIndex.LLEntry e = iter.nextULL();
+		LongLongIndex.LLEntry e;
+		while ((e = nextEntry()) != null) {
 			
 			//try loading from cache first
 			if (loadFromCache) {
@@ -118,6 +140,19 @@ public class ObjectIterator implements CloseableIterator<ZooPC> {
 	@Override
 	public void close() {
 		pc = null;
-		iter.close();
+		if (pool != null) {
+			pool.offer(deSer);
+			pool = null;
+		}
+		if (indexLock == null) {
+			iter.close();
+			return;
+		}
+		indexLock.lock();
+		try {
+			iter.close();
+		} finally {
+			indexLock.unlock();
+		}
 	}
 }
@@ -15,18 +15,25 @@
  */
 package org.zoodb.internal.server.index;
 
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Lock;
+
 import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.DataDeSerializer;
-import org.zoodb.internal.client.AbstractCache;
-import org.zoodb.internal.server.ObjectReader;
+import org.zoodb.internal.server.PagePrefetcher;
 import org.zoodb.internal.util.CloseableIterator;
+import org.zoodb.internal.util.PoolDDS;
 
 /**
+ * Iterates over all objects in a position index, in the order of their position in the file.
+ * <p>
+ * With a read-ahead window, the iterator reads positions ahead from the index and requests
+ * the next {@code readAhead} data pages from a {@link PagePrefetcher}. The pages are then 
+ * read sequentially in the background while the current objects are de-serialized.
+ * <p>
  * TODO
  * This class can be improved in various ways:
  * a) Implement batch loading
- * b) Start a second thread that loads the next object after the previous one has been 
- *    delivered. 
  * c) Implement this iterator also in other reader classes.
  * 
  * @author Tilmann Zaeschke
@@ -36,13 +43,54 @@ public class ObjectPosIterator implements CloseableIterator<ZooPC> {
 	private final PagedPosIndex.ObjectPosIteratorMerger iter;
 	private final boolean skipIfCached;
 	private final DataDeSerializer dds;
+	private final Lock indexLock;
+	private PoolDDS pool;
 	private ZooPC pc = null;
+	private final PagePrefetcher prefetcher;
+	private final int readAhead;
+	//Positions that have been read from the index but not yet returned
+	private final ArrayDeque<Long> ahead;
+	//Number of different pages in 'ahead'
+	private int nPagesAhead = 0;
+	private int lastPageAhead = -1;
 	
-	public ObjectPosIterator(PagedPosIndex.ObjectPosIteratorMerger iter, AbstractCache cache, 
-	        ObjectReader raf, boolean skipIfCached) {
+	/**
+	 * @param iter The position iterator
+	 * @param dds The de-serializer, it is used exclusively by this iterator
+	 * @param skipIfCached Whether to skip objects that are already loaded
+	 * @param indexLock Lock for accessing the index, may be {@code null} if the index is not
+	 * accessed concurrently
+	 * @param pool The pool that the de-serializer is returned to when the iterator is closed,
+	 * may be {@code null}
+	 */
+	public ObjectPosIterator(PagedPosIndex.ObjectPosIteratorMerger iter, DataDeSerializer dds, 
+			boolean skipIfCached, Lock indexLock, PoolDDS pool) {
+		this(iter, dds, skipIfCached, indexLock, pool, null, 0);
+	}
+
+	/**
+	 * @param iter The position iterator
+	 * @param dds The de-serializer, it is used exclusively by this iterator
+	 * @param skipIfCached Whether to skip objects that are already loaded
+	 * @param indexLock Lock for accessing the index, may be {@code null} if the index is not
+	 * accessed concurrently
+	 * @param pool The pool that the de-serializer is returned to when the iterator is closed,
+	 * may be {@code null}
+	 * @param prefetcher The reader for pages that will be needed soon, may be {@code null}
+	 * @param readAhead The number of data pages to read ahead, {@code 0} to disable reading 
+	 * ahead
+	 */
+	public ObjectPosIterator(PagedPosIndex.ObjectPosIteratorMerger iter, DataDeSerializer dds, 
+			boolean skipIfCached, Lock indexLock, PoolDDS pool, PagePrefetcher prefetcher,
+			int readAhead) {
 		this.iter = iter;
-        this.dds = new DataDeSerializer(raf, cache);
+        this.dds = dds;
         this.skipIfCached = skipIfCached;
+		this.indexLock = indexLock;
+		this.pool = pool;
+		this.prefetcher = prefetcher;
+		this.readAhead = prefetcher == null ? 0 : readAhead;
+		this.ahead = this.readAhead > 0 ? new ArrayDeque<>() : null;
         findNext();
 	}
 
@@ -58,9 +106,62 @@ public class ObjectPosIterator implements CloseableIterator<ZooPC> {
 	    return pc2;
 	}
 	
+	private long nextPos() {
+		if (readAhead > 0) {
+			return nextPosReadAhead();
+		}
+		if (indexLock == null) {
+			return iter.hasNextOPI() ? iter.nextPos() : -1;
+		}
+		indexLock.lock();
+		try {
+			return iter.hasNextOPI() ? iter.nextPos() : -1;
+		} finally {
+			indexLock.unlock();
+		}
+	}
+	
+	private long nextPosReadAhead() {
+		if (nPagesAhead <= readAhead / 2) {
+			//refill in batches to avoid locking the index for every object
+			if (indexLock == null) {
+				fillReadAhead();
+			} else {
+				indexLock.lock();
+				try {
+					fillReadAhead();
+				} finally {
+					indexLock.unlock();
+				}
+			}
+		}
+		if (ahead.isEmpty()) {
+			return -1;
+		}
+		long pos = ahead.poll();
+		Long next = ahead.peek();
+		if (next == null || BitTools.getPage(next) != BitTools.getPage(pos)) {
+			nPagesAhead--;
+		}
+		return pos;
+	}
+	
+	private void fillReadAhead() {
+		while (nPagesAhead < readAhead && iter.hasNextOPI()) {
+			long pos = iter.nextPos();
+			int page = BitTools.getPage(pos);
+			if (page != lastPageAhead) {
+				lastPageAhead = page;
+				nPagesAhead++;
+				prefetcher.prefetch(page);
+			}
+			ahead.add(pos);
+		}
+	}
+	
 	private void findNext() {
-	    while (iter.hasNextOPI()) {
-	        long pos = iter.nextPos();
+		long pos;
+	    while ((pos = nextPos()) != -1) {
 	        pc = dds.readObject(BitTools.getPage(pos), BitTools.getOffs(pos), skipIfCached);
 	        if (skipIfCached) {
     		    if (!pc.jdoZooIsDeleted()) {
@@ -76,12 +177,29 @@ public class ObjectPosIterator implements CloseableIterator<ZooPC> {
 	@Override
 	public void remove() {
 		// do we need this? Should we allow it? I guess it fails anyway in the LLE-iterator.
+		if (readAhead > 0) {
+			//the index iterator is already further ahead
+			throw new UnsupportedOperationException();
+		}
 		iter.remove();
 	}
 	
 	@Override
 	public void close() {
 	    pc = null;
-		iter.close();
+		if (pool != null) {
+			pool.offer(dds);
+			pool = null;
+		}
+		if (indexLock == null) {
+			iter.close();
+			return;
+		}
+		indexLock.lock();
+		try {
+			iter.close();
+		} finally {
+			indexLock.unlock();
+		}
 	}
 }
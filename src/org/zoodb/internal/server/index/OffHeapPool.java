@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Direct buffers for the entries of clean leaf pages, see
+ * {@link LLIndexPage#moveOffHeap()}.
+ * <p>
+ * Allocating a direct buffer is expensive, so the buffers are slices of large slabs.
+ * All buffers have the size of a database page. A buffer is returned to the pool when its
+ * page moves the entries back to the heap. Evicted pages may still be used by iterators,
+ * so their buffers are returned when the page is garbage collected.
+ *
+ * @author Tilmann Zaeschke
+ */
+final class OffHeapPool {
+
+	private static final int SLAB_SIZE = 1 << 20;
+
+	/**
+	 * A buffer that is used by a page.
+	 */
+	static final class Lease extends WeakReference<LLIndexPage> {
+		final ByteBuffer buf;
+
+		private Lease(LLIndexPage page, ByteBuffer buf, ReferenceQueue<LLIndexPage> queue) {
+			super(page, queue);
+			this.buf = buf;
+		}
+	}
+
+	private final ArrayList<ByteBuffer> free = new ArrayList<>();
+	//The leases must be reachable, otherwise they are not enqueued
+	private final HashSet<Lease> leases = new HashSet<>();
+	private final ReferenceQueue<LLIndexPage> queue = new ReferenceQueue<>();
+	private int bufferSize = -1;
+	private int statNSlabs = 0;
+
+	/**
+	 * @param page The page that uses the buffer
+	 * @param pageSize The page size of the database
+	 * @return A cleared buffer with a capacity of {@code pageSize} bytes
+	 */
+	synchronized Lease allocate(LLIndexPage page, int pageSize) {
+		if (bufferSize != pageSize) {
+			if (bufferSize != -1) {
+				throw new IllegalArgumentException("pageSize=" + pageSize);
+			}
+			bufferSize = pageSize;
+		}
+		if (free.isEmpty()) {
+			reclaim();
+		}
+		if (free.isEmpty()) {
+			allocateSlab();
+		}
+		ByteBuffer buf = free.remove(free.size() - 1);
+		buf.clear();
+		Lease lease = new Lease(page, buf, queue);
+		leases.add(lease);
+		return lease;
+	}
+
+	/**
+	 * Return a buffer to the pool. The buffer must not be used anymore.
+	 * @param lease The lease of the buffer
+	 */
+	synchronized void release(Lease lease) {
+		if (leases.remove(lease)) {
+			lease.clear();
+			free.add(lease.buf);
+		}
+	}
+
+	private void reclaim() {
+		Lease lease;
+		while ((lease = (Lease) queue.poll()) != null) {
+			if (leases.remove(lease)) {
+				free.add(lease.buf);
+			}
+		}
+	}
+
+	private void allocateSlab() {
+		ByteBuffer slab = ByteBuffer.allocateDirect(Math.max(SLAB_SIZE, bufferSize));
+		for (int pos = 0; pos + bufferSize <= slab.capacity(); pos += bufferSize) {
+			slab.limit(pos + bufferSize);
+			slab.position(pos);
+			free.add(slab.slice());
+		}
+		statNSlabs++;
+	}
+
+	synchronized int statsGetSlabCount() {
+		return statNSlabs;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.NoSuchElementException;
+
+import org.zoodb.internal.server.index.LongLongIndex.LLEntry;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+
+/**
+ * Iterator over a sorted array of OIDs. Keys and values of the returned entries are both 
+ * the OID.
+ *
+ * @author Tilmann Zaeschke
+ */
+class OidArrayIterator implements LLEntryIterator {
+	private final long[] oids;
+	private int pos = 0;
+
+	OidArrayIterator(long[] oids) {
+		this.oids = oids;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return pos < oids.length;
+	}
+
+	@Override
+	public LLEntry next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		long oid = oids[pos++];
+		return new LLEntry(oid, oid);
+	}
+
+	@Override
+	public boolean hasNextULL() {
+		return hasNext();
+	}
+
+	@Override
+	public LLEntry nextULL() {
+		return next();
+	}
+
+	@Override
+	public long nextKey() {
+		return next().getKey();
+	}
+
+	@Override
+	public void close() {
+		//nothing to do
+	}
+}
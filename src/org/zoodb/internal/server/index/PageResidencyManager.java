@@ -0,0 +1,337 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.zoodb.internal.server.IOResourceProvider;
+
+/**
+ * Limits the number of index pages that are kept in memory. There is one manager per
+ * database, the budget is shared by all indexes of the database.
+ * <p>
+ * Clean non-root pages are tracked in LRU order, with one LRU per {@link IOResourceProvider}. 
+ * When more than {@code maxPages} pages are tracked, the least recently used pages of the
+ * index that is being used, and of other indexes with the same resource, are unlinked from 
+ * their parent page. They are reloaded from {@code subPageIds} when they are accessed again.
+ * <p>
+ * Pages are only evicted by indexes that use the same {@link IOResourceProvider}. Indexes 
+ * that share a resource are not read by other threads while they are modified, so a page is 
+ * never evicted while a modifying operation uses it. In addition, the following pages are 
+ * never evicted:
+ * <ul>
+ * <li> dirty pages, they are removed from the LRU and added again when they are written.
+ * Parents of dirty pages are always dirty as well. Modifying operations mark their page 
+ * dirty before they read neighbour pages.</li>
+ * <li> root pages.</li>
+ * <li> pages with sub-pages in memory.</li>
+ * <li> a page that is being loaded and its ancestors.</li>
+ * </ul>
+ * Iterators may continue to use evicted pages, evicted pages are clean and any later
+ * modification of the index invalidates the iterator.
+ * <p>
+ * Indexes that are not trees, such as {@link PagedHashLongLong}, register their pages as
+ * {@link DetachedPage}. They share the budget and are evicted by dropping their entries.
+ * <p>
+ * The manager also defines whether clean leaf pages keep their entries in direct buffers
+ * outside the Java heap, see {@link #setOffHeap(boolean)}.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PageResidencyManager {
+
+	private final ConcurrentHashMap<IOResourceProvider, ResourcePages> resources = 
+			new ConcurrentHashMap<>();
+	//The number of pages in all LRUs
+	private final AtomicInteger nPages = new AtomicInteger();
+	private volatile int maxPages = 0;
+	private volatile boolean isOffHeap = false;
+	private final AtomicLong statNEvicted = new AtomicLong();
+	private final OffHeapPool offHeapPool = new OffHeapPool();
+
+	/**
+	 * A page that has no parent page, for example a bucket of a hash index. Evicting the
+	 * page drops its entries, the page reads them again when it is accessed.
+	 */
+	interface DetachedPage {
+		boolean isDirty();
+
+		/**
+		 * Drop the entries of the page. Iterators that already use the entries must keep
+		 * working.
+		 */
+		void unload();
+	}
+
+	/**
+	 * The clean pages of the indexes that use one {@link IOResourceProvider}.
+	 */
+	final class ResourcePages {
+		//Access ordered, the eldest page comes first. Guarded by 'this'.
+		private final LinkedHashMap<AbstractIndexPage, Boolean> lru =
+				new LinkedHashMap<>(256, 0.75f, true);
+		private final LinkedHashMap<DetachedPage, Boolean> detachedLru =
+				new LinkedHashMap<>(256, 0.75f, true);
+		private boolean isRemoved = false;
+
+		/**
+		 * Register a clean non-root page, for example after it has been read or written.
+		 * @param page The page
+		 */
+		void register(AbstractIndexPage page) {
+			if (maxPages <= 0) {
+				return;
+			}
+			synchronized (this) {
+				if (!isRemoved && lru.put(page, Boolean.TRUE) == null) {
+					nPages.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * Register a clean detached page, for example after it has been read or written.
+		 * @param page The page
+		 */
+		void register(DetachedPage page) {
+			if (maxPages <= 0) {
+				return;
+			}
+			synchronized (this) {
+				if (!isRemoved && detachedLru.put(page, Boolean.TRUE) == null) {
+					nPages.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 * Mark a page as recently used.
+		 * @param page The page
+		 */
+		void touch(AbstractIndexPage page) {
+			if (maxPages <= 0) {
+				return;
+			}
+			synchronized (this) {
+				lru.get(page);
+			}
+		}
+
+		/**
+		 * Mark a detached page as recently used.
+		 * @param page The page
+		 */
+		void touch(DetachedPage page) {
+			if (maxPages <= 0) {
+				return;
+			}
+			synchronized (this) {
+				detachedLru.get(page);
+			}
+		}
+
+		/**
+		 * Evict pages of this resource until there are at most {@code maxPages} pages in 
+		 * memory or until no more pages of this resource can be evicted.
+		 * @param loading A page that is being loaded, may be {@code null}. The page and its 
+		 * ancestors are not evicted.
+		 */
+		void evict(AbstractIndexPage loading) {
+			evict(loading, null);
+		}
+
+		/**
+		 * Evict pages of this resource, see {@link #evict(AbstractIndexPage)}.
+		 * @param loading A detached page that is being loaded, it is not evicted.
+		 */
+		void evictDetached(DetachedPage loading) {
+			evict(null, loading);
+		}
+
+		private void evict(AbstractIndexPage loading, DetachedPage loadingDetached) {
+			if (maxPages <= 0 || nPages.get() <= maxPages) {
+				return;
+			}
+			synchronized (this) {
+				ArrayList<AbstractIndexPage> skipped = new ArrayList<>();
+				Iterator<AbstractIndexPage> it = lru.keySet().iterator();
+				while (it.hasNext() && nPages.get() > maxPages) {
+					AbstractIndexPage page = it.next();
+					AbstractIndexPage parent = page.getParent();
+					it.remove();
+					if (page.isDirty() || parent == null) {
+						//not tracked anymore, dirty pages are registered again when written
+						nPages.decrementAndGet();
+						continue;
+					}
+					if (hasSubPagesInMemory(page) || isSelfOrAncestor(page, loading)) {
+						//try again later
+						skipped.add(page);
+						continue;
+					}
+					nPages.decrementAndGet();
+					unlink(page, parent);
+					statNEvicted.incrementAndGet();
+				}
+				for (AbstractIndexPage page: skipped) {
+					lru.put(page, Boolean.TRUE);
+				}
+				Iterator<DetachedPage> itD = detachedLru.keySet().iterator();
+				while (itD.hasNext() && nPages.get() > maxPages) {
+					DetachedPage page = itD.next();
+					if (page == loadingDetached) {
+						continue;
+					}
+					itD.remove();
+					nPages.decrementAndGet();
+					if (!page.isDirty()) {
+						page.unload();
+						statNEvicted.incrementAndGet();
+					}
+				}
+			}
+		}
+
+		private synchronized void clear(boolean remove) {
+			nPages.addAndGet(-lru.size() - detachedLru.size());
+			lru.clear();
+			detachedLru.clear();
+			isRemoved |= remove;
+		}
+
+		boolean isOffHeap() {
+			return isOffHeap;
+		}
+
+		OffHeapPool getOffHeapPool() {
+			return offHeapPool;
+		}
+	}
+
+	/**
+	 * @param io An IO resource
+	 * @return The pages of the indexes that use the resource
+	 */
+	ResourcePages getPages(IOResourceProvider io) {
+		return resources.computeIfAbsent(io, k -> new ResourcePages());
+	}
+
+	/**
+	 * @param maxPages The maximum number of clean index pages in memory. {@code 0} means
+	 * that the number is not limited.
+	 */
+	public synchronized void setMaxPages(int maxPages) {
+		this.maxPages = maxPages;
+		if (maxPages <= 0) {
+			for (ResourcePages pages: resources.values()) {
+				pages.clear(false);
+			}
+		}
+	}
+
+	public int getMaxPages() {
+		return maxPages;
+	}
+
+	/**
+	 * @param isOffHeap Whether leaf pages that are read or written from now on should keep
+	 * their entries in direct buffers until they are modified.
+	 */
+	public void setOffHeap(boolean isOffHeap) {
+		this.isOffHeap = isOffHeap;
+	}
+
+	public boolean isOffHeap() {
+		return isOffHeap;
+	}
+
+	private static boolean hasSubPagesInMemory(AbstractIndexPage page) {
+		if (page.isLeaf) {
+			return false;
+		}
+		for (AbstractIndexPage p: page.subPages) {
+			if (p != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSelfOrAncestor(AbstractIndexPage page, AbstractIndexPage p) {
+		while (p != null) {
+			if (p == page) {
+				return true;
+			}
+			p = p.getParent();
+		}
+		return false;
+	}
+
+	private static void unlink(AbstractIndexPage page, AbstractIndexPage parent) {
+		AbstractIndexPage[] subPages = parent.subPages;
+		for (int i = 0; i < subPages.length; i++) {
+			if (subPages[i] == page) {
+				subPages[i] = null;
+				//The page is counted again when it is reloaded
+				if (page.isLeaf) {
+					page.ind.statNLeaves--;
+				} else {
+					page.ind.statNInner--;
+				}
+				return;
+			}
+		}
+		//Not found: The page has been removed from the tree, for example by a rollback.
+	}
+
+	/**
+	 * Stop tracking the pages of all indexes that use the given IO resource, for example
+	 * when the resource is closed.
+	 * @param io The IO resource
+	 */
+	public void remove(IOResourceProvider io) {
+		ResourcePages pages = resources.remove(io);
+		if (pages != null) {
+			pages.clear(true);
+		}
+	}
+
+	/**
+	 * @return The number of clean index pages in memory, if the number is limited.
+	 */
+	public int statsGetResidentCount() {
+		return nPages.get();
+	}
+
+	/**
+	 * @return The number of evicted index pages.
+	 */
+	public long statsGetEvictedCount() {
+		return statNEvicted.get();
+	}
+
+	/**
+	 * @return The number of slabs that were allocated for off-heap leaf pages.
+	 */
+	public int statsGetOffHeapSlabCount() {
+		return offHeapPool.statsGetSlabCount();
+	}
+}
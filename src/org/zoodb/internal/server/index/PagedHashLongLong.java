@@ -0,0 +1,683 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.IOResourceProvider;
+import org.zoodb.internal.server.StorageChannelInput;
+import org.zoodb.internal.server.StorageChannelOutput;
+import org.zoodb.internal.util.DBLogger;
+
+/**
+ * Unique index based on extendible hashing. It is meant for unique keys that are only
+ * looked up with equality, such as OID-like fields.
+ * <p>
+ * The index consists of a root page, directory pages and bucket pages. The directory maps
+ * the lowest 'global depth' bits of the hash of a key to a bucket. A full bucket is split
+ * into two buckets, the directory is doubled if the bucket was referenced by only one
+ * directory slot. Empty buckets are not merged.
+ * <p>
+ * The directory is read when the index is loaded and stays in memory, buckets are read
+ * lazily. A lookup therefore reads at most one page, whereas a lookup in a B+-tree traverses
+ * one page per level. Clean buckets count towards the budget of the
+ * {@link PageResidencyManager}, evicted buckets drop their entries and read them again when
+ * they are accessed.
+ * <p>
+ * The index is not ordered. Iterators over a range of keys scan the whole index and return
+ * entries in no particular order, descending iterators are not supported.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PagedHashLongLong extends AbstractIndex implements LongLongIndex.LongLongUIndex {
+
+	private static final int BUCKET_HEADER = 4; // 2 (local depth) + 2 (nEntries)
+	private static final int ROOT_HEADER = 16; // 4 (global depth) + 8 (size) + 4 (nDirPages)
+
+	private final PAGE_TYPE dataType;
+	/** Max number of entries in a bucket */
+	private final int maxBucketN;
+	/** Number of directory slots per directory page */
+	private final int dirPageN;
+	private final int maxGlobalDepth;
+
+	private int rootPageId = 0;
+	private int[] dirPageIds = new int[0];
+	/** The bucket pages as written to the directory pages, used to find modified pages */
+	private int[] dirWritten = new int[0];
+	private int globalDepth = 0;
+	private Bucket[] dir;
+	private long size = 0;
+	private int nBuckets;
+	private int modCount = 0;
+	private int statNWrittenPages = 0;
+	private final PageResidencyManager.ResourcePages residency;
+
+	private final class Bucket implements PageResidencyManager.DetachedPage {
+		private int pageId;
+		private int localDepth;
+		private boolean isDirty;
+		//'null' if not loaded yet
+		private long[] keys;
+		private long[] values;
+		private int n;
+
+		private Bucket(int pageId) {
+			this.pageId = pageId;
+		}
+
+		private Bucket(int localDepth, int n) {
+			this.localDepth = localDepth;
+			this.keys = new long[maxBucketN];
+			this.values = new long[maxBucketN];
+			this.n = n;
+			this.isDirty = true;
+		}
+
+		private Bucket load() {
+			if (keys == null) {
+				readBucket(this);
+				residency.register(this);
+				residency.evictDetached(this);
+			} else {
+				residency.touch(this);
+			}
+			return this;
+		}
+
+		@Override
+		public boolean isDirty() {
+			return isDirty;
+		}
+
+		@Override
+		public void unload() {
+			keys = null;
+			values = null;
+		}
+
+		private int find(long key) {
+			return Arrays.binarySearch(keys, 0, n, key);
+		}
+	}
+
+	/**
+	 * Constructor for creating new index.
+	 * @param dataType The page type
+	 * @param file The file
+	 */
+	public PagedHashLongLong(PAGE_TYPE dataType, IOResourceProvider file) {
+		super(file, true, true);
+		this.dataType = dataType;
+		int pageSize = file.getPageSize() - file.getPageHeaderSize();
+		maxBucketN = (pageSize - BUCKET_HEADER) / 16;
+		dirPageN = pageSize / 4;
+		int maxSlots = dirPageN * ((pageSize - ROOT_HEADER) / 4);
+		maxGlobalDepth = 31 - Integer.numberOfLeadingZeros(maxSlots);
+		dir = new Bucket[] {new Bucket(0, 0)};
+		nBuckets = 1;
+		residency = file.getIndexPageResidency().getPages(file);
+	}
+
+	/**
+	 * Constructor for reading index from disk.
+	 * @param dataType The page type
+	 * @param file The file
+	 * @param pageId The ID of the root page
+	 */
+	public PagedHashLongLong(PAGE_TYPE dataType, IOResourceProvider file, int pageId) {
+		this(dataType, file);
+		markClean();
+		readRoot(pageId);
+	}
+
+	private void readRoot(int pageId) {
+		StorageChannelInput in = getIO().getInputChannel();
+		int[] slots;
+		try {
+			in.seekPageForRead(dataType, pageId);
+			globalDepth = in.readInt();
+			size = in.readLong();
+			dirPageIds = new int[in.readInt()];
+			in.noCheckRead(dirPageIds);
+			slots = new int[1 << globalDepth];
+			for (int i = 0; i < dirPageIds.length; i++) {
+				in.seekPageForRead(dataType, dirPageIds[i]);
+				int max = Math.min(slots.length, (i + 1) * dirPageN);
+				for (int s = i * dirPageN; s < max; s++) {
+					slots[s] = in.readInt();
+				}
+			}
+		} finally {
+			//the reader must be returned, otherwise the pool shrinks permanently
+			getIO().returnInputChannel(in);
+		}
+		rootPageId = pageId;
+		dirWritten = slots;
+		HashMap<Integer, Bucket> buckets = new HashMap<>();
+		dir = new Bucket[slots.length];
+		for (int i = 0; i < slots.length; i++) {
+			dir[i] = buckets.computeIfAbsent(slots[i], Bucket::new);
+		}
+		nBuckets = buckets.size();
+	}
+
+	private void readBucket(Bucket b) {
+		StorageChannelInput in = getIO().getInputChannel();
+		try {
+			in.seekPageForRead(dataType, b.pageId);
+			b.localDepth = in.readShort();
+			b.n = in.readShort();
+			long[] keys = new long[maxBucketN];
+			long[] values = new long[maxBucketN];
+			in.noCheckRead(keys, b.n);
+			in.noCheckRead(values, b.n);
+			b.values = values;
+			b.keys = keys;
+		} finally {
+			getIO().returnInputChannel(in);
+		}
+	}
+
+	/**
+	 * The lower bits of the hash select the bucket. OIDs and other keys are often sequential,
+	 * so the bits are mixed first (finalizer of MurmurHash3).
+	 */
+	private static long hash(long key) {
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private Bucket getBucket(long key) {
+		return dir[(int) (hash(key) & ((1 << globalDepth) - 1))].load();
+	}
+
+	@Override
+	public void insertLong(long key, long value) {
+		put(key, value, true);
+	}
+
+	@Override
+	public boolean insertLongIfNotSet(long key, long value) {
+		return put(key, value, false);
+	}
+
+	private boolean put(long key, long value, boolean overwrite) {
+		Bucket b = getBucket(key);
+		int pos = b.find(key);
+		if (pos >= 0) {
+			if (overwrite && b.values[pos] != value) {
+				b.values[pos] = value;
+				markBucketDirty(b);
+			}
+			return false;
+		}
+		while (b.n == maxBucketN) {
+			split(b);
+			b = getBucket(key);
+			pos = b.find(key);
+		}
+		pos = -(pos + 1);
+		System.arraycopy(b.keys, pos, b.keys, pos + 1, b.n - pos);
+		System.arraycopy(b.values, pos, b.values, pos + 1, b.n - pos);
+		b.keys[pos] = key;
+		b.values[pos] = value;
+		b.n++;
+		size++;
+		markBucketDirty(b);
+		return true;
+	}
+
+	/**
+	 * Split a bucket according to the next bit of the hash of its keys.
+	 */
+	private void split(Bucket b) {
+		if (b.localDepth == globalDepth) {
+			if (globalDepth == maxGlobalDepth) {
+				throw DBLogger.newFatalInternal("Hash index is full: " + size);
+			}
+			Bucket[] dir2 = Arrays.copyOf(dir, dir.length * 2);
+			System.arraycopy(dir, 0, dir2, dir.length, dir.length);
+			dir = dir2;
+			globalDepth++;
+		}
+		long bit = 1L << b.localDepth;
+		Bucket b2 = new Bucket(b.localDepth + 1, 0);
+		b.localDepth++;
+		int n = 0;
+		for (int i = 0; i < b.n; i++) {
+			if ((hash(b.keys[i]) & bit) == 0) {
+				b.keys[n] = b.keys[i];
+				b.values[n] = b.values[i];
+				n++;
+			} else {
+				b2.keys[b2.n] = b.keys[i];
+				b2.values[b2.n] = b.values[i];
+				b2.n++;
+			}
+		}
+		b.n = n;
+		for (int i = 0; i < dir.length; i++) {
+			if (dir[i] == b && (i & bit) != 0) {
+				dir[i] = b2;
+			}
+		}
+		nBuckets++;
+		markBucketDirty(b);
+	}
+
+	private void markBucketDirty(Bucket b) {
+		b.isDirty = true;
+		markDirty();
+		modCount++;
+	}
+
+	@Override
+	public LLEntry findValue(long key) {
+		Bucket b = getBucket(key);
+		int pos = b.find(key);
+		return pos >= 0 ? new LLEntry(key, b.values[pos]) : null;
+	}
+
+	/**
+	 * @param key The key to remove
+	 * @return the previous value
+	 * @throws NoSuchElementException if key is not found
+	 */
+	@Override
+	public long removeLong(long key) {
+		Bucket b = getBucket(key);
+		int pos = b.find(key);
+		if (pos < 0) {
+			throw new NoSuchElementException("Key not found: " + key);
+		}
+		long value = b.values[pos];
+		System.arraycopy(b.keys, pos + 1, b.keys, pos, b.n - pos - 1);
+		System.arraycopy(b.values, pos + 1, b.values, pos, b.n - pos - 1);
+		b.n--;
+		size--;
+		markBucketDirty(b);
+		return value;
+	}
+
+	@Override
+	public long removeLongNoFail(long key, long failValue) {
+		if (findValue(key) == null) {
+			return failValue;
+		}
+		return removeLong(key);
+	}
+
+	@Override
+	public long removeLong(long key, long value) {
+		return removeLong(key);
+	}
+
+	@Override
+	public long deleteAndCheckRangeEmpty(long pos, long min, long max) {
+		throw new UnsupportedOperationException("Hash indexes are not ordered.");
+	}
+
+	@Override
+	public LLEntryIterator iterator() {
+		return iterator(Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * For {@code min == max} this is a lookup of a single key, otherwise the whole index is
+	 * scanned and the entries are returned in no particular order.
+	 */
+	@Override
+	public LLEntryIterator iterator(long min, long max) {
+		return new HashIterator(min, max);
+	}
+
+	@Override
+	public LongLongIterator<LLEntry> descendingIterator() {
+		throw new UnsupportedOperationException("Hash indexes are not ordered.");
+	}
+
+	@Override
+	public LongLongIterator<LLEntry> descendingIterator(long max, long min) {
+		throw new UnsupportedOperationException("Hash indexes are not ordered.");
+	}
+
+	@Override
+	public long getMinKey() {
+		long min = Long.MAX_VALUE;
+		LLEntryIterator it = iterator();
+		while (it.hasNextULL()) {
+			min = Math.min(min, it.nextKey());
+		}
+		return min;
+	}
+
+	@Override
+	public long getMaxKey() {
+		long max = Long.MIN_VALUE;
+		LLEntryIterator it = iterator();
+		while (it.hasNextULL()) {
+			max = Math.max(max, it.nextKey());
+		}
+		return max;
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Write the dirty buckets, the directory pages that refer to them and the root page.
+	 * Pages are always written to new pages, the previous pages are returned to the free
+	 * space manager.
+	 */
+	@Override
+	public int write(StorageChannelOutput out) {
+		if (!isDirty()) {
+			return rootPageId;
+		}
+		int[] slots = new int[dir.length];
+		for (int i = 0; i < dir.length; i++) {
+			Bucket b = dir[i];
+			if (b.isDirty) {
+				b.pageId = out.allocateAndSeek(dataType, b.pageId);
+				out.writeShort((short) b.localDepth);
+				out.writeShort((short) b.n);
+				out.noCheckWrite(b.keys, b.n);
+				out.noCheckWrite(b.values, b.n);
+				out.flush();
+				b.isDirty = false;
+				residency.register(b);
+				statNWrittenPages++;
+			}
+			slots[i] = b.pageId;
+		}
+
+		int nDirPages = (slots.length + dirPageN - 1) / dirPageN;
+		int oldDirPages = dirPageIds.length;
+		dirPageIds = Arrays.copyOf(dirPageIds, nDirPages);
+		for (int i = 0; i < nDirPages; i++) {
+			int start = i * dirPageN;
+			int end = Math.min(slots.length, start + dirPageN);
+			if (i < oldDirPages && end <= dirWritten.length
+					&& Arrays.equals(Arrays.copyOfRange(slots, start, end),
+							Arrays.copyOfRange(dirWritten, start, end))) {
+				continue;
+			}
+			dirPageIds[i] = out.allocateAndSeek(dataType, dirPageIds[i]);
+			out.noCheckWrite(Arrays.copyOfRange(slots, start, end));
+			out.flush();
+			statNWrittenPages++;
+		}
+		dirWritten = slots;
+
+		rootPageId = out.allocateAndSeek(dataType, rootPageId);
+		out.writeInt(globalDepth);
+		out.writeLong(size);
+		out.writeInt(dirPageIds.length);
+		out.noCheckWrite(dirPageIds);
+		out.flush();
+		statNWrittenPages++;
+		markClean();
+		//written buckets are clean and can be evicted
+		residency.evict(null);
+		return rootPageId;
+	}
+
+	@Override
+	public void clear() {
+		for (int pageId: debugPageIds()) {
+			file.reportFreePage(pageId);
+		}
+		rootPageId = 0;
+		dirPageIds = new int[0];
+		dirWritten = new int[0];
+		globalDepth = 0;
+		dir = new Bucket[] {new Bucket(0, 0)};
+		nBuckets = 1;
+		size = 0;
+		modCount++;
+		markDirty();
+	}
+
+	@Override
+	public String print() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("globalDepth=").append(globalDepth).append(" size=").append(size);
+		for (int i = 0; i < dir.length; i++) {
+			Bucket b = dir[i].load();
+			if (i >= (1 << b.localDepth)) {
+				continue;
+			}
+			sb.append("\n").append(i).append(": depth=").append(b.localDepth).append(" [");
+			for (int j = 0; j < b.n; j++) {
+				sb.append(j > 0 ? ", " : "").append(b.keys[j]).append("=").append(b.values[j]);
+			}
+			sb.append("]");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return The number of buckets.
+	 */
+	@Override
+	public int statsGetLeavesN() {
+		return nBuckets;
+	}
+
+	/**
+	 * @return The number of directory pages.
+	 */
+	@Override
+	public int statsGetInnerN() {
+		return (dir.length + dirPageN - 1) / dirPageN;
+	}
+
+	@Override
+	public int statsGetWrittenPagesN() {
+		return statNWrittenPages;
+	}
+
+	@Override
+	public PAGE_TYPE getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * @return All pages that have been written, pages of dirty buckets may already be outdated.
+	 */
+	@Override
+	public List<Integer> debugPageIds() {
+		ArrayList<Integer> pages = new ArrayList<>();
+		if (rootPageId != 0) {
+			pages.add(rootPageId);
+		}
+		for (int pageId: dirPageIds) {
+			pages.add(pageId);
+		}
+		//a bucket appears in several slots
+		HashSet<Integer> buckets = new HashSet<>();
+		for (Bucket b: dir) {
+			if (b.pageId != 0 && buckets.add(b.pageId)) {
+				pages.add(b.pageId);
+			}
+		}
+		return pages;
+	}
+
+	@Override
+	public void debugVisitPages(long minTxId, PageVisitor visitor) {
+		if (isDirty() || rootPageId == 0) {
+			//not written yet
+			return;
+		}
+		if (visitPage(rootPageId, minTxId, visitor)) {
+			//pages are copy-on-write, an unchanged root means that nothing has changed
+			return;
+		}
+		for (int pageId: dirPageIds) {
+			visitPage(pageId, minTxId, visitor);
+		}
+		for (int i = 0; i < dir.length; i++) {
+			Bucket b = dir[i].load();
+			if (i >= (1 << b.localDepth) || visitPage(b.pageId, minTxId, visitor)) {
+				continue;
+			}
+			for (int j = 0; j < b.n; j++) {
+				visitor.visitEntry(b.keys[j], b.values[j]);
+			}
+		}
+	}
+
+	/**
+	 * @return {@code true} if the page was skipped because it is not newer than minTxId.
+	 */
+	private boolean visitPage(int pageId, long minTxId, PageVisitor visitor) {
+		StorageChannelInput in = getIO().getInputChannel();
+		long txId;
+		try {
+			in.seekPageForRead(dataType, pageId);
+			txId = in.getHeaderTimestamp();
+		} finally {
+			getIO().returnInputChannel(in);
+		}
+		if (txId <= minTxId) {
+			return true;
+		}
+		visitor.visitPage(pageId, txId);
+		return false;
+	}
+
+	/**
+	 * Iterator over the buckets of the index. For single keys only one bucket is visited.
+	 */
+	private final class HashIterator implements LLEntryIterator {
+		private final long min;
+		private final long max;
+		private final int modCount;
+		private final long txId;
+		private int slot;
+		private final int maxSlot;
+		//The entries of the current bucket, they remain valid if the bucket is evicted
+		private long[] keys;
+		private long[] values;
+		private int n;
+		private int pos;
+		private LLEntry next;
+
+		private HashIterator(long min, long max) {
+			this.min = min;
+			this.max = max;
+			this.modCount = PagedHashLongLong.this.modCount;
+			this.txId = getIO().getTxId();
+			if (min == max) {
+				slot = (int) (hash(min) & ((1 << globalDepth) - 1));
+				maxSlot = slot + 1;
+			} else {
+				slot = 0;
+				maxSlot = dir.length;
+			}
+			findNext();
+		}
+
+		private void findNext() {
+			next = null;
+			while (slot < maxSlot) {
+				if (keys == null) {
+					Bucket bucket = dir[slot].load();
+					keys = bucket.keys;
+					values = bucket.values;
+					n = bucket.n;
+					pos = 0;
+					//a bucket appears in several slots, only the first slot is visited
+					if (maxSlot > slot + 1 && slot >= (1 << bucket.localDepth)) {
+						pos = n;
+					}
+				}
+				while (pos < n) {
+					long key = keys[pos];
+					if (key >= min && key <= max) {
+						next = new LLEntry(key, values[pos++]);
+						return;
+					}
+					pos++;
+				}
+				keys = null;
+				values = null;
+				slot++;
+			}
+		}
+
+		private void checkValidity() {
+			if (getIO().getTxId() != txId) {
+				throw DBLogger.newUser("This iterator has been invalidated by commit() or rollback().");
+			}
+			if (PagedHashLongLong.this.modCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public LLEntry next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			checkValidity();
+			LLEntry ret = next;
+			findNext();
+			return ret;
+		}
+
+		@Override
+		public boolean hasNextULL() {
+			return hasNext();
+		}
+
+		@Override
+		public LLEntry nextULL() {
+			return next();
+		}
+
+		@Override
+		public long nextKey() {
+			return next().getKey();
+		}
+
+		@Override
+		public void close() {
+			//nothing to do
+		}
+	}
+}
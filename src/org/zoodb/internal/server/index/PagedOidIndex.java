@@ -265,7 +265,22 @@ public class PagedOidIndex {
 	    return idx.debugPageIds();
 	}
 
+	public void debugVisitPages(long minTxId, LongLongIndex.PageVisitor visitor) {
+		idx.debugVisitPages(minTxId, visitor);
+	}
+
 	public void revert(int pageId) {
 		idx = IndexFactory.loadUniqueIndex(idx.getDataType(), idx.getIO(), pageId);
 	}
+
+	/**
+	 * Reload the index from disk.
+	 * @param pageId The ID of the root page
+	 * @param lastUsedOid The last used OID of the loaded state. OIDs that were allocated 
+	 * before are not allocated again.
+	 */
+	public void revert(int pageId, long lastUsedOid) {
+		revert(pageId);
+		lastAllocatedInMemory.update(lastUsedOid);
+	}
 }
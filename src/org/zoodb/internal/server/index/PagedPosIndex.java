@@ -21,6 +21,8 @@ import java.util.NoSuchElementException;
 
 import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
 import org.zoodb.internal.server.IOResourceProvider;
+import org.zoodb.internal.server.ObjectWriter;
+import org.zoodb.internal.server.StorageChannelInput;
 import org.zoodb.internal.server.StorageChannelOutput;
 import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
 import org.zoodb.internal.server.index.LongLongIndex.LongLongIterator;
@@ -33,6 +35,11 @@ import org.zoodb.internal.util.CloseableIterator;
  * The key of each entry is the position. The value of each entry is either the following page
  * (for multi-page objects) or 0 (for single page objects and for he last entry of a multi-page
  * object).
+ * <p>
+ * Delta records (see {@link ObjectWriter#DELTA_RECORD_MARK}) have the value 
+ * {@link #MARK_DELTA}. The base record of a delta record stays in the index, but its value is 
+ * inverted ({@code ~nextPage}) to indicate that it is not the current record of the object.
+ * Such base records are skipped by {@link #iteratorObjects()}.
  * 
  * See also PagedOidIndex.
  * 
@@ -42,6 +49,8 @@ import org.zoodb.internal.util.CloseableIterator;
 public class PagedPosIndex {
 
 	public static final long MARK_SECONDARY = 0x00000000FFFFFFFFL;
+	/** Value of delta records. This value can not occur as inverted page ID. */
+	public static final long MARK_DELTA = Integer.MIN_VALUE;
 	
 	public static class ObjectPosIteratorMerger implements CloseableIterator<Long> {
 	    private final LinkedList<ObjectPosIterator> il = 
@@ -111,16 +120,25 @@ public class PagedPosIndex {
 	
 	/**
 	 * This iterator returns only start-pages of objects and skips all intermediate pages.
+	 * Base records that have been superseded by a delta record are skipped as well, unless
+	 * they are explicitly requested.
 	 *  
 	 * @author Tilmann Zaeschke
 	 */
 	public static class ObjectPosIterator implements CloseableIterator<Long> {
 
 		private final LLEntryIterator iter;
+		private final boolean skipBaseRecords;
 		private boolean hasNext = true;
 		private long nextPos = -1;
 		
 		public ObjectPosIterator(LongLongUIndex root, long minKey, long maxKey) {
+			this(root, minKey, maxKey, true);
+		}
+		
+		private ObjectPosIterator(LongLongUIndex root, long minKey, long maxKey, 
+				boolean skipBaseRecords) {
+			this.skipBaseRecords = skipBaseRecords;
 			iter = root.iterator(minKey, maxKey);
 			nextPos();
 		}
@@ -142,27 +160,21 @@ public class PagedPosIndex {
 		}
 		
 		public long nextPos() {
-			//we always only need the key, we return only a long-key
+			//we return only the long-key
 			long ret = nextPos;
-			if (!iter.hasNextULL()) {
-				//close iterator
-				hasNext = false;
-				iter.close();
-				return ret;
-			}
-			
-			//How do we recognize the next object starting point?
-			//The offset of the key is MARK_SECONDARY.
-			nextPos = iter.nextKey();
-			while (iter.hasNextULL() && BitTools.getOffs(nextPos) == (int)MARK_SECONDARY) {
-				nextPos = iter.nextKey();
-			}
-			if (BitTools.getOffs(nextPos) == (int)MARK_SECONDARY) {
-				//close iterator
-				hasNext = false;
-				iter.close();
-				return ret;
+			while (iter.hasNextULL()) {
+				LongLongIndex.LLEntry e = iter.nextULL();
+				//How do we recognize the next object starting point?
+				//The offset of the key is not MARK_SECONDARY.
+				if (BitTools.getOffs(e.getKey()) != (int)MARK_SECONDARY 
+						&& !(skipBaseRecords && isBaseRecord(e.getValue()))) {
+					nextPos = e.getKey();
+					return ret;
+				}
 			}
+			//close iterator
+			hasNext = false;
+			iter.close();
 			return ret;
 		}
 
@@ -181,6 +193,7 @@ public class PagedPosIndex {
 	
 	
 	private final transient LongLongUIndex idx;
+	private final transient IOResourceProvider file;
 	
 	/**
 	 * Constructor for creating new index. 
@@ -189,6 +202,7 @@ public class PagedPosIndex {
 	public PagedPosIndex(IOResourceProvider file) {
 		//8 bit starting pos, 4 bit following page
 		idx = IndexFactory.createUniqueIndex(PAGE_TYPE.POS_INDEX, file, 8, 4);
+		this.file = file;
 	}
 
 	/**
@@ -197,6 +211,7 @@ public class PagedPosIndex {
 	private PagedPosIndex(IOResourceProvider file, int pageId) {
 		//8 bit starting pos, 4 bit following page
 		idx = IndexFactory.loadUniqueIndex(PAGE_TYPE.POS_INDEX, file, pageId, 8, 4);
+		this.file = file;
 	}
 
 	/**
@@ -237,6 +252,14 @@ public class PagedPosIndex {
 		return new ObjectPosIterator(idx, 0, Long.MAX_VALUE);
 	}
 
+	/**
+	 * @return An iterator over the start positions of all records, including base records
+	 * that have been superseded by delta records.
+	 */
+	public ObjectPosIterator iteratorRecords() {
+		return new ObjectPosIterator(idx, 0, Long.MAX_VALUE, false);
+	}
+
 	public LongLongIterator<LongLongIndex.LLEntry> iteratorPositions() {
 		return idx.iterator(0, Long.MAX_VALUE);
 	}
@@ -267,10 +290,99 @@ public class PagedPosIndex {
         return idx.deleteAndCheckRangeEmpty(pos, min, max) << 32;
     }
 
+    /**
+     * Remove all entries of the record at the given position. If the record is a delta record,
+     * its base record is removed as well. Pages that become empty are reported to the FSM.
+     * @param pos The start position of the record
+     */
+    public void removeObject(long pos) {
+        long value = removeAndCheck(pos);
+        if (value == MARK_DELTA) {
+            //Removed pages are not reused during the current transaction, so we can still read it
+            value = removeAndCheck(readBasePos(pos));
+        }
+        if (isBaseRecord(value)) {
+            value = ~value;
+        }
+        //all secondary pages are marked.
+        while (value != 0) {
+            value = removeAndCheck((value << 32) | MARK_SECONDARY);
+        }
+    }
+
+    /**
+     * Prepare writing a new delta record for the record at the given position. If that record
+     * is a delta record, it is removed and its base record is returned. Otherwise the record
+     * becomes the base record of the new delta record.
+     * @param pos The start position of the current record of an object
+     * @return The position of the base record or -1 if the record is not in this index.
+     */
+    public long prepareDelta(long pos) {
+        LongLongIndex.LLEntry e = idx.findValue(pos);
+        if (e == null) {
+            return -1;
+        }
+        long value = e.getValue();
+        if (value == MARK_DELTA) {
+            long basePos = readBasePos(pos);
+            removeAndCheck(pos);
+            return basePos;
+        }
+        if (!isBaseRecord(value)) {
+            //mark as base record
+            idx.insertLong(pos, ~value);
+        }
+        return pos;
+    }
+
+    /**
+     * Add a delta record. Delta records never span multiple pages.
+     * @param page The page
+     * @param offs The offset in the page
+     */
+    public void addDelta(int page, long offs) {
+        addPos(page, offs, (int) MARK_DELTA);
+    }
+
+    /**
+     * @param key The key of an entry
+     * @param value The value of an entry
+     * @return {@code true} if the entry is the start of the current record of an object.
+     */
+    public static boolean isObjectStart(long key, long value) {
+        return BitTools.getOffs(key) != (int)MARK_SECONDARY && !isBaseRecord(value);
+    }
+
+    private static boolean isBaseRecord(long value) {
+        return value < 0 && value != MARK_DELTA;
+    }
+
+    private long removeAndCheck(long pos) {
+        long min = BitTools.getMinPosInPage(pos);
+        long max = BitTools.getMaxPosInPage(pos);
+        return idx.deleteAndCheckRangeEmpty(pos, min, max);
+    }
+
+    private long readBasePos(long deltaPos) {
+        StorageChannelInput in = file.getInputChannel();
+        try {
+            in.seekPosAP(PAGE_TYPE.DATA, deltaPos);
+            //skip DELTA_RECORD_MARK
+            in.readLong();
+            return in.readLong();
+        } finally {
+            file.returnInputChannel(in);
+        }
+    }
+
     public List<Integer> debugPageIds() {
         return idx.debugPageIds();
     }
 
+    public void debugVisitPages(long minTxId, LongLongIndex.PageVisitor visitor) {
+        idx.debugVisitPages(minTxId, visitor);
+    }
+
 	public void clear() {
 		idx.clear();
 	}
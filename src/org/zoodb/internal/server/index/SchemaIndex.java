@@ -89,6 +89,43 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 		private FTYPE fType;
 		private int page;
 		private LongLongIndex index;
+		//Field IDs of composite indexes, 'fieldId' is the ID of the first field.
+		//For included fields, this contains the indexed field and the included field.
+		private long[] fieldIds;
+		private boolean isNgram() {
+			return fType == FTYPE.STRING_NGRAM;
+		}
+		private boolean isComposite() {
+			return fType == FTYPE.COMPOSITE;
+		}
+		private boolean isIncluded() {
+			return fType == FTYPE.INCLUDED;
+		}
+		private boolean isHashed() {
+			return fType == FTYPE.HASH;
+		}
+		private boolean hasFieldIds() {
+			return isComposite() || isIncluded();
+		}
+		/**
+		 * @return Whether this is a normal index on a single field.
+		 */
+		private boolean isPlain() {
+			return !isNgram() && !isComposite() && !isIncluded();
+		}
+		private boolean contains(long id) {
+			if (fieldId == id) {
+				return true;
+			}
+			if (fieldIds != null) {
+				for (long fId: fieldIds) {
+					if (fId == id) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
 	}
 
 	public enum FTYPE {
@@ -100,7 +137,17 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 		FLOAT(4, Float.TYPE, "float"),
 		CHAR(2, Character.TYPE, "char"), 
 		STRING(8, null, "java.lang.String"),
-		REF(8, Long.TYPE, ZooPC.class.getName());
+		REF(8, Long.TYPE, ZooPC.class.getName()),
+		/** N-gram index on a String field, see {@link NgramTools}. */
+		STRING_NGRAM(8, null, "java.lang.String (n-gram)"),
+		/** Index on multiple fields, see {@link CompositeIndexTools}. */
+		COMPOSITE(8, null, "(composite)"),
+		/** Values of a field that is included in the index of another field. The key is the
+		 * OID, the value is the field value. */
+		INCLUDED(8, null, "(included)"),
+		/** Unique index on a primitive or reference field that is only used for equality 
+		 * lookups, see {@link PagedHashLongLong}. */
+		HASH(8, null, "(hash)");
 //		private final int len;
 //		private final Type type;
 		private final String typeName;
@@ -163,6 +210,12 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 		    	fi.fType = FTYPE.values()[in.readByte()];
 		    	fi.isUnique = in.readBoolean();
 		    	fi.page = in.readInt();
+		    	if (fi.hasFieldIds()) {
+		    		fi.fieldIds = new long[in.readShort()];
+		    		for (int j = 0; j < fi.fieldIds.length; j++) {
+		    			fi.fieldIds[j] = in.readLong();
+		    		}
+		    	}
 		    }
 		}
 		
@@ -195,6 +248,12 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 		    	out.writeByte((byte) fi.fType.ordinal());
 		    	out.writeBoolean(fi.isUnique);
 		    	out.writeInt(fi.page);
+		    	if (fi.hasFieldIds()) {
+		    		out.writeShort((short) fi.fieldIds.length);
+		    		for (long id: fi.fieldIds) {
+		    			out.writeLong(id);
+		    		}
+		    	}
 		    }
 		}
 
@@ -226,25 +285,42 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
             return ret;
         }
 
-		public LongLongIndex defineIndex(ZooFieldDef field, boolean isUnique) {
+		/**
+		 * Define a normal index on a field.
+		 * @param field The field
+		 * @param isUnique Whether the index is unique
+		 * @param isHashed Whether the index should be a hash index, this requires a unique 
+		 * index on a field that is not a String
+		 * @return The new index
+		 */
+		public LongLongIndex defineIndex(ZooFieldDef field, boolean isUnique, boolean isHashed) {
 			//double check
 			if (!field.isPrimitiveType() && !field.isString() && !field.isPersistentType()) {
 				throw new IllegalArgumentException("Type cannot be indexed: " + field.getTypeName());
 			}
 			for (FieldIndex fi: fieldIndices) {
-				if (fi.fieldId == field.getFieldSchemaId()) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isPlain()) {
 					throw new IllegalArgumentException(
 							"Index is already defined: " + field.getName());
 				}
 			}
+			if (isHashed && (!isUnique || field.isString())) {
+				throw new IllegalArgumentException(
+						"Hash indexes must be unique and cannot be used for Strings: " + 
+								field.getName());
+			}
 			FieldIndex fi = new FieldIndex();
 			fi.fieldId = field.getFieldSchemaId();
 			fi.fType = FTYPE.fromType(field);
 			fi.isUnique = isUnique;
 			field.setIndexed(true);
 			field.setUnique(isUnique);
-			//unique String indexes use a non-unique index!
-			if (isUnique && !field.isString()) {
+			field.setIndexHashed(isHashed);
+			if (isHashed) {
+				fi.fType = FTYPE.HASH;
+				fi.index = IndexFactory.createHashIndex(PAGE_TYPE.FIELD_INDEX, file);
+			} else if (isUnique && !field.isString()) {
+				//unique String indexes use a non-unique index!
 				fi.index = IndexFactory.createUniqueIndex(PAGE_TYPE.FIELD_INDEX, file);
 			} else {
 				fi.index = IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, file);
@@ -258,10 +334,12 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 			Iterator<FieldIndex> iter = fieldIndices.iterator();
 			while (iter.hasNext()) {
 				FieldIndex fi = iter.next(); 
-				if (fi.fieldId == field.getFieldSchemaId()) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isPlain()) {
 					iter.remove();
 					fi.index.clear();
 					field.setIndexed(false);
+					field.setIndexHashed(false);
+					removeIndexIncludes(field);
 					markRefreshRequired();
 					markDirty();
 					return true;
@@ -272,9 +350,11 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 
 		public LongLongIndex getIndex(ZooFieldDef field) {
 			for (FieldIndex fi: fieldIndices) {
-				if (fi.fieldId == field.getFieldSchemaId()) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isPlain()) {
 					if (fi.index == null) {
-						if (fi.isUnique && !field.isString()) {
+						if (fi.isHashed()) {
+							fi.index = IndexFactory.loadHashIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
+						} else if (fi.isUnique && !field.isString()) {
 							fi.index = IndexFactory.loadUniqueIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
 						} else {
 							fi.index = IndexFactory.loadIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
@@ -286,6 +366,219 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 			return null;
 		}
 
+		/**
+		 * Define an n-gram index for a String field, see {@link NgramTools}. A field can have
+		 * an n-gram index in addition to a normal index.
+		 * @param field The String field
+		 * @return The new index
+		 */
+		public LongLongIndex defineNgramIndex(ZooFieldDef field) {
+			if (!field.isString()) {
+				throw new IllegalArgumentException(
+						"N-gram indexes require String fields: " + field.getTypeName());
+			}
+			if (getNgramIndex(field) != null) {
+				throw new IllegalArgumentException(
+						"N-gram index is already defined: " + field.getName());
+			}
+			FieldIndex fi = new FieldIndex();
+			fi.fieldId = field.getFieldSchemaId();
+			fi.fType = FTYPE.STRING_NGRAM;
+			fi.isUnique = false;
+			field.setNgramIndexed(true);
+			fi.index = IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, file);
+			fieldIndices.add(fi);
+			markRefreshRequired();
+			return fi.index;
+		}
+
+		public boolean removeNgramIndex(ZooFieldDef field) {
+			Iterator<FieldIndex> iter = fieldIndices.iterator();
+			while (iter.hasNext()) {
+				FieldIndex fi = iter.next(); 
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isNgram()) {
+					iter.remove();
+					getIndex(fi).clear();
+					field.setNgramIndexed(false);
+					markRefreshRequired();
+					markDirty();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public LongLongIndex getNgramIndex(ZooFieldDef field) {
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isNgram()) {
+					return getIndex(fi);
+				}
+			}
+			return null;
+		}
+
+		private LongLongIndex getIndex(FieldIndex fi) {
+			if (fi.index == null) {
+				if (fi.isHashed()) {
+					fi.index = IndexFactory.loadHashIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
+				} else if (fi.isUnique) {
+					fi.index = IndexFactory.loadUniqueIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
+				} else {
+					fi.index = IndexFactory.loadIndex(PAGE_TYPE.FIELD_INDEX, file, fi.page);
+				}
+			}
+			return fi.index;
+		}
+
+		/**
+		 * Define a composite index, see {@link CompositeIndexTools}.
+		 * @param fields The fields of the index
+		 * @return The new index
+		 */
+		public LongLongIndex defineCompositeIndex(ZooFieldDef[] fields) {
+			if (fields.length < 2) {
+				throw new IllegalArgumentException("Composite indexes require at least two fields.");
+			}
+			for (ZooFieldDef f: fields) {
+				FTYPE.fromType(f);
+			}
+			if (getCompositeIndex(fields) != null) {
+				throw new IllegalArgumentException(
+						"Composite index is already defined: " + Arrays.toString(fields));
+			}
+			FieldIndex fi = new FieldIndex();
+			fi.fieldIds = toIds(fields);
+			fi.fieldId = fi.fieldIds[0];
+			fi.fType = FTYPE.COMPOSITE;
+			fi.isUnique = false;
+			fi.index = IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, file);
+			fieldIndices.add(fi);
+			markRefreshRequired();
+			return fi.index;
+		}
+
+		public boolean removeCompositeIndex(ZooFieldDef[] fields) {
+			long[] ids = toIds(fields);
+			Iterator<FieldIndex> iter = fieldIndices.iterator();
+			while (iter.hasNext()) {
+				FieldIndex fi = iter.next(); 
+				if (fi.isComposite() && Arrays.equals(fi.fieldIds, ids)) {
+					iter.remove();
+					getIndex(fi).clear();
+					markRefreshRequired();
+					markDirty();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public LongLongIndex getCompositeIndex(ZooFieldDef[] fields) {
+			long[] ids = toIds(fields);
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.isComposite() && Arrays.equals(fi.fieldIds, ids)) {
+					return getIndex(fi);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return The field IDs of all composite indexes of this class.
+		 */
+		public ArrayList<long[]> getCompositeIndexFieldIds() {
+			ArrayList<long[]> ret = new ArrayList<>();
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.isComposite()) {
+					ret.add(fi.fieldIds.clone());
+				}
+			}
+			return ret;
+		}
+
+		/**
+		 * Define an index for the values of a field that is included in the index of another
+		 * field. The index maps OIDs to the values of the included field.
+		 * @param field The indexed field
+		 * @param included The included field
+		 * @return The new index
+		 */
+		public LongLongIndex.LongLongUIndex defineIncludedIndex(ZooFieldDef field, 
+				ZooFieldDef included) {
+			if (included.getPrimitiveType() == null) {
+				throw new IllegalArgumentException(
+						"Only primitive fields can be included: " + included.getName());
+			}
+			if (getIncludedIndex(field, included) != null) {
+				throw new IllegalArgumentException(
+						"Field is already included: " + included.getName());
+			}
+			FieldIndex fi = new FieldIndex();
+			fi.fieldIds = toIds(new ZooFieldDef[]{field, included});
+			fi.fieldId = fi.fieldIds[0];
+			fi.fType = FTYPE.INCLUDED;
+			fi.isUnique = true;
+			fi.index = IndexFactory.createUniqueIndex(PAGE_TYPE.FIELD_INDEX, file);
+			fieldIndices.add(fi);
+			markRefreshRequired();
+			return (LongLongIndex.LongLongUIndex) fi.index;
+		}
+
+		/**
+		 * Remove the indexes of all fields that are included in the index of the given field.
+		 * @param field The indexed field
+		 * @return {@code true} if any index was removed
+		 */
+		public boolean removeIndexIncludes(ZooFieldDef field) {
+			boolean removed = false;
+			Iterator<FieldIndex> iter = fieldIndices.iterator();
+			while (iter.hasNext()) {
+				FieldIndex fi = iter.next(); 
+				if (fi.isIncluded() && fi.fieldId == field.getFieldSchemaId()) {
+					iter.remove();
+					getIndex(fi).clear();
+					removed = true;
+				}
+			}
+			if (removed) {
+				markRefreshRequired();
+				markDirty();
+			}
+			return removed;
+		}
+
+		public LongLongIndex.LongLongUIndex getIncludedIndex(ZooFieldDef field, 
+				ZooFieldDef included) {
+			long[] ids = toIds(new ZooFieldDef[]{field, included});
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.isIncluded() && Arrays.equals(fi.fieldIds, ids)) {
+					return (LongLongIndex.LongLongUIndex) getIndex(fi);
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return Pairs of field IDs of indexed fields and their included fields.
+		 */
+		public ArrayList<long[]> getIndexIncludeFieldIds() {
+			ArrayList<long[]> ret = new ArrayList<>();
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.isIncluded()) {
+					ret.add(fi.fieldIds.clone());
+				}
+			}
+			return ret;
+		}
+
+		private long[] toIds(ZooFieldDef[] fields) {
+			long[] ids = new long[fields.length];
+			for (int i = 0; i < fields.length; i++) {
+				ids[i] = fields[i].getFieldSchemaId();
+			}
+			return ids;
+		}
+
 		public ArrayList<LongLongIndex> getIndices() {
 			ArrayList<LongLongIndex> indices = new ArrayList<>();
 			for (FieldIndex fi: fieldIndices) {
@@ -303,13 +596,26 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 
 		public boolean isUnique(ZooFieldDef field) {
 			for (FieldIndex fi: fieldIndices) {
-				if (fi.fieldId == field.getFieldSchemaId()) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isPlain()) {
 					return fi.isUnique;
 				}
 			}
 			throw new IllegalArgumentException("Index not found for " + field.getName());
 		}
 
+		/**
+		 * @param field The field
+		 * @return Whether the normal index of the field is a hash index.
+		 */
+		public boolean isHashed(ZooFieldDef field) {
+			for (FieldIndex fi: fieldIndices) {
+				if (fi.fieldId == field.getFieldSchemaId() && fi.isPlain()) {
+					return fi.isHashed();
+				}
+			}
+			throw new IllegalArgumentException("Index not found for " + field.getName());
+		}
+
 		/**
 		 * 
 		 * @return True if any indices were written.
@@ -335,21 +641,35 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
             schemaOids[newLen-1] = defNew.getOid();
             //remove indexes for deleted fields
             for (PersistentSchemaOperation op: defNew.getEvolutionOps()) {
-                if (op.isAddOp() && op.getField().isIndexed()) {
+                if (op.isAddOp() && 
+                        (op.getField().isIndexed() || op.getField().isNgramIndexed())) {
                     ZooFieldDef field = op.getField();
-                    FieldIndex fi = new FieldIndex();
-                    fi.fieldId = op.getFieldId();
-                    fi.fType = FTYPE.fromType(field);
-                    fi.isUnique = field.isIndexUnique();
-                    if (fi.isUnique && !field.isString()) {
-                        fi.index = IndexFactory.createUniqueIndex(PAGE_TYPE.FIELD_INDEX, file);
-                    } else {
+                    if (field.isIndexed()) {
+                        FieldIndex fi = new FieldIndex();
+                        fi.fieldId = op.getFieldId();
+                        fi.fType = FTYPE.fromType(field);
+                        fi.isUnique = field.isIndexUnique();
+                        if (field.isIndexHashed()) {
+                            fi.fType = FTYPE.HASH;
+                            fi.index = IndexFactory.createHashIndex(PAGE_TYPE.FIELD_INDEX, file);
+                        } else if (fi.isUnique && !field.isString()) {
+                            fi.index = IndexFactory.createUniqueIndex(PAGE_TYPE.FIELD_INDEX, file);
+                        } else {
+                            fi.index = IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, file);
+                        }
+                        fieldIndices.add(fi);
+                    }
+                    if (field.isNgramIndexed()) {
+                        FieldIndex fi = new FieldIndex();
+                        fi.fieldId = op.getFieldId();
+                        fi.fType = FTYPE.STRING_NGRAM;
                         fi.index = IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, file);
+                        fieldIndices.add(fi);
                     }
-                    fieldIndices.add(fi);
                 } else {
-                    for (int i = 0; i < fieldIndices.size(); i++) {
-                        if (fieldIndices.get(i).fieldId == op.getFieldId()) {
+                    //there may be a normal, an n-gram, composite and included indexes for the field
+                    for (int i = fieldIndices.size() - 1; i >= 0; i--) {
+                        if (fieldIndices.get(i).contains(op.getFieldId())) {
                             FieldIndex fi = fieldIndices.remove(i);
                             fi.index.clear();
                         }
@@ -386,6 +706,15 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 		out.setOverflowCallbackWrite(this);
 	}
 	
+	/**
+	 * Release the channels of this index. This is used for read-only copies of the index
+	 * that are not needed anymore.
+	 */
+	public void close() {
+		file.dropReader(in);
+		file.dropWriter(out);
+	}
+	
 	private void readIndex() {
 		in.seekPageForRead(PAGE_TYPE.SCHEMA_INDEX, pageId);
 		int nIndex = in.readInt();
@@ -503,8 +832,14 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 			if (e.getIndex(f) != null) {
 				f.setIndexed(true);
 				f.setUnique(e.isUnique(f));
+				f.setIndexHashed(e.isHashed(f));
+			}
+			if (e.getNgramIndex(f) != null) {
+				f.setNgramIndexed(true);
 			}
 		}
+		def.setCompositeIndexes(e.getCompositeIndexFieldIds());
+		def.setIndexIncludes(e.getIndexIncludeFieldIds());
 	}
 
 	
@@ -542,11 +877,17 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 				if (se.getIndex(f) != null) {
 					f.setIndexed(true);
 					f.setUnique(se.isUnique(f));
+					f.setIndexHashed(se.isHashed(f));
+				}
+				if (se.getNgramIndex(f) != null) {
+					f.setNgramIndexed(true);
 				}
 				if (f.getTypeOID() > 0) {
 					f.setType(ret.get(f.getTypeOID()));
 				}
 			}
+			def.setCompositeIndexes(se.getCompositeIndexFieldIds());
+			def.setIndexIncludes(se.getIndexIncludeFieldIds());
 		}
 
 		//build proxy structure
@@ -608,6 +949,16 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
         markDirty();
 	}
 
+	public ArrayList<LongLongIndex> debugGetAttrIndexes() {
+	    ArrayList<LongLongIndex> ret = new ArrayList<LongLongIndex>();
+        for (SchemaIndexEntry e: schemaIndex.values()) {
+            for (FieldIndex fi: e.fieldIndices) {
+                ret.add(fi.index);
+            }
+        }
+        return ret;
+	}
+
 	public ArrayList<Integer> debugPageIdsAttrIdx() {
 	    ArrayList<Integer> ret = new ArrayList<Integer>();
         for (SchemaIndexEntry e: schemaIndex.values()) {
@@ -625,13 +976,32 @@ public class SchemaIndex implements CallbackPageRead, CallbackPageWrite {
 	}
 
 	public void revert(int rootPage, long schemaTxId) {
+		revert(rootPage, schemaTxId, schemaTxId);
+	}
+
+	/**
+	 * Reload the index from disk.
+	 * @param rootPage The page of the index
+	 * @param schemaTxId See {@link #getTxIdOfLastWrite()}
+	 * @param schemaIndexTxId See {@link #getTxIdOfLastWriteThatRequiresRefresh()}
+	 */
+	public void revert(int rootPage, long schemaTxId, long schemaIndexTxId) {
 		schemaIndex.clear();
 		pageId = rootPage;
 		readIndex();
 		txIdOfLastWrite = schemaTxId;
-		txIdOfLastWriteThatRequiresRefresh = schemaTxId;
+		txIdOfLastWriteThatRequiresRefresh = schemaIndexTxId;
 		isResetRequired = false;
 		isRefreshRequired = false;
+		markClean();
+	}
+
+	/**
+	 * @return Whether the schemata or indexes have been changed since they were last written 
+	 * or loaded.
+	 */
+	public boolean hasChanges() {
+		return isDirty || isResetRequired || isRefreshRequired;
 	}
 
 	public long countInstances(ZooClassProxy def, boolean subClasses) {
@@ -71,7 +71,7 @@ public class ClassCreator extends URLClassLoader {
 	 * @param superClassName Name of the super class
 	 * @return The new Class
 	 */
-	public static Class<?> createClass(String className, String superClassName) {
+	public static synchronized Class<?> createClass(String className, String superClassName) {
 		Class<?> cls = SINGLETON.map.get(className);
 		if (cls != null) {
 			return cls;
@@ -110,7 +110,7 @@ public class ClassCreator extends URLClassLoader {
 	}
 
 	
-	public static Class<?> createClass(String className) {
+	public static synchronized Class<?> createClass(String className) {
 		Class<?> cls = SINGLETON.map.get(className);
 		if (cls != null) {
 			return cls;
@@ -16,10 +16,22 @@
 package org.zoodb.internal.util;
 
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.zoodb.api.impl.ZooPC;
 
 /**
  * A lock for the client (session, queries, activate(), ....) to better support multi-threaded
  * access to a single session.
+ * <p>
+ * By default, all access is exclusive. If shared locking is enabled, read-only operations 
+ * use {@link #lockShared()} and can run concurrently, while all other operations use 
+ * {@link #lock()}. The exclusive lock can not be acquired by a thread that holds only the
+ * shared lock, because that would dead-lock with other readers.
+ * <p>
+ * With shared locking, the loading of objects is additionally guarded by striped 
+ * per-OID locks, see {@link #lockLoad(long)}, so that an object is loaded only once even
+ * if multiple threads activate it at the same time. 
  * @author ztilmann
  *
  */
@@ -39,30 +51,164 @@ public class ClientLock {
 //		lock.release();
 //	}
 	
-	private final ReentrantLock lock = new ReentrantLock();
+	private static final int LOAD_STRIPES = 64;
+	
+	//With shared locking, the exclusive lock is the write lock of 'rwLock'. Otherwise
+	//it is 'lock' and there are no load locks.
+	private final ReentrantReadWriteLock rwLock;
+	private final ReentrantLock lock;
 	private boolean isLockingEnabled = true;
-	{
-		lock.lock();
+	private final boolean isSharedLocking;
+	private final ReentrantLock[] loadLocks;
+	private final ThreadLocal<ZooPC> loading = new ThreadLocal<>();
+	
+	/**
+	 * Create a lock that is held by the current thread.
+	 * @param isSharedLocking Whether read-only operations can run concurrently
+	 */
+	public ClientLock(boolean isSharedLocking) {
+		this.isSharedLocking = isSharedLocking;
+		if (isSharedLocking) {
+			rwLock = new ReentrantReadWriteLock();
+			lock = null;
+			loadLocks = new ReentrantLock[LOAD_STRIPES];
+			for (int i = 0; i < loadLocks.length; i++) {
+				loadLocks[i] = new ReentrantLock();
+			}
+		} else {
+			rwLock = null;
+			lock = new ReentrantLock();
+			loadLocks = null;
+		}
+		lockExclusive();
 	}
 	
 	public void lock() {
 		if (isLockingEnabled) {
-			lock.lock();
+			if (isSharedLocking && rwLock.getReadHoldCount() > 0 && 
+					!rwLock.isWriteLockedByCurrentThread()) {
+				throw DBLogger.newUser("Modifying the session is not allowed during a "
+						+ "concurrent read operation, e.g. in a query or in jdoPostLoad().");
+			}
+			lockExclusive();
 		}
 	}
 	
 	public void unlock() {
 		if (isLockingEnabled) {
+			unlockExclusive();
+		}
+	}
+
+	private void lockExclusive() {
+		if (isSharedLocking) {
+			rwLock.writeLock().lock();
+		} else {
+			lock.lock();
+		}
+	}
+	
+	private void unlockExclusive() {
+		if (isSharedLocking) {
+			rwLock.writeLock().unlock();
+		} else {
 			lock.unlock();
 		}
 	}
+	
+	/**
+	 * Acquire a lock for read-only operations. This is the same as {@link #lock()} unless
+	 * shared locking is enabled.
+	 */
+	public void lockShared() {
+		if (isSharedLocking) {
+			if (isLockingEnabled) {
+				rwLock.readLock().lock();
+			}
+		} else {
+			lock();
+		}
+	}
+	
+	public void unlockShared() {
+		if (isSharedLocking) {
+			if (isLockingEnabled) {
+				rwLock.readLock().unlock();
+			}
+		} else {
+			unlock();
+		}
+	}
+
+	/**
+	 * @return Whether the current thread holds the shared lock but not the exclusive lock.
+	 */
+	public boolean isSharedByCurrentThread() {
+		return isSharedLocking && !rwLock.isWriteLockedByCurrentThread() && 
+				rwLock.getReadHoldCount() > 0;
+	}
+	
+	public boolean isSharedLocking() {
+		return isSharedLocking;
+	}
+	
+	/**
+	 * Acquire the load lock of an object. Only available with shared locking.
+	 * <p>
+	 * Loading an object may trigger the loading of other objects, e.g. for hashing keys of
+	 * a DBHashMap, so the current thread may hold several load locks. Load locks must not
+	 * be held while waiting for {@link #lock()}. 
+	 * @param oid The OID of the object
+	 */
+	public void lockLoad(long oid) {
+		loadLocks[stripe(oid)].lock();
+	}
+	
+	public void unlockLoad(long oid) {
+		loadLocks[stripe(oid)].unlock();
+	}
+	
+	private static int stripe(long oid) {
+		int h = (int) (oid ^ (oid >>> 32));
+		h ^= (h >>> 16);
+		return h & (LOAD_STRIPES - 1);
+	}
+	
+	/**
+	 * Register an object that is being loaded by the current thread. Concurrently loaded
+	 * objects remain hollow until they are completely loaded, this allows to ignore the 
+	 * activation of objects that are currently being loaded by the same thread.
+	 * @param pc The object or {@code null}
+	 * @return The previously registered object
+	 */
+	public ZooPC beginLoad(ZooPC pc) {
+		ZooPC prev = loading.get();
+		loading.set(pc);
+		return prev;
+	}
+	
+	/**
+	 * @param prev The object that was returned by {@link #beginLoad(ZooPC)}
+	 */
+	public void endLoad(ZooPC prev) {
+		loading.set(prev);
+	}
+	
+	/**
+	 * @param pc An object
+	 * @return Whether the object is currently being loaded by the current thread.
+	 */
+	public boolean isLoadingByCurrentThread(ZooPC pc) {
+		return isSharedLocking && loading.get() == pc;
+	}
 
 	public boolean isLocked() {
-		return lock.isLocked();
+		return isSharedLocking ? rwLock.isWriteLocked() : lock.isLocked();
 	}
 
 	public boolean isLockedByCurrentThread() {
-		return lock.isHeldByCurrentThread();
+		return isSharedLocking ? rwLock.isWriteLockedByCurrentThread() : 
+			lock.isHeldByCurrentThread();
 	}
 
 	public boolean isLockingEnabled() {
@@ -73,9 +219,9 @@ public class ClientLock {
 		//This is not threadsafe, however, if we ever call this method
 		//we are apparently not interested in thread safety anyway...
 		isLockingEnabled = enable;
-		if (!enable && lock.isHeldByCurrentThread()) {
-			while (lock.getHoldCount() > 0) {
-				lock.unlock();
+		if (!enable && isLockedByCurrentThread()) {
+			while (isLockedByCurrentThread()) {
+				unlockExclusive();
 			}
 		}
 	}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only list that is filled on demand from an iterator, for example from a query
+ * iterator. Elements before {@code minIncl} are skipped and the source is not read beyond
+ * {@code maxExcl}.
+ * <p>
+ * Elements are read from the source when they are first accessed, by an iterator or by
+ * {@link #get(int)}. All elements that have been read are kept, so the list can be iterated
+ * again and accessed randomly. The source is never read again, because a query would then
+ * return the state of the database at the time of the access instead of the state at the
+ * time of execution. Operations that require the whole list, such as {@link #size()}, read
+ * all remaining elements.
+ *
+ * @author Tilmann Zaeschke
+ *
+ * @param <E> The element type
+ */
+public class LazyResultList<E> extends AbstractList<E> {
+
+	//Elements that have been read from the source
+	private final ArrayList<E> buffer = new ArrayList<>();
+	private Iterator<E> source;
+	private long toSkip;
+	private long toRead;
+
+	/**
+	 * @param source The source of the elements, it is read only once
+	 * @param minIncl Number of elements to skip
+	 * @param maxExcl Position after the last element to return
+	 */
+	public LazyResultList(Iterator<E> source, long minIncl, long maxExcl) {
+		this.source = source;
+		this.toSkip = minIncl;
+		this.toRead = maxExcl - minIncl;
+	}
+
+	/**
+	 * Read the next element from the source into the buffer.
+	 * @return {@code false} if there are no more elements
+	 */
+	private boolean readNext() {
+		if (source == null) {
+			return false;
+		}
+		while (toSkip > 0 && source.hasNext()) {
+			source.next();
+			toSkip--;
+		}
+		if (toRead > 0 && source.hasNext()) {
+			buffer.add(source.next());
+			toRead--;
+			return true;
+		}
+		close();
+		return false;
+	}
+
+	private void readAll() {
+		while (readNext()) {
+			//read
+		}
+	}
+
+	/**
+	 * @return Whether all elements have been read from the source
+	 */
+	public boolean isComplete() {
+		return source == null;
+	}
+
+	@Override
+	public E get(int index) {
+		while (index >= buffer.size() && readNext()) {
+			//read
+		}
+		if (index >= buffer.size()) {
+			throw new IndexOutOfBoundsException("Index: " + index);
+		}
+		return buffer.get(index);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		readAll();
+		return buffer.contains(o);
+	}
+
+	@Override
+	public int size() {
+		readAll();
+		return buffer.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return buffer.isEmpty() && !readNext();
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int pos = 0;
+
+			@Override
+			public boolean hasNext() {
+				return pos < buffer.size() || readNext();
+			}
+
+			@Override
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buffer.get(pos++);
+			}
+		};
+	}
+
+	/**
+	 * Release the source. Elements that have already been read remain accessible.
+	 */
+	public void close() {
+		if (source instanceof CloseableIterator) {
+			((CloseableIterator<E>) source).close();
+		}
+		source = null;
+	}
+}
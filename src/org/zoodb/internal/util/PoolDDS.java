@@ -31,16 +31,29 @@ import org.zoodb.internal.server.ObjectReader;
 public class PoolDDS {
     /** Main lock for all access */
     private final ReentrantLock lock = new ReentrantLock(false);
-    private static final boolean CONCURRENT = false;
     private final DataDeSerializer[] items = new DataDeSerializer[10]; 
     private int count = 0;
     
     private final AbstractCache cache;
     private final IOResourceProvider file;
+    //Only set if the pool is used by multiple threads
+    private final ClientLock loadLock;
 	
     public PoolDDS(IOResourceProvider file, AbstractCache cache) {
+    	this(file, cache, null);
+    }
+    
+    /**
+     * @param file The file
+     * @param cache The cache
+     * @param loadLock The session lock if objects may be loaded concurrently, otherwise
+     * {@code null}
+     * @see DataDeSerializer#setConcurrent(ClientLock)
+     */
+    public PoolDDS(IOResourceProvider file, AbstractCache cache, ClientLock loadLock) {
     	this.file = file;
     	this.cache = cache;
+    	this.loadLock = loadLock;
     }
     
 	/**
@@ -52,7 +65,11 @@ public class PoolDDS {
         try {
             if (count == 0) {
             	ObjectReader poa = new ObjectReader(file);
-                return new DataDeSerializer(poa, cache);
+                DataDeSerializer dds = new DataDeSerializer(poa, cache);
+                if (loadLock != null) {
+                	dds.setConcurrent(loadLock);
+                }
+                return dds;
             }
             //TODO set to null?
             return items[--count];
@@ -78,13 +95,13 @@ public class PoolDDS {
     }
 
     private void lock() {
-        if (CONCURRENT) {
+        if (loadLock != null) {
             lock.lock();
         }
     }
 
     private void unlock() {
-        if (CONCURRENT) {
+        if (loadLock != null) {
             lock.unlock();
         }
     }
@@ -80,6 +80,14 @@ public class RWSemaphore<T> {
 		wSemaphore.release();
 	}
 	
+	/**
+	 * Release a read lock. This is meant for threads that never acquire the write lock and
+	 * therefore have no key.
+	 */
+	public void releaseRead() {
+		releaseRead(NO_KEY);
+	}
+	
 	public void release(T key) {
 		if (currentWriterKey == key) {
 			releaseWrite(key);
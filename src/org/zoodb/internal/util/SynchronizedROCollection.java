@@ -59,30 +59,44 @@ public class SynchronizedROCollection<E> implements List<E>, CloseableResource {
 		this.minIncl = minIncl > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) minIncl;
 		this.maxExcl = maxExcl > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) maxExcl;
 		this.session = session;
-		this.fixSizeList = (c instanceof ArrayList) && minIncl == 0 ? (ArrayList<E>) c : null;
+		this.fixSizeList = (c instanceof ArrayList || c instanceof LazyResultList) 
+				&& minIncl == 0 ? (List<E>) c : null;
 		session.registerResource(this);
 	}
 	
+	/**
+	 * Create a collection that reads the source on demand, see {@link LazyResultList}. 
+	 * @param source The source of the elements, it is read only once and closed when the 
+	 * collection is closed
+	 * @param session The session
+	 * @param minIncl Number of elements to skip
+	 * @param maxExcl Position after the last element to return
+	 */
+	public SynchronizedROCollection(Iterator<E> source, Session session, long minIncl, 
+			long maxExcl) {
+		this(new LazyResultList<>(source, minIncl, maxExcl), session, 0, Integer.MAX_VALUE);
+	}
+	
 	@Override
 	public int size() {
 		checkCursoredResult();
 		try {
-			lock.lock();
+			lock.lockShared();
 			adjustSize();
 			return c.size();
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
 	@Override
 	public boolean isEmpty() {
 		try {
-			lock.lock();
+			lock.lockShared();
 			adjustSize();
 			return c.isEmpty();
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
@@ -95,7 +109,7 @@ public class SynchronizedROCollection<E> implements List<E>, CloseableResource {
 	@Override
 	public Iterator<E> iterator() {
 		try {
-			lock.lock();
+			lock.lockShared();
 			//We can't create a fix size list after iteration has begun
 			isCreationOfFixSizeListAllowed = false;
     		boolean failOnClosedQuery = session.getConfig().getFailOnClosedQueries();
@@ -112,7 +126,7 @@ public class SynchronizedROCollection<E> implements List<E>, CloseableResource {
 					new ClosableIteratorWrapper<>(c.iterator(), this, failOnClosedQuery);
 			return new SynchronizedROIterator<>(iter, lock, minIncl, maxExcl);
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
@@ -192,6 +206,9 @@ public class SynchronizedROCollection<E> implements List<E>, CloseableResource {
 
 	@Override
 	public void close() {
+		if (c instanceof LazyResultList) {
+			((LazyResultList<E>) c).close();
+		}
 		c = Collections.emptyList();
 		session.deregisterResource(this);
 		isClosed = true;
@@ -55,10 +55,10 @@ public class SynchronizedROIterator<E> implements CloseableIterator<E> {
 	@Override
 	public void close() {
 		try {
-			lock.lock();
+			lock.lockShared();
 			this.i.close();
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
@@ -66,24 +66,24 @@ public class SynchronizedROIterator<E> implements CloseableIterator<E> {
 	@Override
 	public boolean hasNext() {
 		try {
-			lock.lock();
+			lock.lockShared();
 			return posOfNext < maxExcl && this.i.hasNext();
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
 	@Override
 	public E next() {
 		try {
-			lock.lock();
+			lock.lockShared();
 			posOfNext++;
 			if (posOfNext > maxExcl) {
 				throw new NoSuchElementException();
 			}
 			return this.i.next();
 		} finally {
-			lock.unlock();
+			lock.unlockShared();
 		}
 	}
 
@@ -20,11 +20,14 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
 import org.zoodb.internal.Session;
+import org.zoodb.internal.ZooClassProxy;
+import org.zoodb.internal.util.DBLogger;
 import org.zoodb.internal.util.DBTracer;
 import org.zoodb.jdo.impl.PersistenceManagerImpl;
 import org.zoodb.schema.ZooClass;
 import org.zoodb.schema.ZooSchema;
 import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.ZooCompactDb;
 import org.zoodb.tools.ZooHelper;
 
 public class ZooJdoHelper extends ZooHelper {
@@ -106,6 +109,28 @@ public class ZooJdoHelper extends ZooHelper {
     	c.createIndex(fieldName, isUnique);
     }
 
+    /**
+     * Relocate all instances of a class into densely packed pages and release free pages at
+     * the end of the database file. The objects are relocated in batches, each batch in a 
+     * separate transaction, so other sessions can continue to use the database.
+     * This must be called outside of a transaction.
+     * @param pm The PersistenceManager
+     * @param cls The class whose instances should be relocated
+     * @return The number of relocated objects
+     * @see ZooCompactDb
+     */
+    public static long compact(PersistenceManager pm, Class<?> cls) {
+    	DBTracer.logCall(ZooJdoHelper.class, pm, cls); 
+    	Session s = ((PersistenceManagerImpl)pm).getSession();
+    	ZooClassProxy px = s.getSchemaManager().locateSchema(cls, null);
+    	if (px == null) {
+    		throw DBLogger.newUser("Class schema not found: " + cls.getName());
+    	}
+    	long n = s.compactInstances(px, ZooCompactDb.DEFAULT_BATCH_SIZE);
+    	s.truncateFile();
+    	return n;
+    }
+
     /**
      * Get access to the statistics API of ZooDB.
      * @param pm The PersistenceManager
@@ -20,6 +20,7 @@ import java.util.Properties;
 import javax.jdo.Constants;
 
 import org.zoodb.api.ZooConstants;
+import org.zoodb.internal.SessionConfig.CLUSTERING_MODE;
 import org.zoodb.internal.util.DBTracer;
 import org.zoodb.jdo.impl.PersistenceManagerFactoryImpl;
 import org.zoodb.tools.ZooHelper;
@@ -224,6 +225,207 @@ public class ZooJdoProperties extends Properties implements Constants {
 	}
 
 
+	/**
+	 * Property that defines the order in which objects are written during commit. Objects that
+	 * are written consecutively are likely to end up on the same page.
+	 * Default is {@code NONE}.
+	 * @param mode The clustering mode
+	 * @return this
+	 * @see ZooConstants#PROPERTY_CLUSTERING
+	 */
+	public ZooJdoProperties setZooClustering(CLUSTERING_MODE mode) {
+    	DBTracer.logCall(this, mode); 
+		put(ZooConstants.PROPERTY_CLUSTERING, mode.name());
+		return this;
+	}
+
+
+	/**
+	 * Cluster objects by the value of the given field. This also sets the clustering mode
+	 * to {@code FIELD}. Objects of classes without such a field are sorted by OID.
+	 * @param fieldName The name of the field
+	 * @return this
+	 * @see ZooConstants#PROPERTY_CLUSTERING_FIELD
+	 */
+	public ZooJdoProperties setZooClusteringField(String fieldName) {
+    	DBTracer.logCall(this, fieldName); 
+		put(ZooConstants.PROPERTY_CLUSTERING, CLUSTERING_MODE.FIELD.name());
+		put(ZooConstants.PROPERTY_CLUSTERING_FIELD, fieldName);
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether changes of persistent fields are tracked per object.
+	 * If enabled, objects that were modified but whose fields have the same values at commit 
+	 * time as before the modification are not written. 
+	 * Default is {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see ZooConstants#PROPERTY_TRACK_DIRTY_FIELDS
+	 */
+	public ZooJdoProperties setZooTrackDirtyFields(boolean flag) {
+    	DBTracer.logCall(this, flag); 
+		put(ZooConstants.PROPERTY_TRACK_DIRTY_FIELDS, Boolean.toString(flag));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether transactions read from a snapshot of the database.
+	 * If enabled, read transactions do not block commits of other sessions.
+	 * Default is {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see ZooConstants#PROPERTY_SNAPSHOT_READS
+	 */
+	public ZooJdoProperties setZooSnapshotReads(boolean flag) {
+    	DBTracer.logCall(this, flag); 
+		put(ZooConstants.PROPERTY_SNAPSHOT_READS, Boolean.toString(flag));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines the size of the second level cache that is shared by all 
+	 * PersistenceManagers of a factory. Default is {@code 0}, which disables the cache.
+	 * @param nObjects The maximum number of objects in the cache
+	 * @return this
+	 * @see ZooConstants#PROPERTY_DATASTORE_CACHE_SIZE
+	 */
+	public ZooJdoProperties setZooDataStoreCacheSize(int nObjects) {
+    	DBTracer.logCall(this, nObjects); 
+		put(ZooConstants.PROPERTY_DATASTORE_CACHE_SIZE, Integer.toString(nObjects));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether multiple threads can read concurrently from a single 
+	 * PersistenceManager. Default is {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see ZooConstants#PROPERTY_CONCURRENT_READS
+	 */
+	public ZooJdoProperties setZooConcurrentReads(boolean flag) {
+    	DBTracer.logCall(this, flag); 
+		put(ZooConstants.PROPERTY_CONCURRENT_READS, Boolean.toString(flag));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines the maximum number of readers that are used for reading index 
+	 * pages. Default is the number of available processors.
+	 * @param size The maximum number of readers
+	 * @return this
+	 * @see ZooConstants#PROPERTY_READER_POOL_SIZE
+	 */
+	public ZooJdoProperties setZooReaderPoolSize(int size) {
+    	DBTracer.logCall(this, size); 
+		put(ZooConstants.PROPERTY_READER_POOL_SIZE, Integer.toString(size));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines the maximum number of clean index pages that are kept in memory.
+	 * Default is {@code 0}, which means that the number of pages is not limited.
+	 * @param maxPages The maximum number of index pages
+	 * @return this
+	 * @see ZooConstants#PROPERTY_INDEX_PAGE_BUDGET
+	 */
+	public ZooJdoProperties setZooIndexPageBudget(int maxPages) {
+    	DBTracer.logCall(this, maxPages); 
+		put(ZooConstants.PROPERTY_INDEX_PAGE_BUDGET, Integer.toString(maxPages));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines how many data pages are read ahead when iterating over an extent.
+	 * Default is {@code 0}, which means that no pages are read ahead.
+	 * @param nPages The number of pages to read ahead
+	 * @return this
+	 * @see ZooConstants#PROPERTY_EXTENT_READ_AHEAD
+	 */
+	public ZooJdoProperties setZooExtentReadAhead(int nPages) {
+    	DBTracer.logCall(this, nPages); 
+		put(ZooConstants.PROPERTY_EXTENT_READ_AHEAD, Integer.toString(nPages));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether clean index leaf pages are kept outside the Java heap.
+	 * Default is {@code false}.
+	 * @param isOffHeap Whether index pages should be kept off-heap
+	 * @return this
+	 * @see ZooConstants#PROPERTY_INDEX_OFF_HEAP
+	 */
+	public ZooJdoProperties setZooIndexOffHeap(boolean isOffHeap) {
+    	DBTracer.logCall(this, isOffHeap); 
+		put(ZooConstants.PROPERTY_INDEX_OFF_HEAP, Boolean.toString(isOffHeap));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines the maximum number of compiled queries that are cached.
+	 * Default is {@code 0}, which means that the cache is disabled.
+	 * @param size The maximum number of cached queries
+	 * @return this
+	 * @see ZooConstants#PROPERTY_QUERY_PLAN_CACHE_SIZE
+	 */
+	public ZooJdoProperties setZooQueryPlanCacheSize(int size) {
+    	DBTracer.logCall(this, size); 
+		put(ZooConstants.PROPERTY_QUERY_PLAN_CACHE_SIZE, Integer.toString(size));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether a background thread should verify the checksums of all
+	 * pages of the database. Default is {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see ZooConstants#PROPERTY_PAGE_SCRUBBER
+	 */
+	public ZooJdoProperties setZooPageScrubber(boolean flag) {
+    	DBTracer.logCall(this, flag); 
+		put(ZooConstants.PROPERTY_PAGE_SCRUBBER, Boolean.toString(flag));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether commits should use a write-ahead log. Default is 
+	 * {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see ZooConstants#PROPERTY_WRITE_AHEAD_LOG
+	 */
+	public ZooJdoProperties setZooWriteAheadLog(boolean flag) {
+    	DBTracer.logCall(this, flag); 
+		put(ZooConstants.PROPERTY_WRITE_AHEAD_LOG, Boolean.toString(flag));
+		return this;
+	}
+
+
+	/**
+	 * Property that defines whether the database is opened in read-only mode. Read-only 
+	 * databases can be opened by multiple processes at the same time. Default is 
+	 * {@code false}.
+	 * @param flag The flag
+	 * @return this
+	 * @see Constants#PROPERTY_READONLY
+	 */
+	public ZooJdoProperties setReadOnly(boolean flag) {
+		put(Constants.PROPERTY_READONLY, Boolean.toString(flag));
+		return this;
+	}
+
+
 	/**
 	 * Property that defines whether PersistenceManagers should expect multi-threaded access. 
 	 * Default is {@code true}.
@@ -22,6 +22,7 @@ import javax.jdo.JDOUserException;
 import javax.jdo.PersistenceManagerFactory;
 
 import org.zoodb.api.ZooConstants;
+import org.zoodb.internal.SessionConfig.CLUSTERING_MODE;
 import org.zoodb.tools.ZooHelper;
 
 
@@ -64,9 +65,23 @@ public abstract class AbstractPersistenceManagerFactory
     private String database = null;
 
     private boolean nonTransactionalRead = false;
+    private boolean isReadOnly = false;
     private boolean autoCreateSchema = true;
 	private boolean evictPrimitives = false;
 	private boolean failOnClosedQueries = false;
+	private CLUSTERING_MODE clusteringMode = CLUSTERING_MODE.NONE;
+	private String clusteringField = null;
+	private boolean trackDirtyFields = false;
+	private boolean snapshotReads = false;
+	private int dataStoreCacheSize = 0;
+	private boolean concurrentReads = false;
+	private int readerPoolSize = 0;
+	private int indexPageBudget = 0;
+	private boolean indexOffHeap = false;
+	private int queryPlanCacheSize = 0;
+	private int extentReadAhead = 0;
+	private boolean pageScrubber = false;
+	private boolean writeAheadLog = false;
 //	private boolean allowNonStandardSCOs = false;
     
     //Non-standard properties.
@@ -155,7 +170,7 @@ public abstract class AbstractPersistenceManagerFactory
     		} else if (Constants.PROPERTY_SERVER_TIME_ZONE_ID.equals(key)) {
     			System.out.println("STUB: Property not supported: " + key + "=" + props.get(key)); //TODO
     		} else if (Constants.PROPERTY_READONLY.equals(key)) {
-    			System.out.println("STUB: Property not supported: " + key + "=" + props.get(key)); //TODO
+    			isReadOnly = Boolean.parseBoolean(props.getProperty(key));
     			
     		//The following two properties are only used in the props, not in the overrides.
     		} else if (Constants.PROPERTY_NAME.equals(key)) {
@@ -179,6 +194,37 @@ public abstract class AbstractPersistenceManagerFactory
     			evictPrimitives = Boolean.parseBoolean(props.getProperty(key));
     		} else if (ZooConstants.PROPERTY_FAIL_ON_CLOSED_QUERIES.equals(key)) {
     			failOnClosedQueries = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_CLUSTERING.equals(key)) {
+    			String value = props.getProperty(key);
+    			try {
+    				clusteringMode = CLUSTERING_MODE.valueOf(value.toUpperCase());
+    			} catch (IllegalArgumentException e) {
+    				throw new JDOUserException("Invalid value for " + key + ": " + value, e);
+    			}
+    		} else if (ZooConstants.PROPERTY_CLUSTERING_FIELD.equals(key)) {
+    			clusteringField = props.getProperty(key);
+    		} else if (ZooConstants.PROPERTY_TRACK_DIRTY_FIELDS.equals(key)) {
+    			trackDirtyFields = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_SNAPSHOT_READS.equals(key)) {
+    			snapshotReads = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_DATASTORE_CACHE_SIZE.equals(key)) {
+    			dataStoreCacheSize = Integer.parseInt(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_CONCURRENT_READS.equals(key)) {
+    			concurrentReads = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_READER_POOL_SIZE.equals(key)) {
+    			readerPoolSize = Integer.parseInt(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_INDEX_PAGE_BUDGET.equals(key)) {
+    			indexPageBudget = Integer.parseInt(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_INDEX_OFF_HEAP.equals(key)) {
+    			indexOffHeap = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_QUERY_PLAN_CACHE_SIZE.equals(key)) {
+    			queryPlanCacheSize = Integer.parseInt(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_EXTENT_READ_AHEAD.equals(key)) {
+    			extentReadAhead = Integer.parseInt(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_PAGE_SCRUBBER.equals(key)) {
+    			pageScrubber = Boolean.parseBoolean(props.getProperty(key));
+    		} else if (ZooConstants.PROPERTY_WRITE_AHEAD_LOG.equals(key)) {
+    			writeAheadLog = Boolean.parseBoolean(props.getProperty(key));
     		} else {
     			//throw new IllegalArgumentException("Unknown key: " + key);
     			System.err.println("Property not recognised: " + key + "=" + props.getProperty(key));
@@ -258,6 +304,17 @@ public abstract class AbstractPersistenceManagerFactory
 		nonTransactionalRead = arg0;
 	}
 
+    @Override
+    public boolean getReadOnly() {
+        return isReadOnly;
+    }
+
+	@Override
+	public void setReadOnly(boolean arg0) {
+		checkFrozen();
+		isReadOnly = arg0;
+	}
+
     @Override
     public void setConnectionPassword(String password) {
         checkFrozen();
@@ -394,4 +451,118 @@ public abstract class AbstractPersistenceManagerFactory
 	public boolean getFailOnClosedQueries() {
 		return failOnClosedQueries;
 	}
+    
+
+	/**
+	 * @return The clustering mode for writing objects.
+	 * @see  ZooConstants#PROPERTY_CLUSTERING
+	 */
+	public CLUSTERING_MODE getClusteringMode() {
+		return clusteringMode;
+	}
+    
+
+	/**
+	 * @return The name of the field for clustering mode {@code FIELD}.
+	 * @see  ZooConstants#PROPERTY_CLUSTERING_FIELD
+	 */
+	public String getClusteringField() {
+		return clusteringField;
+	}
+    
+
+	/**
+	 * @return Whether changes of fields are tracked.
+	 * @see  ZooConstants#PROPERTY_TRACK_DIRTY_FIELDS
+	 */
+	public boolean getTrackDirtyFields() {
+		return trackDirtyFields;
+	}
+    
+
+	/**
+	 * @return Whether transactions read from a snapshot.
+	 * @see  ZooConstants#PROPERTY_SNAPSHOT_READS
+	 */
+	public boolean getSnapshotReads() {
+		return snapshotReads;
+	}
+    
+
+	/**
+	 * @return The maximum number of objects in the second level cache, 0 if disabled.
+	 * @see  ZooConstants#PROPERTY_DATASTORE_CACHE_SIZE
+	 */
+	public int getDataStoreCacheSize() {
+		return dataStoreCacheSize;
+	}
+    
+
+	/**
+	 * @return Whether multiple threads can read concurrently from a PersistenceManager.
+	 * @see  ZooConstants#PROPERTY_CONCURRENT_READS
+	 */
+	public boolean getConcurrentReads() {
+		return concurrentReads;
+	}
+
+	/**
+	 * @return The maximum number of index page readers, 
+	 * {@code 0} for the default.
+	 * @see  ZooConstants#PROPERTY_READER_POOL_SIZE
+	 */
+	public int getReaderPoolSize() {
+		return readerPoolSize;
+	}
+
+	/**
+	 * @return The maximum number of clean index pages in memory, 
+	 * {@code 0} if the number is not limited.
+	 * @see  ZooConstants#PROPERTY_INDEX_PAGE_BUDGET
+	 */
+	public int getIndexPageBudget() {
+		return indexPageBudget;
+	}
+
+	/**
+	 * @return Whether clean index pages are kept outside the Java heap.
+	 * @see  ZooConstants#PROPERTY_INDEX_OFF_HEAP
+	 */
+	public boolean getIndexOffHeap() {
+		return indexOffHeap;
+	}
+
+	/**
+	 * @return The maximum number of cached compiled queries, 
+	 * {@code 0} if the cache is disabled.
+	 * @see  ZooConstants#PROPERTY_QUERY_PLAN_CACHE_SIZE
+	 */
+	public int getQueryPlanCacheSize() {
+		return queryPlanCacheSize;
+	}
+
+	/**
+	 * @return The number of data pages that are read ahead during extent iteration, 
+	 * {@code 0} if no pages are read ahead.
+	 * @see  ZooConstants#PROPERTY_EXTENT_READ_AHEAD
+	 */
+	public int getExtentReadAhead() {
+		return extentReadAhead;
+	}
+
+	/**
+	 * @return Whether page checksums are verified in the background.
+	 * @see  ZooConstants#PROPERTY_PAGE_SCRUBBER
+	 */
+	public boolean getPageScrubber() {
+		return pageScrubber;
+	}
+
+	/**
+	 * @return Whether commits use a write-ahead log.
+	 * @see  ZooConstants#PROPERTY_WRITE_AHEAD_LOG
+	 */
+	public boolean getWriteAheadLog() {
+		return writeAheadLog;
+	}
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.jdo.impl;
+
+import java.util.Collection;
+
+import javax.jdo.JDOUserException;
+import javax.jdo.datastore.DataStoreCache;
+
+import org.zoodb.internal.server.SharedObjectCache;
+
+/**
+ * The second level cache of a PersistenceManagerFactory.
+ * <p>
+ * Object IDs are the IDs returned by {@code PersistenceManager.getObjectId()}. Pinning a
+ * class affects instances of the class that are already cached as well as instances that
+ * are cached later.
+ *
+ * @author Tilmann Zaeschke
+ * @see org.zoodb.api.ZooConstants#PROPERTY_DATASTORE_CACHE_SIZE
+ */
+public class DataStoreCacheImpl implements DataStoreCache {
+
+	private final SharedObjectCache cache;
+
+	DataStoreCacheImpl(SharedObjectCache cache) {
+		this.cache = cache;
+	}
+
+	SharedObjectCache getSharedCache() {
+		return cache;
+	}
+
+	private static long toOid(Object oid) {
+		if (!(oid instanceof Long)) {
+			throw new JDOUserException("Invalid object ID: " + oid);
+		}
+		return (Long) oid;
+	}
+
+	@Override
+	public void evict(Object oid) {
+		cache.evict(toOid(oid));
+	}
+
+	@Override
+	public void evictAll() {
+		cache.evictAll();
+	}
+
+	@Override
+	public void evictAll(Object... oids) {
+		for (Object oid: oids) {
+			evict(oid);
+		}
+	}
+
+	@Override
+	public void evictAll(@SuppressWarnings("rawtypes") Collection oids) {
+		for (Object oid: oids) {
+			evict(oid);
+		}
+	}
+
+	@Deprecated
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void evictAll(Class pcClass, boolean subclasses) {
+		cache.evictAll(pcClass, subclasses);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void evictAll(boolean subclasses, Class pcClass) {
+		cache.evictAll(pcClass, subclasses);
+	}
+
+	@Override
+	public void pin(Object oid) {
+		cache.pin(toOid(oid));
+	}
+
+	@Override
+	public void pinAll(@SuppressWarnings("rawtypes") Collection oids) {
+		for (Object oid: oids) {
+			pin(oid);
+		}
+	}
+
+	@Override
+	public void pinAll(Object... oids) {
+		for (Object oid: oids) {
+			pin(oid);
+		}
+	}
+
+	@Deprecated
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void pinAll(Class pcClass, boolean subclasses) {
+		cache.pinAll(pcClass, subclasses);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void pinAll(boolean subclasses, Class pcClass) {
+		cache.pinAll(pcClass, subclasses);
+	}
+
+	@Override
+	public void unpin(Object oid) {
+		cache.unpin(toOid(oid));
+	}
+
+	@Override
+	public void unpinAll(@SuppressWarnings("rawtypes") Collection oids) {
+		for (Object oid: oids) {
+			unpin(oid);
+		}
+	}
+
+	@Override
+	public void unpinAll(Object... oids) {
+		for (Object oid: oids) {
+			unpin(oid);
+		}
+	}
+
+	@Deprecated
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void unpinAll(Class pcClass, boolean subclasses) {
+		cache.unpinAll(pcClass, subclasses);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void unpinAll(boolean subclasses, Class pcClass) {
+		cache.unpinAll(pcClass, subclasses);
+	}
+
+	/**
+	 * @return The number of objects in the cache, including pinned objects
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	/**
+	 * @return The number of objects that were found in the cache
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * @return The number of objects that were not found in the cache and had to be read
+	 * from disk
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+}
@@ -36,6 +36,8 @@ import javax.jdo.spi.JDOImplHelper;
 import javax.jdo.spi.StateInterrogation;
 
 import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.query.QueryPlanCache;
+import org.zoodb.internal.server.SharedObjectCache;
 import org.zoodb.jdo.spi.ZooStateInterrogator;
 
 /**
@@ -49,10 +51,11 @@ public class PersistenceManagerFactoryImpl
 	private static final long serialVersionUID = 1L;
 	private Set<PersistenceManagerImpl> pms = new HashSet<>();
 	private boolean isClosed = false;
-	private boolean isReadOnly = false;
 	private static final StateInterrogation SI = new ZooStateInterrogator();
 	
 	private final HashMap<InstanceLifecycleListener, List<Class<?>>> lcListeners = new HashMap<>();
+	private transient DataStoreCacheImpl dataStoreCache;
+	private transient QueryPlanCache queryPlanCache;
 	
     /**
      * @param props NOT SUPPORTED!
@@ -121,6 +124,8 @@ public class PersistenceManagerFactoryImpl
         PersistenceManagerFactoryImpl pmf = 
             (PersistenceManagerFactoryImpl) super.clone();
         pmf.pms = new HashSet<PersistenceManagerImpl>(); //do not clone _pm!
+        pmf.dataStoreCache = null;
+        pmf.queryPlanCache = null;
         return pmf;
     }
 
@@ -222,8 +227,43 @@ public class PersistenceManagerFactoryImpl
 
 	@Override
 	public DataStoreCache getDataStoreCache() {
-		// TODO Auto-generated method stub
-		throw new UnsupportedOperationException();
+		if (getDataStoreCacheSize() <= 0) {
+			return new DataStoreCache.EmptyDataStoreCache();
+		}
+		return getDataStoreCacheImpl();
+	}
+
+	private synchronized DataStoreCacheImpl getDataStoreCacheImpl() {
+		if (dataStoreCache == null) {
+			dataStoreCache = new DataStoreCacheImpl(
+					new SharedObjectCache(getDataStoreCacheSize()));
+		}
+		return dataStoreCache;
+	}
+
+	/**
+	 * @return The second level cache for the sessions of this factory, or {@code null} if 
+	 * the cache is disabled.
+	 */
+	SharedObjectCache getSharedCache() {
+		if (getDataStoreCacheSize() <= 0) {
+			return null;
+		}
+		return getDataStoreCacheImpl().getSharedCache();
+	}
+
+	/**
+	 * @return The cache for compiled queries of the sessions of this factory, or {@code null} 
+	 * if the cache is disabled.
+	 */
+	synchronized QueryPlanCache getQueryPlanCache() {
+		if (getQueryPlanCacheSize() <= 0) {
+			return null;
+		}
+		if (queryPlanCache == null) {
+			queryPlanCache = new QueryPlanCache(getQueryPlanCacheSize());
+		}
+		return queryPlanCache;
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -270,11 +310,6 @@ public class PersistenceManagerFactoryImpl
 		throw new UnsupportedOperationException();
 	}
 
-	@Override
-	public boolean getReadOnly() {
-		return isReadOnly;
-	}
-
 	@Override
 	public boolean getRestoreValues() {
 		// TODO Auto-generated method stub
@@ -389,7 +424,7 @@ public class PersistenceManagerFactoryImpl
 	@Override
 	public void setReadOnly(boolean arg0) {
 		checkOpen();
-		isReadOnly = arg0;	
+		super.setReadOnly(arg0);
 	}
 
 	@Override
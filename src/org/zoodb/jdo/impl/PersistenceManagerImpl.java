@@ -92,6 +92,20 @@ public class PersistenceManagerImpl implements PersistenceManager, SessionParent
         cfg.setAutoCreateSchema(factory.getAutoCreateSchema());
         cfg.setEvictPrimitives(factory.getEvictPrimitives());
         cfg.setFailOnCloseQueries(factory.getFailOnClosedQueries());
+        cfg.setClusteringMode(factory.getClusteringMode());
+        cfg.setClusteringField(factory.getClusteringField());
+        cfg.setTrackDirtyFields(factory.getTrackDirtyFields());
+        cfg.setSnapshotReads(factory.getSnapshotReads());
+        cfg.setSharedCache(factory.getSharedCache());
+        cfg.setQueryPlanCache(factory.getQueryPlanCache());
+        cfg.setConcurrentReads(factory.getConcurrentReads());
+        cfg.setReaderPoolSize(factory.getReaderPoolSize());
+        cfg.setIndexPageBudget(factory.getIndexPageBudget());
+        cfg.setIndexOffHeap(factory.getIndexOffHeap());
+        cfg.setExtentReadAhead(factory.getExtentReadAhead());
+        cfg.setPageScrubber(factory.getPageScrubber());
+        cfg.setWriteAheadLog(factory.getWriteAheadLog());
+        cfg.setReadOnly(factory.getReadOnly());
         cfg.setDetachAllOnCommit(factory.getDetachAllOnCommit());
         cfg.setNonTransactionalRead(factory.getNontransactionalRead());
     	nativeConnection = new Session(this, factory.getConnectionURL(), cfg);
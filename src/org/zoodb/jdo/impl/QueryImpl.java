@@ -42,6 +42,7 @@ import org.zoodb.internal.query.QueryParser;
 import org.zoodb.internal.query.QueryParserAPI;
 import org.zoodb.internal.query.QueryParserV3;
 import org.zoodb.internal.query.QueryParserV4;
+import org.zoodb.internal.query.QueryPlanCache;
 import org.zoodb.internal.query.QueryTree;
 import org.zoodb.internal.query.QueryVariable;
 import org.zoodb.internal.query.QueryVariable.VarDeclaration;
@@ -343,6 +344,29 @@ public class QueryImpl implements Query {
     		}
     		
     		executionType = determineExecutionType();
+    		
+    		boolean isV4 = 
+    				executionType == EXECUTION_TYPE.V4 || executionType == EXECUTION_TYPE.FORCED_V4;
+    		QueryPlanCache planCache = getPlanCache();
+    		QueryPlanCache.Key planKey = null;
+    		if (planCache != null) {
+    			planKey = new QueryPlanCache.Key(pm.getSession().getPrimaryNode().getSchemaTxId(),
+    					candClsDef.jdoZooGetOid(), fStr, parameters, variables, 
+    					rangeMin, rangeMax, isV4);
+    			QueryPlanCache.Plan plan = planCache.get(planKey);
+    			if (plan != null) {
+    				queryTree = plan.bind(pm.getSession().internalGetCache(), parameters, 
+    						variables, ordering);
+    			}
+    			if (queryTree != null) {
+    				if (DBStatistics.isEnabled()) {
+    					pm.getSession().statsInc(DBStatistics.STATS.QU_PLAN_CACHE_HIT);
+    				}
+    				rangeMin = plan.getRangeMin();
+    				rangeMax = plan.getRangeMax();
+    				return;
+    			}
+    		}
     
     		QueryParserAPI qp;
     		//We do this on the query before assigning values to parameter.
@@ -354,7 +378,7 @@ public class QueryImpl implements Query {
     		//QueryParserV2 qp = new QueryParserV2(filter, candClsDef, parameters, ordering); 
     		//QueryParserV3 qp =
     		//		new QueryParserV3(fStr, candClsDef, parameters, variables, ordering, rangeMin, rangeMax);
-    		if (executionType == EXECUTION_TYPE.V4 || executionType == EXECUTION_TYPE.FORCED_V4 ) {
+    		if (isV4) {
     			qp = new QueryParserV4(fStr, candClsDef, parameters, variables,
     					ordering, rangeMin, rangeMax, pm.getSession());
     		} else {
@@ -363,9 +387,26 @@ public class QueryImpl implements Query {
     		queryTree = qp.parseQuery();
     		rangeMin = qp.getRangeMin();
     		rangeMax = qp.getRangeMax();
+    		
+    		if (planKey != null) {
+    			planCache.put(planKey, new QueryPlanCache.Plan(queryTree, parameters, variables,
+    					ordering, rangeMin, rangeMax, pm.getSession()));
+    		}
 	    }
 	}
 	
+	/**
+	 * @return The cache for compiled queries, or {@code null} if this query cannot use it.
+	 * Queries of sessions with uncommitted schema changes are not cached, because their schema
+	 * is not visible to other sessions.
+	 */
+	private QueryPlanCache getPlanCache() {
+		if (candClsDef == null || pm.getSession().getSchemaManager().hasChanges()) {
+			return null;
+		}
+		return pm.getSession().getConfig().getQueryPlanCache();
+	}
+	
 	private void resetQuery() {
 	    // Protect access to queryTree instance/reference
 	    synchronized (this) {
@@ -523,10 +564,10 @@ public class QueryImpl implements Query {
 		//now go through extent. Skip this if extent was generated on server from local filters.
 		filter = filter.trim();
 		if (filter.length() == 0 && orderingStr == null && !isDummyQuery) {
+			boolean isExclusive = pm.getSession().lockQuery(ignoreCache);
 			try {
-				pm.getSession().lock();
 				pm.getSession().checkActiveRead();
-				if (!ignoreCache) {
+				if (!ignoreCache && isExclusive) {
 					ClientSessionCache cache = pm.getSession().internalGetCache();
 					cache.persistReachableObjects();
 				}
@@ -544,7 +585,7 @@ public class QueryImpl implements Query {
 				return getOrCreateExecutor().runWithExtent(new ExtentAdaptor(extent),
 						rangeMin, rangeMax, resultSettings, resultClass);
 			} finally {
-				pm.getSession().unlock();
+				pm.getSession().unlockQuery(isExclusive);
 			}
 		}
 		
@@ -841,6 +882,15 @@ public class QueryImpl implements Query {
 		//
 	}
 
+	private static boolean hasCompositeIndex(ZooClassDef def) {
+		for (ZooClassDef d = def; d != null; d = d.getSuperDef()) {
+			if (!d.getCompositeIndexes().isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private EXECUTION_TYPE determineExecutionType() {
 		if (executionType == EXECUTION_TYPE.FORCED_V3
 				|| executionType == EXECUTION_TYPE.FORCED_V4) {
@@ -849,6 +899,10 @@ public class QueryImpl implements Query {
 		if (!variables.isEmpty() || resultClass != null || resultSettings != null) {
 			return EXECUTION_TYPE.V4;
 		}
+		if (hasCompositeIndex(candClsDef)) {
+			//composite indexes are only supported by V4
+			return EXECUTION_TYPE.V4;
+		}
 		if (filter == null || filter.length() == 0) {
 			return EXECUTION_TYPE.V3;
 		}
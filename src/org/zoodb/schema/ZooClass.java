@@ -41,6 +41,26 @@ public interface ZooClass {
 	 */
 	void createIndex(String fieldName, boolean isUnique);
 
+	/**
+	 * Creates an index on the specified field for the current class and all sub-classes.
+	 * The index also stores the values of the included fields. Queries that return only the
+	 * indexed field and included fields, for example 
+	 * {@code SELECT _name, _price FROM Product WHERE _price > :p} with an index on 
+	 * {@code _price} that includes {@code _name}, can then be answered without loading the 
+	 * objects. Only primitive fields can be included. 
+	 * @param fieldName The name of the field to be indexed
+	 * @param isUnique Whether the index should be an index that enforces unique keys.
+	 * @param includedFieldNames The names of the included fields
+	 */
+	void createIndex(String fieldName, boolean isUnique, String ... includedFieldNames);
+
+	/**
+	 * @param fieldName The name of an indexed field
+	 * @return The names of the fields that are included in the index, see 
+	 * {@link #createIndex(String, boolean, String...)}.
+	 */
+	String[] getIndexIncludes(String fieldName);
+
 	/**
 	 * Short for {@link ZooClass#getField(String)}.removeIndex(). 
 	 * @param fieldName The name of the field where the index should be removed
@@ -62,6 +82,35 @@ public interface ZooClass {
 	 */
 	boolean isIndexUnique(String fieldName);
 
+	/**
+	 * Short for {@link ZooClass#getField(String)}.createHashIndex(). 
+	 * @param fieldName The name of the field to be indexed
+	 * @see ZooField#createHashIndex()
+	 */
+	void createHashIndex(String fieldName);
+
+	/**
+	 * Creates a composite index over several fields of the current class and all sub-classes.
+	 * Composite indexes are used by queries with equality constraints on all fields except the 
+	 * last one and an optional range constraint on the last field, for example 
+	 * {@code _customer == :c && _date > :d} for an index over {@code _customer} and 
+	 * {@code _date}.
+	 * @param fieldNames The names of the fields, at least two
+	 */
+	void createCompositeIndex(String ... fieldNames);
+
+	/**
+	 * @param fieldNames The names of the fields of the index, in the order of creation
+	 * @return {@code true} if the index could be removed
+	 */
+	boolean removeCompositeIndex(String ... fieldNames);
+
+	/**
+	 * @param fieldNames The names of the fields of the index, in the order of creation
+	 * @return {@code true} if a composite index is defined on these fields
+	 */
+	boolean hasCompositeIndex(String ... fieldNames);
+
 	/**
 	 * Drops all instances of the class. This does not affect cached instances
 	 */
@@ -39,6 +39,31 @@ public interface ZooField {
 
 	boolean isIndexUnique();
 
+	/**
+	 * Creates a unique hash index on the specified field for the current class and all 
+	 * sub-classes. A hash index finds a key by reading a single index page, but it is not 
+	 * ordered and is therefore only used by queries with {@code ==} on the field. 
+	 * String fields are not supported. The index is removed with {@link #removeIndex()}.
+	 */
+	void createHashIndex();
+
+	/**
+	 * @return {@code true} if the index of the field is a hash index, see 
+	 * {@link #createHashIndex()}.
+	 */
+	boolean isIndexHashed();
+
+	/**
+	 * Creates an n-gram index on the specified String field for the current class and all 
+	 * sub-classes. N-gram indexes are used by queries with {@code startsWith()}, 
+	 * {@code endsWith()}, {@code matches()} and {@code contains()} on the field.
+	 * A field can have an n-gram index in addition to a normal index.
+	 */
+	void createNgramIndex();
+
+	boolean removeNgramIndex();
+
+	boolean hasNgramIndex();
 
 	void rename(String name);
 
@@ -36,6 +36,28 @@ public class DBStatistics {
 		/** Data page (only stored objects) read access counter. 
 		 * Counts only unique access (each page counted only once). */
 		IO_DATA_PAGE_READ_CNT_UNQ(true), 
+		/** Number of index page readers in the pool of the database. The pool is shared by 
+		 * all sessions of the database. */
+		IO_READER_POOL_SIZE(true),
+		/** Number of index page readers that are currently in use. */
+		IO_READER_POOL_IN_USE(true),
+		/** Maximum number of index page readers that were in use at the same time. */
+		IO_READER_POOL_PEAK(true),
+		/** Number of times that a thread had to wait for an index page reader. */
+		IO_READER_POOL_WAIT_CNT(true),
+		/** Total time in nanoseconds that threads waited for index page readers. */
+		IO_READER_POOL_WAIT_NS(true),
+		/** Number of clean index pages in memory. Pages are only counted if the number is 
+		 * limited, see {@link org.zoodb.api.ZooConstants#PROPERTY_INDEX_PAGE_BUDGET}. */
+		IO_INDEX_PAGE_RESIDENT_CNT(true),
+		/** Number of index pages that were dropped from memory because the number of pages 
+		 * is limited. */
+		IO_INDEX_PAGE_EVICTED_CNT(true),
+		/** Number of data pages that were read ahead by a background thread, see 
+		 * {@link org.zoodb.api.ZooConstants#PROPERTY_EXTENT_READ_AHEAD}. */
+		IO_PAGE_PREFETCH_CNT(true),
+		/** Number of page reads that used a page that was read ahead. */
+		IO_PAGE_PREFETCH_HIT_CNT(true),
 		
 		/** Number of pages used by free space manager. */
 		DB_PAGE_CNT_IDX_FSM(true), 
@@ -55,14 +77,34 @@ public class DBStatistics {
 		/** Number of buffered past transactions. */
 		TX_MGR_BUFFERED_TX_CNT(true),
 		
+		/** Number of pages that were verified by the page scrubber. */
+		DB_SCRUB_PAGE_CNT(true),
+		/** Number of completed runs of the page scrubber over the whole database. */
+		DB_SCRUB_RUN_CNT(true),
+		/** Number of pages with invalid checksum that were found by the page scrubber. */
+		DB_SCRUB_ERROR_CNT(true),
+		
+		/** Number of modified objects that were not written because no field had changed. */
+		TX_OBJ_WRITE_SKIPPED_CNT(false),
+		/** Number of modified objects that were written as delta record because only 
+		 * fixed-size fields had changed. */
+		TX_OBJ_WRITE_DELTA_CNT(false),
+		
 		/** Number of queries compiled. */
 		QU_COMPILED(false),
+		/** Number of compiled queries that were taken from the query plan cache, see 
+		 * {@link org.zoodb.api.ZooConstants#PROPERTY_QUERY_PLAN_CACHE_SIZE}. */
+		QU_PLAN_CACHE_HIT(false),
 		/** Number of queries executed. */
 		QU_EXECUTED_TOTAL(false),
 		/** Number of queries executed without index (using Extent) */
 		QU_EXECUTED_WITHOUT_INDEX(false),
 		/** Number of queries with ordering without index. */
-		QU_EXECUTED_WITH_ORDERING_WITHOUT_INDEX(false);
+		QU_EXECUTED_WITH_ORDERING_WITHOUT_INDEX(false),
+		/** Number of queries that were answered from an index without loading objects. */
+		QU_EXECUTED_INDEX_ONLY(false),
+		/** Number of joins via the index of a reference field. */
+		QU_EXECUTED_JOIN(false);
 		
 		private final boolean isServerStat;
 		STATS(boolean isServerStat) {
@@ -122,10 +164,39 @@ public class DBStatistics {
 		return s.getPrimaryNode().getStats(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
 	}
 
+	/**
+	 * 
+	 * @return Total time in nanoseconds that threads of the session waited for a free 
+	 * index page reader.
+	 */
+	public long getReaderPoolWaitTimeNs() {
+		return s.getPrimaryNode().getStats(STATS.IO_READER_POOL_WAIT_NS);
+	}
+
+	/**
+	 * 
+	 * @return Number of data pages that were read ahead by a background thread.
+	 */
+	public long getStoragePagePrefetchCount() {
+		return s.getPrimaryNode().getStats(STATS.IO_PAGE_PREFETCH_CNT);
+	}
+
+	/**
+	 * 
+	 * @return Number of page reads that used a page that was read ahead.
+	 */
+	public long getStoragePagePrefetchHitCount() {
+		return s.getPrimaryNode().getStats(STATS.IO_PAGE_PREFETCH_HIT_CNT);
+	}
+
 	public long getQueryCompileCount() {
 		return s.getStats(STATS.QU_COMPILED);
 	}
 
+	public long getQueryPlanCacheHitCount() {
+		return s.getStats(STATS.QU_PLAN_CACHE_HIT);
+	}
+
 	public long getQueryExecutionCount() {
 		return s.getStats(STATS.QU_EXECUTED_TOTAL);
 	}
@@ -138,6 +209,14 @@ public class DBStatistics {
 		return s.getStats(STATS.QU_EXECUTED_WITH_ORDERING_WITHOUT_INDEX);
 	}
 
+	public long getQueryExecutionIndexOnlyCount() {
+		return s.getStats(STATS.QU_EXECUTED_INDEX_ONLY);
+	}
+
+	public long getQueryExecutionJoinCount() {
+		return s.getStats(STATS.QU_EXECUTED_JOIN);
+	}
+
 	public long getStat(STATS stat) {
 		if (stat.isServerStat()) {
 			return s.getPrimaryNode().getStats(stat);
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.GenericObject;
+import org.zoodb.internal.OidBuffer;
+import org.zoodb.internal.Session;
+import org.zoodb.internal.ZooClassDef;
+import org.zoodb.internal.ZooClassProxy;
+import org.zoodb.internal.ZooHandleImpl;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.jdo.impl.PersistenceManagerImpl;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.schema.ZooField;
+import org.zoodb.schema.ZooHandle;
+import org.zoodb.tools.internal.BinaryWriter;
+import org.zoodb.tools.internal.DataSerializer;
+import org.zoodb.tools.internal.ObjectCache;
+import org.zoodb.tools.internal.ZooCommandLineTool;
+
+/**
+ * Export a database to a binary dump. This is much faster than the xml export and
+ * creates much smaller files.
+ * <p>
+ * The dump is a directory that contains one file with the schema and one file per class
+ * with the objects of that class. Classes are exported in parallel, each by a separate
+ * session that reads the objects directly from the data pages.
+ * Indexes are part of the schema, they are re-created after the objects have been imported
+ * with {@link ZooBinaryImport}.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class ZooBinaryExport extends ZooCommandLineTool {
+
+	static final String SCHEMA_FILE = "schema.zbin";
+	static final int MAGIC = 0x5a6f6f42;
+	static final int VERSION = 1;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File dir;
+	private final int nThreads;
+
+	/**
+	 * @param dir The target directory
+	 * @param nThreads The number of classes that are exported in parallel
+	 */
+	public ZooBinaryExport(File dir, int nThreads) {
+		if (nThreads < 1) {
+			throw new IllegalArgumentException("Invalid number of threads: " + nThreads);
+		}
+		this.dir = dir;
+		this.nThreads = nThreads;
+	}
+
+	public static void main(String[] args) {
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+		if (args.length == 4 && "--threads".equals(args[0])) {
+			nThreads = Integer.parseInt(args[1]);
+			i = 2;
+		}
+		if (args.length - i != 2) {
+			err.println("ERROR Invalid number of arguments.");
+			out.println("Usage: ");
+			out.println("    BinaryExport [--threads <n>] <dbName> <dumpDirectory>");
+			return;
+		}
+
+		String dbName = args[i];
+		File dir = new File(args[i + 1]);
+		String[] content = dir.list();
+		if (content != null && content.length > 0) {
+			err.println("ERROR Directory is not empty: " + dir);
+			return;
+		}
+
+		long n = new ZooBinaryExport(dir, nThreads).writeDB(dbName);
+		out.println("Exported objects: " + n);
+	}
+
+	static File getDataFile(File dir, long schemaOid) {
+		return new File(dir, "class-" + schemaOid + ".zbin");
+	}
+
+	/**
+	 * @param dbName The database to export
+	 * @return The number of exported objects
+	 */
+	public long writeDB(String dbName) {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IllegalArgumentException("Could not create directory: " + dir);
+		}
+		ZooJdoProperties props = new ZooJdoProperties(dbName);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		//This session stays open until all workers are finished, otherwise the database file
+		//may get closed by one worker while another worker opens its session.
+		PersistenceManager pm = pmf.getPersistenceManager();
+		try {
+			List<String> dataClasses = writeSchema(pm);
+			return writeData(pmf, dataClasses);
+		} finally {
+			pm.close();
+			pmf.close();
+		}
+	}
+
+	/**
+	 * @return The names of all classes that may have instances.
+	 */
+	private List<String> writeSchema(PersistenceManager pm) {
+		pm.currentTransaction().begin();
+		ArrayList<String> dataClasses = new ArrayList<>();
+		try (DataOutputStream out = openFile(new File(dir, SCHEMA_FILE))) {
+			ArrayList<ZooClass> classes = new ArrayList<>();
+			for (ZooClass sch: ZooJdoHelper.schema(pm).getAllClasses()) {
+				if (sch.getJavaClass() != ZooPC.class) {
+					classes.add(sch);
+				}
+			}
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(classes.size());
+			for (ZooClass sch: classes) {
+				ZooClassDef def = ((ZooClassProxy) sch).getSchemaDef();
+				out.writeLong(def.getOid());
+				out.writeUTF(sch.getName());
+				out.writeLong(def.getSuperOID());
+				List<ZooField> fields = sch.getAllFields();
+				out.writeInt(fields.size());
+				for (ZooField f: fields) {
+					out.writeUTF(f.getName());
+					out.writeUTF(f.getTypeName());
+					out.writeInt(f.getArrayDim());
+				}
+				ArrayList<ZooField> indexes = new ArrayList<>();
+				for (ZooField f: sch.getLocalFields()) {
+					if (f.hasIndex()) {
+						indexes.add(f);
+					}
+				}
+				out.writeInt(indexes.size());
+				for (ZooField f: indexes) {
+					out.writeUTF(f.getName());
+					out.writeBoolean(f.isIndexUnique());
+				}
+				boolean hasData = sch.getJavaClass() == null ||
+						!ZooClassDef.class.isAssignableFrom(sch.getJavaClass());
+				out.writeBoolean(hasData);
+				if (hasData) {
+					dataClasses.add(sch.getName());
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pm.currentTransaction().rollback();
+		}
+		return dataClasses;
+	}
+
+	private long writeData(PersistenceManagerFactory pmf, List<String> dataClasses) {
+		ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>(dataClasses);
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		AtomicLong nObjects = new AtomicLong();
+		ArrayList<Worker> workers = new ArrayList<>();
+		//Sessions are opened up front, opening them concurrently is not supported.
+		for (int i = 0; i < Math.min(nThreads, dataClasses.size()); i++) {
+			workers.add(new Worker(pmf.getPersistenceManager(), queue, errors, nObjects));
+		}
+		for (Worker w: workers) {
+			w.start();
+		}
+		for (Worker w: workers) {
+			try {
+				w.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+		if (!errors.isEmpty()) {
+			Throwable t = errors.get(0);
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			}
+			throw new RuntimeException(t);
+		}
+		return nObjects.get();
+	}
+
+	/**
+	 * Exports classes from the queue until the queue is empty. Each worker uses its own session.
+	 */
+	private class Worker extends Thread {
+
+		private final PersistenceManager pm;
+		private final ConcurrentLinkedQueue<String> queue;
+		private final List<Throwable> errors;
+		private final AtomicLong nObjects;
+
+		Worker(PersistenceManager pm, ConcurrentLinkedQueue<String> queue,
+				List<Throwable> errors, AtomicLong nObjects) {
+			super("ZooBinaryExport");
+			this.pm = pm;
+			this.queue = queue;
+			this.errors = errors;
+			this.nObjects = nObjects;
+		}
+
+		@Override
+		public void run() {
+			try {
+				pm.currentTransaction().begin();
+				Session session = ((PersistenceManagerImpl) pm).getSession();
+				ObjectCache cache = new ObjectCache(session);
+				for (ZooClass sch: ZooJdoHelper.schema(pm).getAllClasses()) {
+					if (sch.getJavaClass() != ZooPC.class) {
+						ZooClassDef def = ((ZooClassProxy) sch).getSchemaDef();
+						cache.addSchema(def.getOid(), def);
+					}
+				}
+				String name;
+				while ((name = queue.poll()) != null && errors.isEmpty()) {
+					ZooClassProxy px = (ZooClassProxy) ZooJdoHelper.schema(pm).getClass(name);
+					nObjects.addAndGet(writeClass(session, cache, px));
+				}
+			} catch (Throwable t) {
+				errors.add(t);
+			} finally {
+				if (pm.currentTransaction().isActive()) {
+					pm.currentTransaction().rollback();
+				}
+				pm.close();
+			}
+		}
+	}
+
+	private long writeClass(Session session, ObjectCache cache, ZooClassProxy px)
+			throws IOException {
+		ZooClassDef def = px.getSchemaDef();
+		long n = 0;
+		try (DataOutputStream out = openFile(getDataFile(dir, def.getOid()))) {
+			DataSerializer ser = new DataSerializer(new BinaryWriter(out), cache);
+			Iterator<ZooHandle> it = px.getHandleIterator(false);
+			while (it.hasNext()) {
+				GenericObject go = ((ZooHandleImpl) it.next()).getGenericObject();
+				ser.writeObject(go, def);
+				//Objects are not needed anymore after they have been written
+				session.internalGetCache().evictGeneric(go);
+				n++;
+			}
+			out.writeLong(OidBuffer.NULL_REF);
+		}
+		return n;
+	}
+
+	private static DataOutputStream openFile(File file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), BUFFER_SIZE));
+	}
+
+}
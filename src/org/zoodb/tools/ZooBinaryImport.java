@@ -0,0 +1,228 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.zoodb.internal.GenericObject;
+import org.zoodb.internal.OidBuffer;
+import org.zoodb.internal.Session;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.jdo.impl.PersistenceManagerImpl;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.schema.ZooField;
+import org.zoodb.tools.internal.BinaryReader;
+import org.zoodb.tools.internal.DataDeSerializer;
+import org.zoodb.tools.internal.ImportSchema;
+import org.zoodb.tools.internal.ImportSchema.ClsDef;
+import org.zoodb.tools.internal.ObjectCache;
+import org.zoodb.tools.internal.ObjectCache.GOProxy;
+import org.zoodb.tools.internal.ZooCommandLineTool;
+
+/**
+ * Import a binary dump that was created with {@link ZooBinaryExport}.
+ * <p>
+ * Objects are imported in batches, each batch in a separate transaction. Imported objects are
+ * removed from the cache after each batch, so the size of the dump is not limited by the
+ * available memory.
+ * Indexes are created afterwards in a separate transaction, building an index for existing
+ * objects is much faster than updating it for every imported object.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class ZooBinaryImport extends ZooCommandLineTool {
+
+	/** Default number of objects that are imported per transaction. */
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final File dir;
+	private final int batchSize;
+
+	private static class IndexDef {
+		final String className;
+		final String fieldName;
+		final boolean isUnique;
+		IndexDef(String className, String fieldName, boolean isUnique) {
+			this.className = className;
+			this.fieldName = fieldName;
+			this.isUnique = isUnique;
+		}
+	}
+
+	public ZooBinaryImport(File dir) {
+		this(dir, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param dir The directory with the dump
+	 * @param batchSize The number of objects that are imported per transaction
+	 */
+	public ZooBinaryImport(File dir, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		this.dir = dir;
+		this.batchSize = batchSize;
+	}
+
+	public static void main(String[] args) {
+		int batchSize = DEFAULT_BATCH_SIZE;
+		int i = 0;
+		if (args.length == 4 && "--batch-size".equals(args[0])) {
+			batchSize = Integer.parseInt(args[1]);
+			i = 2;
+		}
+		if (args.length - i != 2) {
+			err.println("ERROR Invalid number of arguments.");
+			out.println("Usage: ");
+			out.println("    BinaryImport [--batch-size <n>] <dbName> <dumpDirectory>");
+			return;
+		}
+
+		String dbName = args[i];
+		File dir = new File(args[i + 1]);
+		if (!new File(dir, ZooBinaryExport.SCHEMA_FILE).exists()) {
+			err.println("ERROR Dump not found: " + dir);
+			return;
+		}
+
+		long n = new ZooBinaryImport(dir, batchSize).readDB(dbName);
+		out.println("Imported objects: " + n);
+	}
+
+	/**
+	 * @param dbName The target database
+	 * @return The number of imported objects
+	 */
+	public long readDB(String dbName) {
+		ZooJdoProperties props = new ZooJdoProperties(dbName);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		PersistenceManager pm = pmf.getPersistenceManager();
+		try {
+			ArrayList<IndexDef> indexes = new ArrayList<>();
+			pm.currentTransaction().begin();
+			long n = readData(pm, indexes);
+			pm.currentTransaction().commit();
+
+			pm.currentTransaction().begin();
+			for (IndexDef idx: indexes) {
+				ZooField f = ZooJdoHelper.schema(pm).getClass(idx.className).getField(
+						idx.fieldName);
+				if (!f.hasIndex()) {
+					f.createIndex(idx.isUnique);
+				}
+			}
+			pm.currentTransaction().commit();
+			return n;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+			pmf.close();
+		}
+	}
+
+	private long readData(PersistenceManager pm, ArrayList<IndexDef> indexes)
+			throws IOException {
+		Session session = ((PersistenceManagerImpl)pm).getSession();
+		ObjectCache cache = new ObjectCache(session);
+
+		ImportSchema importSchema = new ImportSchema();
+		ArrayList<Long> dataClasses = new ArrayList<>();
+		try (DataInputStream in = openFile(new File(dir, ZooBinaryExport.SCHEMA_FILE))) {
+			if (in.readInt() != ZooBinaryExport.MAGIC) {
+				throw new IllegalStateException("Not a binary ZooDB export: " + dir);
+			}
+			int version = in.readInt();
+			if (version != ZooBinaryExport.VERSION) {
+				throw new IllegalStateException("Unsupported export version: " + version);
+			}
+			int nClasses = in.readInt();
+			for (int i = 0; i < nClasses; i++) {
+				long sOid = in.readLong();
+				String name = in.readUTF();
+				long superOid = in.readLong();
+				ClsDef cd = importSchema.addClass(name, sOid, superOid);
+				int nFields = in.readInt();
+				for (int j = 0; j < nFields; j++) {
+					String fieldName = in.readUTF();
+					String typeName = in.readUTF();
+					int arrayDim = in.readInt();
+					cd.addField(fieldName, typeName, arrayDim);
+				}
+				int nIndexes = in.readInt();
+				for (int j = 0; j < nIndexes; j++) {
+					indexes.add(new IndexDef(name, in.readUTF(), in.readBoolean()));
+				}
+				if (in.readBoolean()) {
+					dataClasses.add(sOid);
+				}
+			}
+		}
+
+		HashMap<Long, ZooClass> definedClasses = importSchema.define(pm, cache);
+
+		long n = 0;
+		for (long sOid: dataClasses) {
+			ZooClass cls = definedClasses.get(sOid);
+			File file = ZooBinaryExport.getDataFile(dir, sOid);
+			try (DataInputStream in = openFile(file)) {
+				BinaryReader r = new BinaryReader(in);
+				DataDeSerializer ser = new DataDeSerializer(r, cache);
+				long oid;
+				while ((oid = r.readObjectStart()) != OidBuffer.NULL_REF) {
+					GOProxy hdl = cache.findOrCreateGo(oid, cls);
+					GenericObject go = hdl.getGenericObject();
+					if (!go.jdoZooIsNew()) {
+						//Referenced by an object of a previous batch, load it before 
+						//overwriting the fields.
+						go.jdoZooMarkDirty();
+					}
+					ser.readGenericObject(sOid, hdl);
+					n++;
+					if (n % batchSize == 0) {
+						pm.currentTransaction().commit();
+						pm.currentTransaction().begin();
+						cache.evictObjects();
+					}
+				}
+			}
+		}
+		return n;
+	}
+
+	private static DataInputStream openFile(File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), BUFFER_SIZE));
+	}
+
+}
@@ -24,6 +24,7 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
 import org.zoodb.internal.Session;
+import org.zoodb.internal.server.DbChecker;
 import org.zoodb.internal.server.FileHeader;
 import org.zoodb.internal.server.SessionFactory;
 import org.zoodb.internal.util.FormattedStringBuilder;
@@ -56,9 +57,16 @@ public class ZooCheckDb extends ZooCommandLineTool {
             out.println("    --list-indexes:   List all database indexes");
             out.println("    --list-schema:    List all schemata");
             out.println("    --long-names:     Print fully qualified class and type names");
+            out.println("    --threads <n>:    Number of threads used for checking, the default is");
+            out.println("                      the number of available processors");
+            out.println("    --since <txId>:   Incremental check, only pages written after the");
+            out.println("                      given transaction are checked. The ID of the last");
+            out.println("                      transaction is part of the report.");
             return;
         }
 
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        long minTxId = 0;
         if (args.length == 0) {
             dbName = DB_NAME;
         } else {
@@ -66,6 +74,14 @@ public class ZooCheckDb extends ZooCommandLineTool {
             listSchema = Arrays.binarySearch(args, "--list-schema") >= 0;
             listIndexes = Arrays.binarySearch(args, "--list-indexes") >= 0;
             longNames = Arrays.binarySearch(args, "--long-names") >= 0;
+            String threads = getOption(args, "--threads");
+            if (threads != null) {
+                nThreads = Integer.parseInt(threads);
+            }
+            String since = getOption(args, "--since");
+            if (since != null) {
+                minTxId = Long.parseLong(since);
+            }
         }
 
         if (!ZooHelper.getDataStoreManager().dbExists(dbName)) {
@@ -83,6 +99,8 @@ public class ZooCheckDb extends ZooCommandLineTool {
         out.println("magic number: " + Integer.toHexString(header.getFileID()));
         out.println("format version: " + header.getVersionMajor() + "." + header.getVersionMinor());
         out.println("page size: " + header.getPageSize());
+        out.println("page checksums: " + (header.hasPageChecksums() ? "enabled" : "disabled"));
+        out.println("delta records: " + (header.hasDeltaRecords() ? "enabled" : "disabled"));
         out.print("root page IDs: ");
         for (int id : header.getRootPages()) {
             out.print(id + ", ");
@@ -100,7 +118,19 @@ public class ZooCheckDb extends ZooCommandLineTool {
         PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
         PersistenceManager pm = pmf.getPersistenceManager();
         Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
-        String report = s.getPrimaryNode().checkDb();
+        if (minTxId > 0) {
+            out.println("Checking pages written after transaction " + minTxId);
+        }
+        String report = s.getPrimaryNode().checkDb(nThreads, minTxId, 
+                new DbChecker.ProgressListener() {
+            @Override
+            public void progress(String task, int nDone, int nTotal) {
+                //report about every 10%
+                if (nDone == nTotal || nDone % Math.max(1, nTotal / 10) == 0) {
+                    out.println("Progress: " + nDone + "/" + nTotal + " (" + task + ")");
+                }
+            }
+        });
         out.println();
         out.println("Check / Statistics");
         out.println(RULE);
@@ -135,7 +165,9 @@ public class ZooCheckDb extends ZooCommandLineTool {
             for (ZooField f : cls.getAllFields()) {
                 if (f.hasIndex()) {
                     nIndexes++;
-                    if (f.isIndexUnique()) {
+                    if (f.isIndexHashed()) {
+                        s.append(" hash index:       ");
+                    } else if (f.isIndexUnique()) {
                         s.append(" unique index:     ");
                     } else {
                         s.append(" non-unique index: ");
@@ -144,6 +176,13 @@ public class ZooCheckDb extends ZooCommandLineTool {
                     s.appendln(".", f.getName());
                     s.appendln(" ", className(f.getTypeName()));
                 }
+                if (f.hasNgramIndex()) {
+                    nIndexes++;
+                    s.append(" n-gram index:     ");
+                    s.append(className(cls.getName()));
+                    s.appendln(".", f.getName());
+                    s.appendln(" ", className(f.getTypeName()));
+                }
             }
         }
         s.appendln("Indexes found: " + nIndexes);
@@ -185,6 +224,13 @@ public class ZooCheckDb extends ZooCommandLineTool {
                     if (f.isIndexUnique()) {
                         s.append(" unique");
                     }
+                    if (f.isIndexHashed()) {
+                        s.append(" hashed");
+                    }
+                }
+                if (f.hasNgramIndex()) {
+                    nIndexes++;
+                    s.append(" n-gram indexed");
                 }
                 s.appendln();
             }
@@ -201,6 +247,15 @@ public class ZooCheckDb extends ZooCommandLineTool {
         pmf.close();
     }
 
+    private static String getOption(String[] args, String option) {
+        for (int i = 0; i < args.length - 2; i++) {
+            if (option.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
     private static String className(String name) {
         if (longNames) {
             return name;
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.zoodb.internal.Session;
+import org.zoodb.internal.ZooClassDef;
+import org.zoodb.internal.ZooClassProxy;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.tools.DBStatistics.STATS;
+import org.zoodb.tools.internal.ZooCommandLineTool;
+
+/**
+ * Online compaction of a database. All objects are relocated into densely packed pages,
+ * afterwards free pages at the end of the database file are released.
+ * Objects are relocated in batches, each batch in a separate transaction. Other sessions
+ * can continue to use the database during compaction.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class ZooCompactDb extends ZooCommandLineTool {
+
+	/** Default number of objects that are relocated per transaction. */
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+
+	private static final String DB_NAME = "TestDb.zdb";
+
+	public static void main(String... args) {
+		String dbName = DB_NAME;
+		int batchSize = DEFAULT_BATCH_SIZE;
+
+		for (int i = 0; i < args.length; i++) {
+			if ("--help".equals(args[i]) || "-help".equals(args[i])) {
+				out.println("Usage: ZooCompactDb <options> databaseFileName");
+				out.println("    This tool relocates all objects into densely packed pages and ");
+				out.println("    releases free pages at the end of the database file.");
+				out.println("Options:");
+				out.println("    --help:           Print help");
+				out.println("    --batch-size <n>: Number of objects relocated per transaction "
+						+ "(default " + DEFAULT_BATCH_SIZE + ")");
+				return;
+			}
+			if ("--batch-size".equals(args[i]) && i + 1 < args.length - 1) {
+				batchSize = Integer.parseInt(args[++i]);
+			}
+		}
+		if (args.length > 0) {
+			dbName = args[args.length - 1];
+		}
+
+		if (!ZooHelper.getDataStoreManager().dbExists(dbName)) {
+			err.println("ERROR Database not found: " + dbName);
+			return;
+		}
+
+		out.println("Compacting database: " + dbName);
+		ZooJdoProperties props = new ZooJdoProperties(dbName);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		PersistenceManager pm = pmf.getPersistenceManager();
+		try {
+			Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
+			long nPages1 = s.getPrimaryNode().getStats(STATS.DB_PAGE_CNT);
+			long nObjects = 0;
+			for (Map.Entry<ZooClassProxy, String> e: getClasses(pm).entrySet()) {
+				long n = s.compactInstances(e.getKey(), batchSize);
+				out.println("  " + e.getValue() + ": " + n);
+				nObjects += n;
+			}
+			int nPages2 = s.truncateFile();
+			out.println("Relocated objects: " + nObjects);
+			out.println("Pages before/after: " + nPages1 + " / " + nPages2);
+		} finally {
+			pm.close();
+			pmf.close();
+		}
+		out.println("Compacting database done.");
+	}
+
+	/**
+	 * Relocate all objects of a database into densely packed pages and release free pages at
+	 * the end of the database file. This must be called outside of a transaction.
+	 * @param pm The PersistenceManager
+	 * @param batchSize Maximum number of objects to relocate per transaction
+	 * @return The number of relocated objects
+	 */
+	public static long compact(PersistenceManager pm, int batchSize) {
+		Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
+		long nObjects = 0;
+		for (ZooClassProxy px: getClasses(pm).keySet()) {
+			nObjects += s.compactInstances(px, batchSize);
+		}
+		s.truncateFile();
+		return nObjects;
+	}
+
+	/**
+	 * @return The classes to compact, mapped to their names. The names have to be retrieved
+	 * here because the schema proxies can not be accessed outside of a transaction.
+	 */
+	private static Map<ZooClassProxy, String> getClasses(PersistenceManager pm) {
+		Map<ZooClassProxy, String> classes = new LinkedHashMap<>();
+		pm.currentTransaction().begin();
+		try {
+			for (ZooClass cls: ZooJdoHelper.schema(pm).getAllClasses()) {
+				ZooClassProxy px = (ZooClassProxy) cls;
+				ZooClassDef def = px.getSchemaDef();
+				//ignore the bootstrap schemata
+				if (def.getSuperDef() != null && def.getJavaClass() != ZooClassDef.class) {
+					classes.put(px, def.getClassName());
+				}
+			}
+		} finally {
+			pm.currentTransaction().rollback();
+		}
+		return classes;
+	}
+}
@@ -24,6 +24,7 @@ import javax.jdo.JDOHelper;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
+import org.zoodb.api.impl.ZooPC;
 import org.zoodb.internal.util.Util;
 import org.zoodb.jdo.ZooJdoHelper;
 import org.zoodb.jdo.ZooJdoProperties;
@@ -185,6 +186,11 @@ public class ZooCompareDb {
 					if (v1.getClass().isArray() && arrayEquals(v1, v2)) {
 						continue;
 					}
+					if (v1 instanceof ZooPC && v2 instanceof ZooPC &&
+							((ZooPC)v1).jdoZooGetOid() == ((ZooPC)v2).jdoZooGetOid()) {
+						//references are equal if they point to the same OID
+						continue;
+					}
 					if (!v1.equals(v2)) {
 						log("Field has different values: " + Util.oidToString(hdl1.getOid()) + 
 								" " + cls1 + "." + f1.getName() + ": " + 
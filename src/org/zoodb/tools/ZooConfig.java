@@ -26,11 +26,13 @@ public class ZooConfig {
 	private static String fileDefault = FILE_PAF_BB;
 	private static String fileManagerDefault = FILE_MGR_ONE_FILE;
 	private static int defaultPageSize = FILE_PAGE_SIZE_DEFAULT;
+	private static boolean pageChecksums = true;
 
 	public static void setDefaults() {
 		fileDefault = FILE_PAF_BB;
 		fileManagerDefault = FILE_MGR_ONE_FILE;
 		defaultPageSize = FILE_PAGE_SIZE_DEFAULT;
+		pageChecksums = true;
 	}
 	
 	public static void setFileManager(String className) {
@@ -61,4 +63,18 @@ public class ZooConfig {
 	public static void setFilePageSize(int pageSize) {
 		defaultPageSize = pageSize;
 	}
+
+	public static boolean getFilePageChecksums() {
+		return pageChecksums;
+	}
+
+	/**
+	 * Whether new databases should store a checksum with every page. The checksum is 
+	 * verified whenever a page is read. This setting has no effect on existing databases.
+	 * Default is {@code true}.
+	 * @param flag Whether to enable page checksums.
+	 */
+	public static void setFilePageChecksums(boolean flag) {
+		pageChecksums = flag;
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.zoodb.internal.server.PageServer;
+import org.zoodb.tools.internal.ZooCommandLineTool;
+
+/**
+ * Server that allows several processes to share a database. Clients open the database with
+ * the URL of the server, for example {@code new ZooJdoProperties("zoodb://localhost:4242")}.
+ * <p>
+ * Clients read the database from snapshots, see
+ * {@link org.zoodb.jdo.ZooJdoProperties#setZooSnapshotReads(boolean)}, and they do not use a
+ * shared object cache. Clients can not define indexes, drop instances or truncate the
+ * database file, and schema changes fail if another client has committed in the meantime.
+ * Queries are evaluated by the clients.
+ * <p>
+ * The database must not be opened directly while the server is running.
+ * <p>
+ * The protocol has no authentication and no encryption: every client that can connect to
+ * the server can read and modify the whole database. By default the server listens only on
+ * the loopback address, a different address must be chosen explicitly with
+ * {@link #start(String, InetAddress, int)} or with the {@code --bind} option.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class ZooServer extends ZooCommandLineTool implements Closeable {
+
+	/** The default port. */
+	public static final int DEFAULT_PORT = 4242;
+
+	private static final String DB_NAME = "TestDb.zdb";
+
+	private final PageServer server;
+
+	private ZooServer(PageServer server) {
+		this.server = server;
+	}
+
+	public static void main(String... args) throws InterruptedException {
+		String dbName = DB_NAME;
+		int port = DEFAULT_PORT;
+		InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+		for (int i = 0; i < args.length; i++) {
+			if ("--help".equals(args[i]) || "-help".equals(args[i])) {
+				out.println("Usage: ZooServer <options> databaseFileName");
+				out.println("    This tool allows several processes to share a database.");
+				out.println("Options:");
+				out.println("    --help:     Print help");
+				out.println("    --port <n>: The port of the server (default " +
+						DEFAULT_PORT + ")");
+				out.println("    --bind <address>: The address on which the server listens " +
+						"(default: loopback address)");
+				out.println("        WARNING: There is no authentication, every client that " +
+						"can connect has full access to the database.");
+				return;
+			}
+			if ("--port".equals(args[i]) && i + 1 < args.length - 1) {
+				port = Integer.parseInt(args[++i]);
+			}
+			if ("--bind".equals(args[i]) && i + 1 < args.length - 1) {
+				try {
+					bindAddress = InetAddress.getByName(args[++i]);
+				} catch (UnknownHostException e) {
+					err.println("ERROR Unknown address: " + args[i]);
+					return;
+				}
+			}
+		}
+		if (args.length > 0) {
+			dbName = args[args.length - 1];
+		}
+
+		if (!ZooHelper.getDataStoreManager().dbExists(dbName)) {
+			err.println("ERROR Database not found: " + dbName);
+			return;
+		}
+
+		ZooServer server = start(dbName, bindAddress, port);
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		out.println("Serving database: " + dbName);
+		out.println("URL: " + server.getUrl());
+		Thread.currentThread().join();
+	}
+
+	/**
+	 * Start a server for a database that listens on the loopback address. Only clients on
+	 * the same host can connect.
+	 * @param dbName The database name or path
+	 * @param port The port, 0 means that any free port is used
+	 * @return The server
+	 */
+	public static ZooServer start(String dbName, int port) {
+		return start(dbName, InetAddress.getLoopbackAddress(), port);
+	}
+
+	/**
+	 * Start a server for a database. The server has no authentication, every client that
+	 * can reach the address has full access to the database.
+	 * @param dbName The database name or path
+	 * @param bindAddress The local address on which the server listens
+	 * @param port The port, 0 means that any free port is used
+	 * @return The server
+	 */
+	public static ZooServer start(String dbName, InetAddress bindAddress, int port) {
+		String dbPath = ZooHelper.getDataStoreManager().getDbPath(dbName);
+		return new ZooServer(new PageServer(dbPath, bindAddress, port));
+	}
+
+	/**
+	 * @return The URL of the database for clients on the same host, for example
+	 * {@code zoodb://localhost:4242}
+	 */
+	public String getUrl() {
+		return server.getUrl();
+	}
+
+	/**
+	 * @return The local address on which the server listens
+	 */
+	public InetAddress getBindAddress() {
+		return server.getBindAddress();
+	}
+
+	/**
+	 * @return The port of the server
+	 */
+	public int getPort() {
+		return server.getPort();
+	}
+
+	/**
+	 * Disconnect all clients and stop the server.
+	 */
+	@Override
+	public void close() {
+		server.close();
+	}
+}
@@ -18,9 +18,7 @@ package org.zoodb.tools;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Scanner;
 
 import javax.jdo.JDOHelper;
@@ -28,15 +26,14 @@ import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
 
 import org.zoodb.internal.Session;
-import org.zoodb.internal.ZooClassProxy;
-import org.zoodb.jdo.ZooJdoHelper;
 import org.zoodb.jdo.ZooJdoProperties;
 import org.zoodb.jdo.impl.PersistenceManagerImpl;
 import org.zoodb.schema.ZooClass;
 import org.zoodb.tools.internal.DataDeSerializer;
+import org.zoodb.tools.internal.ImportSchema;
+import org.zoodb.tools.internal.ImportSchema.ClsDef;
 import org.zoodb.tools.internal.ObjectCache;
 import org.zoodb.tools.internal.ObjectCache.GOProxy;
-import org.zoodb.tools.internal.SerializerTools;
 import org.zoodb.tools.internal.XmlReader;
 
 /**
@@ -94,32 +91,6 @@ public class ZooXmlImport {
 		}
 	}
 
-	private static class ClsDef {
-		final long oid;
-		final String name;
-		final long superOid;
-		final ArrayList<FldDef> fields = new ArrayList<>();
-		public boolean needsFieldDeclarations = false;
-		public ClsDef(String name, long oid, long superOid) {
-			this.oid = oid;
-			this.name = name;
-			this.superOid = superOid;
-		}
-	}
-	
-	private static class FldDef {
-//		int id;
-final String name;
-		final String typeName;
-		final int arrayDim;
-		public FldDef(int id, String name, String typeName, int arrayDim) {
-//			this.id = id;
-			this.name = name;
-			this.typeName = typeName;
-			this.arrayDim = arrayDim;
-		}
-	}
-	
 	private void readFromXML(PersistenceManager pm) {
 		Session session = ((PersistenceManagerImpl)pm).getSession();
 		ObjectCache cache = new ObjectCache(session);
@@ -128,8 +99,7 @@ final String name;
 		readln1("<database>");
 
 		readln1("<schema>");
-		HashMap<Long, ClsDef> classes = new HashMap<Long, ClsDef>(); 
-		HashMap<String, ClsDef> classNames = new HashMap<String, ClsDef>();
+		ImportSchema importSchema = new ImportSchema();
 		while (readln1("<class", "</schema>")) {
 			String name = readValue1("name");
 			String oidStr = readValue1("oid");
@@ -137,24 +107,8 @@ final String name;
 			long superOid = Long.parseLong(readValue1("super"));
 			
 			//define schema
-			ClsDef cd = new ClsDef(name, sOid, superOid);
-			classes.put(sOid, cd);
-			classNames.put(name, cd);
+			ClsDef cd = importSchema.addClass(name, sOid, superOid);
 
-//			//TODO remove
-//			try {
-//				Class<?> cls = Class.forName(name);
-//				ZooClass schema = ZooSchema.locateClass(pm, cls);
-//				if (schema == null) {
-//					schema = ZooSchema.defineClass(pm, cls);
-//				}
-//				schemata.put(sOid, schema);
-//				cache.addSchema(sOid, ((ZooClassProxy) schema).getSchemaDef());
-//			} catch (ClassNotFoundException e) {
-//				throw new RuntimeException(e);
-//			}
-//			//TODO ---
-			
 			int prevId = -1;
 			while (readln1("<attr", "</class>")) {
 				int id = Integer.parseInt(readValue1("id"));
@@ -169,53 +123,13 @@ final String name;
 					throw new IllegalStateException("Illegal field ordering: " + id);
 				}
 				
-				FldDef f = new FldDef(id, attrName, typeName, arrayDim);
-				cd.fields.add(f);
+				cd.addField(attrName, typeName, arrayDim);
             }
 			//readln("</class>");
 		}
 		
 		//insert schema in database
-		HashMap<Long, ZooClass> definedClasses = new HashMap<Long, ZooClass>();
-		while (!classes.isEmpty()) {
-			Iterator<ClsDef> itCD = classes.values().iterator();  
-			ClsDef cd = itCD.next();
-			//50/51 are ZooPC and PersistenceCapableImpl
-			while (!definedClasses.containsKey(cd.superOid) && cd.superOid != 50) {
-				//declare super-class first
-				cd = classes.get(cd.superOid);
-			}
-			//Some schemata are predefined ...
-			ZooClass schema = ZooJdoHelper.schema(pm).getClass(cd.name);
-			if (schema == null) {
-				ZooClass scd = definedClasses.get(cd.superOid);
-				schema = ZooJdoHelper.schema(pm).defineEmptyClass(cd.name, scd);
-				cd.needsFieldDeclarations = true;
-			}
-			
-			classes.remove(cd.oid);
-			definedClasses.put(cd.oid, schema);
-			cache.addSchema(cd.oid, ((ZooClassProxy)schema).getSchemaDef());
-		}
-		
-		//add attributes
-		for (ClsDef cd: classNames.values()) {
-			if (!cd.needsFieldDeclarations) {
-				continue;
-			}
-			ZooClass schema = cache.getSchema(cd.oid).getVersionProxy();
-			for (FldDef f: cd.fields) {
-				if (classNames.containsKey(f.name)) {
-					ClsDef cdType = classNames.get(f.name);
-					ZooClass type = cache.getSchema(cdType.oid).getVersionProxy();
-					schema.addField(f.name, type, f.arrayDim);
-					System.out.println("class found for: " + f.typeName + " : " + type.getName());
-				} else {
-					Class<?> cls = createArrayClass(f.arrayDim, f.typeName);
-					schema.addField(f.name, cls);
-				}
-			}
-		}
+		HashMap<Long, ZooClass> definedClasses = importSchema.define(pm, cache);
 		
 		XmlReader r = new XmlReader(scanner);
 		DataDeSerializer ser = new DataDeSerializer(r, cache);
@@ -242,28 +156,6 @@ final String name;
 		readln1("</database>");
 	}
 
-	private static Class<?> createArrayClass(int dims, String innerType) {
-		try {
-//			char[] ca = new char[dims];
-//			Arrays.fill(ca, '[');
-//			Class<?> compClass =  Class.forName(String.valueOf(ca) + innerType);
-			return Class.forName(innerType);
-		} catch (ClassNotFoundException e) {
-			//throw new RuntimeException(e);
-			//uhh, exceptions in normal code-flow, nice :-)
-		}
-		Class<?> c = SerializerTools.getPrimitiveType(innerType);
-		if (c == null) {
-			throw new IllegalArgumentException("Type not found: " + innerType);
-		}
-//		if (dims > 0) {
-//			int[] dimDummy = new int[dims];
-//			Arrays.fill(dimDummy, 1);
-//			c = Array.newInstance(c, dimDummy).getClass();
-//		}
-		return c;
-	}
-	
 	private static Scanner openFile(String xmlName) {
 		File file = new File(xmlName);
 		if (!file.exists()) {
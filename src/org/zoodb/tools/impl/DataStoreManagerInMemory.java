@@ -71,6 +71,7 @@ public class DataStoreManagerInMemory implements DataStoreManager {
 		FreeSpaceManager fsm = new FreeSpaceManager();
 		StorageRootInMemory root = 
 				new StorageRootInMemory(dbPath, "rw", ZooConfig.getFilePageSize(), fsm);
+		root.setPageChecksums(ZooConfig.getFilePageChecksums());
 		IOResourceProvider file = root.createChannel();
 		StorageChannelOutput out = file.createWriter(false);
 		fsm.initBackingIndexNew(file);
@@ -120,6 +121,8 @@ public class DataStoreManagerInMemory implements DataStoreManager {
 		out.writeInt(ZooConfig.getFilePageSize());
 		out.writeInt(rootPage1);
 		out.writeInt(rootPage2);
+		out.writeInt(DiskIO.DB_FLAG_DELTA_RECORDS |
+				(ZooConfig.getFilePageChecksums() ? DiskIO.DB_FLAG_PAGE_CHECKSUMS : 0));
 
 		writeRoot(out, rootPage1, 1, userData, oidPage, schemaData, indexDirPage, freeSpacePg, 
 				fsm.getPageCount());
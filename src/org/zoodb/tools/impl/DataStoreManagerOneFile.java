@@ -17,6 +17,7 @@ package org.zoodb.tools.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Properties;
 
 import javax.jdo.JDOException;
@@ -35,6 +36,7 @@ import org.zoodb.internal.server.SessionFactory;
 import org.zoodb.internal.server.StorageChannelOutput;
 import org.zoodb.internal.server.StorageRoot;
 import org.zoodb.internal.server.StorageRootFile;
+import org.zoodb.internal.server.WriteAheadLog;
 import org.zoodb.internal.server.index.FreeSpaceManager;
 import org.zoodb.internal.server.index.PagedOidIndex;
 import org.zoodb.internal.util.DBLogger;
@@ -88,9 +90,12 @@ public class DataStoreManagerOneFile implements DataStoreManager {
 			if (!dbFile.createNewFile()) {
 				throw DBLogger.newUser("ZOO: Error creating DB file: " + dbFile);
 			}
+			//remove the log of a previous database, otherwise it would be replayed
+			Files.deleteIfExists(WriteAheadLog.getFile(dbPath).toPath());
 			FreeSpaceManager fsm = new FreeSpaceManager();
 			root = new StorageRootFile(dbPath, "rw",
 					ZooConfig.getFilePageSize(), fsm);
+			root.setPageChecksums(ZooConfig.getFilePageChecksums());
 			file = root.createChannel();
 			StorageChannelOutput out = file.createWriter(false);
 			fsm.initBackingIndexNew(file);
@@ -142,6 +147,8 @@ public class DataStoreManagerOneFile implements DataStoreManager {
 			out.writeInt(ZooConfig.getFilePageSize());
 			out.writeInt(rootPage1);
 			out.writeInt(rootPage2);
+			out.writeInt(DiskIO.DB_FLAG_DELTA_RECORDS |
+					(ZooConfig.getFilePageChecksums() ? DiskIO.DB_FLAG_PAGE_CHECKSUMS : 0));
 			
 			writeRoot(out, rootPage1, 1, userData, oidPage, schemaData, indexDirPage, freeSpacePg, 
 					fsm.getPageCount());
@@ -237,6 +244,10 @@ public class DataStoreManagerOneFile implements DataStoreManager {
 //			throw DBLogger.newUser("ZOO: Could not remove DB file: " + dbFile);
 //		}
 		SessionFactory.cleanUp(dbFile);
+		File logFile = WriteAheadLog.getFile(dbFile.getPath());
+		if (logFile.exists() && !logFile.delete()) {
+			LOGGER.warn("Could not remove write-ahead log: {}", logFile);
+		}
 		return dbFile.delete();
 	}
 	
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools.internal;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads data written by the {@link BinaryWriter}.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class BinaryReader implements SerialReader {
+
+	private final DataInputStream in;
+
+	public BinaryReader(DataInputStream in) {
+		this.in = in;
+	}
+
+	@Override
+	public String readString() {
+		int len = readInt();
+		char[] ca = new char[len];
+		for (int i = 0; i < len; i++) {
+			ca[i] = readChar();
+		}
+		return String.valueOf(ca);
+	}
+
+	@Override
+	public boolean readBoolean() {
+		try {
+			return in.readBoolean();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public byte readByte() {
+		try {
+			return in.readByte();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void readFully(byte[] ba) {
+		try {
+			in.readFully(ba);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public char readChar() {
+		try {
+			return in.readChar();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public double readDouble() {
+		return Double.longBitsToDouble(readLong());
+	}
+
+	@Override
+	public float readFloat() {
+		return Float.intBitsToFloat(readInt());
+	}
+
+	@Override
+	public int readInt() {
+		try {
+			return in.readInt();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public long readLong() {
+		try {
+			return in.readLong();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public short readShort() {
+		try {
+			return in.readShort();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return The OID of the next object, as written by
+	 * {@link BinaryWriter#startObject(long)}.
+	 */
+	public long readObjectStart() {
+		return readLong();
+	}
+
+	@Override
+	public void startReadingField(int fieldPos) {
+		//nothing to do
+	}
+
+	@Override
+	public void stopReadingField() {
+		//nothing to do
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools.internal;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary version of the {@link XmlWriter}. Objects are written as their OID followed by the
+ * field values, there are no field delimiters.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class BinaryWriter implements SerialWriter {
+
+	private final DataOutputStream out;
+
+	public BinaryWriter(DataOutputStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void writeString(String s) {
+		try {
+			out.writeInt(s.length());
+			out.writeChars(s);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeBoolean(boolean b) {
+		try {
+			out.writeBoolean(b);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeByte(byte b) {
+		try {
+			out.writeByte(b);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void write(byte[] ba) {
+		try {
+			out.write(ba);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeChar(char c) {
+		try {
+			out.writeChar(c);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeDouble(double d) {
+		writeLong(Double.doubleToRawLongBits(d));
+	}
+
+	@Override
+	public void writeFloat(float f) {
+		writeInt(Float.floatToRawIntBits(f));
+	}
+
+	@Override
+	public void writeInt(int i) {
+		try {
+			out.writeInt(i);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeLong(long l) {
+		try {
+			out.writeLong(l);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void writeShort(short s) {
+		try {
+			out.writeShort(s);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void startObject(long oid) {
+		writeLong(oid);
+	}
+
+	@Override
+	public void finishObject() {
+		//nothing to do
+	}
+
+	@Override
+	public void startField(int fieldPos) {
+		//nothing to do
+	}
+
+	@Override
+	public void finishField() {
+		//nothing to do
+	}
+
+}
@@ -74,7 +74,7 @@ import org.zoodb.tools.internal.ObjectCache.GOProxy;
  */
 public class DataDeSerializer {
 
-    private final XmlReader in;
+    private final SerialReader in;
     
     //Here is how class information is transmitted:
     //If the class does not exist in the hashMap, then it is added and its 
@@ -120,7 +120,7 @@ public class DataDeSerializer {
      * @param in Stream to read the data from.
      * @param cache The object cache
      */
-    public DataDeSerializer(XmlReader in, ObjectCache cache) {
+    public DataDeSerializer(SerialReader in, ObjectCache cache) {
         this.in = in;
         this.cache = cache;
     }
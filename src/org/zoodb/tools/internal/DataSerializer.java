@@ -70,7 +70,7 @@ import org.zoodb.internal.util.Util;
  */
 public final class DataSerializer {
 
-    private final XmlWriter out;
+    private final SerialWriter out;
     private final ObjectCache cache;
 
     // Here is how class information is serialized:
@@ -91,7 +91,7 @@ public final class DataSerializer {
      * @param out The output stream
      * @param cache The object cache
      */
-    public DataSerializer(XmlWriter out, ObjectCache cache) {
+    public DataSerializer(SerialWriter out, ObjectCache cache) {
         this.out = out;
         this.cache = cache;
     }
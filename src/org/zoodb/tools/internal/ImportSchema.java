@@ -0,0 +1,148 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import javax.jdo.PersistenceManager;
+
+import org.zoodb.internal.ZooClassProxy;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooClass;
+
+/**
+ * Schema definitions read by the import tools. The schema is collected first and then
+ * defined in the database with {@link #define(PersistenceManager, ObjectCache)}.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class ImportSchema {
+
+	public static class ClsDef {
+		final long oid;
+		final String name;
+		final long superOid;
+		final ArrayList<FldDef> fields = new ArrayList<>();
+		boolean needsFieldDeclarations = false;
+		ClsDef(String name, long oid, long superOid) {
+			this.oid = oid;
+			this.name = name;
+			this.superOid = superOid;
+		}
+		public void addField(String name, String typeName, int arrayDim) {
+			fields.add(new FldDef(name, typeName, arrayDim));
+		}
+	}
+
+	private static class FldDef {
+		final String name;
+		final String typeName;
+		final int arrayDim;
+		FldDef(String name, String typeName, int arrayDim) {
+			this.name = name;
+			this.typeName = typeName;
+			this.arrayDim = arrayDim;
+		}
+	}
+
+	private final HashMap<Long, ClsDef> classes = new HashMap<Long, ClsDef>();
+	private final HashMap<String, ClsDef> classNames = new HashMap<String, ClsDef>();
+
+	public ClsDef addClass(String name, long oid, long superOid) {
+		ClsDef cd = new ClsDef(name, oid, superOid);
+		classes.put(oid, cd);
+		classNames.put(name, cd);
+		return cd;
+	}
+
+	/**
+	 * Defines all classes in the database, unless they already exist.
+	 * @param pm The PersistenceManager
+	 * @param cache The object cache, the schemata are registered here with the OID that
+	 * they have in the imported data.
+	 * @return Map of OIDs (as in the imported data) to classes.
+	 */
+	public HashMap<Long, ZooClass> define(PersistenceManager pm, ObjectCache cache) {
+		//insert schema in database
+		HashMap<Long, ClsDef> classes = new HashMap<Long, ClsDef>(this.classes);
+		HashMap<Long, ZooClass> definedClasses = new HashMap<Long, ZooClass>();
+		while (!classes.isEmpty()) {
+			Iterator<ClsDef> itCD = classes.values().iterator();
+			ClsDef cd = itCD.next();
+			//50/51 are ZooPC and PersistenceCapableImpl
+			while (!definedClasses.containsKey(cd.superOid) && cd.superOid != 50) {
+				//declare super-class first
+				cd = classes.get(cd.superOid);
+			}
+			//Some schemata are predefined ...
+			ZooClass schema = ZooJdoHelper.schema(pm).getClass(cd.name);
+			if (schema == null) {
+				ZooClass scd = definedClasses.get(cd.superOid);
+				schema = ZooJdoHelper.schema(pm).defineEmptyClass(cd.name, scd);
+				cd.needsFieldDeclarations = true;
+			}
+
+			classes.remove(cd.oid);
+			definedClasses.put(cd.oid, schema);
+			cache.addSchema(cd.oid, ((ZooClassProxy)schema).getSchemaDef());
+		}
+
+		//add attributes
+		for (ClsDef cd: classNames.values()) {
+			if (!cd.needsFieldDeclarations) {
+				continue;
+			}
+			ZooClass schema = cache.getSchema(cd.oid).getVersionProxy();
+			for (FldDef f: cd.fields) {
+				if (classNames.containsKey(f.name)) {
+					ClsDef cdType = classNames.get(f.name);
+					ZooClass type = cache.getSchema(cdType.oid).getVersionProxy();
+					schema.addField(f.name, type, f.arrayDim);
+					System.out.println("class found for: " + f.typeName + " : " + type.getName());
+				} else {
+					Class<?> cls = createArrayClass(f.arrayDim, f.typeName);
+					schema.addField(f.name, cls);
+				}
+			}
+		}
+		return definedClasses;
+	}
+
+	private static Class<?> createArrayClass(int dims, String innerType) {
+		try {
+//			char[] ca = new char[dims];
+//			Arrays.fill(ca, '[');
+//			Class<?> compClass =  Class.forName(String.valueOf(ca) + innerType);
+			return Class.forName(innerType);
+		} catch (ClassNotFoundException e) {
+			//throw new RuntimeException(e);
+			//uhh, exceptions in normal code-flow, nice :-)
+		}
+		Class<?> c = SerializerTools.getPrimitiveType(innerType);
+		if (c == null) {
+			throw new IllegalArgumentException("Type not found: " + innerType);
+		}
+//		if (dims > 0) {
+//			int[] dimDummy = new int[dims];
+//			Arrays.fill(dimDummy, 1);
+//			c = Array.newInstance(c, dimDummy).getClass();
+//		}
+		return c;
+	}
+
+}
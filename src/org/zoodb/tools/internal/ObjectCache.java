@@ -103,6 +103,18 @@ public class ObjectCache {
 		return gop;
 	}
 
+	/**
+	 * Remove all objects from this cache and from the session cache to limit memory usage.
+	 * This must be called in a new transaction right after a commit, when no object is dirty.
+	 * Objects that are required later on are loaded again from the database.
+	 */
+	public void evictObjects() {
+		for (GOProxy gop: goMap.values()) {
+			session.makeTransient(gop.go);
+		}
+		goMap.clear();
+	}
+
 	private Class<?> addGoClass(ZooClassProxy def) {
 		long sOid = def.getSchemaDef().getOid();
 		Class<?> goCls = goClsMap.get(sOid);
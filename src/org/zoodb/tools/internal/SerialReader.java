@@ -0,0 +1,49 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools.internal;
+
+/**
+ * Input format for the {@link DataDeSerializer} of the import tools.
+ *
+ * @author Tilmann Zaeschke
+ */
+public interface SerialReader {
+
+	String readString();
+
+	boolean readBoolean();
+
+	byte readByte();
+
+	void readFully(byte[] ba);
+
+	char readChar();
+
+	double readDouble();
+
+	float readFloat();
+
+	int readInt();
+
+	long readLong();
+
+	short readShort();
+
+	void startReadingField(int fieldPos);
+
+	void stopReadingField();
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.tools.internal;
+
+/**
+ * Output format for the {@link DataSerializer} of the export tools.
+ *
+ * @author Tilmann Zaeschke
+ */
+public interface SerialWriter {
+
+	void writeString(String s);
+
+	void writeBoolean(boolean b);
+
+	void writeByte(byte b);
+
+	void write(byte[] ba);
+
+	void writeChar(char c);
+
+	void writeDouble(double d);
+
+	void writeFloat(float f);
+
+	void writeInt(int i);
+
+	void writeLong(long l);
+
+	void writeShort(short s);
+
+	void startObject(long oid);
+
+	void finishObject();
+
+	void startField(int fieldPos);
+
+	void finishField();
+
+}
@@ -17,7 +17,7 @@ package org.zoodb.tools.internal;
 
 import java.util.Scanner;
 
-public class XmlReader {
+public class XmlReader implements SerialReader {
 	
 	private String in;
 	private int pos = 0;
@@ -36,6 +36,7 @@ public class XmlReader {
 		return ((b1<<4)|b2);
 	}
 	
+	@Override
 	public String readString() {
 		int len = readInt();
 		StringBuilder sb = new StringBuilder();
@@ -48,33 +49,40 @@ public class XmlReader {
 		return sb.toString();
 	}
 
+	@Override
 	public boolean readBoolean() {
 		return getByte() == 1;
 	}
 
+	@Override
 	public byte readByte() {
 		return (byte) getByte();
 	}
 
+	@Override
 	public void readFully(byte[] ba) {
 		for (int i = 0; i < ba.length; i++) {
 			ba[i] = (byte) getByte();
 		}
 	}
 
+	@Override
 	public char readChar() {
 		return (char) ((getByte()<<8) | getByte());
 	}
 
+	@Override
 	public double readDouble() {
 		long l = readLong();
 		return Double.longBitsToDouble(l);
 	}
 
+	@Override
 	public float readFloat() {
 		return Float.intBitsToFloat(readInt());
 	}
 
+	@Override
 	public int readInt() {
 		int i = 0;
 		i |= getByte();
@@ -88,15 +96,18 @@ public class XmlReader {
 		//return (getByte()<<24) | (getByte()<<16) | (getByte()<<8) | getByte();
 	}
 
+	@Override
 	public long readLong() {
 		return (getByte()<<56) | (getByte()<<48) | (getByte()<<40) | (getByte()<<32) | 
 				(getByte()<<24) | (getByte()<<16) | (getByte()<<8) | getByte();
 	}
 
+	@Override
 	public short readShort() {
 		return (short) ((getByte()<<8) | getByte());
 	}
 
+	@Override
 	public void startReadingField(int fieldPos) {
 		readln1("<attr");
 		long id = Long.parseLong(readValue1("id"));
@@ -107,6 +118,7 @@ public class XmlReader {
 		pos = 0;
 	}
 
+	@Override
 	public void stopReadingField() {
 		readln1("/>");
 	}
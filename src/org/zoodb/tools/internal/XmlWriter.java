@@ -18,7 +18,7 @@ package org.zoodb.tools.internal;
 import java.io.IOException;
 import java.io.Writer;
 
-public class XmlWriter {
+public class XmlWriter implements SerialWriter {
 
 	private final Writer out;
 	
@@ -27,6 +27,7 @@ public class XmlWriter {
 		this.out = out;
 	}
 
+	@Override
 	public void writeString(String s) {
 		writeInt(s.length());
 		for (int i = 0; i < s.length(); i++) {
@@ -34,56 +35,69 @@ public class XmlWriter {
 		}
 	}
 
+	@Override
 	public void writeBoolean(boolean b) {
 		write(b ? "01" : "00");
 	}
 
+	@Override
 	public void writeByte(byte b) {
 		writeHex(b, 1);
 	}
 
+	@Override
 	public void write(byte[] ba) {
 		for (int i = 0; i < ba.length; i++) {
 			writeByte(ba[i]);
 		}
 	}
 
+	@Override
 	public void writeChar(char c) {
 		writeHex(c, 2);
 	}
 
+	@Override
 	public void writeDouble(double d) {
 		writeLong(Double.doubleToRawLongBits(d));
 	}
 
+	@Override
 	public void writeFloat(float f) {
 		writeInt(Float.floatToRawIntBits(f));
 	}
 
+	@Override
 	public void writeInt(int i) {
 		writeHex(i, 4);
 	}
 
+	@Override
 	public void writeLong(long l) {
 		writeHex(l, 8);
 	}
 
+	@Override
 	public void writeShort(short s) {
 		writeHex(s, 2);
 	}
 
+	@Override
 	public void startObject(long oid) {
 		writeln("   <object oid=\"" + oid + "\">");
 	}
 	
+	@Override
 	public void finishObject() {
 		writeln("   </object>");
 	}
 
+	@Override
 	public void startField(int fieldPos) {
 		write("    <attr id=\"" + fieldPos + "\" value=\"");
 	}
 
+	@Override
 	public void finishField() {
 		writeln("\" />");
 	}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.internal.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measure the throughput of the optimistic conflict detection in the {@link TxManager} with
+ * many concurrent committers.
+ * 
+ * Every committer updates its own set of objects, plus occasionally a few objects that are
+ * shared by all committers. Updates of the shared objects may conflict, in which case the
+ * transaction is rolled back. 
+ * 
+ * @author Tilmann Zaeschke
+ */
+public class PerfTxManager {
+
+	private static final int N_THREADS = 500;
+	private static final int N_TX = 2_000;
+	private static final int N_OIDS_PER_TX = 20;
+	private static final int N_OIDS_SHARED = 100;
+	
+	private final AtomicLong nConflicts = new AtomicLong();
+	
+	public static void main(String[] args) throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			new PerfTxManager().run();
+		}
+	}
+
+	private void run() throws InterruptedException {
+		TxManager txm = new TxManager(0);
+		txm.setMultiSession();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < N_THREADS; i++) {
+			final long oidBase = (i + 1) * 1_000_000L;
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+					commit(txm, oidBase);
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		
+		long t0 = System.currentTimeMillis();
+		start.countDown();
+		for (Thread t: threads) {
+			t.join();
+		}
+		long t = System.currentTimeMillis() - t0;
+		
+		long nTx = (long) N_THREADS * N_TX;
+		System.out.println("Committers=" + N_THREADS + "  TX=" + nTx + "  time=" + t/1000.0 + 
+				"  TX/s=" + (nTx * 1000 / Math.max(1, t)) + "  conflicts=" + nConflicts.get() +
+				"  bufferedTX=" + txm.statsGetBufferedTxCount() + 
+				"  bufferedOIDs=" + txm.statsGetBufferedOidCount());
+	}
+	
+	private void commit(TxManager txm, long oidBase) {
+		TxContext ctx = new TxContext();
+		//The TX-ID that last updated the objects of this committer
+		long lastTxId = 0;
+		for (int i = 0; i < N_TX; i++) {
+			long txId = txm.getNextTxId();
+			ArrayList<TxObjInfo> updates = new ArrayList<>();
+			for (int j = 0; j < N_OIDS_PER_TX; j++) {
+				updates.add(new TxObjInfo(oidBase + j, lastTxId, false));
+			}
+			if (i % 10 == 0) {
+				//We do not know the previous TX-ID, so this will mostly conflict
+				updates.add(new TxObjInfo(i % N_OIDS_SHARED, 0, false));
+			}
+			ctx.addOidUpdates(updates);
+			List<Long> conflicts = txm.addUpdates(txId, ctx, false);
+			if (conflicts == null) {
+				lastTxId = txId;
+			} else {
+				nConflicts.incrementAndGet();
+			}
+			ctx.reset();
+			txm.deRegisterTx(txId);
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.index2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.IOResourceProvider;
+import org.zoodb.internal.server.StorageRootInMemory;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntry;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.server.index.LongLongIndex.LongLongIterator;
+import org.zoodb.internal.server.index.PagedLongLong;
+import org.zoodb.internal.server.index.PagedUniqueLongLong;
+import org.zoodb.tools.ZooConfig;
+
+/**
+ * Tests for indexes whose clean leaf pages are kept outside the Java heap.
+ */
+public class TestIndexOffHeap {
+
+	private static final int N = 20000;
+
+	private static IOResourceProvider createPageAccessFile() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		root.getIndexPageResidency().setOffHeap(true);
+		return root.createChannel();
+	}
+
+	@Test
+	public void testUniqueLongLong() {
+		checkUnique(8, 8, 0xFFFFFFFFFFL);
+	}
+
+	@Test
+	public void testUniqueIntLong() {
+		//as used by the free space manager
+		checkUnique(4, 8, 0xFFFFFFFFFFL);
+	}
+
+	@Test
+	public void testUniqueLongByte() {
+		checkUnique(8, 1, 0x7F);
+	}
+
+	private void checkUnique(int keySize, int valSize, long valMask) {
+		IOResourceProvider paf = createPageAccessFile();
+		PagedUniqueLongLong ind =
+				new PagedUniqueLongLong(PAGE_TYPE.GENERIC_INDEX, paf, keySize, valSize);
+		TreeMap<Long, Long> map = new TreeMap<>();
+		for (int i = 0; i < N; i++) {
+			long key = i * 7L - 1000;
+			long value = (i * 31L) & valMask;
+			ind.insertLong(key, value);
+			map.put(key, value);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		ind = new PagedUniqueLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId, keySize, valSize);
+		checkUnique(ind, map);
+
+		//modify the off-heap pages
+		for (int i = 0; i < N; i += 3) {
+			long key = i * 7L - 1000;
+			assertEquals((long) map.remove(key), ind.removeLong(key));
+		}
+		for (int i = 1; i < N; i += 5) {
+			long key = i * 7L - 1000;
+			ind.insertLong(key, 5);
+			map.put(key, 5L);
+		}
+		checkUnique(ind, map);
+
+		pageId = ind.write(paf.createWriter(false));
+		checkUnique(ind, map);
+		ind = new PagedUniqueLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId, keySize, valSize);
+		checkUnique(ind, map);
+	}
+
+	private void checkUnique(PagedUniqueLongLong ind, TreeMap<Long, Long> map) {
+		for (long key = -1000; key < 7L * N - 1000; key++) {
+			LLEntry e = ind.findValue(key);
+			Long value = map.get(key);
+			if (value == null) {
+				assertNull(e);
+			} else {
+				assertNotNull("key=" + key, e);
+				assertEquals(key, e.getKey());
+				assertEquals((long) value, e.getValue());
+			}
+		}
+		assertEquals((long) map.firstKey(), ind.getMinKey());
+		assertEquals((long) map.lastKey(), ind.getMaxKey());
+		checkIterators(ind.iterator(Long.MIN_VALUE, Long.MAX_VALUE),
+				ind.descendingIterator(), map);
+		checkIterators(ind.iterator(5000, 7000), ind.descendingIterator(7000, 5000),
+				map.subMap(5000L, true, 7000L, true));
+	}
+
+	private static void checkIterators(LLEntryIterator it, LongLongIterator<LLEntry> dIt,
+			Map<Long, Long> map) {
+		for (Map.Entry<Long, Long> me: map.entrySet()) {
+			LLEntry e = it.next();
+			assertEquals((long) me.getKey(), e.getKey());
+			assertEquals((long) me.getValue(), e.getValue());
+		}
+		assertFalse(it.hasNext());
+		it.close();
+		for (Map.Entry<Long, Long> me: new TreeMap<>(map).descendingMap().entrySet()) {
+			LLEntry e = dIt.next();
+			assertEquals((long) me.getKey(), e.getKey());
+			assertEquals((long) me.getValue(), e.getValue());
+		}
+		assertFalse(dIt.hasNext());
+		dIt.close();
+	}
+
+	@Test
+	public void testNonUnique() {
+		IOResourceProvider paf = createPageAccessFile();
+		PagedLongLong ind = new PagedLongLong(PAGE_TYPE.GENERIC_INDEX, paf);
+		for (int i = 0; i < N; i++) {
+			//three values per key
+			ind.insertLong(i / 3, i);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		ind = new PagedLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		checkNonUnique(ind, -1);
+
+		for (int i = 0; i < N; i += 3) {
+			ind.removeLong(i / 3, i);
+		}
+		checkNonUnique(ind, 0);
+
+		pageId = ind.write(paf.createWriter(false));
+		ind = new PagedLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		checkNonUnique(ind, 0);
+	}
+
+	private void checkNonUnique(PagedLongLong ind, int removed) {
+		LLEntryIterator it = ind.iterator(Long.MIN_VALUE, Long.MAX_VALUE);
+		for (int i = 0; i < N; i++) {
+			if (i % 3 == removed) {
+				continue;
+			}
+			LLEntry e = it.next();
+			assertEquals(i / 3, e.getKey());
+			assertEquals(i, e.getValue());
+		}
+		assertFalse(it.hasNext());
+		it.close();
+
+		it = ind.iterator(100, 100);
+		for (int i = 300; i < 303; i++) {
+			if (i % 3 != removed) {
+				assertEquals(i, it.next().getValue());
+			}
+		}
+		assertFalse(it.hasNext());
+		it.close();
+	}
+}
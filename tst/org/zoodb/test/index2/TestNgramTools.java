@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.index2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.StorageRootInMemory;
+import org.zoodb.internal.server.index.IndexFactory;
+import org.zoodb.internal.server.index.LongLongIndex;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntry;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.server.index.NgramTools;
+import org.zoodb.tools.ZooConfig;
+
+public class TestNgramTools {
+
+	private static final int N = 2000;
+
+	private static LongLongIndex createIndex() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		return IndexFactory.createIndex(PAGE_TYPE.FIELD_INDEX, root.createChannel());
+	}
+
+	private static String str(int i) {
+		return "Name-" + i + "-" + (char)('a' + i % 26);
+	}
+
+	private static Set<Long> find(LongLongIndex ind, long[] ranges) {
+		Set<Long> ret = new HashSet<>();
+		LLEntryIterator it = NgramTools.find(ind, ranges);
+		long prev = -1;
+		while (it.hasNext()) {
+			long oid = it.next().getValue();
+			assertTrue(oid > prev);
+			prev = oid;
+			ret.add(oid);
+		}
+		it.close();
+		return ret;
+	}
+
+	/**
+	 * Check that all matching Strings are found and that candidates contain all trigrams.
+	 */
+	private static void check(LongLongIndex ind, ArrayList<String> strs, long[] ranges,
+			Predicate<String> p, int maxCandidates) {
+		Set<Long> found = find(ind, ranges);
+		int n = 0;
+		for (int i = 0; i < strs.size(); i++) {
+			if (strs.get(i) != null && p.test(strs.get(i))) {
+				assertTrue(strs.get(i), found.contains((long) i));
+				n++;
+			}
+		}
+		assertTrue(n + " / " + found.size(), found.size() <= Math.max(n, maxCandidates));
+	}
+
+	private static ArrayList<String> fill(LongLongIndex ind) {
+		ArrayList<String> strs = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			String s = i % 100 == 0 ? null : str(i);
+			strs.add(s);
+			NgramTools.insert(ind, s, i);
+		}
+		return strs;
+	}
+
+	@Test
+	public void testFind() {
+		LongLongIndex ind = createIndex();
+		ArrayList<String> strs = fill(ind);
+
+		check(ind, strs, NgramTools.ranges("-12", false, false), s -> s.contains("-12"), 0);
+		check(ind, strs, NgramTools.ranges("Name-1", true, false),
+				s -> s.startsWith("Name-1"), 0);
+		check(ind, strs, NgramTools.ranges("N", true, false), s -> s.startsWith("N"), 0);
+		check(ind, strs, NgramTools.ranges("9-b", false, true), s -> s.endsWith("9-b"), 0);
+		check(ind, strs, NgramTools.ranges("b", false, true), s -> s.endsWith("b"), 0);
+		check(ind, strs, NgramTools.ranges("Name-77-z", true, true),
+				s -> s.equals("Name-77-z"), 0);
+		//two characters use a key range
+		check(ind, strs, NgramTools.ranges("-z", false, false), s -> s.contains("-z"), 0);
+		check(ind, strs, NgramTools.ranges("99", false, false), s -> s.contains("99"), 0);
+		//'Name-1' and '3-' occur in this order in all candidates
+		check(ind, strs, NgramTools.rangesForRegex("Name-1.*3-."),
+				s -> s.matches("Name-1.*3-."), 0);
+		//The candidates also include Strings that end with '5-c'
+		check(ind, strs, NgramTools.rangesForRegex("N.*55?-c"),
+				s -> s.matches("N.*55?-c"), 100);
+		check(ind, strs, NgramTools.rangesForRegex("^Name\\-1+\\d-a$"),
+				s -> s.matches("^Name\\-1+\\d-a$"), 100);
+	}
+
+	@Test
+	public void testRanges() {
+		//no constraints
+		assertEquals(0, NgramTools.ranges("", true, false).length);
+		assertEquals(0, NgramTools.ranges("a", false, false).length);
+		assertEquals(0, NgramTools.rangesForRegex(".*").length);
+		assertEquals(0, NgramTools.rangesForRegex("a*b?.+").length);
+		//one range
+		assertEquals(2, NgramTools.ranges("ab", false, false).length);
+		assertEquals(2, NgramTools.ranges("", true, true).length);
+		assertEquals(2, NgramTools.ranges("aaaaa", false, false).length);
+		//not supported
+		assertNull(NgramTools.rangesForRegex("a|b"));
+		assertNull(NgramTools.rangesForRegex("[ab]"));
+		assertNull(NgramTools.rangesForRegex("(ab)+"));
+		assertNull(NgramTools.rangesForRegex("a{2}"));
+		assertNull(NgramTools.rangesForRegex("\\Qa.b\\E"));
+		assertNotNull(NgramTools.rangesForRegex("a\\.b"));
+	}
+
+	@Test
+	public void testUpdateAndRemove() {
+		LongLongIndex ind = createIndex();
+		ArrayList<String> strs = fill(ind);
+		for (int i = 0; i < N; i += 3) {
+			String s = i % 2 == 0 ? "x" + strs.get(i) : null;
+			NgramTools.update(ind, strs.get(i), s, i);
+			strs.set(i, s);
+		}
+		for (int i = 1; i < N; i += 3) {
+			NgramTools.remove(ind, strs.get(i), i);
+			strs.set(i, null);
+		}
+
+		//compare with a new index
+		LongLongIndex ind2 = createIndex();
+		for (int i = 0; i < N; i++) {
+			NgramTools.insert(ind2, strs.get(i), i);
+		}
+		LLEntryIterator it = ind.iterator();
+		LLEntryIterator it2 = ind2.iterator();
+		while (it2.hasNext()) {
+			assertTrue(it.hasNext());
+			LLEntry e = it.next();
+			LLEntry e2 = it2.next();
+			assertEquals(e2.getKey(), e.getKey());
+			assertEquals(e2.getValue(), e.getValue());
+		}
+		assertFalse(it.hasNext());
+
+		check(ind, strs, NgramTools.ranges("xName", true, false),
+				s -> s.startsWith("xName"), 0);
+		check(ind, strs, NgramTools.ranges("-12", false, false), s -> s.contains("-12"), 0);
+	}
+}
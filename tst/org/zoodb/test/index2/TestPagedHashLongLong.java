@@ -0,0 +1,247 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.index2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.IOResourceProvider;
+import org.zoodb.internal.server.StorageRootInMemory;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntry;
+import org.zoodb.internal.server.index.LongLongIndex.LLEntryIterator;
+import org.zoodb.internal.server.index.LongLongIndex.PageVisitor;
+import org.zoodb.internal.server.index.PagedHashLongLong;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.ZooConfig;
+
+public class TestPagedHashLongLong {
+
+	private static final int N = 50000;
+
+	private static long key(int i) {
+		return i * 7L - 1000;
+	}
+
+	@Test
+	public void testInsertAndFind() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		IOResourceProvider paf = root.createChannel();
+		PagedHashLongLong ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf);
+		TreeMap<Long, Long> map = new TreeMap<>();
+		for (int i = 0; i < N; i++) {
+			assertTrue(ind.insertLongIfNotSet(key(i), i));
+			map.put(key(i), (long) i);
+		}
+		assertFalse(ind.insertLongIfNotSet(key(5), 55));
+		assertTrue(ind.statsGetLeavesN() > 1);
+		check(ind, map);
+
+		int pageId = ind.write(paf.createWriter(false));
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		check(ind, map);
+
+		//modify the loaded index
+		for (int i = 0; i < N; i += 3) {
+			assertEquals((long) map.remove(key(i)), ind.removeLong(key(i)));
+		}
+		for (int i = 1; i < N; i += 5) {
+			ind.insertLong(key(i), 5);
+			map.put(key(i), 5L);
+		}
+		for (int i = N; i < N + 1000; i++) {
+			ind.insertLong(key(i), i);
+			map.put(key(i), (long) i);
+		}
+		assertEquals(-1, ind.removeLongNoFail(key(0), -1));
+		try {
+			ind.removeLong(key(0));
+			fail();
+		} catch (NoSuchElementException e) {
+			//good
+		}
+		check(ind, map);
+
+		pageId = ind.write(paf.createWriter(false));
+		check(ind, map);
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		check(ind, map);
+	}
+
+	private static void check(PagedHashLongLong ind, TreeMap<Long, Long> map) {
+		assertEquals(map.size(), ind.size());
+		for (long key = key(-10); key < key(N + 1010); key++) {
+			LLEntry e = ind.findValue(key);
+			Long value = map.get(key);
+			if (value == null) {
+				assertNull(e);
+				assertFalse(ind.iterator(key, key).hasNext());
+			} else {
+				assertNotNull("key=" + key, e);
+				assertEquals(key, e.getKey());
+				assertEquals((long) value, e.getValue());
+				LLEntryIterator it = ind.iterator(key, key);
+				assertEquals((long) value, it.next().getValue());
+				assertFalse(it.hasNext());
+			}
+		}
+		assertEquals((long) map.firstKey(), ind.getMinKey());
+		assertEquals((long) map.lastKey(), ind.getMaxKey());
+		checkRange(ind, map, Long.MIN_VALUE, Long.MAX_VALUE);
+		checkRange(ind, map, 5000, 7000);
+	}
+
+	private static void checkRange(PagedHashLongLong ind, TreeMap<Long, Long> map,
+			long min, long max) {
+		TreeMap<Long, Long> map2 = new TreeMap<>();
+		LLEntryIterator it = ind.iterator(min, max);
+		while (it.hasNext()) {
+			LLEntry e = it.next();
+			assertNull(map2.put(e.getKey(), e.getValue()));
+		}
+		it.close();
+		assertEquals(map.subMap(min, true, max, true), map2);
+	}
+
+	@Test
+	public void testSinglePageRead() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		IOResourceProvider paf = root.createChannel();
+		PagedHashLongLong ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf);
+		for (int i = 0; i < N; i++) {
+			ind.insertLong(key(i), i);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		DBStatistics.enable(true);
+		try {
+			ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+			int nRead = 0;
+			for (int i = 0; i < N; i += 101) {
+				int n0 = root.statsGetReadCount();
+				assertEquals(i, ind.findValue(key(i)).getValue());
+				assertTrue(root.statsGetReadCount() - n0 <= 1);
+				nRead += root.statsGetReadCount() - n0;
+			}
+			assertTrue(nRead > 0);
+		} finally {
+			DBStatistics.enable(false);
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		root.getIndexPageResidency().setMaxPages(10);
+		IOResourceProvider paf = root.createChannel();
+		PagedHashLongLong ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf);
+		TreeMap<Long, Long> map = new TreeMap<>();
+		for (int i = 0; i < N; i++) {
+			ind.insertLong(key(i), i);
+			map.put(key(i), (long) i);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		assertTrue(root.getIndexPageResidency().statsGetResidentCount() <= 10);
+		long nEvicted = root.getIndexPageResidency().statsGetEvictedCount();
+		assertTrue(nEvicted > 0);
+		check(ind, map);
+
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		check(ind, map);
+		assertTrue(root.getIndexPageResidency().statsGetResidentCount() <= 10);
+		assertTrue(root.getIndexPageResidency().statsGetEvictedCount() > nEvicted);
+
+		//iterators continue with evicted buckets
+		LLEntryIterator it = ind.iterator();
+		int n = 0;
+		while (it.hasNext()) {
+			LLEntry e = it.next();
+			assertEquals((long) map.get(e.getKey()), e.getValue());
+			assertEquals((long) map.get(key(n)), ind.findValue(key(n)).getValue());
+			n++;
+		}
+		assertEquals(N, n);
+
+		//modify evicted buckets
+		for (int i = 0; i < N; i += 3) {
+			assertEquals((long) map.remove(key(i)), ind.removeLong(key(i)));
+		}
+		for (int i = N; i < N + 1000; i++) {
+			ind.insertLong(key(i), i);
+			map.put(key(i), (long) i);
+		}
+		check(ind, map);
+		pageId = ind.write(paf.createWriter(false));
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		check(ind, map);
+	}
+
+	@Test
+	public void testPagesAndClear() {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		IOResourceProvider paf = root.createChannel();
+		PagedHashLongLong ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf);
+		for (int i = 0; i < N; i++) {
+			ind.insertLong(key(i), i);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		ArrayList<Integer> pages = new ArrayList<>(ind.debugPageIds());
+		assertEquals(pages.size(), new HashSet<>(pages).size());
+		assertEquals(1 + ind.statsGetInnerN() + ind.statsGetLeavesN(), pages.size());
+
+		//all pages are visited
+		HashSet<Integer> visited = new HashSet<>();
+		int[] nEntries = {0};
+		ind.debugVisitPages(-1, new PageVisitor() {
+			@Override
+			public void visitPage(int pageId, long txId) {
+				assertTrue(visited.add(pageId));
+			}
+			@Override
+			public void visitEntry(long key, long value) {
+				nEntries[0]++;
+			}
+		});
+		assertEquals(new HashSet<>(pages), visited);
+		assertEquals(N, nEntries[0]);
+
+		//only modified buckets are rewritten
+		ind.insertLong(key(N), N);
+		int nWritten = ind.statsGetWrittenPagesN();
+		ind.write(paf.createWriter(false));
+		assertEquals(nWritten + 3, ind.statsGetWrittenPagesN());
+
+		ind.clear();
+		assertEquals(0, ind.size());
+		assertFalse(ind.iterator().hasNext());
+		assertNull(ind.findValue(key(1)));
+		ind.insertLong(1, 2);
+		pageId = ind.write(paf.createWriter(false));
+		ind = new PagedHashLongLong(PAGE_TYPE.GENERIC_INDEX, paf, pageId);
+		assertEquals(1, ind.size());
+		assertEquals(2, ind.findValue(1).getValue());
+	}
+}
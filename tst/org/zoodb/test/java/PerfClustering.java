@@ -0,0 +1,143 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.zoodb.internal.SessionConfig.CLUSTERING_MODE;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.jdo.TestClass;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+
+/**
+ * Measures the number of data pages that are read when traversing a sub-tree, depending on
+ * the clustering mode that was used when the tree was written.
+ * Example result: NONE: 232 pages; OID: 232 pages; REFERENCE: 7 pages.
+ * The tree nodes are made persistent in random order, which is the worst case for
+ * clustering mode NONE.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PerfClustering {
+
+	private static final int DEPTH = 16;
+	private static final int SUB_DEPTH = 8;
+	private static final int N = (1 << DEPTH) - 1;
+
+	public static void main(String[] args) {
+		DBStatistics.enable(true);
+		for (CLUSTERING_MODE mode: CLUSTERING_MODE.values()) {
+			if (mode == CLUSTERING_MODE.FIELD) {
+				//_int values are random
+				continue;
+			}
+			new PerfClustering().run(mode);
+		}
+		TestTools.removeDb();
+	}
+
+	private void run(CLUSTERING_MODE mode) {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooClustering(mode);
+		PersistenceManager pm = TestTools.openPM(props);
+		long t0 = System.currentTimeMillis();
+		int rootId = createTree(pm);
+		long t1 = System.currentTimeMillis();
+		TestTools.closePM();
+
+		//sub-tree
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		TestClass node = getByInt(pm, rootId);
+		for (int i = 0; i < DEPTH - SUB_DEPTH; i++) {
+			node = (TestClass) node.getRef1();
+		}
+		stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		int nSub = traverse(node);
+		long nPagesSub = stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		//whole tree
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		long t2 = System.currentTimeMillis();
+		int nAll = traverse(getByInt(pm, rootId));
+		long t3 = System.currentTimeMillis();
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		System.out.println(mode + ": commit=" + (t1-t0) + "ms; sub-tree(" + nSub +
+				") unique pages=" + nPagesSub + "; tree(" + nAll + ") time=" + (t3-t2) + "ms");
+	}
+
+	private static int createTree(PersistenceManager pm) {
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			ids.add(i);
+		}
+		Collections.shuffle(ids, new Random(0));
+
+		TestClass[] nodes = new TestClass[N];
+		for (int i = 0; i < N; i++) {
+			nodes[i] = new TestClass();
+			nodes[i].setInt(ids.get(i));
+			nodes[i].setString("node" + i);
+		}
+		for (int i = 0; 2*i+2 < N; i++) {
+			nodes[i].setRef1(nodes[2*i+1]);
+			nodes[i].setRef2(nodes[2*i+2]);
+		}
+
+		ArrayList<TestClass> shuffled = new ArrayList<>();
+		Collections.addAll(shuffled, nodes);
+		Collections.shuffle(shuffled, new Random(1));
+		pm.currentTransaction().begin();
+		for (TestClass tc: shuffled) {
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		return ids.get(0);
+	}
+
+	private static TestClass getByInt(PersistenceManager pm, int i) {
+		Query q = pm.newQuery(TestClass.class, "_int == " + i);
+		q.setUnique(true);
+		return (TestClass) q.execute();
+	}
+
+	private static int traverse(TestClass node) {
+		if (node == null) {
+			return 0;
+		}
+		node.getInt();
+		return 1 + traverse((TestClass) node.getRef1()) + traverse(node.getRef2());
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.java;
+
+import java.util.function.Function;
+
+import org.zoodb.internal.server.DiskIO.PAGE_TYPE;
+import org.zoodb.internal.server.IOResourceProvider;
+import org.zoodb.internal.server.StorageRootInMemory;
+import org.zoodb.internal.server.index.IndexFactory;
+import org.zoodb.internal.server.index.LongLongIndex.LongLongUIndex;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.ZooConfig;
+
+/**
+ * Compares point lookups in the B+-tree based unique index with the hash index.
+ * Loading the hash index reads its root and directory pages, after that every lookup reads
+ * at most one bucket page. The first lookup in the B+-tree reads one page per level, later
+ * lookups profit from cached inner pages. Cold lookups are the first lookups after loading
+ * the index, warm lookups reuse the loaded index.
+ * Example result for 1M OID-like keys (cold: 1000 lookups, warm: 100K lookups):
+ * B+-tree: load=1; first lookup=2; cold=1.02 page reads/lookup; warm=161ms;
+ * hash: load=10; first lookup=1; cold=0.91 page reads/lookup; warm=76ms.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PerfHashIndex {
+
+	private static final int N = 1_000_000;
+	private static final int N_COLD = 1000;
+	private static final int N_LOOKUP = 100_000;
+	private static final int N_REPEAT = 5;
+
+	private interface Loader {
+		LongLongUIndex load(IOResourceProvider paf, int pageId);
+	}
+
+	public static void main(String[] args) {
+		DBStatistics.enable(true);
+		for (int i = 0; i < 3; i++) {
+			run("B+-tree", paf -> IndexFactory.createUniqueIndex(PAGE_TYPE.GENERIC_INDEX, paf), 
+					(paf, pageId) -> IndexFactory.loadUniqueIndex(
+							PAGE_TYPE.GENERIC_INDEX, paf, pageId));
+			run("hash", paf -> IndexFactory.createHashIndex(PAGE_TYPE.GENERIC_INDEX, paf), 
+					(paf, pageId) -> IndexFactory.loadHashIndex(
+							PAGE_TYPE.GENERIC_INDEX, paf, pageId));
+		}
+	}
+
+	/**
+	 * OID-like keys: increasing, with gaps.
+	 */
+	private static long key(int i) {
+		return 1000 + i * 3L;
+	}
+
+	private static void run(String name, 
+			Function<IOResourceProvider, LongLongUIndex> creator, 
+			Loader loader) {
+		StorageRootInMemory root = new StorageRootInMemory(ZooConfig.getFilePageSize());
+		IOResourceProvider paf = root.createChannel();
+
+		long t0 = System.currentTimeMillis();
+		LongLongUIndex ind = creator.apply(paf);
+		for (int i = 0; i < N; i++) {
+			ind.insertLong(key(i), i);
+		}
+		int pageId = ind.write(paf.createWriter(false));
+		long tBuild = System.currentTimeMillis() - t0;
+
+		//cold: every lookup in a freshly loaded index
+		int r0 = root.statsGetReadCount();
+		ind = loader.load(paf, pageId);
+		int rLoad = root.statsGetReadCount() - r0;
+		r0 = root.statsGetReadCount();
+		long n = ind.findValue(key(N / 2)).getValue();
+		int rFirst = root.statsGetReadCount() - r0;
+		r0 = root.statsGetReadCount();
+		for (int i = 0; i < N_COLD; i++) {
+			n += ind.findValue(key((int) ((i * 7919L) % N))).getValue();
+		}
+		double readsPerLookup = (root.statsGetReadCount() - r0) / (double) N_COLD;
+
+		//warm
+		long t1 = System.currentTimeMillis();
+		for (int r = 0; r < N_REPEAT; r++) {
+			for (int i = 0; i < N_LOOKUP; i++) {
+				n += ind.findValue(key((int) ((i * 104729L) % N))).getValue();
+			}
+		}
+		long tWarm = (System.currentTimeMillis() - t1) / N_REPEAT;
+
+		System.out.println(name + ": build=" + tBuild + "ms; load=" + rLoad + 
+				" page reads; first lookup=" + rFirst + " page reads; cold=" + 
+				String.format("%.2f", readsPerLookup) + " page reads/lookup; warm=" + 
+				tWarm + "ms; inner pages=" + ind.statsGetInnerN() + "; leaf pages=" + 
+				ind.statsGetLeavesN() + "; (" + n + ")");
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.java;
+
+import java.util.Collection;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.test.jdo.TestClassSmall;
+import org.zoodb.test.jdo.TestClassSmallA;
+import org.zoodb.test.jdo.TestClassSmallB;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+
+/**
+ * Measures path queries such as {@code b.myInt == x} on a two-class dataset, where many
+ * instances of A reference few instances of B. Without index, every A and its B is loaded.
+ * With an index on {@code A.b}, the query is executed as join: the predicate is evaluated
+ * by scanning B or with an index of B (index nested loop join), then the matching A are
+ * looked up in the index on {@code A.b}.
+ * Example result for 20 queries with 200 results each: no index: 13416ms; 
+ * scan + index probe: 973ms; index nested loop join: 139ms.
+ *
+ * @author Tilmann Zaeschke
+ */
+public class PerfJoin {
+
+	private static final int N_A = 200_000;
+	private static final int N_B = 10_000;
+	private static final int N_VALUES = 1000;
+	private static final int N_QUERIES = 20;
+
+	public static void main(String[] args) {
+		DBStatistics.enable(true);
+		new PerfJoin().run("no index");
+		new PerfJoin().run("scan + index probe", "b");
+		new PerfJoin().run("index nested loop join", "b", "myInt");
+		TestTools.removeDb();
+	}
+
+	private void run(String name, String ... indexes) {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClassSmall.class, TestClassSmallA.class,
+				TestClassSmallB.class);
+		if (indexes.length > 0) {
+			TestTools.defineIndex(TestClassSmallA.class, indexes[0], false);
+		}
+		if (indexes.length > 1) {
+			TestTools.defineIndex(TestClassSmall.class, indexes[1], false);
+		}
+		populate();
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		long pages0 = stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		long t0 = System.currentTimeMillis();
+		int n = 0;
+		for (int i = 0; i < N_QUERIES; i++) {
+			Query q = pm.newQuery(TestClassSmallA.class, "b.myInt == :x");
+			n += ((Collection<?>) q.execute(i * 37 % N_VALUES)).size();
+			q.closeAll();
+			pm.evictAll();
+		}
+		long t1 = System.currentTimeMillis();
+		long pages = stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ) - pages0;
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		System.out.println(name + ": queries=" + N_QUERIES + "; results=" + n +
+				"; time=" + (t1-t0) + "ms; unique pages=" + pages);
+	}
+
+	private static void populate() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClassSmallB[] bs = new TestClassSmallB[N_B];
+		for (int i = 0; i < N_B; i++) {
+			bs[i] = new TestClassSmallB();
+			bs[i].setMyInt(i % N_VALUES);
+			pm.makePersistent(bs[i]);
+		}
+		for (int i = 0; i < N_A; i++) {
+			TestClassSmallA a = new TestClassSmallA();
+			a.setMyInt(i);
+			a.setB(bs[(i * 7919) % N_B]);
+			pm.makePersistent(a);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+}
@@ -15,12 +15,20 @@
  */
 package org.zoodb.test.jdo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jdo.PersistenceManager;
+
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.zoodb.internal.Session;
+import org.zoodb.internal.server.DbChecker;
 import org.zoodb.test.testutil.TestTools;
 import org.zoodb.tools.ZooCheckDb;
 import org.zoodb.tools.ZooQuery;
@@ -28,10 +36,51 @@ import org.zoodb.tools.ZooQuery;
 public class Test_012_DbAdminCheckDb {
 	
 	private static final String DB_NAME = "TestDb";
+
+	private static int counter = 0;
 	
 	@BeforeClass
 	public static void setUp() {
 		TestTools.createDb(DB_NAME);
+		TestTools.defineSchema(DB_NAME, TestClass.class);
+		TestTools.defineIndex(DB_NAME, TestClass.class, "_int", true);
+		populate(5000);
+	}
+
+	private static void populate(int n) {
+		PersistenceManager pm = TestTools.openPM(DB_NAME);
+		pm.currentTransaction().begin();
+		for (int i = 0; i < n; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(counter++);
+			tc.setString("xyz" + i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static String checkDb(int nThreads, long minTxId, 
+			DbChecker.ProgressListener listener) {
+		PersistenceManager pm = TestTools.openPM(DB_NAME);
+		Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
+		String report = s.getPrimaryNode().checkDb(nThreads, minTxId, listener);
+		TestTools.closePM();
+		assertFalse(report, report.contains("ERROR"));
+		return report;
+	}
+
+	private static long getValue(String report, String key) {
+		for (String line: report.split("\\R")) {
+			if (line.startsWith(key)) {
+				String value = line.substring(key.length()).trim();
+				if (value.contains(" ")) {
+					value = value.substring(0, value.indexOf(' '));
+				}
+				return Long.parseLong(value);
+			}
+		}
+		throw new IllegalArgumentException(key + " not found in: " + report);
 	}
 
 	@Before
@@ -47,6 +96,55 @@ public class Test_012_DbAdminCheckDb {
 	    assertTrue(out.contains("Checking database done."));
 	}
 	
+	@Test
+	public void testCheckDbParallel() {
+		String report1 = checkDb(1, 0, null);
+		final AtomicInteger nDone = new AtomicInteger();
+		String report4 = checkDb(4, 0, new DbChecker.ProgressListener() {
+			@Override
+			public void progress(String task, int n, int nTotal) {
+				assertTrue(n <= nTotal);
+				nDone.incrementAndGet();
+			}
+		});
+		assertEquals(report1, report4);
+		assertTrue(report4, getValue(report4, "Objects:") >= 5000);
+		assertTrue(report4, nDone.get() > 1);
+	}
+
+	@Test
+	public void testCheckDbIncremental() {
+		String report = checkDb(2, 0, null);
+		long txId = getValue(report, "Transaction ID:");
+		long nPages = getValue(report, "Data pages:");
+
+		//nothing changed
+		String reportInc = checkDb(2, txId, null);
+		assertEquals(0, getValue(reportInc, "Changed objects:"));
+		assertEquals(0, getValue(reportInc, "Data pages:"));
+		assertEquals(0, getValue(reportInc, "OID index pages:"));
+		assertEquals(0, getValue(reportInc, "POS index pages:"));
+
+		populate(10);
+		reportInc = checkDb(2, txId, null);
+		assertTrue(reportInc, getValue(reportInc, "Transaction ID:") > txId);
+		assertTrue(reportInc, getValue(reportInc, "Changed objects:") >= 10);
+		long nPagesInc = getValue(reportInc, "Data pages:");
+		assertTrue(reportInc, nPagesInc > 0);
+		assertTrue(reportInc, nPagesInc < nPages);
+	}
+
+	@Test
+	public void testCheckDbMainIncremental() {
+		ZooCheckDb.enableStringOutput();
+		ZooCheckDb.main("--threads", "3", "--since", "1", DB_NAME);
+		String out = ZooQuery.getStringOutput();
+		assertTrue(out, out.contains("Checking pages written after transaction 1"));
+		assertTrue(out, out.contains("Progress: "));
+		assertFalse(out, out.contains("ERROR"));
+		assertTrue(out, out.contains("Checking database done."));
+	}
+
 	@AfterClass
 	public static void tearDown() {
 		TestTools.removeDb(DB_NAME);
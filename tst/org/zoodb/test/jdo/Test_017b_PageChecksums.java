@@ -0,0 +1,177 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOFatalException;
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.server.SessionFactory;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+import org.zoodb.tools.ZooConfig;
+
+public class Test_017b_PageChecksums {
+
+	private static final int N = 1000;
+	//see DiskIO.PAGE_TYPE.DATA
+	private static final byte PAGE_TYPE_DATA = 10;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+		ZooConfig.setFilePageChecksums(true);
+	}
+
+	private static void createObjects() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static int countObjects(PersistenceManager pm) {
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertTrue(tc.getInt() >= 0);
+			n++;
+		}
+		ext.closeAll();
+		return n;
+	}
+
+	/**
+	 * Overwrite one byte in the middle of the last data page. The first data pages contain 
+	 * the schema, which is read when the database is opened.
+	 */
+	private static void corruptDataPage() throws IOException {
+		int pageSize = ZooConfig.getFilePageSize();
+		try (RandomAccessFile raf = new RandomAccessFile(TestTools.getDbFileName(), "rw")) {
+			for (long pos = raf.length() - pageSize; pos > 0; pos -= pageSize) {
+				raf.seek(pos);
+				if (raf.readByte() == PAGE_TYPE_DATA) {
+					raf.seek(pos + pageSize / 2);
+					byte b = raf.readByte();
+					raf.seek(pos + pageSize / 2);
+					raf.writeByte(~b);
+					return;
+				}
+			}
+		}
+		fail("No data page found");
+	}
+
+	@Test
+	public void testEnabledByDefault() {
+		createObjects();
+		assertTrue(SessionFactory.readHeader(
+				Paths.get(TestTools.getDbFileName())).hasPageChecksums());
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertEquals(N, countObjects(pm));
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testDisabled() {
+		TestTools.removeDb();
+		ZooConfig.setFilePageChecksums(false);
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		createObjects();
+		assertFalse(SessionFactory.readHeader(
+				Paths.get(TestTools.getDbFileName())).hasPageChecksums());
+
+		//the setting is stored in the file
+		ZooConfig.setFilePageChecksums(true);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertEquals(N, countObjects(pm));
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testCorruptedPageIsDetected() throws IOException {
+		createObjects();
+		corruptDataPage();
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		try {
+			countObjects(pm);
+			fail();
+		} catch (JDOFatalException e) {
+			//good
+		}
+	}
+
+	@Test
+	public void testScrubber() throws IOException, InterruptedException {
+		createObjects();
+		corruptDataPage();
+
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooPageScrubber(true);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		PersistenceManager pm = pmf.getPersistenceManager();
+		try {
+			DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+			long t0 = System.currentTimeMillis();
+			while (stats.getStat(STATS.DB_SCRUB_RUN_CNT) < 1) {
+				assertTrue(System.currentTimeMillis() - t0 < 30_000);
+				Thread.sleep(10);
+			}
+			assertTrue(stats.getStat(STATS.DB_SCRUB_PAGE_CNT) > 0);
+			assertEquals(1, stats.getStat(STATS.DB_SCRUB_ERROR_CNT));
+		} finally {
+			pm.close();
+			pmf.close();
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.server.WriteAheadLog;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+
+public class Test_017c_WriteAheadLog {
+
+	private static final int N = 1000;
+
+	private final Path dbFile = Paths.get(TestTools.getDbFileName());
+	private final Path logFile = WriteAheadLog.getFile(TestTools.getDbFileName()).toPath();
+	private final Path dbCopy = Paths.get(TestTools.getDbFileName() + ".copy");
+	private final Path logCopy = Paths.get(TestTools.getDbFileName() + ".walcopy");
+
+	private PersistenceManagerFactory pmf;
+	private PersistenceManager pm;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooWriteAheadLog(true);
+		pmf = JDOHelper.getPersistenceManagerFactory(props);
+		pm = pmf.getPersistenceManager();
+	}
+
+	@After
+	public void after() throws IOException {
+		closePM();
+		TestTools.closePM();
+		TestTools.removeDb();
+		Files.deleteIfExists(dbCopy);
+		Files.deleteIfExists(logCopy);
+	}
+
+	private void closePM() {
+		if (pm != null && !pm.isClosed()) {
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+		}
+		if (pmf != null && !pmf.isClosed()) {
+			pmf.close();
+		}
+	}
+
+	private void createObjects() {
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+	}
+
+	private static int countObjects() {
+		PersistenceManager pm2 = TestTools.openPM();
+		pm2.currentTransaction().begin();
+		Extent<TestClass> ext = pm2.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertEquals(n, tc.getInt());
+			n++;
+		}
+		ext.closeAll();
+		pm2.currentTransaction().rollback();
+		TestTools.closePM();
+		return n;
+	}
+
+	@Test
+	public void testCommit() {
+		assertTrue(Files.exists(logFile));
+		createObjects();
+		closePM();
+		assertFalse(Files.exists(logFile));
+		assertEquals(N, countObjects());
+	}
+
+	/**
+	 * Simulate a crash after a commit, before any page was written to the database file.
+	 */
+	@Test
+	public void testReplay() throws IOException {
+		Files.copy(dbFile, dbCopy);
+		createObjects();
+		Files.copy(logFile, logCopy);
+		closePM();
+
+		Files.copy(dbCopy, dbFile, StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(logCopy, logFile);
+		assertEquals(N, countObjects());
+		assertFalse(Files.exists(logFile));
+	}
+
+	/**
+	 * Simulate a crash during a commit. The database should have the state of the previous
+	 * commit.
+	 */
+	@Test
+	public void testIncompleteCommit() throws IOException {
+		Files.copy(dbFile, dbCopy);
+		createObjects();
+		Files.copy(logFile, logCopy);
+		closePM();
+
+		//remove the commit record
+		File f = logCopy.toFile();
+		try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+			raf.setLength(raf.length() - 10);
+		}
+		Files.copy(dbCopy, dbFile, StandardCopyOption.REPLACE_EXISTING);
+		Files.copy(logCopy, logFile);
+		assertEquals(0, countObjects());
+		assertFalse(Files.exists(logFile));
+	}
+
+}
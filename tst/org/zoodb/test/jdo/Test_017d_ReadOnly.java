@@ -0,0 +1,192 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+
+public class Test_017d_ReadOnly {
+
+	private static final int N = 1000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+	}
+
+	private static PersistenceManager openReadOnly() {
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setReadOnly(true);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		assertTrue(pmf.getReadOnly());
+		return pmf.getPersistenceManager();
+	}
+
+	private static void close(PersistenceManager pm) {
+		if (pm.currentTransaction().isActive()) {
+			pm.currentTransaction().rollback();
+		}
+		PersistenceManagerFactory pmf = pm.getPersistenceManagerFactory();
+		pm.close();
+		pmf.close();
+	}
+
+	private static int countObjects(PersistenceManager pm) {
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertTrue(tc.getInt() >= 0 && tc.getInt() <= N);
+			n++;
+		}
+		ext.closeAll();
+		return n;
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		byte[] before = Files.readAllBytes(Paths.get(TestTools.getDbFileName()));
+
+		PersistenceManager pm = openReadOnly();
+		try {
+			pm.currentTransaction().begin();
+			assertEquals(N, countObjects(pm));
+			pm.currentTransaction().commit();
+			pm.currentTransaction().begin();
+			assertEquals(N, countObjects(pm));
+			pm.currentTransaction().rollback();
+		} finally {
+			close(pm);
+		}
+
+		byte[] after = Files.readAllBytes(Paths.get(TestTools.getDbFileName()));
+		assertArrayEquals(before, after);
+	}
+
+	@Test
+	public void testWriteFails() {
+		PersistenceManager pm = openReadOnly();
+		try {
+			pm.currentTransaction().begin();
+			try {
+				pm.makePersistent(new TestClass());
+				fail();
+			} catch (JDOUserException e) {
+				//good
+			}
+
+			TestClass tc = pm.getExtent(TestClass.class).iterator().next();
+			tc.setInt(12345);
+			try {
+				pm.currentTransaction().commit();
+				fail();
+			} catch (JDOUserException e) {
+				//good
+			}
+			pm.currentTransaction().rollback();
+
+			pm.currentTransaction().begin();
+			assertEquals(N, countObjects(pm));
+			pm.currentTransaction().rollback();
+		} finally {
+			close(pm);
+		}
+	}
+
+	@Test
+	public void testMultipleReaders() {
+		PersistenceManager pm1 = openReadOnly();
+		PersistenceManager pm2 = openReadOnly();
+		try {
+			pm1.currentTransaction().begin();
+			pm2.currentTransaction().begin();
+			assertEquals(N, countObjects(pm1));
+			assertEquals(N, countObjects(pm2));
+			pm1.currentTransaction().rollback();
+			pm2.currentTransaction().rollback();
+		} finally {
+			close(pm1);
+			close(pm2);
+		}
+	}
+
+	@Test
+	public void testWriterFailsWhileReadOnly() {
+		PersistenceManager pm1 = openReadOnly();
+		try {
+			TestTools.openPM();
+			fail();
+		} catch (JDOUserException e) {
+			//good
+		} finally {
+			close(pm1);
+		}
+	}
+
+	@Test
+	public void testReadOnlyWhileWritable() {
+		PersistenceManager pm1 = TestTools.openPM();
+		PersistenceManager pm2 = openReadOnly();
+		try {
+			pm1.currentTransaction().begin();
+			TestClass tc = new TestClass();
+			tc.setInt(N);
+			pm1.makePersistent(tc);
+			pm1.currentTransaction().commit();
+
+			pm2.currentTransaction().begin();
+			assertEquals(N + 1, countObjects(pm2));
+			pm2.currentTransaction().rollback();
+		} finally {
+			close(pm2);
+			TestTools.closePM();
+		}
+	}
+}
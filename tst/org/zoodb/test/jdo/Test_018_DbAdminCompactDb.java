@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collection;
+
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.Session;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.ZooCompactDb;
+import org.zoodb.tools.ZooQuery;
+
+public class Test_018_DbAdminCompactDb {
+
+	private static final int N = 5000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+		DBStatistics.enable(true);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+		DBStatistics.enable(false);
+	}
+
+	/**
+	 * Creates N objects, then deletes every second one and updates every fifth one,
+	 * which leaves many sparsely filled pages.
+	 */
+	private void createFragmentedDb() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, false, 'c', (byte)127, (short)32000, 1234567890L, "str" + i,
+					new byte[]{1,2,3}, -1.1f, 35);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+
+		pm.currentTransaction().begin();
+		Collection<?> c = (Collection<?>) pm.newQuery(TestClass.class).execute();
+		for (Object o: c) {
+			TestClass tc = (TestClass) o;
+			if (tc.getInt() % 2 == 0) {
+				pm.deletePersistent(tc);
+			} else if (tc.getInt() % 5 == 0) {
+				tc.setLong(tc.getInt());
+			}
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private void checkObjects(PersistenceManager pm) {
+		pm.currentTransaction().begin();
+		Collection<?> c = (Collection<?>) pm.newQuery(TestClass.class).execute();
+		int n = 0;
+		for (Object o: c) {
+			TestClass tc = (TestClass) o;
+			int i = tc.getInt();
+			assertTrue(i % 2 == 1);
+			assertEquals("str" + i, tc.getString());
+			assertEquals(i % 5 == 0 ? i : 1234567890L, tc.getLong());
+			n++;
+		}
+		assertEquals(N / 2, n);
+
+		//check index
+		Query q = pm.newQuery(TestClass.class, "_int == 4001");
+		q.setUnique(true);
+		TestClass tc = (TestClass) q.execute();
+		assertEquals("str4001", tc.getString());
+		pm.currentTransaction().commit();
+	}
+
+	@Test
+	public void testCompactClass() {
+		createFragmentedDb();
+		File f = new File(TestTools.getDbFileName());
+		long len1 = f.length();
+
+		PersistenceManager pm = TestTools.openPM();
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		long nDataPages1 = stats.getStat(DBStatistics.STATS.DB_PAGE_CNT_DATA);
+
+		long n = ZooJdoHelper.compact(pm, TestClass.class);
+		assertEquals(N / 2, n);
+
+		long nDataPages2 = stats.getStat(DBStatistics.STATS.DB_PAGE_CNT_DATA);
+		assertTrue(nDataPages1 + " -> " + nDataPages2, nDataPages2 < nDataPages1);
+
+		checkObjects(pm);
+
+		Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
+		String report = s.getPrimaryNode().checkDb();
+		assertFalse(report, report.contains("ERROR"));
+		TestTools.closePM();
+
+		assertTrue(len1 + " -> " + f.length(), f.length() < len1);
+
+		//reopen
+		pm = TestTools.openPM();
+		checkObjects(pm);
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testCompactInsideTransactionFails() {
+		createFragmentedDb();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		try {
+			ZooJdoHelper.compact(pm, TestClass.class);
+			fail();
+		} catch (JDOUserException e) {
+			//good
+		}
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testCompactWithConcurrentSession() {
+		createFragmentedDb();
+		PersistenceManager pm1 = TestTools.openPM();
+		PersistenceManager pm2 = TestTools.openPM();
+
+		//pm2 keeps reading before and after compaction
+		checkObjects(pm2);
+		ZooCompactDb.compact(pm1, 100);
+		checkObjects(pm2);
+		checkObjects(pm1);
+
+		pm2.close();
+		pm2.getPersistenceManagerFactory().close();
+		TestTools.closePM(pm1);
+	}
+
+	@Test
+	public void testCompactDbTool() {
+		createFragmentedDb();
+		ZooQuery.resetStringOutput();
+		ZooCompactDb.enableStringOutput();
+		ZooCompactDb.main(TestTools.getDbName());
+		String out = ZooQuery.getStringOutput();
+		assertTrue(out, out.contains("Relocated objects: " + (N / 2)));
+		assertTrue(out, out.contains("Compacting database done."));
+
+		PersistenceManager pm = TestTools.openPM();
+		checkObjects(pm);
+		TestTools.closePM();
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.api.DBLargeVector;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.test.api.TestSerializer;
+import org.zoodb.test.api.TestSuper;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.ZooBinaryExport;
+import org.zoodb.tools.ZooBinaryImport;
+import org.zoodb.tools.ZooCompareDb;
+
+public class Test_019_BinaryImportExport {
+
+	private static final String DB2 = "TestDb2.zdb";
+	private static final int N = 1000;
+
+	private File dir;
+
+	@Before
+	public void before() throws IOException {
+		TestTools.createDb();
+		TestTools.createDb(DB2);
+		TestSerializer.resetStatic();
+		dir = Files.createTempDirectory("zoodb").toFile();
+		ZooCompareDb.logToConsole = false;
+	}
+
+	@After
+	public void after() {
+		ZooCompareDb.logToConsole = true;
+		TestTools.closePM();
+		TestTools.removeDb();
+		TestTools.removeDb(DB2);
+		if (dir.exists()) {
+			for (File f: dir.listFiles()) {
+				assertTrue(f.delete());
+			}
+			assertTrue(dir.delete());
+		}
+	}
+
+	private static void populateSimple() {
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+		TestTools.defineIndex(TestClass.class, "_string", false);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClass prev = null;
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, i % 2 == 0, 'c', (byte)i, (short)32000, 1234567890L + i, "xyz" + i,
+					new byte[]{1, 2, (byte) i}, -1.1f * i, 35.0 / (i + 1));
+			tc.setRef2(prev);
+			pm.makePersistent(tc);
+			prev = tc;
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testEmptyDB() {
+		assertEquals(0, new ZooBinaryExport(dir, 2).writeDB(TestTools.getDbName()));
+		assertEquals(0, new ZooBinaryImport(dir).readDB(DB2));
+		assertEquals("", ZooCompareDb.run(TestTools.getDbName(), DB2));
+	}
+
+	@Test
+	public void testSimpleClasses() {
+		populateSimple();
+
+		assertEquals(N, new ZooBinaryExport(dir, 4).writeDB(TestTools.getDbName()));
+		//the target database has no schema
+		assertEquals(N, new ZooBinaryImport(dir).readDB(DB2));
+		assertEquals("", ZooCompareDb.run(TestTools.getDbName(), DB2));
+
+		PersistenceManager pm = TestTools.openPM(DB2);
+		pm.currentTransaction().begin();
+		ZooClass cls = ZooJdoHelper.schema(pm).getClass(TestClass.class.getName());
+		assertTrue(cls.getField("_int").hasIndex());
+		assertTrue(cls.getField("_int").isIndexUnique());
+		assertTrue(cls.getField("_string").hasIndex());
+		assertFalse(cls.getField("_string").isIndexUnique());
+		assertFalse(cls.getField("_long").hasIndex());
+
+		Query q = pm.newQuery(TestClass.class, "_int >= 500 && _string == 'xyz777'");
+		Collection<?> c = (Collection<?>) q.execute();
+		assertEquals(1, c.size());
+		TestClass tc = (TestClass) c.iterator().next();
+		tc.checkData(777, false, 'c', (byte)777, (short)32000, 1234567890L + 777, "xyz777",
+				new byte[]{1, 2, (byte) 777}, -1.1f * 777, 35.0 / 778);
+		assertEquals(776, tc.getRef2().getInt());
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testBatches() {
+		populateSimple();
+
+		assertEquals(N, new ZooBinaryExport(dir, 2).writeDB(TestTools.getDbName()));
+		//objects reference objects of previous and following batches
+		assertEquals(N, new ZooBinaryImport(dir, 7).readDB(DB2));
+		assertEquals("", ZooCompareDb.run(TestTools.getDbName(), DB2));
+	}
+
+	@Test
+	public void testComplexClass() {
+		TestTools.defineSchema(TestSerializer.class, TestSuper.class, DBLargeVector.class);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestSerializer ts1 = new TestSerializer();
+		ts1.init();
+		ts1.check(true);
+		pm.makePersistent(ts1);
+		Object oid = pm.getObjectId(ts1);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		TestSerializer.resetStatic();
+
+		new ZooBinaryExport(dir, 2).writeDB(TestTools.getDbName());
+		TestTools.defineSchema(DB2, TestSerializer.class, TestSuper.class, DBLargeVector.class);
+		new ZooBinaryImport(dir).readDB(DB2);
+
+		PersistenceManager pm2 = TestTools.openPM(DB2);
+		pm2.currentTransaction().begin();
+		TestSerializer ts2 = (TestSerializer) pm2.getObjectById(oid, true);
+		ts2.check(false);
+		pm2.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testMain() {
+		populateSimple();
+		ZooBinaryExport.main(new String[]{"--threads", "2", TestTools.getDbName(),
+				dir.getAbsolutePath()});
+		ZooBinaryImport.main(new String[]{DB2, dir.getAbsolutePath()});
+		assertEquals("", ZooCompareDb.run(TestTools.getDbName(), DB2));
+	}
+
+}
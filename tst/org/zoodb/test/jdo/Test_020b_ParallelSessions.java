@@ -0,0 +1,148 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jdo.Extent;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.test.testutil.TestTools;
+
+/**
+ * Open and close sessions concurrently, on the same and on different database files.
+ */
+public class Test_020b_ParallelSessions {
+
+	private static final int N_DB = 10;
+	private static final int N_THREADS = 16;
+	private static final int N_REPEAT = 10;
+	
+	private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+	
+	private static String dbName(int i) {
+		return TestTools.getDbName() + "_" + i;
+	}
+	
+	@Before
+	public void before() {
+		for (int i = 0; i < N_DB; i++) {
+			TestTools.createDb(dbName(i));
+			TestTools.defineSchema(dbName(i), TestClass.class);
+		}
+	}
+	
+	@After
+	public void after() {
+		TestTools.closePM();
+		for (int i = 0; i < N_DB; i++) {
+			TestTools.removeDb(dbName(i));
+		}
+	}
+	
+	private void run(final int nThreads, final boolean sameDb) throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < nThreads; i++) {
+			final String dbName = sameDb ? dbName(0) : dbName(i % N_DB);
+			Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int r = 0; r < N_REPEAT; r++) {
+							createObject(dbName);
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+						t.printStackTrace();
+					}
+				}
+			};
+			threads.add(t);
+			t.start();
+		}
+		for (Thread t: threads) {
+			t.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+	
+	private static void createObject(String dbName) {
+		PersistenceManager pm = ZooJdoHelper.openDB(dbName);
+		PersistenceManagerFactory pmf = pm.getPersistenceManagerFactory();
+		try {
+			pm.currentTransaction().begin();
+			TestClass tc = new TestClass();
+			tc.setInt(1);
+			pm.makePersistent(tc);
+			pm.currentTransaction().commit();
+		} finally {
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+			pmf.close();
+		}
+	}
+	
+	private static int countObjects(String dbName) {
+		PersistenceManager pm = TestTools.openPM(dbName);
+		pm.currentTransaction().begin();
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertEquals(1, tc.getInt());
+			n++;
+		}
+		ext.closeAll();
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		return n;
+	}
+	
+	@Test
+	public void testDifferentFiles() throws InterruptedException {
+		run(N_DB, false);
+		for (int i = 0; i < N_DB; i++) {
+			assertEquals(N_REPEAT, countObjects(dbName(i)));
+		}
+	}
+	
+	@Test
+	public void testSameFile() throws InterruptedException {
+		run(N_THREADS, true);
+		assertEquals(N_THREADS * N_REPEAT, countObjects(dbName(0)));
+	}
+	
+	@Test
+	public void testMixed() throws InterruptedException {
+		run(N_THREADS * 2, false);
+		int n = 0;
+		for (int i = 0; i < N_DB; i++) {
+			n += countObjects(dbName(i));
+		}
+		assertEquals(N_THREADS * 2 * N_REPEAT, n);
+	}
+}
@@ -166,8 +166,8 @@ public class Test_021_MultiSession {
 		DBStatistics stats = ZooJdoHelper.getStatistics(pm2);
 		//System.out.println("s1_oids="+ stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
 		//System.out.println("s1_tx="+ stats.getStat(STATS.TX_MGR_BUFFERED_TX_CNT));
-		//5?
-		assertEquals(5, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
+		//The objects created by pm1 are pruned, except those updated by pm2
+		assertEquals(3, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
 		
 		try {
 			pm1.currentTransaction().commit();
@@ -184,8 +184,7 @@ public class Test_021_MultiSession {
 			assertTrue(failedOids.contains(oid3));
 		}
 
-		//5?
-		assertEquals(5, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
+		assertEquals(3, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
 
 		pm1.currentTransaction().begin();
 
@@ -205,8 +204,7 @@ public class Test_021_MultiSession {
 		pm1.currentTransaction().rollback();
 		pm2.currentTransaction().rollback();
 		
-		//5?
-		assertEquals(5, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
+		assertEquals(4, stats.getStat(STATS.TX_MGR_BUFFERED_OID_CNT));
 
 		pm1.close();
 		pm2.close();
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
+import javax.jdo.JDOOptimisticVerificationException;
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.ZooServer;
+
+public class Test_021b_PageServer {
+
+	private static final int N = 1000;
+
+	private ZooServer server;
+	private final List<PersistenceManagerFactory> pmfs = new ArrayList<>();
+	private final List<PersistenceManager> pms = new ArrayList<>();
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		server = ZooServer.start(TestTools.getDbName(), 0);
+	}
+
+	@After
+	public void after() {
+		for (PersistenceManager pm: pms) {
+			if (!pm.isClosed() && pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+		}
+		for (PersistenceManager pm: pms) {
+			if (!pm.isClosed()) {
+				pm.close();
+			}
+		}
+		for (PersistenceManagerFactory pmf: pmfs) {
+			if (!pmf.isClosed()) {
+				pmf.close();
+			}
+		}
+		pms.clear();
+		pmfs.clear();
+		server.close();
+		TestTools.closePM();
+		TestTools.removeDb();
+	}
+
+	/**
+	 * Each client name results in a separate connection to the server, as if the clients
+	 * were running in different processes.
+	 */
+	private PersistenceManager openClient(String name) {
+		ZooJdoProperties props = new ZooJdoProperties(server.getUrl() + "/" + name);
+		PersistenceManagerFactory pmf = JDOHelper.getPersistenceManagerFactory(props);
+		pmfs.add(pmf);
+		PersistenceManager pm = pmf.getPersistenceManager();
+		pms.add(pm);
+		return pm;
+	}
+
+	private static void createObjects(PersistenceManager pm, int n, int offset) {
+		pm.currentTransaction().begin();
+		for (int i = 0; i < n; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(offset + i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+	}
+
+	private static Set<Object> getOids(PersistenceManager pm) {
+		Set<Object> oids = new HashSet<>();
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		for (TestClass tc: ext) {
+			assertTrue(oids.add(pm.getObjectId(tc)));
+		}
+		ext.closeAll();
+		return oids;
+	}
+
+	@Test
+	public void testLoopbackByDefault() {
+		assertTrue(server.getBindAddress().isLoopbackAddress());
+		assertTrue(server.getUrl(), server.getUrl().startsWith("zoodb://localhost:"));
+	}
+
+	@Test
+	public void testVisibility() {
+		PersistenceManager pm1 = openClient("a");
+		PersistenceManager pm2 = openClient("b");
+
+		createObjects(pm1, N, 0);
+
+		pm2.currentTransaction().begin();
+		assertEquals(N, getOids(pm2).size());
+		Query q = pm2.newQuery(TestClass.class, "_int >= " + (N - 10));
+		assertEquals(10, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+		pm2.currentTransaction().rollback();
+
+		createObjects(pm2, N, N);
+
+		pm1.currentTransaction().begin();
+		assertEquals(2 * N, getOids(pm1).size());
+		pm1.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		PersistenceManager pm1 = openClient("a");
+		PersistenceManager pm2 = openClient("b");
+
+		createObjects(pm1, N, 0);
+
+		pm2.currentTransaction().begin();
+		Extent<TestClass> ext = pm2.getExtent(TestClass.class);
+		for (TestClass tc: ext) {
+			if (tc.getInt() % 2 == 0) {
+				pm2.deletePersistent(tc);
+			} else {
+				tc.setInt(-tc.getInt());
+			}
+		}
+		ext.closeAll();
+		pm2.currentTransaction().commit();
+
+		pm1.currentTransaction().begin();
+		ext = pm1.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertTrue(tc.getInt() < 0);
+			n++;
+		}
+		ext.closeAll();
+		assertEquals(N / 2, n);
+		pm1.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUniqueOids() {
+		PersistenceManager pm1 = openClient("a");
+		PersistenceManager pm2 = openClient("b");
+
+		//Both transactions are active at the same time
+		pm1.currentTransaction().begin();
+		pm2.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			pm1.makePersistent(new TestClass());
+			pm2.makePersistent(new TestClass());
+		}
+		pm1.currentTransaction().commit();
+		pm2.currentTransaction().commit();
+
+		PersistenceManager pm3 = openClient("c");
+		pm3.currentTransaction().begin();
+		assertEquals(2 * N, getOids(pm3).size());
+		pm3.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testOptimisticConflict() {
+		PersistenceManager pm1 = openClient("a");
+		PersistenceManager pm2 = openClient("b");
+
+		pm1.currentTransaction().begin();
+		TestClass tc = new TestClass();
+		pm1.makePersistent(tc);
+		Object oid = pm1.getObjectId(tc);
+		pm1.currentTransaction().commit();
+
+		pm1.currentTransaction().begin();
+		pm2.currentTransaction().begin();
+		TestClass tc1 = (TestClass) pm1.getObjectById(oid);
+		TestClass tc2 = (TestClass) pm2.getObjectById(oid);
+		tc1.setInt(1);
+		tc2.setInt(2);
+		pm1.currentTransaction().commit();
+		try {
+			pm2.currentTransaction().commit();
+			fail();
+		} catch (JDOOptimisticVerificationException e) {
+			//good
+		}
+		assertFalse(pm2.currentTransaction().isActive());
+
+		pm2.currentTransaction().begin();
+		assertEquals(1, ((TestClass) pm2.getObjectById(oid)).getInt());
+		pm2.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testConcurrentCommits() throws Exception {
+		final int nClients = 4;
+		final int nTx = 10;
+		ExecutorService exec = Executors.newFixedThreadPool(nClients);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int c = 0; c < nClients; c++) {
+				final PersistenceManager pm = openClient("c" + c);
+				final int offset = c * nTx * 100;
+				futures.add(exec.submit(() -> {
+					for (int t = 0; t < nTx; t++) {
+						createObjects(pm, 100, offset + t * 100);
+					}
+				}));
+			}
+			for (Future<?> f: futures) {
+				f.get();
+			}
+		} finally {
+			exec.shutdown();
+		}
+
+		PersistenceManager pm = openClient("check");
+		pm.currentTransaction().begin();
+		assertEquals(nClients * nTx * 100, getOids(pm).size());
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUnsupportedOperations() {
+		PersistenceManager pm = openClient("a");
+		pm.currentTransaction().begin();
+		ZooJdoHelper.createIndex(pm, TestClass.class, "_int", false);
+		try {
+			//indexes are created during commit
+			pm.currentTransaction().commit();
+			fail();
+		} catch (JDOUserException e) {
+			//good
+		}
+	}
+
+	@Test
+	public void testReconnect() {
+		PersistenceManager pm1 = openClient("a");
+		createObjects(pm1, N, 0);
+		pm1.close();
+		pmfs.get(0).close();
+
+		PersistenceManager pm2 = openClient("a");
+		pm2.currentTransaction().begin();
+		assertEquals(N, getOids(pm2).size());
+		pm2.currentTransaction().rollback();
+	}
+
+}
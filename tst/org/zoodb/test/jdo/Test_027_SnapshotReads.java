@@ -0,0 +1,260 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
+import javax.jdo.JDOOptimisticVerificationException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.util.RWSemaphore;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+
+public class Test_027_SnapshotReads {
+
+	private static final int N = 1000;
+
+	private PersistenceManagerFactory pmf;
+	private final ArrayList<PersistenceManager> pms = new ArrayList<>();
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooSnapshotReads(true);
+		pmf = JDOHelper.getPersistenceManagerFactory(props);
+	}
+
+	@After
+	public void after() {
+		for (PersistenceManager pm: pms) {
+			if (pm.isClosed()) {
+				continue;
+			}
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+		}
+		pmf.close();
+		TestTools.removeDb();
+	}
+
+	private PersistenceManager openPM() {
+		PersistenceManager pm = pmf.getPersistenceManager();
+		pms.add(pm);
+		return pm;
+	}
+
+	private ArrayList<Object> createObjects(PersistenceManager pm) {
+		ArrayList<Object> oids = new ArrayList<>();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, false, 'c', (byte)127, (short)32000, 1234567890L, "xyz" + i,
+					new byte[]{1,2,3}, -1.1f, 35);
+			pm.makePersistent(tc);
+			oids.add(pm.getObjectId(tc));
+		}
+		pm.currentTransaction().commit();
+		return oids;
+	}
+
+	private static int count(PersistenceManager pm) {
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertTrue(tc.getString().startsWith("xyz"));
+			n++;
+		}
+		ext.closeAll();
+		return n;
+	}
+
+	@Test
+	public void testReadSnapshotWhileOtherSessionCommits() {
+		PersistenceManager pm1 = openPM();
+		PersistenceManager pm2 = openPM();
+		ArrayList<Object> oids = createObjects(pm2);
+
+		pm1.currentTransaction().begin();
+		TestClass tc0 = (TestClass) pm1.getObjectById(oids.get(0));
+		assertEquals(0, tc0.getInt());
+
+		//this would block without snapshot reads, because pm1 holds a read lock
+		pm2.currentTransaction().begin();
+		for (int i = 0; i < N/2; i++) {
+			pm2.deletePersistent(pm2.getObjectById(oids.get(i)));
+		}
+		TestClass tc2 = (TestClass) pm2.getObjectById(oids.get(N-1));
+		tc2.setInt(-1);
+		pm2.currentTransaction().commit();
+
+		//pm1 still sees the old state, also for objects that it didn't load before
+		pm1.evict(tc0);
+		assertEquals(0, tc0.getInt());
+		assertEquals(N, count(pm1));
+		TestClass tc1 = (TestClass) pm1.getObjectById(oids.get(N-1));
+		assertEquals(N-1, tc1.getInt());
+		Query q = pm1.newQuery(TestClass.class, "_int >= 0 && _int < 10");
+		assertEquals(10, ((Collection<?>)q.execute()).size());
+		q.closeAll();
+		pm1.currentTransaction().rollback();
+
+		//new transaction sees the new state
+		PersistenceManager pm3 = openPM();
+		pm3.currentTransaction().begin();
+		assertEquals(N/2, count(pm3));
+		TestClass tc3 = (TestClass) pm3.getObjectById(oids.get(N-1));
+		assertEquals(-1, tc3.getInt());
+		q = pm3.newQuery(TestClass.class, "_int >= 0 && _int < 10");
+		assertEquals(0, ((Collection<?>)q.execute()).size());
+		q.closeAll();
+		pm3.currentTransaction().rollback();
+	}
+
+	/**
+	 * Pages that were freed by other sessions must not be reused while they may be read.
+	 */
+	@Test
+	public void testPagesOfSnapshotAreNotReused() {
+		PersistenceManager pm1 = openPM();
+		PersistenceManager pm2 = openPM();
+		ArrayList<Object> oids = createObjects(pm2);
+
+		pm1.currentTransaction().begin();
+		for (int r = 0; r < 5; r++) {
+			pm2.currentTransaction().begin();
+			for (Object oid: oids) {
+				TestClass tc = (TestClass) pm2.getObjectById(oid);
+				tc.setString("xyz-" + r + "-" + tc.getInt());
+			}
+			pm2.currentTransaction().commit();
+		}
+
+		for (Object oid: oids) {
+			TestClass tc = (TestClass) pm1.getObjectById(oid);
+			assertEquals("xyz" + tc.getInt(), tc.getString());
+		}
+		assertEquals(N, count(pm1));
+		pm1.currentTransaction().rollback();
+
+		PersistenceManager pm3 = openPM();
+		pm3.currentTransaction().begin();
+		for (Object oid: oids) {
+			TestClass tc = (TestClass) pm3.getObjectById(oid);
+			assertEquals("xyz-4-" + tc.getInt(), tc.getString());
+		}
+		pm3.currentTransaction().rollback();
+	}
+
+	/**
+	 * Non-transactional reads see the state of the latest transaction.
+	 */
+	@Test
+	public void testNonTransactionalReads() {
+		PersistenceManager pm = openPM();
+		ArrayList<Object> oids = createObjects(pm);
+
+		pm.currentTransaction().setNontransactionalRead(true);
+		assertEquals("xyz0", ((TestClass) pm.getObjectById(oids.get(0))).getString());
+		for (int r = 0; r < 3; r++) {
+			pm.currentTransaction().begin();
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(r));
+			tc.setString("xyz-" + r);
+			pm.currentTransaction().commit();
+			pm.evictAll();
+			//the next non-transactional read sees the committed state
+			tc = (TestClass) pm.getObjectById(oids.get(r));
+			assertEquals("xyz-" + r, tc.getString());
+		}
+
+		assertEquals("xyz3", ((TestClass) pm.getObjectById(oids.get(3))).getString());
+		pm.currentTransaction().setNontransactionalRead(false);
+	}
+
+	@Test
+	public void testMoreReadersThanLockPermits() {
+		PersistenceManager pmW = openPM();
+		ArrayList<Object> oids = createObjects(pmW);
+
+		ArrayList<PersistenceManager> readers = new ArrayList<>();
+		for (int i = 0; i < RWSemaphore.MAX_READERS + 4; i++) {
+			PersistenceManager pm = openPM();
+			pm.currentTransaction().begin();
+			assertEquals(0, ((TestClass) pm.getObjectById(oids.get(0))).getInt());
+			readers.add(pm);
+		}
+
+		pmW.currentTransaction().begin();
+		((TestClass) pmW.getObjectById(oids.get(0))).setInt(-5);
+		pmW.currentTransaction().commit();
+
+		for (PersistenceManager pm: readers) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(0));
+			pm.evict(tc);
+			assertEquals(0, tc.getInt());
+			pm.currentTransaction().rollback();
+			pm.close();
+		}
+	}
+
+	@Test
+	public void testConflictWithNewerSnapshot() {
+		PersistenceManager pm1 = openPM();
+		PersistenceManager pm2 = openPM();
+		ArrayList<Object> oids = createObjects(pm2);
+
+		pm1.currentTransaction().begin();
+		TestClass tc1 = (TestClass) pm1.getObjectById(oids.get(0));
+		assertEquals(0, tc1.getInt());
+
+		pm2.currentTransaction().begin();
+		((TestClass) pm2.getObjectById(oids.get(0))).setInt(-2);
+		pm2.currentTransaction().commit();
+
+		tc1.setInt(-3);
+		try {
+			pm1.currentTransaction().commit();
+			fail();
+		} catch (JDOOptimisticVerificationException e) {
+			//good, the object was changed after the snapshot was taken
+		}
+
+		pm1.currentTransaction().begin();
+		tc1 = (TestClass) pm1.getObjectById(oids.get(0));
+		assertEquals(-2, tc1.getInt());
+		tc1.setInt(-3);
+		pm1.currentTransaction().commit();
+	}
+
+}
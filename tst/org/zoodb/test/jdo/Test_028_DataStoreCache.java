@@ -0,0 +1,280 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+import javax.jdo.datastore.DataStoreCache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.api.DBLargeVector;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.jdo.impl.DataStoreCacheImpl;
+import org.zoodb.test.api.TestSerializer;
+import org.zoodb.test.api.TestSuper;
+import org.zoodb.test.testutil.TestTools;
+
+public class Test_028_DataStoreCache {
+
+	private static final int N = 100;
+
+	private PersistenceManagerFactory pmf;
+	private final ArrayList<PersistenceManager> pms = new ArrayList<>();
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+	}
+
+	@After
+	public void after() {
+		for (PersistenceManager pm: pms) {
+			if (pm.isClosed()) {
+				continue;
+			}
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+		}
+		pms.clear();
+		if (pmf != null) {
+			pmf.close();
+		}
+		TestTools.removeDb();
+	}
+
+	private DataStoreCacheImpl openPMF(int size, boolean snapshotReads) {
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooDataStoreCacheSize(size);
+		props.setZooSnapshotReads(snapshotReads);
+		pmf = JDOHelper.getPersistenceManagerFactory(props);
+		return (DataStoreCacheImpl) pmf.getDataStoreCache();
+	}
+
+	private PersistenceManager openPM() {
+		PersistenceManager pm = pmf.getPersistenceManager();
+		pms.add(pm);
+		return pm;
+	}
+
+	private static ArrayList<Object> createObjects(PersistenceManager pm) {
+		ArrayList<Object> oids = new ArrayList<>();
+		pm.currentTransaction().begin();
+		TestClass prev = null;
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, i % 2 == 0, 'c', (byte)i, (short)32000, 1234567890L + i, "xyz" + i,
+					new byte[]{1, 2, (byte) i}, -1.1f * i, 35.0 / (i + 1), TestClass.ENUM.C);
+			tc.setRef2(prev);
+			pm.makePersistent(tc);
+			oids.add(pm.getObjectId(tc));
+			prev = tc;
+		}
+		pm.currentTransaction().commit();
+		return oids;
+	}
+
+	private static void checkObjects(PersistenceManager pm, ArrayList<Object> oids) {
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			tc.checkData(i, i % 2 == 0, 'c', (byte)i, (short)32000, 1234567890L + i, "xyz" + i,
+					new byte[]{1, 2, (byte) i}, -1.1f * i, 35.0 / (i + 1));
+			if (i > 0) {
+				assertEquals(i - 1, tc.getRef2().getInt());
+			}
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		pmf = JDOHelper.getPersistenceManagerFactory(
+				new ZooJdoProperties(TestTools.getDbName()));
+		assertTrue(pmf.getDataStoreCache() instanceof DataStoreCache.EmptyDataStoreCache);
+	}
+
+	@Test
+	public void testSharedBetweenSessions() {
+		DataStoreCacheImpl cache = openPMF(1000, false);
+		ArrayList<Object> oids = createObjects(openPM());
+
+		PersistenceManager pm1 = openPM();
+		pm1.currentTransaction().begin();
+		checkObjects(pm1, oids);
+		pm1.currentTransaction().rollback();
+		assertEquals(N, cache.size());
+		assertEquals(0, cache.getHitCount());
+
+		//the second session reads the images of the first session
+		PersistenceManager pm2 = openPM();
+		pm2.currentTransaction().begin();
+		checkObjects(pm2, oids);
+		pm2.currentTransaction().rollback();
+		assertEquals(N, cache.getHitCount());
+	}
+
+	@Test
+	public void testComplexClass() {
+		TestTools.defineSchema(TestSerializer.class, TestSuper.class, DBLargeVector.class);
+		DataStoreCacheImpl cache = openPMF(1000, false);
+		PersistenceManager pm = openPM();
+		pm.currentTransaction().begin();
+		TestSerializer ts1 = new TestSerializer();
+		ts1.init();
+		ts1.check(true);
+		pm.makePersistent(ts1);
+		Object oid = pm.getObjectId(ts1);
+		pm.currentTransaction().commit();
+
+		//keep the first PM open, otherwise the database is closed and the cache is cleared
+		for (int i = 0; i < 2; i++) {
+			TestSerializer.resetStatic();
+			PersistenceManager pm2 = openPM();
+			pm2.currentTransaction().begin();
+			TestSerializer ts2 = (TestSerializer) pm2.getObjectById(oid, true);
+			ts2.check(false);
+			pm2.currentTransaction().rollback();
+			pm2.close();
+		}
+		assertTrue(cache.getHitCount() > 0);
+	}
+
+	@Test
+	public void testCommitEvictsUpdatedObjects() {
+		testCommitEvictsUpdatedObjects(false);
+	}
+
+	@Test
+	public void testCommitEvictsUpdatedObjectsSnapshotReads() {
+		testCommitEvictsUpdatedObjects(true);
+	}
+
+	private void testCommitEvictsUpdatedObjects(boolean snapshotReads) {
+		DataStoreCacheImpl cache = openPMF(1000, snapshotReads);
+		PersistenceManager pm1 = openPM();
+		ArrayList<Object> oids = createObjects(pm1);
+		pm1.currentTransaction().begin();
+		checkObjects(pm1, oids);
+		pm1.currentTransaction().rollback();
+
+		PersistenceManager pm2 = openPM();
+		pm2.currentTransaction().begin();
+		((TestClass) pm2.getObjectById(oids.get(5))).setInt(-5);
+		pm2.deletePersistent(pm2.getObjectById(oids.get(6)));
+		pm2.currentTransaction().commit();
+		assertEquals(N - 2, cache.size());
+
+		PersistenceManager pm3 = openPM();
+		pm3.currentTransaction().begin();
+		assertEquals(-5, ((TestClass) pm3.getObjectById(oids.get(5))).getInt());
+		assertEquals(4, ((TestClass) pm3.getObjectById(oids.get(4))).getInt());
+		Query q = pm3.newQuery(TestClass.class, "_int == 4");
+		assertEquals(1, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+		pm3.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testOldSnapshotDoesNotSeeNewImages() {
+		DataStoreCacheImpl cache = openPMF(1000, true);
+		ArrayList<Object> oids = createObjects(openPM());
+
+		PersistenceManager pm1 = openPM();
+		pm1.currentTransaction().begin();
+		TestClass tc1 = (TestClass) pm1.getObjectById(oids.get(0));
+		assertEquals(0, tc1.getInt());
+
+		PersistenceManager pm2 = openPM();
+		pm2.currentTransaction().begin();
+		((TestClass) pm2.getObjectById(oids.get(0))).setInt(-1);
+		pm2.currentTransaction().commit();
+
+		//cache the new version
+		pm2.currentTransaction().begin();
+		pm2.evict(pm2.getObjectById(oids.get(0)));
+		assertEquals(-1, ((TestClass) pm2.getObjectById(oids.get(0))).getInt());
+		pm2.currentTransaction().rollback();
+		assertEquals(1, cache.size());
+
+		//the old snapshot must not use it
+		pm1.evict(tc1);
+		assertEquals(0, tc1.getInt());
+		pm1.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testSizePinAndEvict() {
+		DataStoreCacheImpl cache = openPMF(10, false);
+		ArrayList<Object> oids = createObjects(openPM());
+
+		PersistenceManager pm = openPM();
+		pm.currentTransaction().begin();
+		checkObjects(pm, oids);
+		pm.currentTransaction().rollback();
+		assertEquals(10, cache.size());
+
+		cache.pinAll(TestClass.class, false);
+		pm.currentTransaction().begin();
+		pm.evictAll();
+		checkObjects(pm, oids);
+		pm.currentTransaction().rollback();
+		assertEquals(N, cache.size());
+
+		cache.evictAll();
+		assertEquals(N, cache.size());
+		cache.evict(oids.get(0));
+		assertEquals(N, cache.size());
+
+		cache.pin(oids.get(0));
+		cache.unpinAll(TestClass.class, false);
+		assertEquals(11, cache.size());
+		cache.evictAll(TestClass.class, false);
+		assertEquals(1, cache.size());
+		cache.unpin(oids.get(0));
+		cache.evict(oids.get(0));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testDropInstancesClearsCache() {
+		DataStoreCacheImpl cache = openPMF(1000, false);
+		ArrayList<Object> oids = createObjects(openPM());
+		PersistenceManager pm = openPM();
+		pm.currentTransaction().begin();
+		checkObjects(pm, oids);
+		pm.currentTransaction().commit();
+		assertEquals(N, cache.size());
+
+		pm.currentTransaction().begin();
+		ZooJdoHelper.schema(pm).getClass(TestClass.class).dropInstances();
+		pm.currentTransaction().commit();
+		assertEquals(0, cache.size());
+	}
+
+}
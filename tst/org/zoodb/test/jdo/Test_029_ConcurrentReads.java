@@ -0,0 +1,298 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import javax.jdo.Extent;
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+
+public class Test_029_ConcurrentReads {
+
+	private static final int N = 2000;
+	private static final int N_THREADS = 8;
+
+	private PersistenceManagerFactory pmf;
+	private PersistenceManager pm;
+	private ArrayList<Object> oids;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", false);
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooConcurrentReads(true);
+		pmf = JDOHelper.getPersistenceManagerFactory(props);
+		pm = pmf.getPersistenceManager();
+		oids = createObjects(pm);
+		pm.close();
+		pm = pmf.getPersistenceManager();
+	}
+
+	@After
+	public void after() {
+		if (pm != null && !pm.isClosed()) {
+			if (pm.currentTransaction().isActive()) {
+				pm.currentTransaction().rollback();
+			}
+			pm.close();
+		}
+		pmf.close();
+		TestTools.removeDb();
+	}
+
+	private static ArrayList<Object> createObjects(PersistenceManager pm) {
+		ArrayList<Object> oids = new ArrayList<>();
+		pm.currentTransaction().begin();
+		TestClass prev = null;
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, i % 2 == 0, 'c', (byte)i, (short)32000, 1234567890L + i, "xyz" + i,
+					new byte[]{1, 2, (byte) i}, -1.1f * i, 35.0 / (i + 1), TestClass.ENUM.C);
+			tc.setRef2(prev);
+			pm.makePersistent(tc);
+			oids.add(pm.getObjectId(tc));
+			prev = tc;
+		}
+		pm.currentTransaction().commit();
+		return oids;
+	}
+
+	private static void checkObject(TestClass tc, int i) {
+		tc.checkData(i, i % 2 == 0, 'c', (byte)i, (short)32000, 1234567890L + i, "xyz" + i,
+				new byte[]{1, 2, (byte) i}, -1.1f * i, 35.0 / (i + 1));
+		if (i > 0) {
+			assertEquals(i - 1, tc.getRef2().getInt());
+		}
+	}
+
+	private interface Task {
+		void run(int threadId) throws Exception;
+	}
+
+	private static void runConcurrently(final Task task) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+		ArrayList<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < N_THREADS; i++) {
+			final int id = i;
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						task.run(id);
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		start.countDown();
+		for (Thread t: threads) {
+			t.join();
+		}
+		if (!errors.isEmpty()) {
+			throw new AssertionError("Failed threads: " + errors.size(), errors.peek());
+		}
+	}
+
+	@Test
+	public void testGetObjectById() throws InterruptedException {
+		pm.currentTransaction().begin();
+		final Object[][] results = new Object[N_THREADS][N];
+		runConcurrently(new Task() {
+			@Override
+			public void run(int threadId) {
+				List<Integer> order = new ArrayList<>();
+				for (int i = 0; i < N; i++) {
+					order.add(i);
+				}
+				Collections.shuffle(order, new Random(threadId));
+				for (int i: order) {
+					TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+					checkObject(tc, i);
+					results[threadId][i] = tc;
+				}
+			}
+		});
+		//all threads see the same instances
+		for (int t = 1; t < N_THREADS; t++) {
+			for (int i = 0; i < N; i++) {
+				assertSame(results[0][i], results[t][i]);
+			}
+		}
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testActivateHollowObjects() throws InterruptedException {
+		pm.currentTransaction().begin();
+		final ArrayList<TestClass> objs = new ArrayList<>();
+		for (Object oid: oids) {
+			objs.add((TestClass) pm.getObjectById(oid));
+		}
+		for (int r = 0; r < 3; r++) {
+			pm.evictAll();
+			runConcurrently(new Task() {
+				@Override
+				public void run(int threadId) {
+					//all threads activate the same objects at the same time
+					for (int i = N - 1; i >= 0; i--) {
+						checkObject(objs.get(i), i);
+					}
+				}
+			});
+		}
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testQueries() throws InterruptedException {
+		pm.currentTransaction().begin();
+		runConcurrently(new Task() {
+			@Override
+			public void run(int threadId) {
+				for (int r = 0; r < 5; r++) {
+					int min = (threadId * 100 + r * 10) % N;
+					//index
+					Query q = pm.newQuery(TestClass.class, "_int >= :min && _int < :max");
+					Collection<?> c = (Collection<?>) q.execute(min, min + 50);
+					assertEquals(Math.min(50, N - min), c.size());
+					for (Object o: c) {
+						TestClass tc = (TestClass) o;
+						checkObject(tc, tc.getInt());
+					}
+					q.closeAll();
+
+					//no index
+					q = pm.newQuery(TestClass.class, "_string == :s");
+					c = (Collection<?>) q.execute("xyz" + min);
+					assertEquals(1, c.size());
+					q.closeAll();
+				}
+
+				//extent
+				Extent<TestClass> ext = pm.getExtent(TestClass.class);
+				int n = 0;
+				for (TestClass tc: ext) {
+					checkObject(tc, tc.getInt());
+					n++;
+				}
+				ext.closeAll();
+				assertEquals(N, n);
+			}
+		});
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testModifyAfterConcurrentReads() throws InterruptedException {
+		pm.currentTransaction().begin();
+		runConcurrently(new Task() {
+			@Override
+			public void run(int threadId) {
+				for (int i = threadId; i < N; i += N_THREADS) {
+					checkObject((TestClass) pm.getObjectById(oids.get(i)), i);
+				}
+			}
+		});
+
+		//modifications are still possible
+		TestClass tc = (TestClass) pm.getObjectById(oids.get(5));
+		tc.setInt(-5);
+		TestClass tcNew = new TestClass();
+		tcNew.setInt(-6);
+		tc.setRef2(tcNew);
+		//the query has to make the new object persistent first
+		Query q = pm.newQuery(TestClass.class, "_int == -6");
+		assertEquals(1, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+		assertTrue(JDOHelper.isPersistent(tcNew));
+		pm.currentTransaction().commit();
+
+		pm.currentTransaction().begin();
+		pm.evictAll();
+		tc = (TestClass) pm.getObjectById(oids.get(5));
+		assertEquals(-5, tc.getInt());
+		assertEquals(-6, tc.getRef2().getInt());
+		q = pm.newQuery(TestClass.class, "_int == -5");
+		assertEquals(1, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testReaderPool() throws InterruptedException {
+		//reopen the database to read the index pages from disk
+		pm.close();
+		pmf.close();
+		ZooJdoProperties props = new ZooJdoProperties(TestTools.getDbName());
+		props.setZooConcurrentReads(true);
+		props.setZooReaderPoolSize(2);
+		pmf = JDOHelper.getPersistenceManagerFactory(props);
+		pm = pmf.getPersistenceManager();
+
+		pm.currentTransaction().begin();
+		runConcurrently(new Task() {
+			@Override
+			public void run(int threadId) {
+				for (int i = threadId; i < N; i += N_THREADS) {
+					checkObject((TestClass) pm.getObjectById(oids.get(i)), i);
+				}
+				Query q = pm.newQuery(TestClass.class, "_int >= :min && _int < :max");
+				Collection<?> c = (Collection<?>) q.execute(threadId * 100, threadId * 100 + 50);
+				assertEquals(50, c.size());
+				q.closeAll();
+			}
+		});
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		assertTrue(stats.getStat(STATS.IO_READER_POOL_SIZE) >= 1);
+		assertTrue(stats.getStat(STATS.IO_READER_POOL_SIZE) <= 2);
+		assertTrue(stats.getStat(STATS.IO_READER_POOL_PEAK) >= 1);
+		assertTrue(stats.getStat(STATS.IO_READER_POOL_PEAK) <= 2);
+		assertEquals(0, stats.getStat(STATS.IO_READER_POOL_IN_USE));
+		assertTrue(stats.getStat(STATS.IO_READER_POOL_WAIT_NS) >= 0);
+		pm.currentTransaction().rollback();
+	}
+
+}
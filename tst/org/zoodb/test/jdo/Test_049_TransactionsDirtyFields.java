@@ -0,0 +1,408 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.api.impl.ZooPC;
+import org.zoodb.internal.server.DiskAccessOneFile;
+import org.zoodb.internal.server.DiskIO;
+import org.zoodb.internal.server.SessionFactory;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+import org.zoodb.tools.ZooCheckDb;
+import org.zoodb.tools.ZooQuery;
+
+public class Test_049_TransactionsDirtyFields {
+
+	private static final int N = 1000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+		DBStatistics.enable(true);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+		DBStatistics.enable(false);
+		DiskAccessOneFile.allowReadConcurrency(false);
+	}
+
+	private static PersistenceManager openPM(boolean track) {
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooAutoCreateSchema(false);
+		props.setZooTrackDirtyFields(track);
+		return TestTools.openPM(props);
+	}
+
+	private static ArrayList<Object> createObjects(PersistenceManager pm) {
+		ArrayList<Object> oids = new ArrayList<>();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setData(i, false, 'c', (byte)127, (short)32000, 1234567890L, "xyz" + i,
+					new byte[]{1,2,3}, -1.1f, 35);
+			pm.makePersistent(tc);
+			oids.add(pm.getObjectId(tc));
+		}
+		pm.currentTransaction().commit();
+		return oids;
+	}
+
+	/**
+	 * @return the number of pages written when setting all _long fields to their current value.
+	 */
+	private static long updateUnchanged(boolean track) {
+		PersistenceManager pm = openPM(track);
+		createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		long w0 = stats.getStoragePageWriteCount();
+		pm.currentTransaction().begin();
+		for (Object o: pm.getExtent(TestClass.class)) {
+			TestClass tc = (TestClass) o;
+			tc.setLong(tc.getLong());
+			assertTrue(JDOHelper.isDirty(tc));
+		}
+		pm.currentTransaction().commit();
+		long nPages = stats.getStoragePageWriteCount() - w0;
+		assertEquals(track ? N : 0, stats.getStat(STATS.TX_OBJ_WRITE_SKIPPED_CNT));
+		TestTools.closePM();
+		return nPages;
+	}
+
+	@Test
+	public void testUnchangedObjectsAreNotWritten() {
+		long nPagesOff = updateUnchanged(false);
+		before();
+		long nPagesOn = updateUnchanged(true);
+		assertTrue(nPagesOff + " / " + nPagesOn, nPagesOn * 2 < nPagesOff);
+	}
+
+	@Test
+	public void testChangedObjectsAreWritten() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			if (i % 2 == 0) {
+				tc.setLong(i);
+				BitSet dirty = ((ZooPC) tc).jdoZooGetDirtyFields();
+				assertEquals(1, dirty.cardinality());
+			} else {
+				//change and revert
+				long l = tc.getLong();
+				tc.setLong(l + 1);
+				tc.setLong(l);
+				assertTrue(((ZooPC) tc).jdoZooGetDirtyFields().isEmpty());
+			}
+		}
+		pm.currentTransaction().commit();
+		assertEquals(N/2, stats.getStat(STATS.TX_OBJ_WRITE_SKIPPED_CNT));
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			assertEquals(i % 2 == 0 ? i : 1234567890L, tc.getLong());
+		}
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testArrayModifiedInPlace() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+
+		pm.currentTransaction().begin();
+		TestClass tc = (TestClass) pm.getObjectById(oids.get(0));
+		tc.setLong(tc.getLong());
+		tc.getBytaArray()[1] = 42;
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		tc = (TestClass) pm.getObjectById(oids.get(0));
+		assertEquals(42, tc.getBytaArray()[1]);
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testMakeDirtyIsAlwaysWritten() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+
+		pm.currentTransaction().begin();
+		TestClass tc1 = (TestClass) pm.getObjectById(oids.get(0));
+		tc1.setLong(tc1.getLong());
+		JDOHelper.makeDirty(tc1, "_long");
+		assertNull(((ZooPC) tc1).jdoZooGetDirtyFields());
+		TestClass tc2 = (TestClass) pm.getObjectById(oids.get(1));
+		JDOHelper.makeDirty(tc2, "_long");
+		assertNull(((ZooPC) tc2).jdoZooGetDirtyFields());
+		pm.currentTransaction().commit();
+		assertEquals(0, stats.getStat(STATS.TX_OBJ_WRITE_SKIPPED_CNT));
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testIndexUnchanged() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			tc.setInt(i + N);
+			tc.setInt(i);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		Query q = pm.newQuery(TestClass.class, "_int >= " + (N/2));
+		assertEquals(N/2, ((Collection<?>) q.execute()).size());
+		q = pm.newQuery(TestClass.class, "_int >= " + N);
+		assertEquals(0, ((Collection<?>) q.execute()).size());
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testFixedSizeChangesAreWrittenAsDelta() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+
+		for (int r = 1; r <= 3; r++) {
+			pm.currentTransaction().begin();
+			for (int i = 0; i < N; i++) {
+				TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+				tc.setLong(tc.getLong() + 1);
+			}
+			pm.currentTransaction().commit();
+			assertEquals(r * N, stats.getStat(STATS.TX_OBJ_WRITE_DELTA_CNT));
+		}
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			assertEquals(1234567890L + 3, tc.getLong());
+			assertEquals("xyz" + i, tc.getString());
+			assertEquals(3, tc.getBytaArray()[2]);
+		}
+		assertEquals(N, countExtent(pm));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		checkDb();
+	}
+
+	/**
+	 * Files without the delta flag in the header, such as files of version 1.5, must not 
+	 * get delta records.
+	 */
+	@Test
+	public void testNoDeltaWithoutHeaderFlag() throws IOException {
+		assertTrue(SessionFactory.readHeader(Paths.get(TestTools.getDbFileName()))
+				.hasDeltaRecords());
+		//file ID, version, page size and root pages come before the flags
+		try (RandomAccessFile raf = new RandomAccessFile(TestTools.getDbFileName(), "rw")) {
+			raf.seek(24);
+			int flags = raf.readInt();
+			raf.seek(24);
+			raf.writeInt(flags & ~DiskIO.DB_FLAG_DELTA_RECORDS);
+		}
+		assertFalse(SessionFactory.readHeader(Paths.get(TestTools.getDbFileName()))
+				.hasDeltaRecords());
+
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			tc.setLong(tc.getLong() + 1);
+		}
+		pm.currentTransaction().commit();
+		assertEquals(0, stats.getStat(STATS.TX_OBJ_WRITE_DELTA_CNT));
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			assertEquals(1234567890L + 1, tc.getLong());
+		}
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		checkDb();
+	}
+
+	@Test
+	public void testDeltaAndFullWrites() {
+		PersistenceManager pm = openPM(true);
+		ArrayList<Object> oids = createObjects(pm);
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+
+		//delta records, including the indexed field and references
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			tc.setInt(i + N);
+			if (i % 3 == 0) {
+				tc.setRef2((TestClass) pm.getObjectById(oids.get((i + 1) % N)));
+			}
+		}
+		pm.currentTransaction().commit();
+		assertEquals(N, stats.getStat(STATS.TX_OBJ_WRITE_DELTA_CNT));
+
+		//full records for changed Strings, delta on delta for the others
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			if (i % 2 == 0) {
+				tc.setString("abc" + i);
+			} else {
+				tc.setLong(i);
+			}
+		}
+		pm.currentTransaction().commit();
+		assertEquals(N + N/2, stats.getStat(STATS.TX_OBJ_WRITE_DELTA_CNT));
+
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			tc.setLong(-i);
+		}
+		pm.currentTransaction().commit();
+
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i += 4) {
+			pm.deletePersistent(pm.getObjectById(oids.get(i)));
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			if (i % 4 == 0) {
+				continue;
+			}
+			TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+			assertEquals(i + N, tc.getInt());
+			assertEquals(-i, tc.getLong());
+			assertEquals((i % 2 == 0 ? "abc" : "xyz") + i, tc.getString());
+			assertEquals(3, tc.getBytaArray()[2]);
+			if (i % 3 == 0) {
+				assertEquals(oids.get((i + 1) % N), pm.getObjectId(tc.getRef2()));
+			} else {
+				assertNull(tc.getRef2());
+			}
+		}
+		Query q = pm.newQuery(TestClass.class, "_int >= " + N);
+		assertEquals(N - N/4, ((Collection<?>) q.execute()).size());
+		assertEquals(N - N/4, countExtent(pm));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		checkDb();
+	}
+
+	private static int countExtent(PersistenceManager pm) {
+		int n = 0;
+		for (Object o: pm.getExtent(TestClass.class)) {
+			assertTrue(o instanceof TestClass);
+			n++;
+		}
+		return n;
+	}
+
+	private static void checkDb() {
+		ZooQuery.resetStringOutput();
+		ZooCheckDb.enableStringOutput();
+		ZooCheckDb.main(TestTools.getDbName());
+		String out = ZooQuery.getStringOutput();
+		assertTrue(out, out.contains("Checking database done."));
+		assertFalse(out, out.contains("ERROR"));
+	}
+
+	/**
+	 * Skipped objects are not checked for conflicts, they have not been changed.
+	 */
+	@Test
+	public void testNoConflictForUnchangedObjects() {
+		DiskAccessOneFile.allowReadConcurrency(true);
+		PersistenceManager pm1 = openPM(true);
+		ArrayList<Object> oids = createObjects(pm1);
+		PersistenceManager pm2 = pm1.getPersistenceManagerFactory().getPersistenceManager();
+
+		pm1.currentTransaction().begin();
+		pm2.currentTransaction().begin();
+		TestClass tc1 = (TestClass) pm1.getObjectById(oids.get(0));
+		tc1.setLong(tc1.getLong());
+
+		TestClass tc2 = (TestClass) pm2.getObjectById(oids.get(0));
+		tc2.setString("pm2");
+		pm2.currentTransaction().commit();
+
+		pm1.currentTransaction().commit();
+		pm2.close();
+
+		pm1.currentTransaction().begin();
+		tc1 = (TestClass) pm1.getObjectById(oids.get(0));
+		pm1.refresh(tc1);
+		assertEquals("pm2", tc1.getString());
+		pm1.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+}
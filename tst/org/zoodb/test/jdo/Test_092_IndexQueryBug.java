@@ -15,12 +15,19 @@
  */
 package org.zoodb.test.jdo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+
 import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
 
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.zoodb.jdo.impl.QueryImpl;
 import org.zoodb.test.testutil.TestTools;
 
 /**
@@ -80,4 +87,46 @@ public class Test_092_IndexQueryBug {
 		TestTools.closePM();
 	}
 
+	/**
+	 * The index of a field also contains instances of the super-class. These must not be
+	 * returned by queries on the sub-class.
+	 */
+	@Test
+	public void testSubClassWithIndexOfSuperClass() {
+		TestTools.defineIndex(TestClass.class, "_int", false);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		pm.newQuery(TestClass.class).deletePersistentAll();
+		for (int i = 0; i < 100; i++) {
+			TestClass tc = i % 4 == 0 ? new TestQueryClass() : new TestClass();
+			tc.setInt(i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		pm.currentTransaction().begin();
+
+		checkSubClass(pm);
+		boolean q4 = QueryImpl.ENFORCE_QUERY_V4;
+		try {
+			QueryImpl.ENFORCE_QUERY_V4 = true;
+			checkSubClass(pm);
+		} finally {
+			QueryImpl.ENFORCE_QUERY_V4 = q4;
+		}
+
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		TestTools.removeIndex(TestClass.class, "_int");
+	}
+
+	private static void checkSubClass(PersistenceManager pm) {
+		Query q = pm.newQuery(TestQueryClass.class, "_int < 50");
+		Collection<?> c = (Collection<?>) q.execute();
+		for (Object o: c) {
+			assertTrue(o instanceof TestQueryClass);
+		}
+		assertEquals(13, c.size());
+		q.closeAll();
+	}
+
 }
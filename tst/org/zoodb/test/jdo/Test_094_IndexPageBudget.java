@@ -0,0 +1,173 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+import javax.jdo.Extent;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.Session;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+
+public class Test_094_IndexPageBudget {
+
+	private static final int N = 20000;
+	private static final int BUDGET = 20;
+
+	private PersistenceManager pm;
+	private ArrayList<Object> oids;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", false);
+		TestTools.defineIndex(TestClass.class, "_long", true);
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooIndexPageBudget(BUDGET);
+		pm = TestTools.openPM(props);
+
+		oids = new ArrayList<>();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			tc.setLong(i);
+			pm.makePersistent(tc);
+			oids.add(pm.getObjectId(tc));
+		}
+		pm.currentTransaction().commit();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+	}
+
+	private void checkStats() {
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		long nResident = stats.getStat(STATS.IO_INDEX_PAGE_RESIDENT_CNT);
+		assertTrue("" + nResident, nResident <= BUDGET);
+		assertTrue(stats.getStat(STATS.IO_INDEX_PAGE_EVICTED_CNT) > 0);
+	}
+
+	private void checkQuery(String filter, int expected) {
+		Query q = pm.newQuery(TestClass.class, filter);
+		assertEquals(filter, expected, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+	}
+
+	private void checkDb() {
+		Session s = (Session) pm.getDataStoreConnection().getNativeConnection();
+		String report = s.getPrimaryNode().checkDb();
+		assertFalse(report, report.contains("ERROR"));
+	}
+
+	@Test
+	public void testRead() {
+		TestTools.closePM();
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooIndexPageBudget(BUDGET);
+		pm = TestTools.openPM(props);
+
+		pm.currentTransaction().begin();
+		Random rnd = new Random(0);
+		for (int i = 0; i < 2000; i++) {
+			int pos = rnd.nextInt(N);
+			assertEquals(pos, ((TestClass) pm.getObjectById(oids.get(pos))).getInt());
+		}
+		for (int i = 0; i < 10; i++) {
+			int min = rnd.nextInt(N - 100);
+			checkQuery("_int >= " + min + " && _int < " + (min + 100), 100);
+			checkQuery("_long == " + min, 1);
+		}
+
+		int n = 0;
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		for (TestClass tc: ext) {
+			assertEquals(n++, tc.getInt());
+		}
+		ext.closeAll();
+		assertEquals(N, n);
+		checkStats();
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdates() {
+		for (int tx = 0; tx < 5; tx++) {
+			pm.currentTransaction().begin();
+			for (int i = tx; i < N; i += 5) {
+				TestClass tc = (TestClass) pm.getObjectById(oids.get(i));
+				if (i % 3 == 0) {
+					pm.deletePersistent(tc);
+				} else {
+					tc.setInt(tc.getInt() + N);
+				}
+			}
+			for (int i = 0; i < 1000; i++) {
+				TestClass tc = new TestClass();
+				tc.setInt(10 * N + tx * 1000 + i);
+				tc.setLong(10 * N + tx * 1000 + i);
+				pm.makePersistent(tc);
+			}
+			pm.currentTransaction().commit();
+		}
+
+		int nDeleted = (N + 2) / 3;
+		pm.currentTransaction().begin();
+		checkQuery("_int >= " + N + " && _int < " + (10 * N), N - nDeleted);
+		checkQuery("_int >= " + (10 * N), 5000);
+		checkQuery("_int < " + N, 0);
+		checkQuery("_long >= " + (10 * N), 5000);
+		checkQuery("_long < " + N, N - nDeleted);
+		checkStats();
+		checkDb();
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testRollback() {
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i += 2) {
+			pm.deletePersistent(pm.getObjectById(oids.get(i)));
+		}
+		pm.currentTransaction().rollback();
+
+		pm.currentTransaction().begin();
+		checkQuery("_int >= 0", N);
+		checkQuery("_long >= " + (N - 10), 10);
+		checkStats();
+		pm.currentTransaction().rollback();
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+
+import javax.jdo.JDOHelper;
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.api.ZooConstants;
+import org.zoodb.internal.SessionConfig.CLUSTERING_MODE;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+import org.zoodb.tools.DBStatistics.STATS;
+
+public class Test_102_Clustering {
+
+	/** Depth of the binary tree. */
+	private static final int DEPTH = 12;
+	/** Depth of the sub-tree that is traversed. */
+	private static final int SUB_DEPTH = 6;
+	private static final int N = (1 << DEPTH) - 1;
+	private static final int N_SUB = (1 << SUB_DEPTH) - 1;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		TestTools.defineIndex(TestClass.class, "_int", true);
+		DBStatistics.enable(true);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		TestTools.removeDb();
+		DBStatistics.enable(false);
+	}
+
+	private static PersistenceManager openPM(CLUSTERING_MODE mode) {
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooAutoCreateSchema(false);
+		props.setZooClustering(mode);
+		return TestTools.openPM(props);
+	}
+
+	/**
+	 * Creates a binary tree (left child in _ref1, right child in _ref2). The nodes are made
+	 * persistent in random order and have random _int values.
+	 * @return _int of the root
+	 */
+	private static int createTree(PersistenceManager pm) {
+		ArrayList<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			ids.add(i);
+		}
+		Collections.shuffle(ids, new Random(0));
+
+		//nodes[i] has children nodes[2i+1] and nodes[2i+2]
+		TestClass[] nodes = new TestClass[N];
+		for (int i = 0; i < N; i++) {
+			nodes[i] = new TestClass();
+			nodes[i].setData(ids.get(i), false, 'c', (byte)127, (short)32000, 1234567890L,
+					"node" + i, new byte[]{1,2,3}, -1.1f, 35);
+		}
+		for (int i = 0; 2*i+2 < N; i++) {
+			nodes[i].setRef1(nodes[2*i+1]);
+			nodes[i].setRef2(nodes[2*i+2]);
+		}
+
+		ArrayList<TestClass> shuffled = new ArrayList<>();
+		Collections.addAll(shuffled, nodes);
+		Collections.shuffle(shuffled, new Random(1));
+		pm.currentTransaction().begin();
+		for (TestClass tc: shuffled) {
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		return ids.get(0);
+	}
+
+	private static TestClass getByInt(PersistenceManager pm, int i) {
+		Query q = pm.newQuery(TestClass.class, "_int == " + i);
+		q.setUnique(true);
+		return (TestClass) q.execute();
+	}
+
+	private static int traverse(TestClass node) {
+		if (node == null) {
+			return 0;
+		}
+		//touch the node to load it
+		node.getInt();
+		return 1 + traverse((TestClass) node.getRef1()) + traverse(node.getRef2());
+	}
+
+	/**
+	 * @return the number of data pages that were read while traversing a sub-tree.
+	 */
+	private static long readSubTree(int rootId) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClass node = getByInt(pm, rootId);
+		for (int i = 0; i < DEPTH - SUB_DEPTH; i++) {
+			node = (TestClass) node.getRef1();
+		}
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		//reset counter
+		stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		assertEquals(N_SUB, traverse(node));
+		long nPages = stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+
+		//check the whole tree
+		assertEquals(N, traverse(getByInt(pm, rootId)));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		return nPages;
+	}
+
+	private static long readByInt(int max) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		DBStatistics stats = ZooJdoHelper.getStatistics(pm);
+		//reset counter
+		stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		Query q = pm.newQuery(TestClass.class, "_int < " + max);
+		Collection<?> c = (Collection<?>) q.execute();
+		int n = 0;
+		for (Object o: c) {
+			((TestClass) o).getString();
+			n++;
+		}
+		assertEquals(max, n);
+		long nPages = stats.getStat(STATS.IO_DATA_PAGE_READ_CNT_UNQ);
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+		return nPages;
+	}
+
+	private long createAndReadSubTree(CLUSTERING_MODE mode) {
+		PersistenceManager pm = openPM(mode);
+		int rootId = createTree(pm);
+		TestTools.closePM();
+		return readSubTree(rootId);
+	}
+
+	@Test
+	public void testReferenceClustering() {
+		long nPagesNone = createAndReadSubTree(CLUSTERING_MODE.NONE);
+		before();
+		long nPagesRef = createAndReadSubTree(CLUSTERING_MODE.REFERENCE);
+		assertTrue(nPagesNone + " / " + nPagesRef, nPagesRef * 4 < nPagesNone);
+	}
+
+	@Test
+	public void testFieldClustering() {
+		PersistenceManager pm = openPM(CLUSTERING_MODE.NONE);
+		createTree(pm);
+		TestTools.closePM();
+		long nPagesNone = readByInt(N_SUB);
+
+		before();
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooAutoCreateSchema(false);
+		props.setZooClusteringField("_int");
+		pm = TestTools.openPM(props);
+		createTree(pm);
+		TestTools.closePM();
+		long nPagesField = readByInt(N_SUB);
+
+		assertTrue(nPagesNone + " / " + nPagesField, nPagesField * 4 < nPagesNone);
+	}
+
+	@Test
+	public void testOidClustering() {
+		PersistenceManager pm = openPM(CLUSTERING_MODE.OID);
+		int rootId = createTree(pm);
+
+		//update and delete with clustering
+		pm.currentTransaction().begin();
+		TestClass root = getByInt(pm, rootId);
+		root.setString("root");
+		((TestClass) root.getRef1()).setLong(12345);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		root = getByInt(pm, rootId);
+		assertEquals("root", root.getString());
+		assertEquals(12345, ((TestClass) root.getRef1()).getLong());
+		assertEquals(N, traverse(root));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+	}
+
+	@Test
+	public void testInvalidMode() {
+		ZooJdoProperties props = TestTools.getProps();
+		props.put(ZooConstants.PROPERTY_CLUSTERING, "BY_COLOR");
+		try {
+			JDOHelper.getPersistenceManagerFactory(props);
+			fail();
+		} catch (JDOUserException e) {
+			//good
+		}
+	}
+}
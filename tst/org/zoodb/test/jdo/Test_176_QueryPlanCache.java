@@ -0,0 +1,221 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.internal.server.DiskAccessOneFile;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_176_QueryPlanCache {
+
+	private static final int N = 100;
+
+	private PersistenceManager pm1;
+	private PersistenceManager pm2;
+
+	@Before
+	public void before() {
+		DiskAccessOneFile.allowReadConcurrency(true);
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		DBStatistics.enable(true);
+	}
+
+	private void open() {
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooQueryPlanCacheSize(10);
+		pm1 = TestTools.openPM(props);
+		pm2 = pm1.getPersistenceManagerFactory().getPersistenceManager();
+
+		pm1.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			tc.setLong(i);
+			pm1.makePersistent(tc);
+		}
+		pm1.currentTransaction().commit();
+		pm1.currentTransaction().begin();
+		pm2.currentTransaction().begin();
+	}
+
+	@After
+	public void after() {
+		if (pm1 != null) {
+			//sessions with active transactions block each other when closing
+			pm1.currentTransaction().rollback();
+			pm2.currentTransaction().rollback();
+			TestTools.closePM(pm2);
+			TestTools.closePM();
+		}
+		DBStatistics.enable(false);
+		DiskAccessOneFile.allowReadConcurrency(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static int count(PersistenceManager pm, String filter, Object ... params) {
+		Query q = pm.newQuery(TestClass.class, filter);
+		int n = ((Collection<?>) q.executeWithArray(params)).size();
+		q.closeAll();
+		return n;
+	}
+
+	private static long hits(PersistenceManager pm) {
+		return ZooJdoHelper.getStatistics(pm).getQueryPlanCacheHitCount();
+	}
+
+	private static long noIndex(PersistenceManager pm) {
+		return ZooJdoHelper.getStatistics(pm).getQueryExecutionWithoutIndexCount();
+	}
+
+	@Test
+	public void testSharedBetweenSessions() {
+		open();
+		assertEquals(10, count(pm1, "_int < :x", 10));
+		assertEquals(0, hits(pm1));
+		assertEquals(20, count(pm1, "_int < :x", 20));
+		assertEquals(1, hits(pm1));
+
+		assertEquals(30, count(pm2, "_int < :x", 30));
+		assertEquals(1, hits(pm2));
+		assertEquals(N - 5, count(pm2, "_int >= :x", 5));
+		assertEquals(1, hits(pm2));
+
+		//compilation is still counted
+		assertEquals(2, ZooJdoHelper.getStatistics(pm1).getQueryCompileCount());
+	}
+
+	@Test
+	public void testDeclaredParameters() {
+		open();
+		Query q = pm1.newQuery(TestClass.class, "_int < x");
+		q.declareParameters("int x");
+		assertEquals(10, ((Collection<?>) q.execute(10)).size());
+		q.closeAll();
+
+		q = pm2.newQuery(TestClass.class, "_int < x");
+		q.declareParameters("int x");
+		assertEquals(20, ((Collection<?>) q.execute(20)).size());
+		q.closeAll();
+		assertEquals(1, hits(pm2));
+
+		//different declaration
+		q = pm2.newQuery(TestClass.class, "_long < x");
+		q.declareParameters("long x");
+		assertEquals(30, ((Collection<?>) q.execute(30L)).size());
+		q.closeAll();
+		assertEquals(1, hits(pm2));
+	}
+
+	@Test
+	public void testOrderingAndRange() {
+		open();
+		Query q = pm1.newQuery(TestClass.class, "_int >= 10");
+		q.setOrdering("_int descending");
+		q.setRange(0, 3);
+		Collection<?> c = (Collection<?>) q.execute();
+		assertEquals(3, c.size());
+		assertEquals(N - 1, ((TestClass) c.iterator().next()).getInt());
+		q.closeAll();
+
+		q = pm2.newQuery(TestClass.class, "_int >= 10");
+		q.setOrdering("_int descending");
+		q.setRange(0, 3);
+		c = (Collection<?>) q.execute();
+		assertEquals(3, c.size());
+		assertEquals(N - 1, ((TestClass) c.iterator().next()).getInt());
+		q.closeAll();
+		assertEquals(1, hits(pm2));
+	}
+
+	@Test
+	public void testV4() {
+		open();
+		assertEquals(10, count(pm1, "_int + 1 <= :x", 10));
+		assertEquals(20, count(pm2, "_int + 1 <= :x", 20));
+		assertEquals(1, hits(pm2));
+
+		//both sessions use their own copy of the plan
+		Query q1 = pm1.newQuery(TestClass.class, "_int + 5 < x");
+		q1.declareParameters("int x");
+		Query q2 = pm2.newQuery(TestClass.class, "_int + 5 < x");
+		q2.declareParameters("int x");
+		Collection<?> c1 = (Collection<?>) q1.execute(10);
+		Collection<?> c2 = (Collection<?>) q2.execute(20);
+		assertEquals(5, c1.size());
+		assertEquals(15, c2.size());
+		q1.closeAll();
+		q2.closeAll();
+		assertEquals(2, hits(pm2));
+	}
+
+	@Test
+	public void testIndex() {
+		TestTools.defineIndex(TestClass.class, "_int", false);
+		open();
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(4, count(pm1, "_int >= :x && _int < :y", 3, 7));
+			assertEquals(1, count(pm2, "_int >= :x && _int < :y", 4, 5));
+		}
+		assertEquals(5, hits(pm1) + hits(pm2));
+		assertEquals(0, noIndex(pm1));
+		assertEquals(0, noIndex(pm2));
+	}
+
+	@Test
+	public void testSchemaChange() {
+		open();
+		assertEquals(10, count(pm1, "_int < 10"));
+		assertEquals(10, count(pm2, "_int < 10"));
+		assertEquals(1, hits(pm2));
+		assertEquals(2, noIndex(pm1) + noIndex(pm2));
+
+		//the plan uses the schema of pm2, not the uncommitted index of pm1
+		ZooJdoHelper.schema(pm1).getClass(TestClass.class).getField("_int").createIndex(false);
+		assertEquals(10, count(pm2, "_int < 10"));
+		assertEquals(2, hits(pm2));
+		assertEquals(3, noIndex(pm1) + noIndex(pm2));
+
+		pm2.currentTransaction().commit();
+		pm1.currentTransaction().commit();
+		pm1.currentTransaction().begin();
+		pm2.currentTransaction().begin();
+		//pm1 uses the new schema version
+		long nNoIndex = noIndex(pm1);
+		assertEquals(10, count(pm1, "_int < 10"));
+		assertEquals(0, hits(pm1));
+		assertEquals(nNoIndex, noIndex(pm1));
+	}
+}
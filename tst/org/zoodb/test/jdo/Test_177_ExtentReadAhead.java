@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import javax.jdo.Extent;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.jdo.ZooJdoProperties;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_177_ExtentReadAhead {
+
+	private static final int N = 20000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		DBStatistics.enable(true);
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			tc.setString("str" + i);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static PersistenceManager openPM(boolean concurrentReads) {
+		ZooJdoProperties props = TestTools.getProps();
+		props.setZooExtentReadAhead(8);
+		props.setZooConcurrentReads(concurrentReads);
+		return TestTools.openPM(props);
+	}
+
+	private static long sum(PersistenceManager pm) {
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		long sum = 0;
+		int n = 0;
+		for (TestClass tc: ext) {
+			assertEquals("str" + tc.getInt(), tc.getString());
+			sum += tc.getInt();
+			n++;
+		}
+		ext.closeAll();
+		assertEquals(N, n);
+		return sum;
+	}
+
+	private static long expectedSum(int delta) {
+		return (long)N * (N - 1) / 2 + (long)N * delta;
+	}
+
+	@Test
+	public void testExtent() {
+		PersistenceManager pm = openPM(false);
+		pm.currentTransaction().begin();
+		assertEquals(expectedSum(0), sum(pm));
+		assertTrue(ZooJdoHelper.getStatistics(pm).getStoragePagePrefetchCount() > 0);
+		assertTrue(ZooJdoHelper.getStatistics(pm).getStoragePagePrefetchHitCount() > 0);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testExtentConcurrentReads() {
+		PersistenceManager pm = openPM(true);
+		pm.currentTransaction().begin();
+		assertEquals(expectedSum(0), sum(pm));
+		assertTrue(ZooJdoHelper.getStatistics(pm).getStoragePagePrefetchHitCount() > 0);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testQuery() {
+		PersistenceManager pm = openPM(false);
+		pm.currentTransaction().begin();
+		Query q = pm.newQuery(TestClass.class, "_int >= 100 && _int < 200");
+		assertEquals(100, ((Collection<?>) q.execute()).size());
+		q.closeAll();
+		pm.currentTransaction().rollback();
+	}
+
+	/**
+	 * Pages that were read ahead but not used must not be used after they have been written.
+	 */
+	@Test
+	public void testUpdateAfterEarlyClose() {
+		PersistenceManager pm = openPM(false);
+		pm.currentTransaction().begin();
+		Extent<TestClass> ext = pm.getExtent(TestClass.class);
+		Iterator<TestClass> it = ext.iterator();
+		for (int i = 0; i < 10; i++) {
+			it.next().setInt(-1);
+		}
+		ext.closeAll();
+
+		//modify all objects
+		for (TestClass tc: pm.getExtent(TestClass.class)) {
+			tc.setInt(tc.getInt() < 0 ? -1 : tc.getInt() + 1);
+			tc.setString("str" + tc.getInt());
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = openPM(false);
+		pm.currentTransaction().begin();
+		Extent<TestClass> ext2 = pm.getExtent(TestClass.class);
+		int nNeg = 0;
+		for (TestClass tc: ext2) {
+			assertEquals("str" + tc.getInt(), tc.getString());
+			if (tc.getInt() < 0) {
+				nNeg++;
+			}
+		}
+		ext2.closeAll();
+		assertEquals(10, nNeg);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateWhileIterating() {
+		PersistenceManager pm = openPM(false);
+		pm.currentTransaction().begin();
+		assertEquals(expectedSum(0), sum(pm));
+		for (TestClass tc: pm.getExtent(TestClass.class)) {
+			tc.setInt(tc.getInt() + 1);
+			tc.setString("str" + tc.getInt());
+		}
+		pm.currentTransaction().commit();
+
+		for (int i = 1; i <= 3; i++) {
+			//read the objects from disk
+			TestTools.closePM();
+			pm = openPM(false);
+			pm.currentTransaction().begin();
+			assertEquals(expectedSum(i), sum(pm));
+			for (TestClass tc: pm.getExtent(TestClass.class)) {
+				tc.setInt(tc.getInt() + 1);
+				tc.setString("str" + tc.getInt());
+			}
+			pm.currentTransaction().commit();
+		}
+	}
+}
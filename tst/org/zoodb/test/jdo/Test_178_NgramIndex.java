@@ -0,0 +1,228 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.zoodb.test.testutil.TestTools.checkQuery;
+
+import java.util.function.Predicate;
+
+import javax.jdo.PersistenceManager;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooField;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_178_NgramIndex {
+
+	private static final int N = 1000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class);
+		DBStatistics.enable(true);
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = new TestClass();
+			tc.setInt(i);
+			tc.setString(str(i));
+			pm.makePersistent(tc);
+		}
+		pm.makePersistent(new TestClass());
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static String str(int i) {
+		return "Name-" + i + "-" + (char)('a' + i % 26);
+	}
+
+	private static void createNgramIndex() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		field(pm).createNgramIndex();
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static ZooField field(PersistenceManager pm) {
+		return ZooJdoHelper.schema(pm).getClass(TestClass.class).getField("_string");
+	}
+
+	private static void check(PersistenceManager pm, String filter, boolean useIndex,
+			Predicate<String> expected, Object ... params) {
+		checkQuery(pm, TestClass.class, filter, useIndex,
+				t -> t.getString() != null && expected.test(t.getString()), params);
+	}
+
+	private static void checkAll(PersistenceManager pm, boolean hasNormalIndex) {
+		check(pm, "_string.contains('-12')", true, s -> s.contains("-12"));
+		check(pm, "_string.contains('e-5')", true, s -> s.contains("e-5"));
+		check(pm, "_string.contains('-1') && _int < 500", true,
+				s -> s.contains("-1") && Integer.parseInt(s.split("-")[1]) < 500);
+		check(pm, "_string.startsWith('Name-99')", true, s -> s.startsWith("Name-99"));
+		check(pm, "_string.startsWith('N')", true, s -> s.startsWith("N"));
+		check(pm, "_string.endsWith('7-h')", true, s -> s.endsWith("7-h"));
+		check(pm, "_string.endsWith('q')", true, s -> s.endsWith("q"));
+		check(pm, "_string.matches('Name-1.*3-.')", true, s -> s.matches("Name-1.*3-."));
+		check(pm, "_string.matches('.*55?-z')", true, s -> s.matches(".*55?-z"));
+		check(pm, "_string.startsWith('Name-1') || _string.endsWith('0-m')", true,
+				s -> s.startsWith("Name-1") || s.endsWith("0-m"));
+		check(pm, "_string.contains('x-y')", true, s -> s.contains("x-y"));
+		check(pm, "_string.startsWith(:p)", true, s -> s.startsWith("Name-4"), "Name-4");
+		check(pm, "_string.startsWith(:p)", true, s -> s.startsWith("Name-2"), "Name-2");
+		//too short or not supported
+		check(pm, "_string.contains('5')", false, s -> s.contains("5"));
+		//a normal index can be used for the prefix 
+		check(pm, "_string.matches('Name-[0-9]*-c')", hasNormalIndex, 
+				s -> s.matches("Name-[0-9]*-c"));
+	}
+
+	@Test
+	public void testQueries() {
+		createNgramIndex();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(field(pm).hasNgramIndex());
+		assertFalse(field(pm).hasIndex());
+		checkAll(pm, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testWithNormalIndex() {
+		TestTools.defineIndex(TestClass.class, "_string", false);
+		createNgramIndex();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(field(pm).hasNgramIndex());
+		assertTrue(field(pm).hasIndex());
+		checkAll(pm, true);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		createNgramIndex();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (TestClass tc: pm.getExtent(TestClass.class)) {
+			if (tc.getInt() % 3 == 0) {
+				tc.setString(tc.getString() == null ? "new" : tc.getString().toUpperCase());
+			} else if (tc.getInt() % 3 == 1) {
+				pm.deletePersistent(tc);
+			}
+		}
+		TestClass tc = new TestClass();
+		tc.setString("Name-12-xyz");
+		pm.makePersistent(tc);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm, false);
+		check(pm, "_string.startsWith('NAME-')", true, s -> s.startsWith("NAME-"));
+		check(pm, "_string.matches('new')", true, s -> s.equals("new"));
+		//set values back
+		for (TestClass tc2: pm.getExtent(TestClass.class)) {
+			if (tc2.getString() != null) {
+				tc2.setString(tc2.getString().replace("NAME", "Name"));
+			}
+		}
+		pm.currentTransaction().commit();
+		pm.currentTransaction().begin();
+		check(pm, "_string.startsWith('NAME-')", true, s -> s.startsWith("NAME-"));
+		checkAll(pm, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testRemoveIndex() {
+		//an index that is rolled back does not exist
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		field(pm).createNgramIndex();
+		assertTrue(field(pm).hasNgramIndex());
+		pm.currentTransaction().rollback();
+		pm.currentTransaction().begin();
+		assertFalse(field(pm).hasNgramIndex());
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		createNgramIndex();
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(field(pm).removeNgramIndex());
+		assertFalse(field(pm).hasNgramIndex());
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertFalse(field(pm).hasNgramIndex());
+		check(pm, "_string.contains('-12')", false, s -> s.contains("-12"));
+		pm.currentTransaction().rollback();
+	}
+
+	/**
+	 * The index of a super-class also contains instances of the super-class.
+	 */
+	@Test
+	public void testSubClass() {
+		TestTools.defineSchema(TestQueryClass.class);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i += 10) {
+			TestQueryClass tc = new TestQueryClass();
+			tc.setInt(i);
+			tc.setString(str(i));
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+		createNgramIndex();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkQuery(pm, TestQueryClass.class, "_string.startsWith('Name-1')", true,
+				t -> t.getString().startsWith("Name-1"));
+		//the super-class has both
+		check(pm, "_string.contains('-12')", true, s -> s.contains("-12"));
+		pm.currentTransaction().rollback();
+	}
+}
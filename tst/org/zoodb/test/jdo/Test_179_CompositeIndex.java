@@ -0,0 +1,236 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.zoodb.test.testutil.TestTools.checkQuery;
+
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_179_CompositeIndex {
+
+	private static final int N = 1000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class, TestQueryClass.class);
+		DBStatistics.enable(true);
+
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = i % 4 == 0 ? new TestQueryClass() : new TestClass();
+			tc.setInt(i % 10);
+			tc.setLong(i);
+			tc.setString("s" + (i % 7));
+			tc.setShort((short) (i % 5));
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static void createCompositeIndex(String ... fieldNames) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createCompositeIndex(fieldNames);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static ZooClass cls(PersistenceManager pm) {
+		return ZooJdoHelper.schema(pm).getClass(TestClass.class);
+	}
+
+
+
+	private static void checkAll(PersistenceManager pm, boolean hasNormalIndex) {
+		checkQuery(pm, TestClass.class, "_int == 3 && _long > 500", true,
+				t -> t.getInt() == 3 && t.getLong() > 500);
+		checkQuery(pm, TestClass.class, "_long <= 500 && _int == 3", true,
+				t -> t.getInt() == 3 && t.getLong() <= 500);
+		checkQuery(pm, TestClass.class, "_int == 3 && _long == 503", true,
+				t -> t.getInt() == 3 && t.getLong() == 503);
+		checkQuery(pm, TestClass.class, "_int == 3 && _long == 504", true,
+				t -> t.getInt() == 3 && t.getLong() == 504);
+		checkQuery(pm, TestClass.class,
+				"_int == 3 && _long > 200 && _long < 300 && _short == 2", true,
+				t -> t.getInt() == 3 && t.getLong() > 200 && t.getLong() < 300
+				&& t.getShort() == 2);
+		checkQuery(pm, TestClass.class, "_int == :p1 && _long >= :p2", true,
+				t -> t.getInt() == 5 && t.getLong() >= 900, 5, 900L);
+		checkQuery(pm, TestClass.class, "_int == :p1 && _long >= :p2", true,
+				t -> t.getInt() == 7 && t.getLong() >= 100, 7, 100L);
+		checkQuery(pm, TestClass.class, "_int == 3", true, t -> t.getInt() == 3);
+		checkQuery(pm, TestClass.class, "_int == 3 && _long > 500", true,
+				t -> t.getInt() == 3 && t.getLong() > 500);
+		checkQuery(pm, TestClass.class, "_string == 's3' && _short == 4 && _int < 5", true,
+				t -> "s3".equals(t.getString()) && t.getShort() == 4 && t.getInt() < 5);
+		checkQuery(pm, TestQueryClass.class, "_int == 4 && _long > 500", true,
+				t -> t.getInt() == 4 && t.getLong() > 500);
+		//not supported by composite indexes
+		checkQuery(pm, TestClass.class, "_long > 500", false, t -> t.getLong() > 500);
+		//a normal index on _int can be used
+		checkQuery(pm, TestClass.class, "_int > 3 && _long == 505", hasNormalIndex,
+				t -> t.getInt() > 3 && t.getLong() == 505);
+		checkQuery(pm, TestClass.class, "_int == 3 || _long == 504", false,
+				t -> t.getInt() == 3 || t.getLong() == 504);
+	}
+
+	@Test
+	public void testQueries() {
+		createCompositeIndex("_int", "_long");
+		createCompositeIndex("_string", "_short", "_int");
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(cls(pm).hasCompositeIndex("_int", "_long"));
+		assertTrue(cls(pm).hasCompositeIndex("_string", "_short", "_int"));
+		assertFalse(cls(pm).hasCompositeIndex("_long", "_int"));
+		assertFalse(cls(pm).hasIndex("_int"));
+		assertTrue(ZooJdoHelper.schema(pm).getClass(TestQueryClass.class).hasCompositeIndex(
+				"_int", "_long"));
+		checkAll(pm, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testWithNormalIndex() {
+		TestTools.defineIndex(TestClass.class, "_int", false);
+		createCompositeIndex("_int", "_long");
+		createCompositeIndex("_string", "_short", "_int");
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm, true);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		createCompositeIndex("_int", "_long");
+		createCompositeIndex("_string", "_short", "_int");
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (Object o: pm.getExtent(TestClass.class)) {
+			TestClass tc = (TestClass) o;
+			if (tc.getLong() % 3 == 0) {
+				tc.setInt(tc.getInt() + 1);
+			} else if (tc.getLong() % 3 == 1) {
+				pm.deletePersistent(tc);
+			} else if (tc.getLong() % 5 == 0) {
+				tc.setString("s3");
+			}
+		}
+		TestClass tc = new TestClass();
+		tc.setInt(3);
+		tc.setLong(503);
+		pm.makePersistent(tc);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testRemoveIndex() {
+		//an index that is rolled back does not exist
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createCompositeIndex("_int", "_long");
+		assertTrue(cls(pm).hasCompositeIndex("_int", "_long"));
+		pm.currentTransaction().rollback();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasCompositeIndex("_int", "_long"));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		createCompositeIndex("_int", "_long");
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).removeCompositeIndex("_long", "_int"));
+		assertTrue(cls(pm).removeCompositeIndex("_int", "_long"));
+		assertFalse(cls(pm).hasCompositeIndex("_int", "_long"));
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasCompositeIndex("_int", "_long"));
+		checkQuery(pm, TestClass.class, "_int == 3 && _long > 500", false,
+				t -> t.getInt() == 3 && t.getLong() > 500);
+		pm.currentTransaction().rollback();
+	}
+
+
+	@Test
+	public void testInvalid() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		try {
+			cls(pm).createCompositeIndex("_int");
+			fail();
+		} catch (JDOUserException e) {
+			//single field
+		}
+		try {
+			cls(pm).createCompositeIndex("_int", "_int");
+			fail();
+		} catch (JDOUserException e) {
+			//duplicate field
+		}
+		try {
+			cls(pm).createCompositeIndex("_int", "_bArray");
+			fail();
+		} catch (IllegalArgumentException e) {
+			//type not supported
+		}
+		cls(pm).createCompositeIndex("_int", "_long");
+		try {
+			cls(pm).createCompositeIndex("_int", "_long");
+			fail();
+		} catch (JDOUserException e) {
+			//already defined
+		}
+		pm.currentTransaction().rollback();
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.zoodb.test.testutil.TestTools.checkProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_180_IndexIncludes {
+
+	private static final int N = 1000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class, TestQueryClass.class);
+		DBStatistics.enable(true);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static void populate(boolean withSubClasses) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = withSubClasses && i % 4 == 0 ? new TestQueryClass() : new TestClass();
+			tc.setInt(i % 10);
+			tc.setLong(i);
+			tc.setDouble(i * 0.5);
+			tc.setShort((short) (i % 5));
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static void createIndex(String fieldName, String ... includedFieldNames) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createIndex(fieldName, false, includedFieldNames);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static ZooClass cls(PersistenceManager pm) {
+		return ZooJdoHelper.schema(pm).getClass(TestClass.class);
+	}
+
+
+
+	private static void checkAll(PersistenceManager pm) {
+		checkProjection(pm, TestClass.class, "_long > 500", "_long, _int, _double", true,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getInt(), t.getDouble()));
+		checkProjection(pm, TestClass.class, "_long >= 100 && _long < 200", "_int", true,
+				t -> t.getLong() >= 100 && t.getLong() < 200,
+				t -> Arrays.asList(t.getInt()));
+		checkProjection(pm, TestClass.class, "_long == :p", "_double, _long", true,
+				t -> t.getLong() == 333,
+				t -> Arrays.asList(t.getDouble(), t.getLong()), 333L);
+		checkProjection(pm, TestClass.class, "_long <= :p && _long > 10", "_int", true,
+				t -> t.getLong() <= 20 && t.getLong() > 10, t -> Arrays.asList(t.getInt()), 20);
+		//_short is not included
+		checkProjection(pm, TestClass.class, "_long > 500", "_long, _short", false,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getShort()));
+		//the filter is not fully covered by the index range
+		checkProjection(pm, TestClass.class, "_long > 500 && _int == 3", "_long", false,
+				t -> t.getLong() > 500 && t.getInt() == 3, t -> Arrays.asList(t.getLong()));
+		checkProjection(pm, TestClass.class, "_long > 500.5", "_long", false,
+				t -> t.getLong() > 500.5,
+				t -> Arrays.asList(t.getLong()));
+		checkProjection(pm, TestClass.class, "_long < 10 || _long > 990", "_long", false,
+				t -> t.getLong() < 10 || t.getLong() > 990, t -> Arrays.asList(t.getLong()));
+		//the index also contains instances of super-classes
+		checkProjection(pm, TestQueryClass.class, "_long > 500", "_long, _int", false,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getInt()));
+	}
+
+	@Test
+	public void testQueries() {
+		createIndex("_long", "_int", "_double");
+		populate(true);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(cls(pm).hasIndex("_long"));
+		assertArrayEquals(new String[]{"_int", "_double"}, cls(pm).getIndexIncludes("_long"));
+		checkAll(pm);
+
+		Query q = pm.newQuery(TestClass.class, "_long == 77");
+		q.setResult("_int");
+		q.setUnique(true);
+		assertEquals(7, q.execute());
+		q.closeAll();
+
+		//the result is read from the index while it is iterated
+		long n = ZooJdoHelper.getStatistics(pm).getQueryExecutionIndexOnlyCount();
+		q = pm.newQuery(TestClass.class, "_long >= 500");
+		q.setResult("_long");
+		q.setRange(10, 13);
+		List<?> c = (List<?>) q.execute();
+		assertEquals(n + 1, ZooJdoHelper.getStatistics(pm).getQueryExecutionIndexOnlyCount());
+		assertEquals(Arrays.asList(510L, 511L, 512L), new ArrayList<>(c));
+		assertEquals(3, c.size());
+		q.closeAll();
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testCreateAfterData() {
+		populate(false);
+		createIndex("_long", "_int", "_double");
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkProjection(pm, TestClass.class, "_long > 500", "_long, _int, _double", true,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getInt(), t.getDouble()));
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		createIndex("_long", "_int", "_double");
+		populate(true);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (Object o: pm.getExtent(TestClass.class)) {
+			TestClass tc = (TestClass) o;
+			if (tc.getLong() % 3 == 0) {
+				tc.setInt(tc.getInt() + 100);
+			} else if (tc.getLong() % 3 == 1) {
+				pm.deletePersistent(tc);
+			} else if (tc.getLong() % 5 == 0) {
+				tc.setLong(tc.getLong() + 10000);
+				tc.setDouble(-1);
+			}
+		}
+		//dirty objects are not in the index yet
+		checkProjection(pm, TestClass.class, "_long < 50", "_long, _int", false,
+				t -> t.getLong() < 50,
+				t -> Arrays.asList(t.getLong(), t.getInt()));
+		TestClass tc = new TestClass();
+		tc.setInt(3);
+		tc.setLong(5000);
+		pm.makePersistent(tc);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testRemoveIndex() {
+		//an index that is rolled back does not exist
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createIndex("_long", false, "_int");
+		assertArrayEquals(new String[]{"_int"}, cls(pm).getIndexIncludes("_long"));
+		pm.currentTransaction().rollback();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasIndex("_long"));
+		assertEquals(0, cls(pm).getIndexIncludes("_long").length);
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		createIndex("_long", "_int", "_double");
+		populate(false);
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(cls(pm).removeIndex("_long"));
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasIndex("_long"));
+		assertEquals(0, cls(pm).getIndexIncludes("_long").length);
+		checkProjection(pm, TestClass.class, "_long > 500", "_long, _int", false,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getInt()));
+		cls(pm).createIndex("_long", false);
+		pm.currentTransaction().commit();
+		pm.currentTransaction().begin();
+		assertEquals(0, cls(pm).getIndexIncludes("_long").length);
+		checkProjection(pm, TestClass.class, "_long > 500", "_long, _int", false,
+				t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong(), t.getInt()));
+		//the indexed field alone
+		checkProjection(pm, TestClass.class, "_long > 500", "_long", true, t -> t.getLong() > 500,
+				t -> Arrays.asList(t.getLong()));
+		pm.currentTransaction().rollback();
+	}
+
+
+	@Test
+	public void testInvalid() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		try {
+			cls(pm).createIndex("_long", false, "_string");
+			fail();
+		} catch (JDOUserException e) {
+			//not primitive
+		}
+		try {
+			cls(pm).createIndex("_long", false, "_long");
+			fail();
+		} catch (JDOUserException e) {
+			//indexed field
+		}
+		try {
+			cls(pm).createIndex("_long", false, "_int", "_int");
+			fail();
+		} catch (JDOUserException e) {
+			//duplicate field
+		}
+		assertFalse(cls(pm).hasIndex("_long"));
+		cls(pm).createIndex("_long", false, "_int");
+		try {
+			cls(pm).createIndex("_long", false, "_double");
+			fail();
+		} catch (JDOUserException e) {
+			//already indexed
+		}
+		pm.currentTransaction().rollback();
+	}
+}
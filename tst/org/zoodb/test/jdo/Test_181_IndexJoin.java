@@ -0,0 +1,220 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_181_IndexJoin {
+
+	private static final int N_A = 1000;
+	private static final int N_B = 100;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClassSmall.class, TestClassSmallA.class,
+				TestClassSmallB.class);
+		DBStatistics.enable(true);
+	}
+
+	private static void populate() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClassSmallB[] bs = new TestClassSmallB[N_B];
+		for (int i = 0; i < N_B; i++) {
+			bs[i] = new TestClassSmallB();
+			bs[i].setMyInt(i % 10);
+			bs[i].setMyLong(i);
+			bs[i].setMyString("s" + (i % 7));
+			pm.makePersistent(bs[i]);
+		}
+		for (int i = 0; i < N_A; i++) {
+			TestClassSmallA a = new TestClassSmallA();
+			a.setMyInt(i);
+			a.setB(i % 50 == 0 ? null : bs[i % N_B]);
+			pm.makePersistent(a);
+			if (i < N_B) {
+				bs[i].setA(a);
+			}
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static long joins(PersistenceManager pm) {
+		return ZooJdoHelper.getStatistics(pm).getQueryExecutionJoinCount();
+	}
+
+	/**
+	 * Check the result of a query against the expected values and whether the query
+	 * was executed as join.
+	 */
+	private static void check(PersistenceManager pm, String filter, boolean isJoin,
+			Predicate<TestClassSmallA> expected, Object ... params) {
+		check(pm, filter, null, isJoin, expected, params);
+	}
+
+	private static void check(PersistenceManager pm, String filter, String variables,
+			boolean isJoin, Predicate<TestClassSmallA> expected, Object ... params) {
+		int n = 0;
+		for (TestClassSmallA a: pm.getExtent(TestClassSmallA.class)) {
+			if (expected.test(a)) {
+				n++;
+			}
+		}
+		long nJoins = joins(pm);
+		Query q = pm.newQuery(TestClassSmallA.class, filter);
+		if (variables != null) {
+			q.declareVariables(variables);
+		}
+		Collection<?> c = (Collection<?>) q.executeWithArray(params);
+		for (Object o: c) {
+			assertTrue(filter, expected.test((TestClassSmallA) o));
+		}
+		assertEquals(filter, n, c.size());
+		q.closeAll();
+		assertEquals(filter, isJoin, joins(pm) > nJoins);
+	}
+
+	private static boolean hasB(TestClassSmallA a, Predicate<TestClassSmallB> p) {
+		return a.getB() != null && p.test(a.getB());
+	}
+
+	private static void checkAll(PersistenceManager pm, boolean isJoin, 
+			boolean hasLocalIndex) {
+		check(pm, "b.myInt == 3", isJoin, a -> hasB(a, b -> b.getMyInt() == 3));
+		check(pm, "b.myLong >= 10 && b.myLong < 20", isJoin,
+				a -> hasB(a, b -> b.getMyLong() >= 10 && b.getMyLong() < 20));
+		check(pm, "b.myString == 's3'", isJoin, a -> hasB(a, b -> "s3".equals(b.getMyString())));
+		check(pm, "b.myString.startsWith('s4')", isJoin,
+				a -> hasB(a, b -> b.getMyString().startsWith("s4")));
+		check(pm, "b.myInt == :p", isJoin, a -> hasB(a, b -> b.getMyInt() == 5), 5);
+		check(pm, "b.myInt == :p", isJoin, a -> hasB(a, b -> b.getMyInt() == 7), 7);
+		//an index on the candidate class is preferred
+		check(pm, "b.myInt == 3 && myInt > 500", isJoin && !hasLocalIndex,
+				a -> a.getMyInt() > 500 && hasB(a, b -> b.getMyInt() == 3));
+		check(pm, "b.a.myInt == 7", isJoin,
+				a -> hasB(a, b -> b.getA() != null && b.getA().getMyInt() == 7));
+		//both sides of 'or' are joins
+		check(pm, "b.myInt == 3 || b.myLong == 42", isJoin,
+				a -> hasB(a, b -> b.getMyInt() == 3 || b.getMyLong() == 42));
+		//not selective
+		check(pm, "b.myInt != 3", false, a -> hasB(a, b -> b.getMyInt() != 3));
+
+		//variables that are bound to a reference
+		String v = TestClassSmallB.class.getName() + " v";
+		check(pm, "b == v && v.myInt == 3", v, isJoin, a -> hasB(a, b -> b.getMyInt() == 3));
+		check(pm, "v == b && v.myLong >= 10 && v.myLong < 20", v, isJoin,
+				a -> hasB(a, b -> b.getMyLong() >= 10 && b.getMyLong() < 20));
+		check(pm, "b == v && (v.myInt == 3 || v.myInt == 4)", v, isJoin,
+				a -> hasB(a, b -> b.getMyInt() == 3 || b.getMyInt() == 4));
+		check(pm, "b == v && v.a == w && w.myInt == 7",
+				v + ", " + TestClassSmallA.class.getName() + " w", isJoin,
+				a -> hasB(a, b -> b.getA() != null && b.getA().getMyInt() == 7));
+		check(pm, "b == v && v.myInt != 3", v, false, a -> hasB(a, b -> b.getMyInt() != 3));
+		check(pm, "b == v", v, false, a -> a.getB() != null);
+	}
+
+	@Test
+	public void testJoin() {
+		TestTools.defineIndex(TestClassSmallA.class, "b", false);
+		populate();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm, true, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testJoinWithIndexOnReferencedClass() {
+		TestTools.defineIndex(TestClassSmallA.class, "b", false);
+		TestTools.defineIndex(TestClassSmall.class, "myInt", false);
+		TestTools.defineIndex(TestClassSmall.class, "myString", false);
+		populate();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		long nNoIndex = ZooJdoHelper.getStatistics(pm).getQueryExecutionWithoutIndexCount();
+		check(pm, "b.myInt == 3", true, a -> hasB(a, b -> b.getMyInt() == 3));
+		check(pm, "b.myString == 's3'", true, a -> hasB(a, b -> "s3".equals(b.getMyString())));
+		assertEquals(nNoIndex,
+				ZooJdoHelper.getStatistics(pm).getQueryExecutionWithoutIndexCount());
+		checkAll(pm, true, true);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testNoIndex() {
+		populate();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm, false, false);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testNewAndDeletedObjects() {
+		TestTools.defineIndex(TestClassSmallA.class, "b", false);
+		populate();
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClassSmallB b = new TestClassSmallB();
+		b.setMyInt(3);
+		b.setMyString("x");
+		TestClassSmallA a = new TestClassSmallA();
+		a.setMyInt(-1);
+		a.setB(b);
+		pm.makePersistent(a);
+		for (TestClassSmallA a2: pm.getExtent(TestClassSmallA.class)) {
+			if (a2.getMyInt() % 3 == 0) {
+				pm.deletePersistent(a2);
+			}
+		}
+		check(pm, "b.myInt == 3", true, a2 -> hasB(a2, b2 -> b2.getMyInt() == 3));
+		pm.currentTransaction().commit();
+
+		pm.currentTransaction().begin();
+		check(pm, "b.myInt == 3", true, a2 -> hasB(a2, b2 -> b2.getMyInt() == 3));
+		check(pm, "b.myString == 'x'", true, a2 -> a2.getMyInt() == -1);
+		pm.currentTransaction().rollback();
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.jdo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.zoodb.test.testutil.TestTools.checkQuery;
+
+import javax.jdo.JDOUserException;
+import javax.jdo.PersistenceManager;
+import javax.jdo.Query;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.zoodb.jdo.ZooJdoHelper;
+import org.zoodb.schema.ZooClass;
+import org.zoodb.test.testutil.TestTools;
+import org.zoodb.tools.DBStatistics;
+
+public class Test_182_HashIndex {
+
+	private static final int N = 2000;
+
+	@Before
+	public void before() {
+		TestTools.removeDb();
+		TestTools.createDb();
+		TestTools.defineSchema(TestClass.class, TestQueryClass.class);
+		DBStatistics.enable(true);
+	}
+
+	@After
+	public void after() {
+		TestTools.closePM();
+		DBStatistics.enable(false);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		TestTools.removeDb();
+	}
+
+	private static void populate(boolean withSubClasses) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		for (int i = 0; i < N; i++) {
+			TestClass tc = withSubClasses && i % 4 == 0 ? new TestQueryClass() : new TestClass();
+			tc.setInt(i % 10);
+			tc.setLong(i * 3L);
+			pm.makePersistent(tc);
+		}
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static void createHashIndex(String fieldName) {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createHashIndex(fieldName);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+	}
+
+	private static ZooClass cls(PersistenceManager pm) {
+		return ZooJdoHelper.schema(pm).getClass(TestClass.class);
+	}
+
+
+
+	private static void checkAll(PersistenceManager pm) {
+		checkQuery(pm, TestClass.class, "_long == 300", true, t -> t.getLong() == 300);
+		checkQuery(pm, TestClass.class, "_long == 301", true, t -> t.getLong() == 301);
+		checkQuery(pm, TestClass.class, "_long == :p", true, t -> t.getLong() == 600, 600L);
+		checkQuery(pm, TestClass.class, "_long == :p", true, t -> t.getLong() == 603, 603L);
+		checkQuery(pm, TestClass.class, "_long >= 900 && _long <= 900", true,
+				t -> t.getLong() == 900);
+		checkQuery(pm, TestClass.class, "_long == 300 && _int > 3", true,
+				t -> t.getLong() == 300 && t.getInt() > 3);
+		checkQuery(pm, TestQueryClass.class, "_long == 1200", true,
+				t -> t.getLong() == 1200);
+		//hash indexes are not ordered
+		checkQuery(pm, TestClass.class, "_long > 3000", false, t -> t.getLong() > 3000);
+		checkQuery(pm, TestClass.class, "_long >= 900 && _long <= 903", false,
+				t -> t.getLong() >= 900 && t.getLong() <= 903);
+		checkQuery(pm, TestClass.class, "_long != 300", false, t -> t.getLong() != 300);
+	}
+
+	@Test
+	public void testQueries() {
+		createHashIndex("_long");
+		populate(true);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(cls(pm).hasIndex("_long"));
+		assertTrue(cls(pm).isIndexUnique("_long"));
+		assertTrue(cls(pm).getField("_long").isIndexHashed());
+		checkAll(pm);
+
+		Query q = pm.newQuery(TestClass.class, "_long == 333");
+		q.setUnique(true);
+		assertEquals(333, ((TestClass) q.execute()).getLong());
+		q.closeAll();
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testCreateAfterData() {
+		populate(false);
+		createHashIndex("_long");
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUpdateAndDelete() {
+		createHashIndex("_long");
+		populate(true);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClass t300 = null;
+		TestClass t600 = null;
+		for (Object o: pm.getExtent(TestClass.class)) {
+			TestClass tc = (TestClass) o;
+			if (tc.getLong() == 300) {
+				t300 = tc;
+			} else if (tc.getLong() == 600) {
+				t600 = tc;
+			} else if (tc.getLong() % 9 == 0) {
+				pm.deletePersistent(tc);
+			} else if (tc.getLong() % 5 == 0) {
+				tc.setLong(tc.getLong() + 10000);
+			}
+		}
+		//swap values
+		t300.setLong(600);
+		t600.setLong(300);
+		t300.setInt(-1);
+		TestClass tc = new TestClass();
+		tc.setLong(301);
+		pm.makePersistent(tc);
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		checkAll(pm);
+		checkQuery(pm, TestClass.class, "_long == 600", true, t -> t.getInt() == -1);
+		checkQuery(pm, TestClass.class, "_long == 10015", true, t -> t.getLong() == 10015);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testUniqueViolation() {
+		createHashIndex("_long");
+		populate(false);
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		TestClass tc = new TestClass();
+		tc.setLong(300);
+		pm.makePersistent(tc);
+		try {
+			pm.currentTransaction().commit();
+			fail();
+		} catch (JDOUserException e) {
+			//duplicate key
+		}
+		pm.currentTransaction().begin();
+		checkQuery(pm, TestClass.class, "_long == 300", true, t -> t.getLong() == 300);
+		pm.currentTransaction().rollback();
+	}
+
+	@Test
+	public void testRemoveIndex() {
+		//an index that is rolled back does not exist
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		cls(pm).createHashIndex("_long");
+		assertTrue(cls(pm).getField("_long").isIndexHashed());
+		pm.currentTransaction().rollback();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasIndex("_long"));
+		pm.currentTransaction().rollback();
+		TestTools.closePM();
+
+		createHashIndex("_long");
+		populate(false);
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertTrue(cls(pm).removeIndex("_long"));
+		pm.currentTransaction().commit();
+		TestTools.closePM();
+
+		pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).hasIndex("_long"));
+		checkQuery(pm, TestClass.class, "_long == 300", false, t -> t.getLong() == 300);
+		//a normal index can be used for ranges again
+		cls(pm).createIndex("_long", true);
+		pm.currentTransaction().commit();
+		pm.currentTransaction().begin();
+		assertFalse(cls(pm).getField("_long").isIndexHashed());
+		checkQuery(pm, TestClass.class, "_long > 3000", true, t -> t.getLong() > 3000);
+		pm.currentTransaction().rollback();
+	}
+
+
+	@Test
+	public void testInvalid() {
+		PersistenceManager pm = TestTools.openPM();
+		pm.currentTransaction().begin();
+		try {
+			cls(pm).createHashIndex("_string");
+			fail();
+		} catch (JDOUserException e) {
+			//String
+		}
+		try {
+			cls(pm).createHashIndex("_bArray");
+			fail();
+		} catch (JDOUserException e) {
+			//not indexable
+		}
+		cls(pm).createIndex("_long", true);
+		try {
+			cls(pm).createHashIndex("_long");
+			fail();
+		} catch (JDOUserException e) {
+			//already indexed
+		}
+		pm.currentTransaction().rollback();
+	}
+}
@@ -66,7 +66,6 @@ public class Test_999_UnsupportedOperations {
         check(() -> pmf.getConnectionFactory2());
         check(() -> pmf.getConnectionFactory2Name());
         check(() -> pmf.getConnectionFactoryName());
-        check(() -> pmf.getDataStoreCache());
         check(() -> pmf.getDatastoreReadTimeoutMillis());
         check(() -> pmf.getDatastoreWriteTimeoutMillis());
         check(() -> pmf.getFetchGroup(null, null));
@@ -15,14 +15,25 @@
  */
 package org.zoodb.test.testutil;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import javax.jdo.JDOException;
 import javax.jdo.JDOHelper;
 import javax.jdo.JDOUserException;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Query;
 
 import org.zoodb.jdo.ZooJdoHelper;
 import org.zoodb.jdo.ZooJdoProperties;
@@ -285,6 +296,75 @@ public class TestTools {
 		removeIndex(DB_NAME, cls, fieldName);
 	}
 
+	/**
+	 * Check the result of a query against the matching objects of the extent and whether
+	 * the query used an index. Requires enabled DBStatistics.
+	 * @param pm The PersistenceManager
+	 * @param candCls The candidate class
+	 * @param filter The filter
+	 * @param useIndex Whether the query should use an index
+	 * @param expected Selects the expected results from the extent
+	 * @param params The parameters of the query
+	 */
+	public static <T> void checkQuery(PersistenceManager pm, Class<T> candCls, String filter,
+			boolean useIndex, Predicate<? super T> expected, Object ... params) {
+		int n = 0;
+		for (T o: pm.getExtent(candCls)) {
+			if (expected.test(o)) {
+				n++;
+			}
+		}
+		long nNoIndex = ZooJdoHelper.getStatistics(pm).getQueryExecutionWithoutIndexCount();
+		Query q = pm.newQuery(candCls, filter);
+		Collection<?> c = (Collection<?>) q.executeWithArray(params);
+		for (Object o: c) {
+			assertTrue(filter, candCls.isInstance(o));
+			assertTrue(filter, expected.test(candCls.cast(o)));
+		}
+		assertEquals(filter, n, c.size());
+		q.closeAll();
+		assertEquals(filter, useIndex ? nNoIndex : nNoIndex + 1,
+				ZooJdoHelper.getStatistics(pm).getQueryExecutionWithoutIndexCount());
+	}
+
+	/**
+	 * Check the result of a projection against the matching objects of the extent and 
+	 * whether the query was answered from the indexes only. Requires enabled DBStatistics.
+	 * @param pm The PersistenceManager
+	 * @param candCls The candidate class
+	 * @param filter The filter
+	 * @param result The projection
+	 * @param isIndexOnly Whether the query should be answered from the indexes
+	 * @param expected Selects the expected results from the extent
+	 * @param row The expected result row of an object
+	 * @param params The parameters of the query
+	 */
+	public static <T> void checkProjection(PersistenceManager pm, Class<T> candCls, 
+			String filter, String result, boolean isIndexOnly, Predicate<? super T> expected,
+			Function<? super T, List<Object>> row, Object ... params) {
+		ArrayList<String> rows = new ArrayList<>();
+		for (T o: pm.getExtent(candCls)) {
+			if (expected.test(o)) {
+				rows.add(row.apply(o).toString());
+			}
+		}
+		long nIndexOnly = ZooJdoHelper.getStatistics(pm).getQueryExecutionIndexOnlyCount();
+		Query q = pm.newQuery(candCls, filter);
+		q.setResult(result);
+		Collection<?> c = (Collection<?>) q.executeWithArray(params);
+		ArrayList<String> rows2 = new ArrayList<>();
+		for (Object o: c) {
+			List<Object> r = o instanceof Object[] ? Arrays.asList((Object[]) o) : Arrays.asList(o);
+			rows2.add(r.toString());
+		}
+		Collections.sort(rows);
+		Collections.sort(rows2);
+		assertEquals(filter, rows, rows2);
+		q.closeAll();
+		assertEquals(filter, isIndexOnly ? nIndexOnly + 1 : nIndexOnly, 
+				ZooJdoHelper.getStatistics(pm).getQueryExecutionIndexOnlyCount());
+	}
+
 	/**
 	 * Reflection tool to get direct access to Java fields.
 	 * @param fName field name
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2009-2020 Tilmann Zaeschke
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.zoodb.test.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.zoodb.internal.util.CloseableIterator;
+import org.zoodb.internal.util.LazyResultList;
+
+/**
+ * Test harness for LazyResultList.
+ *
+ * @author  Tilmann Zaeschke
+ */
+public final class LazyResultListTest {
+
+	/**
+	 * Iterator over 0..n-1 that counts how many elements were read.
+	 */
+	private static class CountingIterator implements CloseableIterator<Integer> {
+		private final int n;
+		int nRead = 0;
+		boolean isClosed = false;
+
+		CountingIterator(int n) {
+			this.n = n;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return nRead < n;
+		}
+
+		@Override
+		public Integer next() {
+			return nRead++;
+		}
+
+		@Override
+		public void close() {
+			isClosed = true;
+		}
+	}
+
+	@Test
+	public void testLazyIteration() {
+		CountingIterator src = new CountingIterator(1000);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 0, Long.MAX_VALUE);
+		assertEquals(0, src.nRead);
+		assertFalse(list.isEmpty());
+		assertEquals(1, src.nRead);
+
+		assertEquals(5, (int) list.get(5));
+		assertEquals(20, (int) list.get(20));
+		assertEquals(21, src.nRead);
+		Iterator<Integer> it = list.iterator();
+		for (int i = 0; i < 30; i++) {
+			assertEquals(i, (int) it.next());
+		}
+		assertEquals(30, src.nRead);
+		assertFalse(list.isComplete());
+
+		assertEquals(1000, list.size());
+		assertTrue(list.isComplete());
+		assertTrue(src.isClosed);
+		assertEquals(30, (int) it.next());
+		assertTrue(list.contains(999));
+	}
+
+	@Test
+	public void testFirstIteratorKeepsElements() {
+		CountingIterator src = new CountingIterator(1000);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 0, Long.MAX_VALUE);
+		Iterator<Integer> it = list.iterator();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, (int) it.next());
+		}
+		assertEquals(10, src.nRead);
+
+		//elements that were returned by the iterator are kept
+		assertEquals(5, (int) list.get(5));
+		Iterator<Integer> it2 = list.iterator();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, (int) it2.next());
+		}
+		assertEquals(10, src.nRead);
+
+		assertEquals(20, (int) list.get(20));
+		for (int i = 10; i < 1000; i++) {
+			assertEquals(i, (int) it.next());
+		}
+		assertFalse(it.hasNext());
+		assertEquals(1000, list.size());
+		assertEquals(15, (int) list.get(15));
+		assertEquals(1000, src.nRead);
+	}
+
+	@Test
+	public void testNoReadAgain() {
+		CountingIterator src = new CountingIterator(100);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 0, Long.MAX_VALUE);
+		ArrayList<Integer> first = new ArrayList<>();
+		for (Integer i: list) {
+			first.add(i);
+		}
+		assertEquals(100, first.size());
+		assertTrue(src.isClosed);
+
+		//the source is not read again, the second iteration returns the kept elements
+		ArrayList<Integer> second = new ArrayList<>();
+		for (Integer i: list) {
+			second.add(i);
+		}
+		assertEquals(first, second);
+		assertTrue(list.contains(3));
+		assertEquals(50, (int) list.listIterator(50).next());
+		assertEquals(100, list.size());
+		assertEquals(100, src.nRead);
+	}
+
+	@Test
+	public void testRange() {
+		CountingIterator src = new CountingIterator(1000);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 100, 110);
+		Iterator<Integer> it = list.iterator();
+		for (int i = 100; i < 110; i++) {
+			assertTrue(it.hasNext());
+			assertEquals(i, (int) it.next());
+		}
+		assertFalse(it.hasNext());
+		//the source is not read beyond the range
+		assertEquals(110, src.nRead);
+		assertTrue(src.isClosed);
+		assertEquals(10, list.size());
+	}
+
+	@Test
+	public void testRangeBeyondEnd() {
+		CountingIterator src = new CountingIterator(10);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 20, 30);
+		assertTrue(list.isEmpty());
+		assertEquals(0, list.size());
+		assertTrue(src.isClosed);
+	}
+
+	@Test
+	public void testMultipleIterators() {
+		CountingIterator src = new CountingIterator(100);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 0, Long.MAX_VALUE);
+		Iterator<Integer> it1 = list.iterator();
+		Iterator<Integer> it2 = list.iterator();
+		for (int i = 0; i < 50; i++) {
+			assertEquals(i, (int) it1.next());
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, (int) it2.next());
+		}
+		assertFalse(it2.hasNext());
+		for (int i = 50; i < 100; i++) {
+			assertEquals(i, (int) it1.next());
+		}
+		assertFalse(it1.hasNext());
+		assertEquals(100, src.nRead);
+	}
+
+	@Test
+	public void testClose() {
+		CountingIterator src = new CountingIterator(100);
+		LazyResultList<Integer> list = new LazyResultList<>(src, 0, Long.MAX_VALUE);
+		Iterator<Integer> it = list.iterator();
+		it.next();
+		it.next();
+		list.close();
+		assertTrue(src.isClosed);
+		assertFalse(it.hasNext());
+		assertEquals(2, list.size());
+	}
+}